@@ -0,0 +1,126 @@
+package rover;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import lejos.robotics.geometry.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import tools.Vec;
+
+/**
+ * Benchmarks the work done for every ultrasonic echo of a sweep: its projection inside the map, the checks against the
+ * zones, and the comparison with the known samples, for a growing number of them.
+ *
+ * @author Antoine Stevan
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DetectionBenchmark {
+	/** The number of precomputed inputs, cycled through so that the JIT cannot fold them. */
+	static final int inputs = 1024;
+	/** The mask wrapping the index of the next input. */
+	private static final int mask = DetectionBenchmark.inputs - 1;
+
+	/**
+	 * A rover knowing a given number of samples, for a growing number of them.
+	 */
+	@State(Scope.Thread)
+	public static class Known {
+		/** The number of samples already known by the rover. */
+		@Param({"1", "2", "8", "32"})
+		int known;
+
+		/** A simulated rover, at rest on its initial pose. */
+		Rover rover;
+
+		/**
+		 * Builds the rover and its known samples, drawn from a fixed seed.
+		 */
+		@Setup
+		public void setup() {
+			Random random = new Random(7);
+			this.rover = new Rover(new SimHardware());
+			this.rover.obstacles = new Point[this.known];
+			for (int i = 0; i < this.known; i++) {
+				this.rover.obstacles[i] = new Point(random.nextFloat()*Map.length, random.nextFloat()*Map.width);
+			}
+			this.rover.j_obst = this.known;
+		}
+	}
+
+	/** A simulated rover, at rest on its initial pose. */
+	private Rover rover;
+	/** The distances of the echoes, in m. */
+	private final float[] distances = new float[DetectionBenchmark.inputs];
+	/** The detected objects, inside the map. */
+	private final Vec[]   objects   = new Vec[DetectionBenchmark.inputs];
+	/** The vector receiving the projected echoes. */
+	private final Vec     result    = new Vec();
+	/** The index of the next input. */
+	private int next;
+
+	/**
+	 * Builds the rover and the inputs, drawn from a fixed seed.
+	 */
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		this.rover = new Rover(new SimHardware());
+		for (int i = 0; i < DetectionBenchmark.inputs; i++) {
+			this.distances[i] = 0.1f + 2*random.nextFloat();
+			this.objects[i]   = new Vec(random.nextFloat()*Map.length, random.nextFloat()*Map.width);
+		}
+	}
+
+	/**
+	 * Projects an echo from the pose of the rover at the moment of the echo.
+	 *
+	 * @return the position of the echo.
+	 */
+	@Benchmark
+	public Vec point_from_ultra() {
+		int i = this.next++ & DetectionBenchmark.mask;
+		return this.rover.point_from_ultra(this.distances[i], i, this.result);
+	}
+
+	/**
+	 * Compares a detected object with every known sample.
+	 *
+	 * @param known the rover and its known samples.
+	 * @return true if the object is a new sample.
+	 */
+	@Benchmark
+	public boolean is_new_sample(Known known) {
+		return known.rover.is_new_sample(this.objects[this.next++ & DetectionBenchmark.mask]);
+	}
+
+	/**
+	 * Tells whether a detected object lies inside the map.
+	 *
+	 * @return true if the object is inside the map.
+	 */
+	@Benchmark
+	public boolean map_inside() {
+		Vec v = this.objects[this.next++ & DetectionBenchmark.mask];
+		return Rover.map.inside(v.x, v.y);
+	}
+
+	/**
+	 * Tells whether a detected object lies inside the recovery zone.
+	 *
+	 * @return true if the object is inside the recovery zone.
+	 */
+	@Benchmark
+	public boolean recup_zone_inside() {
+		Vec v = this.objects[this.next++ & DetectionBenchmark.mask];
+		return Rover.recup_zone.inside(v.x, v.y);
+	}
+}
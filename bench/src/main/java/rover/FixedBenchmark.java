@@ -0,0 +1,208 @@
+package rover;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import lejos.robotics.navigation.Pose;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import tools.Fixed;
+import tools.Vec;
+
+/**
+ * Benchmarks the fixed-point backend against the floating-point one: sin and cos, atan2, the projection of an echo and a
+ * tick of odometry. Its main method checks the accuracy bounds of the fixed-point backend instead.
+ *
+ * Accuracy is checked exhaustively where possible, against {@link Math}, and the odometry of both backends integrates the
+ * same synthetic mission. Throughput is meaningful on the brick only: a desktop CPU has a floating-point unit, hence the
+ * software floats of the EV3 are not reproduced.
+ *
+ * @author Antoine Stevan
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FixedBenchmark {
+	/** The backend: "float" or "fixed". */
+	@Param({"float", "fixed"})
+	String backend;
+
+	/** Tells whether the fixed-point backend is measured. */
+	private boolean fixed;
+	/** The odometry of the backend, at rest on the initial pose. */
+	private Odometry odometry;
+	/** The vector receiving the projected echoes. */
+	private final Vec v = new Vec();
+	/** The index of the next call, i.e. of its input. */
+	private int next;
+
+	/**
+	 * Selects the backend of the trial.
+	 */
+	@Setup
+	public void setup() {
+		this.fixed    = this.backend.equals("fixed");
+		this.odometry = new Odometry(new Pose(0.25f, 0.75f, 0), null, null, this.fixed);
+	}
+
+	/**
+	 * Computes the sine and the cosine of an angle.
+	 *
+	 * @return their sum, in Q16.16.
+	 */
+	@Benchmark
+	public long sin_cos() {
+		int i = this.next++;
+		if (this.fixed) { return Fixed.sin(i*21467) + Fixed.cos(i*21467); }
+		double a = i*0.0003;
+		return (long)((Math.sin(a) + Math.cos(a))*Fixed.ONE);
+	}
+
+	/**
+	 * Computes the angle of a vector.
+	 *
+	 * @return the angle, in Q16.16 or as a 32-bit binary angle.
+	 */
+	@Benchmark
+	public long atan2() {
+		int i = (this.next++ & 262143) - 100000;
+		return (this.fixed)? Fixed.atan2(i, 777) : (long)(Math.atan2(i, 777)*Fixed.ONE);
+	}
+
+	/**
+	 * Projects an echo from a pose of the rover.
+	 *
+	 * @return the position of the echo.
+	 */
+	@Benchmark
+	public Vec project() {
+		int i = this.next++;
+		Rover.project(1, 0.5f, (i & 65535)*0.01f, (i & 1023)/512f, this.fixed, this.v);
+		return this.v;
+	}
+
+	/**
+	 * Integrates a tick of odometry.
+	 */
+	@Benchmark
+	public void odometry() {
+		int i = this.next++;
+		if (this.fixed) {
+			this.odometry.integrate_fixed(-3 - (i & 1), -3);
+		} else {
+			this.odometry.integrate(-3 - (i & 1), -3);
+		}
+	}
+
+	//###################################################################################################################
+	//### Accuracy ######################################################################################################
+	//###################################################################################################################
+	/**
+	 * Checks every accuracy bound and prints the measured errors, outside of JMH:
+	 * java -cp bench/target/benchmarks.jar rover.FixedBenchmark
+	 *
+	 * @param args unused.
+	 */
+	public static void main(String[] args) {
+		Random random = new Random(42);
+
+		// sin and cos: every 16-bit angle, with random low bits.
+		long trig = 0;
+		for (int i = 0; i < Fixed.TURN; i++) {
+			int a = (i << 16) | random.nextInt(1 << 16);
+			double r = 2*Math.PI*(a & 0xFFFFFFFFL)/4294967296.0;
+			trig = Math.max(trig, Math.abs(Fixed.sin(a) - Math.round(Math.sin(r)*Fixed.ONE)));
+			trig = Math.max(trig, Math.abs(Fixed.cos(a) - Math.round(Math.cos(r)*Fixed.ONE)));
+		}
+		FixedBenchmark.check("sin/cos  (Q16.16 units)", trig, Fixed.TRIG_ERROR);
+
+		// atan2: a dense grid around the origin and random vectors of any size.
+		long atan = 0;
+		for (int x = -1000; x <= 1000; x += 3) {
+			for (int y = -1000; y <= 1000; y += 3) {
+				atan = Math.max(atan, FixedBenchmark.atan_error(y, x));
+			}
+		}
+		for (int i = 0; i < 1000000; i++) {
+			atan = Math.max(atan, FixedBenchmark.atan_error(random.nextInt(), random.nextInt()));
+		}
+		FixedBenchmark.check("atan2    (16-bit angle units)", atan, Fixed.ATAN_ERROR);
+
+		// sqrt: the floor of the square root, exactly.
+		long sqrt = 0;
+		for (int i = 0; i < 1000000; i++) {
+			long n = random.nextLong() >>> (1 + random.nextInt(63));
+			long r = Fixed.sqrt(n);
+			if (r*r > n || (r+1)*(r+1) <= n) { sqrt++; }
+		}
+		FixedBenchmark.check("sqrt     (wrong roots)", sqrt, 0);
+
+		// projection of echoes: random poses inside the map.
+		Vec f = new Vec();
+		Vec d = new Vec();
+		float project = 0;
+		for (int i = 0; i < 100000; i++) {
+			float x = 2.5f*random.nextFloat();
+			float y = 1.5f*random.nextFloat();
+			float h = 720*random.nextFloat() - 360;
+			float dist = 2*random.nextFloat();
+			Rover.project(x, y, h, dist, true, f);
+			Rover.project(x, y, h, dist, false, d);
+			project = Math.max(project, (float)Math.sqrt(f.distanceSquared(d)));
+		}
+		System.out.println("project  (m): " + project);
+
+		// odometry: a synthetic mission of 10 minutes, made of travels, rotations and arcs.
+		Odometry floating = new Odometry(new Pose(0.25f, 0.75f, 0), null, null, false);
+		Odometry fixed    = new Odometry(new Pose(0.25f, 0.75f, 0), null, null, true);
+		for (int t = 0; t < 60000; t++) {
+			int phase = (t/500) % 3;
+			int dr = (phase == 2)? -4 : -3;
+			int dl = (phase == 1)?  3 : -3;
+			dr += random.nextInt(3) - 1;
+			dl += random.nextInt(3) - 1;
+			floating.integrate(dr, dl);
+			fixed.integrate_fixed(dr, dl);
+		}
+		floating.publish();
+		fixed.publish();
+		float[] a = new float[3];
+		float[] b = new float[3];
+		floating.read(a);
+		fixed.read(b);
+		System.out.println("odometry (m, deg) after 10 min: " + (float)Math.hypot(a[0]-b[0], a[1]-b[1]) + ", " +
+						   Math.abs(a[2]-b[2]));
+	}
+
+	/**
+	 * Gives the error of the fixed-point atan2 of a vector.
+	 *
+	 * @param y the y coordinate of the vector.
+	 * @param x the x coordinate of the vector.
+	 * @return the absolute error, in 16-bit angle units.
+	 */
+	private static long atan_error(int y, int x) {
+		if (x == 0 && y == 0) { return 0; }
+		long exact = Math.round(Math.atan2(y, x)/(2*Math.PI)*Fixed.TURN);
+		// compare modulo a full turn, pi and -pi being the same angle.
+		long error = ((Fixed.atan2(y, x) >> 16) - exact) & (Fixed.TURN - 1);
+		return Math.min(error, Fixed.TURN - error);
+	}
+
+	/**
+	 * Prints a measured error, and whether it is within its bound.
+	 *
+	 * @param name the name of the error.
+	 * @param error the measured error.
+	 * @param bound the documented bound of the error.
+	 */
+	private static void check(String name, long error, long bound) {
+		System.out.println(name + ": " + error + " (bound " + bound + ((error <= bound)? ", ok)" : ", FAILED)"));
+	}
+}
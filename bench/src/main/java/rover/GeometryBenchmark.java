@@ -0,0 +1,106 @@
+package rover;
+
+import java.util.concurrent.TimeUnit;
+import lejos.robotics.geometry.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import tools.Vec;
+
+/**
+ * Benchmarks the detection path of an ultrasonic echo twice: the way it used to be written, with the leJOS geometry,
+ * and with the allocation-free kernel of {@link Vec}. Run it with '-prof gc' to count the allocated bytes per echo.
+ *
+ * The client JVM of the EV3 does not remove short-lived allocations, unlike a desktop server JVM: the benchmark is forked
+ * with -XX:-DoEscapeAnalysis, so that it allocates what the brick actually allocates.
+ *
+ * @author Antoine Stevan
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(jvmArgsAppend = "-XX:-DoEscapeAnalysis")
+public class GeometryBenchmark {
+	/** The number of precomputed echoes of the synthetic sweep, cycled through so that the JIT cannot fold them. */
+	static final int inputs = 1024;
+	/** The mask wrapping the index of the next echo. */
+	private static final int mask = GeometryBenchmark.inputs - 1;
+	/** The number of known obstacles, checked against every echo. */
+	static final int known  = 4;
+
+	/** The known obstacles. */
+	private final Point[] obstacles = new Point[GeometryBenchmark.known];
+	/** The x coordinates of the rover at every echo, in m. */
+	private final float[] xs        = new float[GeometryBenchmark.inputs];
+	/** The y coordinates of the rover at every echo, in m. */
+	private final float[] ys        = new float[GeometryBenchmark.inputs];
+	/** The headings of the rover at every echo, in degrees. */
+	private final float[] headings  = new float[GeometryBenchmark.inputs];
+	/** The measured distances, in m. */
+	private final float[] distances = new float[GeometryBenchmark.inputs];
+	/** The reused vector of the echo. */
+	private final Vec     v         = new Vec();
+	/** The index of the next echo. */
+	private int next;
+
+	/**
+	 * Builds the known obstacles and a synthetic sweep, i.e. echoes from a rover travelling along the map.
+	 */
+	@Setup
+	public void setup() {
+		for (int i = 0; i < GeometryBenchmark.known; i++) {
+			this.obstacles[i] = new Point(0.5f + 0.4f*i, 0.3f + 0.2f*i);
+		}
+		for (int i = 0; i < GeometryBenchmark.inputs; i++) {
+			float t = (float)i/GeometryBenchmark.inputs;
+			this.xs[i]        = 0.25f + 2*t;
+			this.ys[i]        = 0.2f + 1.1f*t;
+			this.headings[i]  = 360*t;
+			this.distances[i] = 0.1f + (i % 50)/50f;
+		}
+	}
+
+	/**
+	 * The detection path of an echo with the leJOS geometry, i.e. allocating points.
+	 *
+	 * @return true if the echo is a new sample.
+	 */
+	@Benchmark
+	public boolean legacy() {
+		int i = this.next++ & GeometryBenchmark.mask;
+		float h = this.headings[i];
+		Point p = new Point(this.xs[i], this.ys[i]).pointAt(Rover.ULTRA_R, h + (float)Math.toDegrees(Rover.ULTRA_THETA))
+												   .pointAt(this.distances[i], h);
+		boolean recup = Math.pow(p.x-RecupZone.center.x,2) + Math.pow(p.y-RecupZone.center.y,2) <
+						Math.pow(RecupZone.diameter/2,2);
+		if (!Rover.map.inside(p) || recup) { return false; }
+		for (int k = 0; k < GeometryBenchmark.known; k++) {
+			if (this.obstacles[k].subtract(p).length() < Rover.MIN_DIST_DETECTION) { return false; }
+		}
+		return true;
+	}
+
+	/**
+	 * The detection path of an echo with the allocation-free kernel.
+	 *
+	 * @return true if the echo is a new sample.
+	 */
+	@Benchmark
+	public boolean kernel() {
+		int i = this.next++ & GeometryBenchmark.mask;
+		Rover.project(this.xs[i], this.ys[i], this.headings[i], this.distances[i], false, this.v);
+		if (!Rover.map.inside(this.v) || Rover.recup_zone.inside(this.v)) { return false; }
+		for (int k = 0; k < GeometryBenchmark.known; k++) {
+			if (this.v.distanceSquared(this.obstacles[k]) < Rover.MIN_DIST_DETECTION*Rover.MIN_DIST_DETECTION) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
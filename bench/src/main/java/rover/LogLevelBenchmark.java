@@ -0,0 +1,58 @@
+package rover;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the cost of a record of the detection loop when debug records are disabled.
+ *
+ * The record of a detection used to be built by concatenation before being written, whatever the interest in it. The
+ * benchmark compares the cost of building that message alone, i.e. a lower bound of the former cost, with the cost of
+ * the same record given to a disabled debug level as a pattern with arguments.
+ *
+ * @author Antoine Stevan
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LogLevelBenchmark {
+	/** The logger of a subsystem, whose debug level is disabled. */
+	private Logger logger;
+	/** The index of the next record, i.e. of its values. */
+	private int next;
+
+	/**
+	 * Builds the logger of the sensing subsystem, at its default level.
+	 */
+	@Setup
+	public void setup() {
+		this.logger = new Logger().subsystem("sensing");
+	}
+
+	/**
+	 * Builds the message of a detection by concatenation, without writing it.
+	 *
+	 * @return the message.
+	 */
+	@Benchmark
+	public String concatenation() {
+		int i = this.next++;
+		return "det (X:" + i*0.001f + " Y:" + i*0.002f + ") at d: " + i*0.003f;
+	}
+
+	/**
+	 * Gives a detection to the disabled debug level, as a pattern with arguments.
+	 */
+	@Benchmark
+	public void disabled_debug() {
+		int i = this.next++;
+		this.logger.debug("det (X:{} Y:{}) at d: {}", i*0.001f, i*0.002f, i*0.003f);
+	}
+}
@@ -0,0 +1,80 @@
+package rover;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks the throughput of {@link Logger#println(String)}, writing to the console and to a log file, from the
+ * caller in synchronous mode, through the writer thread in asynchronous mode, or discarded when the logger is off.
+ * The console is replaced by a sink, so that the terminal does not weigh on the results.
+ *
+ * @author Antoine Stevan
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoggerBenchmark {
+	/** The mode of the logger: "sync", "async" or "off". */
+	@Param({"sync", "async", "off"})
+	String mode;
+
+	/** The logger. */
+	private Logger logger;
+	/** The temporary log file. */
+	private File file;
+
+	/**
+	 * Opens the logger on a temporary file, in the mode of the trial.
+	 *
+	 * @throws IOException if the temporary file cannot be created.
+	 */
+	@Setup
+	public void setup() throws IOException {
+		Logger.out = new BufferedWriter(new Writer() {
+			public void write(char[] buffer, int offset, int length) {
+			}
+
+			public void flush() {
+			}
+
+			public void close() {
+			}
+		});
+		this.file   = File.createTempFile("bench", ".log");
+		this.logger = new Logger();
+		this.logger.open(this.file.getPath(), this.mode.equals("async"));
+		if (this.mode.equals("off")) { this.logger.setLevel(Logger.OFF); }
+	}
+
+	/**
+	 * Writes every pending record, closes the logger and deletes its file.
+	 *
+	 * @throws IOException if the logger cannot be closed.
+	 */
+	@TearDown
+	public void teardown() throws IOException {
+		this.logger.close();
+		this.file.delete();
+	}
+
+	/**
+	 * Prints a typical record of a mission.
+	 */
+	@Benchmark
+	public void println() {
+		this.logger.println("sweep done in 1234 ms");
+	}
+}
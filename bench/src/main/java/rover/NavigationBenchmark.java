@@ -0,0 +1,56 @@
+package rover;
+
+import java.util.concurrent.TimeUnit;
+import lejos.robotics.geometry.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the planning and dead-reckoning computations of the rover: the path of the sweep, and the location after a
+ * straight travel from the tacho counts.
+ *
+ * @author Antoine Stevan
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NavigationBenchmark {
+	/** A simulated rover, at rest on its initial pose, whose odometry is not running. */
+	private Rover rover;
+
+	/**
+	 * Builds the rover. Its logger is disabled, so that only the computations are measured.
+	 */
+	@Setup
+	public void setup() {
+		this.rover = new Rover(new SimHardware());
+		this.rover.logger.setLevel(Logger.OFF);
+	}
+
+	/**
+	 * Computes the waypoints of the sweep of the map.
+	 *
+	 * @return the path.
+	 */
+	@Benchmark
+	public Object compute_path() {
+		this.rover.compute_path();
+		return this.rover.path;
+	}
+
+	/**
+	 * Updates the location of the rover from the tacho counts of its tracks.
+	 *
+	 * @return the travel since the previous location.
+	 */
+	@Benchmark
+	public Point compute_new_location() {
+		return this.rover.nav.compute_new_location();
+	}
+}
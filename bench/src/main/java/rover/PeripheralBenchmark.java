@@ -0,0 +1,70 @@
+package rover;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import tools.Measure;
+
+/**
+ * Benchmarks the reading of a burst of samples from a peripheral, here the tacho counts of an engine as polled by the
+ * scheduler: drained at once into primitive arrays, or read one {@link Measure} at a time.
+ *
+ * @author Antoine Stevan
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PeripheralBenchmark {
+	/** The number of samples of a burst, i.e. 10 ticks of the odometry between two loops of the mission. */
+	static final int burst = 10;
+
+	/** An engine of a simulated rover. */
+	private Engine engine;
+	/** The destination of the values. */
+	private final float[] values = new float[Engine.capacity];
+	/** The destination of the timestamps. */
+	private final long[]  times  = new long[Engine.capacity];
+	/** The timestamp of the next polled sample. */
+	private long time;
+
+	/**
+	 * Builds the engine.
+	 */
+	@Setup
+	public void setup() {
+		this.engine = new Engine(new SimHardware().right());
+	}
+
+	/**
+	 * Polls a burst of tacho counts, then drains it at once.
+	 *
+	 * @return the sum of the drained counts.
+	 */
+	@Benchmark
+	public float drain() {
+		for (int k = 0; k < PeripheralBenchmark.burst; k++) { this.engine.sample(this.time++); }
+		int n = this.engine.readInto(this.values, this.times, 0, this.values.length);
+		float sum = 0;
+		for (int k = 0; k < n; k++) { sum += this.values[k]; }
+		return sum;
+	}
+
+	/**
+	 * Polls a burst of tacho counts, then reads as many measures, one per sample.
+	 *
+	 * @return the sum of the measures.
+	 */
+	@Benchmark
+	public float measures() {
+		for (int k = 0; k < PeripheralBenchmark.burst; k++) { this.engine.sample(this.time++); }
+		float sum = 0;
+		for (int k = 0; k < PeripheralBenchmark.burst; k++) { sum += this.engine.read().getValue(); }
+		return sum;
+	}
+}
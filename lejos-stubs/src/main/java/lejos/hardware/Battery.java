@@ -0,0 +1,15 @@
+package lejos.hardware;
+
+/**
+ * A battery which is always full.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public class Battery {
+	public static int getVoltageMilliVolt() {
+		return 8000;
+	}
+
+	public static float getVoltage() {
+		return 8f;
+	}
+}
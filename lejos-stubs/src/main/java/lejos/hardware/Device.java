@@ -0,0 +1,10 @@
+package lejos.hardware;
+
+/**
+ * A device which holds nothing.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public class Device {
+	public void close() {
+	}
+}
@@ -0,0 +1,26 @@
+package lejos.hardware;
+
+/**
+ * A silent speaker.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public class Sound {
+	public static final int[] PIANO = new int[] {4, 25, 500, 7000, 5};
+	public static final int[] FLUTE = new int[] {10, 25, 2000, 1000, 25};
+	public static final int[] XYLOPHONE = new int[] {8, 8, 3000, 5000, 0};
+
+	public static void beep() {
+	}
+
+	public static void twoBeeps() {
+	}
+
+	public static void playTone(int frequency, int duration) {
+	}
+
+	public static void playNote(int[] instrument, int frequency, int length) {
+	}
+
+	public static void setVolume(int volume) {
+	}
+}
@@ -0,0 +1,116 @@
+package lejos.hardware.motor;
+
+import lejos.hardware.port.Port;
+import lejos.robotics.RegulatedMotor;
+import lejos.robotics.RegulatedMotorListener;
+
+/**
+ * A motor which reaches its target as soon as it is told to rotate.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public class NXTRegulatedMotor implements RegulatedMotor {
+	private int tacho;
+	private int speed = 360;
+	private RegulatedMotorListener listener;
+
+	public NXTRegulatedMotor(Port port) {
+	}
+
+	public void forward() {
+	}
+
+	public void backward() {
+	}
+
+	public void stop() {
+	}
+
+	public void stop(boolean immediateReturn) {
+	}
+
+	public void flt() {
+	}
+
+	public void flt(boolean immediateReturn) {
+	}
+
+	public boolean isMoving() {
+		return false;
+	}
+
+	public void rotate(int angle) {
+		this.rotate(angle, false);
+	}
+
+	public void rotate(int angle, boolean immediateReturn) {
+		this.rotateTo(this.tacho + angle, immediateReturn);
+	}
+
+	public void rotateTo(int limitAngle) {
+		this.rotateTo(limitAngle, false);
+	}
+
+	public void rotateTo(int limitAngle, boolean immediateReturn) {
+		int start = this.tacho;
+		RegulatedMotorListener listener = this.listener;
+		if (listener != null) { listener.rotationStarted(this, start, false, System.currentTimeMillis()); }
+		this.tacho = limitAngle;
+		if (listener != null) { listener.rotationStopped(this, limitAngle, false, System.currentTimeMillis()); }
+	}
+
+	public int getTachoCount() {
+		return this.tacho;
+	}
+
+	public void resetTachoCount() {
+		this.tacho = 0;
+	}
+
+	public void setSpeed(int speed) {
+		this.speed = speed;
+	}
+
+	public int getSpeed() {
+		return this.speed;
+	}
+
+	public float getMaxSpeed() {
+		return 740;
+	}
+
+	public void setAcceleration(int acceleration) {
+	}
+
+	public int getRotationSpeed() {
+		return 0;
+	}
+
+	public boolean isStalled() {
+		return false;
+	}
+
+	public void waitComplete() {
+	}
+
+	public void addListener(RegulatedMotorListener listener) {
+		this.listener = listener;
+	}
+
+	public RegulatedMotorListener removeListener() {
+		RegulatedMotorListener listener = this.listener;
+		this.listener = null;
+		return listener;
+	}
+
+	public void synchronizeWith(RegulatedMotor[] syncList) {
+	}
+
+	public void startSynchronization() {
+	}
+
+	public void endSynchronization() {
+	}
+
+	public void close() {
+	}
+}
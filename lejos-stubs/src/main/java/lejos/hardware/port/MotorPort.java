@@ -0,0 +1,20 @@
+package lejos.hardware.port;
+
+/**
+ * The motor ports of the brick.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public class MotorPort {
+	public static final Port A = MotorPort.named("A");
+	public static final Port B = MotorPort.named("B");
+	public static final Port C = MotorPort.named("C");
+	public static final Port D = MotorPort.named("D");
+
+	static Port named(final String name) {
+		return new Port() {
+			public String getName() {
+				return name;
+			}
+		};
+	}
+}
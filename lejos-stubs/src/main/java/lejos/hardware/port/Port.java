@@ -0,0 +1,9 @@
+package lejos.hardware.port;
+
+/**
+ * A named port of the brick.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public interface Port {
+	String getName();
+}
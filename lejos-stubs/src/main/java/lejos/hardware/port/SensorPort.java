@@ -0,0 +1,12 @@
+package lejos.hardware.port;
+
+/**
+ * The sensor ports of the brick.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public class SensorPort {
+	public static final Port S1 = MotorPort.named("S1");
+	public static final Port S2 = MotorPort.named("S2");
+	public static final Port S3 = MotorPort.named("S3");
+	public static final Port S4 = MotorPort.named("S4");
+}
@@ -0,0 +1,32 @@
+package lejos.hardware.sensor;
+
+import lejos.hardware.Device;
+
+/**
+ * A sensor.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public class BaseSensor extends Device {
+	/**
+	 * Builds a mode giving constant samples.
+	 *
+	 * @param name the name of the mode.
+	 * @param value the value of every sample.
+	 * @return the mode.
+	 */
+	static SensorMode constant(final String name, final float value) {
+		return new SensorMode() {
+			public String getName() {
+				return name;
+			}
+
+			public int sampleSize() {
+				return 1;
+			}
+
+			public void fetchSample(float[] sample, int offset) {
+				sample[offset] = value;
+			}
+		};
+	}
+}
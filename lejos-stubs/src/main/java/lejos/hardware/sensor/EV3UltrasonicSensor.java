@@ -0,0 +1,24 @@
+package lejos.hardware.sensor;
+
+import lejos.hardware.port.Port;
+
+/**
+ * An ultrasonic sensor which never sees anything.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public class EV3UltrasonicSensor extends BaseSensor {
+	private final SensorMode distance = BaseSensor.constant("Distance", Float.POSITIVE_INFINITY);
+
+	public EV3UltrasonicSensor(Port port) {
+	}
+
+	public void enable() {
+	}
+
+	public void disable() {
+	}
+
+	public SensorMode getDistanceMode() {
+		return this.distance;
+	}
+}
@@ -0,0 +1,11 @@
+package lejos.hardware.sensor;
+
+import lejos.robotics.SampleProvider;
+
+/**
+ * A mode of a sensor.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public interface SensorMode extends SampleProvider {
+	String getName();
+}
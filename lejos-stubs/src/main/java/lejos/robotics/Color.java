@@ -0,0 +1,20 @@
+package lejos.robotics;
+
+/**
+ * The identifiers of the colors.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public class Color {
+	public static final int NONE    = -1;
+	public static final int RED     = 0;
+	public static final int GREEN   = 1;
+	public static final int BLUE    = 2;
+	public static final int YELLOW  = 3;
+	public static final int MAGENTA = 4;
+	public static final int ORANGE  = 5;
+	public static final int WHITE   = 6;
+	public static final int BLACK   = 7;
+	public static final int PINK    = 8;
+	public static final int GRAY    = 9;
+	public static final int BROWN   = 13;
+}
@@ -0,0 +1,57 @@
+package lejos.robotics;
+
+/**
+ * A regulated motor.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public interface RegulatedMotor {
+	void forward();
+
+	void backward();
+
+	void stop();
+
+	void stop(boolean immediateReturn);
+
+	void flt();
+
+	boolean isMoving();
+
+	void rotate(int angle);
+
+	void rotate(int angle, boolean immediateReturn);
+
+	void rotateTo(int limitAngle);
+
+	void rotateTo(int limitAngle, boolean immediateReturn);
+
+	int getTachoCount();
+
+	void resetTachoCount();
+
+	void setSpeed(int speed);
+
+	int getSpeed();
+
+	float getMaxSpeed();
+
+	void setAcceleration(int acceleration);
+
+	int getRotationSpeed();
+
+	boolean isStalled();
+
+	void waitComplete();
+
+	void addListener(RegulatedMotorListener listener);
+
+	RegulatedMotorListener removeListener();
+
+	void synchronizeWith(RegulatedMotor[] syncList);
+
+	void startSynchronization();
+
+	void endSynchronization();
+
+	void close();
+}
@@ -0,0 +1,11 @@
+package lejos.robotics;
+
+/**
+ * A listener of the rotations of a regulated motor.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public interface RegulatedMotorListener {
+	void rotationStarted(RegulatedMotor motor, int tachoCount, boolean stalled, long timeStamp);
+
+	void rotationStopped(RegulatedMotor motor, int tachoCount, boolean stalled, long timeStamp);
+}
@@ -0,0 +1,11 @@
+package lejos.robotics;
+
+/**
+ * A provider of samples.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public interface SampleProvider {
+	int sampleSize();
+
+	void fetchSample(float[] sample, int offset);
+}
@@ -0,0 +1,52 @@
+package lejos.robotics.geometry;
+
+import java.awt.geom.Point2D;
+
+/**
+ * A point of the plane, in single precision.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public class Point extends Point2D.Float {
+	private static final long serialVersionUID = 1L;
+
+	public Point(float x, float y) {
+		super(x, y);
+	}
+
+	public Point(double angle) {
+		super((float)Math.cos(angle), (float)Math.sin(angle));
+	}
+
+	public Point pointAt(float distance, float angle) {
+		double a = Math.toRadians(angle);
+		return new Point((float)(this.x + distance*Math.cos(a)), (float)(this.y + distance*Math.sin(a)));
+	}
+
+	public float angleTo(Point p) {
+		return (float)Math.toDegrees(Math.atan2(p.y - this.y, p.x - this.x));
+	}
+
+	public Point add(Point p) {
+		return new Point(this.x + p.x, this.y + p.y);
+	}
+
+	public Point subtract(Point p) {
+		return new Point(this.x - p.x, this.y - p.y);
+	}
+
+	public Point multiply(float scale) {
+		return new Point(this.x*scale, this.y*scale);
+	}
+
+	public float length() {
+		return (float)Math.sqrt(this.x*this.x + this.y*this.y);
+	}
+
+	public float angle() {
+		return (float)Math.atan2(this.y, this.x);
+	}
+
+	public Point leftOrth() {
+		return new Point(-this.y, this.x);
+	}
+}
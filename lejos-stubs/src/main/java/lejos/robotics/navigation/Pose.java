@@ -0,0 +1,80 @@
+package lejos.robotics.navigation;
+
+import lejos.robotics.geometry.Point;
+
+/**
+ * A pose of the plane, i.e. a location and a heading in degrees.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public class Pose {
+	protected Point _location;
+	protected float _heading;
+
+	public Pose() {
+		this(0, 0, 0);
+	}
+
+	public Pose(float x, float y, float heading) {
+		this._location = new Point(x, y);
+		this._heading  = heading;
+	}
+
+	public float getX() {
+		return this._location.x;
+	}
+
+	public float getY() {
+		return this._location.y;
+	}
+
+	public float getHeading() {
+		return this._heading;
+	}
+
+	public void setHeading(float heading) {
+		this._heading = heading;
+	}
+
+	public Point getLocation() {
+		return this._location;
+	}
+
+	public void setLocation(Point p) {
+		this._location = p;
+	}
+
+	public void setLocation(float x, float y) {
+		this._location = new Point(x, y);
+	}
+
+	public void setPose(Pose p) {
+		this._location = p._location;
+		this._heading  = p._heading;
+	}
+
+	public Point pointAt(float distance, float bearing) {
+		return this._location.pointAt(distance, bearing + this._heading);
+	}
+
+	public float distanceTo(Point p) {
+		return (float)this._location.distance(p);
+	}
+
+	public float angleTo(Point p) {
+		return this._location.angleTo(p);
+	}
+
+	public void moveUpdate(float distance) {
+		double h = Math.toRadians(this._heading);
+		this._location = new Point((float)(this._location.x + distance*Math.cos(h)),
+								   (float)(this._location.y + distance*Math.sin(h)));
+	}
+
+	public void rotateUpdate(float angle) {
+		this._heading += angle;
+	}
+
+	public String toString() {
+		return "X:" + this.getX() + " Y:" + this.getY() + " H:" + this._heading;
+	}
+}
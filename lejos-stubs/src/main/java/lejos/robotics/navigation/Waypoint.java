@@ -0,0 +1,23 @@
+package lejos.robotics.navigation;
+
+import lejos.robotics.geometry.Point;
+
+/**
+ * A waypoint of a path.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public class Waypoint extends Point {
+	private static final long serialVersionUID = 1L;
+
+	public Waypoint(double x, double y) {
+		super((float)x, (float)y);
+	}
+
+	public Waypoint(Point p) {
+		super(p.x, p.y);
+	}
+
+	public Waypoint(Pose p) {
+		super(p.getX(), p.getY());
+	}
+}
@@ -0,0 +1,24 @@
+package lejos.utility;
+
+/**
+ * Delays along the wall clock.
+ * A stand-in of the leJOS EV3 class of the same name, so that the rover builds and runs off the brick.
+ */
+public class Delay {
+	public static void msDelay(long period) {
+		try {
+			Thread.sleep(period);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public static void usDelay(long period) {
+		Delay.nsDelay(period*1000);
+	}
+
+	public static void nsDelay(long period) {
+		long end = System.nanoTime() + period;
+		while (System.nanoTime() < end) { Thread.yield(); }
+	}
+}
@@ -1,10 +1,13 @@
 package deployment;
 
+import java.util.Arrays;
+import java.util.List;
 import lejos.hardware.Button;
 import lejos.hardware.Sound;
 import lejos.hardware.port.MotorPort;
 import lejos.hardware.port.SensorPort;
 import rover.Rover;
+import rover.Tuning;
 
 /**
  * A simple sequential main class to test the rover in its environment.
@@ -17,15 +20,21 @@ public class RoverDeploy {
 	/**
 	 * Main method to launch the rover in its environment.
 	 * 
-	 * @param args java arguments for main methods.
+	 * @param args java arguments for main methods, 'record' to record the streams of the devices to replay the run offline,
+	 * 'rotate' to rotate in place at every waypoint of the sweep instead of following blended corners, 'fixed' to use
+	 * fixed-point arithmetic inside the odometry and the projection of echoes.
 	 */
 	public static void main(String[] args) {
 		Sound.setVolume(1);
 		//###################################################################################################################
 		//### full mission simulation #######################################################################################
 		//###################################################################################################################
+		List<String> options = Arrays.asList(args);
+		boolean record = options.contains("record");
+		Tuning  tuning = Tuning.defaults.with_sweep(!options.contains("rotate"))
+										.with_fixed_point(options.contains("fixed"));
 		Rover rover = Rover.build(SensorPort.S4, SensorPort.S1,
-				                  MotorPort.A, MotorPort.B, MotorPort.C);
+				                  MotorPort.A, MotorPort.B, MotorPort.C, record, tuning);
 		rover.land();
 		rover.checkBattery();
 		rover.connect_peripherals();
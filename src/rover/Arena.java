@@ -0,0 +1,357 @@
+package rover;
+
+import java.util.Random;
+import lejos.robotics.geometry.Point;
+
+/**
+ * The simulated intervention zone around a {@link SimHardware} rover: the floor, the samples and the walls.
+ *
+ * The pose of the rover is integrated from the simulated positions of both tracks, with the same geometry as the real
+ * rover, i.e. {@link Rover#WHEEL_RADIUS} and {@link Rover#AXIS_DIFF}, motors being mounted backwards. The ultrasonic
+ * sensor is a cone, casting rays against the samples lying on the floor and against the walls around the {@link Map},
+ * with a seeded gaussian noise, lost echoes and spurious ones. The color sensor sees the black landing square or the
+ * white floor. The pliers grab the sample right in front of them when they close, and drop it when they open: a sample
+ * dropped around the {@link RecupZone} is harvested.
+ *
+ * Every random draw comes from a single seeded generator, so that a run is reproducible from its seed.
+ *
+ * @author Antoine Stevan
+ *
+ * @see Simulator
+ */
+class Arena implements SimHardware.World {
+	/** The radius of a sample, in m. */
+	static final float  SAMPLE_RADIUS = 25													/1000f;
+	/** The half angle of the cone of the ultrasonic sensor, in degrees. */
+	static final float  CONE          = 15;
+	/** The maximum range of the ultrasonic sensor, in m. */
+	static final float  RANGE         = 2.55f;
+	/** The standard deviation of the noise of the ultrasonic sensor, in m. */
+	static final float  NOISE         = 10													/1000f;
+	/** The probability of an echo to be lost. */
+	static final double LOST          = 0.02;
+	/** The probability of a spurious echo, at a random distance. */
+	static final double SPURIOUS      = 0.002;
+	/** The largest distance from the point of the pliers to the center of a sample they can grab, in m. */
+	static final float  REACH         = 60													/1000f;
+	/** The largest distance from the center of the recovery zone to a harvested sample, in m. */
+	static final float  DROP          = RecupZone.diameter;
+	/** The reflected intensity of the white floor. */
+	static final float  WHITE         = 0.6f;
+	/** The reflected intensity of the black landing square. */
+	static final float  BLACK         = 0.05f;
+	/** The angle of the pliers under which they are open, in degrees (they open backwards). */
+	static final int    OPEN          = -20;
+
+	/** The simulation the arena is the world of. */
+	private final SimHardware hardware;
+	/** The seeded generator of every random draw. */
+	private final Random random;
+	/** Tells whether the walls around the map echo. */
+	private final boolean walls;
+
+	/** The x coordinates of the samples, in m. */
+	private final float[]   s_x;
+	/** The y coordinates of the samples, in m. */
+	private final float[]   s_y;
+	/** For every sample, true while it lies on the floor, false once grabbed or harvested. */
+	private final boolean[] s_floor;
+	/** The index of the sample inside the pliers, or -1. */
+	private int held;
+	/** The number of harvested samples. */
+	private int harvested;
+	/** The simulated times at which the samples have been harvested, in nanoseconds. */
+	private final long[] h_times;
+	/** The simulated time of the last step, in nanoseconds. */
+	private long time;
+	/** The number of times the pliers closed on nothing. */
+	private int missed;
+
+	/** The x coordinate of the rover, in m. */
+	private double x;
+	/** The y coordinate of the rover, in m. */
+	private double y;
+	/** The heading of the rover, in radians. */
+	private double heading;
+	/** The position of the right motor at the previous step, in degrees. */
+	private double r_last;
+	/** The position of the left motor at the previous step, in degrees. */
+	private double l_last;
+	/** Tells whether the pliers were open at the previous step. */
+	private boolean open;
+
+	/**
+	 * Builds an arena around a simulated rover, with samples at given locations. The rover is put on its initial pose.
+	 *
+	 * @param hardware the simulated rover.
+	 * @param samples the locations of the samples.
+	 * @param walls true if the walls around the map echo.
+	 * @param seed the seed of the noise of the sensors.
+	 */
+	Arena(SimHardware hardware, Point[] samples, boolean walls, long seed) {
+		this.hardware  = hardware;
+		this.random    = new Random(seed);
+		this.walls     = walls;
+		this.s_x       = new float[samples.length];
+		this.s_y       = new float[samples.length];
+		this.s_floor   = new boolean[samples.length];
+		for (int i = 0; i < samples.length; i++) {
+			this.s_x[i]     = samples[i].x;
+			this.s_y[i]     = samples[i].y;
+			this.s_floor[i] = true;
+		}
+		this.h_times   = new long[samples.length];
+		this.held      = -1;
+		this.harvested = 0;
+		this.missed    = 0;
+		this.x         = MapZone.initial_pose.getX();
+		this.y         = MapZone.initial_pose.getY();
+		this.heading   = Math.toRadians(MapZone.initial_pose.getHeading());
+		this.r_last    = hardware.right.position();
+		this.l_last    = hardware.left.position();
+		this.open      = hardware.pliers.position() < Arena.OPEN;
+		hardware.setWorld(this);
+	}
+
+	/**
+	 * Draws the locations of some samples, uniformly inside the map, away from its borders, from the landing square,
+	 * from the recovery zone and from each other.
+	 *
+	 * @param count the number of samples.
+	 * @param random the generator of the locations.
+	 * @return the locations of the samples.
+	 */
+	static Point[] place(int count, Random random) {
+		Point[] samples = new Point[count];
+		float border = 2*Rover.margin + Arena.SAMPLE_RADIUS;
+		for (int i = 0; i < count; i++) {
+			while (true) {
+				float x = border + random.nextFloat()*(Map.length - 2*border);
+				float y = border + random.nextFloat()*(Map.width  - 2*border);
+				if (Math.abs(x - MapZone.initial_pose.getX()) < Rover.land_zone_side &&
+					Math.abs(y - MapZone.initial_pose.getY()) < Rover.land_zone_side) { continue; }
+				float dx = x - RecupZone.center.x;
+				float dy = y - RecupZone.center.y;
+				if (dx*dx + dy*dy < 4*Arena.DROP*Arena.DROP) { continue; }
+				boolean apart = true;
+				for (int j = 0; j < i && apart; j++) {
+					apart = samples[j].subtract(new Point(x, y)).length() > Rover.MAX_OBJECT_SIZE;
+				}
+				if (apart) {
+					samples[i] = new Point(x, y);
+					break;
+				}
+			}
+		}
+		return samples;
+	}
+
+	/**
+	 * Tells whether a point of the floor is inside the black landing square, in the corner of the map around the initial
+	 * pose of the rover.
+	 *
+	 * @param x the x coordinate of the point, in m.
+	 * @param y the y coordinate of the point, in m.
+	 * @return true if the point is black, false otherwise.
+	 */
+	static boolean landing(double x, double y) {
+		float half = Rover.land_zone_side/2;
+		return Math.abs(x - MapZone.initial_pose.getX()) < half && Math.abs(y - MapZone.initial_pose.getY()) < half;
+	}
+
+	/**
+	 * Integrates the pose of the rover from the motion of both tracks since the previous step, as an arc of circle, then
+	 * lets the pliers grab or drop a sample.
+	 */
+	public void moved(long time) {
+		this.time = time;
+		double r = this.hardware.right.position();
+		double l = this.hardware.left.position();
+		// motors are mounted backwards: a negative rotation moves the track forward.
+		double dr = -(r - this.r_last)*Math.PI/180*Rover.WHEEL_RADIUS;
+		double dl = -(l - this.l_last)*Math.PI/180*Rover.WHEEL_RADIUS;
+		this.r_last = r;
+		this.l_last = l;
+		double d      = (dr + dl)/2;
+		double dtheta = (dr - dl)/Rover.AXIS_DIFF;
+		this.x       += d*Math.cos(this.heading + dtheta/2);
+		this.y       += d*Math.sin(this.heading + dtheta/2);
+		this.heading += dtheta;
+
+		boolean open = this.hardware.pliers.position() < Arena.OPEN;
+		if (open != this.open) {
+			this.open = open;
+			if (open) { this.drop(); } else { this.grab(); }
+		}
+	}
+
+	/**
+	 * Grabs the sample lying the closest to the point of the pliers, if it is within reach.
+	 */
+	private void grab() {
+		double px = this.x + Rover.PLIERS_Dx*Math.cos(this.heading);
+		double py = this.y + Rover.PLIERS_Dx*Math.sin(this.heading);
+		int    best = -1;
+		double min  = Arena.REACH*Arena.REACH;
+		for (int i = 0; i < this.s_x.length; i++) {
+			if (!this.s_floor[i]) { continue; }
+			double dx = this.s_x[i] - px;
+			double dy = this.s_y[i] - py;
+			if (dx*dx + dy*dy <= min) {
+				min  = dx*dx + dy*dy;
+				best = i;
+			}
+		}
+		if (best < 0) {
+			this.missed++;
+			return;
+		}
+		this.s_floor[best] = false;
+		this.held = best;
+	}
+
+	/**
+	 * Drops the sample inside the pliers, if any, at the point of the pliers. It is harvested if it falls around the
+	 * recovery zone, and lies on the floor again otherwise.
+	 */
+	private void drop() {
+		if (this.held < 0) { return; }
+		float px = (float)(this.x + Rover.PLIERS_Dx*Math.cos(this.heading));
+		float py = (float)(this.y + Rover.PLIERS_Dx*Math.sin(this.heading));
+		float dx = px - RecupZone.center.x;
+		float dy = py - RecupZone.center.y;
+		if (dx*dx + dy*dy <= Arena.DROP*Arena.DROP) {
+			this.h_times[this.harvested++] = this.time;
+		} else {
+			this.s_x[this.held]     = px;
+			this.s_y[this.held]     = py;
+			this.s_floor[this.held] = true;
+		}
+		this.held = -1;
+	}
+
+	/**
+	 * Casts the cone of the sensor against the samples and the walls, then draws the noise of the echo.
+	 */
+	public float distance() {
+		double draw = this.random.nextDouble();
+		if (draw < Arena.SPURIOUS) {
+			return Rover.MIN_DIST_DETECTION + this.random.nextFloat()*(Arena.RANGE - Rover.MIN_DIST_DETECTION);
+		}
+		if (draw < Arena.SPURIOUS + Arena.LOST) { return Float.POSITIVE_INFINITY; }
+
+		double c  = Math.cos(this.heading);
+		double s  = Math.sin(this.heading);
+		double sx = this.x + Rover.ULTRA_Dx*c - Rover.ULTRA_Dy*s;
+		double sy = this.y + Rover.ULTRA_Dx*s + Rover.ULTRA_Dy*c;
+		double cone = Math.toRadians(Arena.CONE);
+		double min  = Arena.RANGE;
+		for (int i = 0; i < this.s_x.length; i++) {
+			if (!this.s_floor[i]) { continue; }
+			double dx = this.s_x[i] - sx;
+			double dy = this.s_y[i] - sy;
+			double along = dx*c + dy*s;
+			if (along <= 0) { continue; }
+			double across = Math.abs(-dx*s + dy*c);
+			double dist   = Math.sqrt(dx*dx + dy*dy);
+			// the sample is seen if any part of it is inside the cone.
+			if (Math.atan2(Math.max(0, across - Arena.SAMPLE_RADIUS), along) <= cone) {
+				min = Math.min(min, dist - Arena.SAMPLE_RADIUS);
+			}
+		}
+		if (this.walls) {
+			// the closest wall inside the cone, sampled along its axis and its edges.
+			for (int k = -1; k <= 1; k++) {
+				min = Math.min(min, Arena.wall(sx, sy, this.heading + k*cone));
+			}
+		}
+		if (min >= Arena.RANGE) { return Float.POSITIVE_INFINITY; }
+		return (float)Math.max(0, min + Arena.NOISE*this.random.nextGaussian());
+	}
+
+	/**
+	 * Gives the distance from a point inside the map to its border, along a ray.
+	 *
+	 * @param x the x coordinate of the origin of the ray, in m.
+	 * @param y the y coordinate of the origin of the ray, in m.
+	 * @param angle the direction of the ray, in radians.
+	 * @return the distance to the border, in m.
+	 */
+	private static double wall(double x, double y, double angle) {
+		double c = Math.cos(angle);
+		double s = Math.sin(angle);
+		double t = Double.POSITIVE_INFINITY;
+		if (c > 0) { t = Math.min(t, (Map.length - x)/c); }
+		if (c < 0) { t = Math.min(t, -x/c); }
+		if (s > 0) { t = Math.min(t, (Map.width - y)/s); }
+		if (s < 0) { t = Math.min(t, -y/s); }
+		return Math.max(0, t);
+	}
+
+	public float red() {
+		return Arena.landing(this.x, this.y)? Arena.BLACK : Arena.WHITE;
+	}
+
+	/**
+	 * Tells whether a detected object is a real sample, either on the floor or inside the pliers.
+	 *
+	 * @param point the location of the detected object.
+	 * @param tolerance the largest distance from the detected object to the center of the sample, in m.
+	 * @return true if a sample is close enough to the detected object, false if it is a ghost.
+	 */
+	boolean sample_near(Point point, float tolerance) {
+		this.hardware.lock();
+		try {
+			for (int i = 0; i < this.s_x.length; i++) {
+				if (!this.s_floor[i] && i != this.held) { continue; }
+				float dx = this.s_x[i] - point.x;
+				float dy = this.s_y[i] - point.y;
+				if (dx*dx + dy*dy <= tolerance*tolerance) { return true; }
+			}
+			return false;
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+
+	/**
+	 * Getter for the 'harvested' field.
+	 * @return the number of harvested samples.
+	 */
+	int getHarvested() {
+		this.hardware.lock();
+		try {
+			return this.harvested;
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+
+	/**
+	 * Gives the simulated time at which a sample has been harvested.
+	 *
+	 * @param k the rank of the harvested sample, from 1.
+	 * @return the simulated time of the k-th harvest, in nanoseconds, or -1 if there has not been as many.
+	 */
+	long getHarvestTime(int k) {
+		this.hardware.lock();
+		try {
+			return (k >= 1 && k <= this.harvested)? this.h_times[k-1] : -1;
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+
+	/**
+	 * Getter for the 'missed' field.
+	 * @return the number of times the pliers closed on nothing.
+	 */
+	int getMissed() {
+		this.hardware.lock();
+		try {
+			return this.missed;
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package rover;
+
+/**
+ * The hardware abstraction of the buttons of the rover, i.e. the way a human operator tells the rover to go on.
+ *
+ * @author Antoine Stevan
+ *
+ * @see LejosButtons
+ * @see SimButtons
+ */
+public interface ButtonDevice {
+	/**
+	 * Waits for any button to be pressed, or for some time to go by.
+	 *
+	 * @param ms the maximum time to wait, in ms, or 0 to wait until a button is pressed.
+	 * @return the identifier of the pressed button, or 0 if the time went by first.
+	 */
+	int waitForAnyPress(int ms);
+}
@@ -0,0 +1,46 @@
+package rover;
+
+/**
+ * The hardware abstraction of a color sensor, as read by a {@link ColorEye}.
+ *
+ * @author Antoine Stevan
+ *
+ * @see LejosColor
+ * @see SimColor
+ */
+public interface ColorDevice {
+	/**
+	 * Opens the sensor, i.e. binds it to the underlying hardware.
+	 * Any error is thrown, e.g. when nothing is plugged into the port of a physical sensor.
+	 */
+	void open();
+
+	/**
+	 * Gives a human readable name of the sensor, e.g. the name of its port.
+	 *
+	 * @return the name of the sensor.
+	 */
+	String getName();
+
+	/**
+	 * Fetches the intensity of the reflected red light.
+	 *
+	 * @return the reflected intensity, between 0 (black) and 1 (white).
+	 */
+	float fetchRed();
+
+	/**
+	 * Fetches the color under the sensor.
+	 *
+	 * @param rgb the destination of the red, green and blue components, between 0 and 1.
+	 * @param offset the index of the red component inside the destination.
+	 */
+	void fetchRGB(float[] rgb, int offset);
+
+	/**
+	 * Gives the identifier of the color under the sensor.
+	 *
+	 * @return the leJOS identifier of the color, see lejos.robotics.Color.
+	 */
+	int getColorID();
+}
@@ -1,39 +1,94 @@
 package rover;
 
-import lejos.hardware.port.Port;
-import lejos.hardware.sensor.EV3ColorSensor;
+import tools.Clock;
 import tools.Measure;
 import tools.Order;
 
 /**
  * The EV3 lego brick can be connected to a color sensor, here called ColorEye (because it kind of looks like a single eye).
- * 
+ *
+ * A ColorEye only reads the reflected intensity of the red light, which is all the rover needs to tell the black landing
+ * square from the white floor. On demand, e.g. while the rover looks for the border of the landing square, the
+ * {@link Scheduler} of the rover reads the sensor at its maximum rate and the ColorEye timestamps every black to white
+ * transition, interpolated between the two samples around the threshold. Transitions are kept inside a small
+ * preallocated ring, published through a volatile counter, so that the mission code can match them against the history
+ * of the odometry, see {@link Navigator#poseAt(long, float[])}, instead of relying on the moment it polled the sensor.
+ * The samples themselves are kept inside another ring, drained in bursts by
+ * {@link ColorEye#readInto(float[], long[], int, int)}.
+ *
  * @author Antoine Stevan
  *
  */
-class ColorEye extends Peripheral {
-	/** Precision about the Device of a ColorEye. Here, it is an EV3ColorSensor. */
-	EV3ColorSensor device;
+class ColorEye implements Peripheral {
 	/** The threshold between black and white color values. Below ColorEye.threshold, color is black, otherwise white. */
-	static final float threshold = 0.5f;
-	
+	static final float threshold  = 0.5f;
+	/** The half width of the band around the threshold inside which the color does not change, against the noise. */
+	static final float hysteresis = 0.05f;
+	/** The period between two samples of the scheduler, in ms. The red mode of the sensor refreshes at about 1 kHz. */
+	static final int   period     = 1;
+	/** The deadline of a sample from its release, in ms. */
+	static final int   deadline   = 1;
+	/** The number of samples kept inside the ring, i.e. 64 ms. Must be a power of 2 to wrap indices with a simple mask. */
+	static final int   capacity      = 64;
+	/** The number of transitions kept inside the ring. Must be a power of 2 to wrap indices with a simple mask. */
+	static final int   edge_capacity = 16;
+	/** The mask used to wrap a transition counter into an index of the ring. */
+	private static final int edge_mask = ColorEye.edge_capacity - 1;
+
+	/** Precision about the Device of a ColorEye. Here, it is a ColorDevice. */
+	ColorDevice device;
+	/** The scheduler fetching the samples. */
+	private final Scheduler scheduler;
+	/** The identifier of the task of the sensor inside the scheduler. */
+	private final int task;
+	/** Tells whether the scheduler is fetching samples, or waiting to be started again. */
+	private volatile boolean sampling;
+	/** The moment sampling started, in nanoseconds: older values of the table belong to a previous run. */
+	private volatile long started;
+
+	/** The ring of the last reflected intensities fetched by the scheduler. */
+	private final SampleRing ring = new SampleRing(ColorEye.capacity);
+
+	/** The ring of the timestamps of the last black to white transitions, in nanoseconds (see {@link Clock#nanoTime()}). */
+	private final long[] edges = new long[ColorEye.edge_capacity];
+	/** The total number of transitions written in the ring, published after each write. */
+	private volatile long edge_count;
+
+	/** The previous intensity seen by the scheduler, or NaN before the first sample. Scheduler thread only. */
+	private float last_red;
+	/** The timestamp of the previous intensity, in nanoseconds. Scheduler thread only. */
+	private long last_time;
+	/** Tells whether the floor is currently white, i.e. last seen above the band of the threshold. Scheduler thread only. */
+	private boolean white;
+
 	/**
-	 * One can initialize a ColorEye by giving it a port.
-	 * 
-	 * @param port the port of the ColorEye, it is basically a SensorPort, from 1 to 4.
+	 * One can initialize a ColorEye by giving it a color sensor.
+	 * The sensor is registered inside the scheduler, which fetches its samples between {@link ColorEye#start()} and
+	 * {@link ColorEye#stop()}.
+	 *
+	 * @param device the color sensor of the ColorEye, see {@link Hardware}.
+	 * @param scheduler the scheduler fetching the samples, whose clock gives their timestamps.
 	 */
-	ColorEye(Port port){
-		this.device = null;
-		this.port   = port;
+	ColorEye(ColorDevice device, Scheduler scheduler){
+		this.device     = device;
+		this.scheduler  = scheduler;
+		this.sampling   = false;
+		this.started    = 0;
+		this.edge_count = 0;
+		this.task       = scheduler.add("color", new Scheduler.Task() {
+			public float poll(long time) {
+				return ColorEye.this.sample(time);
+			}
+		}, ColorEye.period/Scheduler.slot, ColorEye.deadline/Scheduler.slot);
 	}
-	
+
 	/**
 	 * Connects a Color Sensor to the EV3 lego brick.
 	 * If any error occurs during the connection, the error is converted into a boolean and returned.
 	 */
-	boolean connect() {
+	public boolean connect() {
 		try {
-			this.device = new EV3ColorSensor(this.port);
+			this.device.open();
 //			System.out.println(this.device.setFloodlight(Color.RED));
 			return true;
 		} catch (Exception e) {
@@ -41,25 +96,126 @@ class ColorEye extends Peripheral {
 		}
 	}
 
+	public String getName() {
+		return this.device.getName();
+	}
+
+	/**
+	 * Starts sampling the sensor at its maximum rate, from the scheduler.
+	 * Transitions are only detected between samples of the same run, the first sample of a run being the reference.
+	 */
+	void start() {
+		if (this.sampling) { return; }
+		// a new run: the previous samples are too old to tell a transition. The task is suspended, nothing else writes.
+		this.last_red = Float.NaN;
+		this.started  = this.scheduler.clock.nanoTime();
+		this.sampling = true;
+		this.scheduler.resume(this.task);
+	}
+
+	/**
+	 * Stops sampling the sensor. The scheduler does not poll it anymore, until it is started again.
+	 */
+	void stop() {
+		this.sampling = false;
+		this.scheduler.suspend(this.task);
+	}
+
+	/**
+	 * Fetches a single sample from the sensor, and records a transition if the floor turned from black to white.
+	 * The moment of the transition is interpolated between the previous sample and this one, where the intensity crosses
+	 * the threshold. Only the scheduler thread calls this method, hence the ring has a single writer.
+	 *
+	 * @param time the moment of the sample, in nanoseconds.
+	 * @return the reflected intensity.
+	 */
+	private float sample(long time) {
+		// a release which was already due when sampling stopped.
+		if (!this.sampling) { return Float.NaN; }
+		float red  = this.device.fetchRed();
+		float last = this.last_red;
+		if (Float.isNaN(last)) {
+			// first sample of the run, it only tells the current color.
+			this.white = red >= ColorEye.threshold;
+		} else if (!this.white && red > ColorEye.threshold + ColorEye.hysteresis) {
+			this.white = true;
+			long edge;
+			if (last < ColorEye.threshold) {
+				edge = this.last_time + (long)((ColorEye.threshold - last)/(red - last)*(time - this.last_time));
+			} else {
+				// the threshold has been crossed before the previous sample, inside the band.
+				edge = this.last_time;
+			}
+			long n = this.edge_count;
+			this.edges[(int)(n & ColorEye.edge_mask)] = edge;
+			this.edge_count = n + 1;
+		} else if (this.white && red < ColorEye.threshold - ColorEye.hysteresis) {
+			this.white = false;
+		}
+		this.ring.push(red, time);
+		this.last_red  = red;
+		this.last_time = time;
+		return red;
+	}
+
+	/**
+	 * Gives the reflected intensity of the red light, without allocating anything. While sampling, the latest sample is
+	 * read from the table of the scheduler, otherwise the sensor is read by the caller, e.g. by the {@link Tester}.
+	 *
+	 * @return the reflected intensity, between 0 (black) and 1 (white).
+	 */
+	float red() {
+		if (this.sampling && this.scheduler.time(this.task) >= this.started) { return this.scheduler.latest(this.task); }
+		return this.device.fetchRed();
+	}
+
+	/**
+	 * Gives the number of black to white transitions seen by the scheduler so far, e.g. to wait for the next one.
+	 *
+	 * @return the total number of transitions.
+	 */
+	long edges() {
+		return this.edge_count;
+	}
+
+	/**
+	 * Gives the moment of a black to white transition.
+	 *
+	 * @param k the rank of the transition, from 0, among the last {@link ColorEye#edge_capacity} ones.
+	 * @return the moment of the transition, in nanoseconds (see {@link Clock#nanoTime()}), or -1 if it is not known.
+	 */
+	long edge(long k) {
+		long n = this.edge_count;
+		if (k < 0 || k >= n || k < n - ColorEye.edge_capacity) { return -1; }
+		long edge = this.edges[(int)(k & ColorEye.edge_mask)];
+		// the scheduler may have lapped the reader in the meantime. It fills the slot of the transition
+		// 'edge_count - edge_capacity' before publishing the next count, hence that slot may be overwritten as well.
+		return (k <= this.edge_count - ColorEye.edge_capacity)? -1 : edge;
+	}
+
+	/**
+	 * Drains the reflected intensities fetched by the scheduler since the previous call, between 0 (black) and 1
+	 * (white), without blocking. Nothing is buffered while sampling is stopped, and at most
+	 * {@link ColorEye#capacity} samples are kept: older ones are lost.
+	 */
+	public int readInto(float[] dst, long[] timestamps, int off, int max) {
+		return this.ring.readInto(dst, timestamps, off, max);
+	}
+
 	/**
-	 * Reading from a ColorEye object means reading the value of the seen color, in front of the sensor.
-	 * The value is stored inside a Measure container, as the 'value' field.
+	 * Reading from a ColorEye object means reading the reflected intensity of the red light, in front of the sensor.
+	 * The value is stored inside a Measure container, as the 'value' field. Below {@link ColorEye#threshold}, the floor
+	 * is black, otherwise it is white.
+	 *
+	 * @see ColorEye#red()
 	 */
-	Measure read() {
-		float [] red = new float[this.device.getRedMode().sampleSize()];
-		float [] rgb = new float[this.device.getRGBMode().sampleSize()];
-		
-		this.device.getRedMode().fetchSample(red, 0);
-		this.device.getRGBMode().fetchSample(rgb, 0);
-		
-		System.out.print("red: " + red[0]);
-		System.out.print("rgb: [" + rgb[0] + "," + rgb[1] + "," + rgb[0] + "]");
-		return new Measure(this.device.getColorID());
+	public Measure read() {
+		return new Measure(this.red());
 	}
 
 	/**
-	 * For now, there is nothing to write to a pair of UltraEyes.
+	 * For now, there is nothing to write to a ColorEye.
 	 */
-	void write(Order order) {
+	public void write(Order order) {
 	}
-}
\ No newline at end of file
+}
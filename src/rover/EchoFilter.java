@@ -0,0 +1,250 @@
+package rover;
+
+/**
+ * A stage of the filtering of the distances measured by the ultrasonic sensor, see {@link UltraEyes}.
+ *
+ * A filter is fed with the samples of the sensor one at a time, in order, and gives back for each of them a filtered
+ * distance, or {@link EchoFilter#none} if there is nothing to trust in front of the sensor. Stages are chained with
+ * {@link EchoFilter#chain(EchoFilter...)}: the output of a stage is the input of the next one. Every stage keeps its
+ * window inside arrays allocated once, by its constructor, so that filtering a sample never allocates anything.
+ *
+ * The rover uses a sliding median, then a Hampel outlier rejector, then a minimum number of consecutive hits, see
+ * {@link EchoFilter#build(int, int, int)}: a lone spurious echo does not interrupt the sweep anymore.
+ *
+ * @author Antoine Stevan
+ *
+ */
+abstract class EchoFilter {
+	/** The output of a filter when nothing is in front of the sensor, like a lost echo. */
+	static final float none   = Float.POSITIVE_INFINITY;
+	/** The number of scaled median absolute deviations beyond which the Hampel stage rejects a distance. */
+	static final float hampel = 3;
+	/** The scale of the median absolute deviation, making it an estimate of the standard deviation of a gaussian noise. */
+	static final float mad    = 1.4826f;
+	/** The smallest deviation from the median always accepted by the Hampel stage, in m, above the noise of the sensor. */
+	static final float floor  = 50														/1000f;
+
+	/**
+	 * Filters the next sample of the sensor.
+	 *
+	 * @param distance the distance measured by the sensor, in m, infinite if there was no echo.
+	 * @return the filtered distance, in m, or {@link EchoFilter#none}.
+	 */
+	abstract float filter(float distance);
+
+	/**
+	 * Forgets every sample seen so far, e.g. before a new sweep or when the rover looks elsewhere.
+	 */
+	abstract void reset();
+
+	/**
+	 * Gives the number of samples after which the output of a reset filter is settled, e.g. to read a single filtered
+	 * distance from the sensor, see {@link Rover#next_echo()}.
+	 *
+	 * @return the number of samples.
+	 */
+	abstract int depth();
+
+	/**
+	 * Builds the filter of the rover.
+	 *
+	 * @param median the window of the sliding median, in samples, 1 to disable it.
+	 * @param hampel the window of the Hampel rejector, in samples, less than 3 to disable it.
+	 * @param hits the number of consecutive echoes before a distance is given, 1 to give every echo.
+	 * @return the filter.
+	 */
+	static EchoFilter build(int median, int hampel, int hits) {
+		return EchoFilter.chain(new Median(median), new Hampel(hampel), new Hits(hits));
+	}
+
+	/**
+	 * Chains filters, the output of each one being the input of the next one.
+	 *
+	 * @param stages the filters, in order.
+	 * @return the chained filter.
+	 */
+	static EchoFilter chain(EchoFilter... stages) {
+		return new Chain(stages);
+	}
+
+	/**
+	 * Sorts the first values of an array in place. Windows are small, hence an insertion sort.
+	 *
+	 * @param values the values.
+	 * @param n the number of values to sort.
+	 */
+	static void sort(float[] values, int n) {
+		for (int i = 1; i < n; i++) {
+			float v = values[i];
+			int j = i - 1;
+			while (j >= 0 && values[j] > v) {
+				values[j+1] = values[j];
+				j--;
+			}
+			values[j+1] = v;
+		}
+	}
+
+	/**
+	 * The sliding median of the last samples. Lost echoes count as infinite distances: an echo needs to be seen in more
+	 * than half of the window to get through. Until the window is full, the upper median of the samples so far is given.
+	 */
+	static final class Median extends EchoFilter {
+		/** The ring of the last samples. */
+		private final float[] window;
+		/** The sorted copy of the window. */
+		private final float[] sorted;
+		/** The total number of samples seen since the last reset. */
+		private long count;
+
+		/**
+		 * Builds a sliding median.
+		 *
+		 * @param size the window, in samples.
+		 * @throws IllegalArgumentException if the window is empty.
+		 */
+		Median(int size) {
+			if (size < 1) { throw new IllegalArgumentException("invalid median window: " + size); }
+			this.window = new float[size];
+			this.sorted = new float[size];
+			this.count  = 0;
+		}
+
+		float filter(float distance) {
+			int size = this.window.length;
+			this.window[(int)(this.count++ % size)] = distance;
+			int n = (int)Math.min(this.count, size);
+			System.arraycopy(this.window, 0, this.sorted, 0, n);
+			EchoFilter.sort(this.sorted, n);
+			return this.sorted[n/2];
+		}
+
+		void reset() {
+			this.count = 0;
+		}
+
+		int depth() {
+			return this.window.length;
+		}
+	}
+
+	/**
+	 * The Hampel outlier rejector: an echo too far from the median of the previous echoes, with respect to their median
+	 * absolute deviation, is dropped. The deviation is never less than {@link EchoFilter#floor}, so that a steady object
+	 * does not reject its own noise. Without enough previous echoes to judge, every echo gets through.
+	 */
+	static final class Hampel extends EchoFilter {
+		/** The ring of the last samples, echoes or not. */
+		private final float[] window;
+		/** The echoes of the window, then their deviations from the median. */
+		private final float[] scratch;
+		/** The total number of samples seen since the last reset. */
+		private long count;
+
+		/**
+		 * Builds a Hampel rejector.
+		 *
+		 * @param size the window, in samples, less than 3 to let every echo through.
+		 */
+		Hampel(int size) {
+			this.window  = new float[Math.max(size, 0)];
+			this.scratch = new float[Math.max(size, 0)];
+			this.count   = 0;
+		}
+
+		float filter(float distance) {
+			int size = this.window.length;
+			if (size < 3) { return distance; }
+			int n = 0;
+			for (int k = 0; k < Math.min(this.count, size); k++) {
+				float v = this.window[k];
+				if (v < EchoFilter.none) { this.scratch[n++] = v; }
+			}
+			this.window[(int)(this.count++ % size)] = distance;
+			if (!(distance < EchoFilter.none) || n < (size+1)/2) { return distance; }
+
+			EchoFilter.sort(this.scratch, n);
+			float median = this.scratch[n/2];
+			for (int k = 0; k < n; k++) { this.scratch[k] = Math.abs(this.scratch[k] - median); }
+			EchoFilter.sort(this.scratch, n);
+			float limit = Math.max(EchoFilter.hampel*EchoFilter.mad*this.scratch[n/2], EchoFilter.floor);
+			return (Math.abs(distance - median) > limit)? EchoFilter.none : distance;
+		}
+
+		void reset() {
+			this.count = 0;
+		}
+
+		int depth() {
+			return 1;
+		}
+	}
+
+	/**
+	 * The minimum number of consecutive echoes: a distance is only given once the sensor has seen something for a given
+	 * number of samples in a row.
+	 */
+	static final class Hits extends EchoFilter {
+		/** The number of consecutive echoes before a distance is given. */
+		private final int hits;
+		/** The current number of consecutive echoes. */
+		private int streak;
+
+		/**
+		 * Builds a minimum number of consecutive echoes.
+		 *
+		 * @param hits the number of consecutive echoes before a distance is given.
+		 * @throws IllegalArgumentException if the number is not positive.
+		 */
+		Hits(int hits) {
+			if (hits < 1) { throw new IllegalArgumentException("invalid number of hits: " + hits); }
+			this.hits   = hits;
+			this.streak = 0;
+		}
+
+		float filter(float distance) {
+			this.streak = (distance < EchoFilter.none)? this.streak + 1 : 0;
+			return (this.streak >= this.hits)? distance : EchoFilter.none;
+		}
+
+		void reset() {
+			this.streak = 0;
+		}
+
+		int depth() {
+			return this.hits;
+		}
+	}
+
+	/**
+	 * A chain of filters.
+	 */
+	static final class Chain extends EchoFilter {
+		/** The filters, in order. */
+		private final EchoFilter[] stages;
+
+		/**
+		 * Builds a chain of filters.
+		 *
+		 * @param stages the filters, in order.
+		 */
+		Chain(EchoFilter[] stages) {
+			this.stages = stages.clone();
+		}
+
+		float filter(float distance) {
+			for (int k = 0; k < this.stages.length; k++) { distance = this.stages[k].filter(distance); }
+			return distance;
+		}
+
+		void reset() {
+			for (int k = 0; k < this.stages.length; k++) { this.stages[k].reset(); }
+		}
+
+		int depth() {
+			int depth = 0;
+			for (int k = 0; k < this.stages.length; k++) { depth += this.stages[k].depth(); }
+			return depth;
+		}
+	}
+}
@@ -1,64 +1,241 @@
 package rover;
 
-import lejos.hardware.motor.NXTRegulatedMotor;
-import lejos.hardware.port.Port;
-import lejos.robotics.RegulatedMotor;
 import tools.Measure;
 import tools.Order;
 
 /**
  * The EV3 lego brick can be connected to motors, here called Engine.
+ * An Engine drives the {@link MotorDevice} given by the hardware of the rover, either physical or simulated.
+ * The tacho count of an engine of a track is polled by the {@link Scheduler} of the rover, see
+ * {@link Engine#schedule(Scheduler, String)}, at the rate of the odometry which integrates it.
  * 
  * @author Antoine Stevan
  *
  */
-class Engine extends Peripheral {
+class Engine implements Peripheral {
+	/** The number of tacho counts kept inside the ring. Must be a power of 2 to wrap indices with a simple mask. */
+	static final int capacity = 64;
+	/** The deadline of a poll of the tacho count from its release, in ms. */
+	static final int deadline = 2;
+
 	/** The constant speed of the motors allocated to the wheels of the rover, in degrees per second. */
-	private static final int speed = 150;
+	static final int speed = 150;
 	/** The constant acceleration of the motors allocated to the wheels of the rover, in degrees per second per second. */
-	private static final int acceleration = 150;
+	static final int acceleration = 150;
 	
-	/** Precision about the Device of an Engine. Here, it is a RegulatedMotor. */
-	RegulatedMotor device;
+	/** Precision about the Device of an Engine. Here, it is a MotorDevice. */
+	MotorDevice device;
+	/** The engine paired with this one for group commands, e.g. the other track, or null if there is none. */
+	Engine partner;
+	/** Tells whether the paired engines are synchronized by leJOS, i.e. regulated as a unit. */
+	private boolean synced;
+
+	/** The scheduler polling the tacho count, or null if it is not polled. */
+	private Scheduler scheduler;
+	/** The identifier of the task of the engine inside the scheduler. */
+	private int task;
+
+	/** The ring of the last tacho counts polled by the scheduler, in degrees. */
+	private final SampleRing ring = new SampleRing(Engine.capacity);
 	
 	/**
-	 * One can initialize an Engine by giving it a port.
+	 * One can initialize an Engine by giving it a motor.
 	 * 
-	 * @param port the port of the Engine, it is basically a MotorPort, from A to D.
+	 * @param device the motor of the Engine, see {@link Hardware}.
 	 */
-	Engine(Port port){
-		this.device = null;
-		this.port   = port;
+	Engine(MotorDevice device){
+		this.device  = device;
+		this.partner = null;
+		this.synced  = false;
+		this.scheduler = null;
 	}
 	
 	/**
 	 * Connects a Motor to the EV3 lego brick.
 	 * If any error occurs during the connection, the error is converted into a boolean and returned.
 	 */
-	boolean connect() {
+	public boolean connect() {
 		try {
-			this.device = new NXTRegulatedMotor(this.port);
+			this.device.open();
 			this.device.resetTachoCount();
 			this.device.setSpeed(Engine.speed);
 			this.device.setAcceleration(Engine.acceleration);
+			if (this.scheduler != null) { this.scheduler.resume(this.task); }
 			return true;
 		} catch (Exception e) {
 			return false;
 		}
 	}
+	
+	public String getName() {
+		return this.device.getName();
+	}
+
+	/**
+	 * Pairs this engine with another one, for group commands.
+	 * Until {@link Engine#synchronize()} is called, group commands simply command both engines one after the other.
+	 * 
+	 * @param partner the engine to be paired with this one.
+	 */
+	void pair(Engine partner) {
+		this.partner = partner;
+	}
+	
+	/**
+	 * Synchronizes this engine with its partner, so that group commands start, are regulated and stop as a unit.
+	 * Both engines have to be connected beforehand.
+	 */
+	void synchronize() {
+		this.device.synchronizeWith(new MotorDevice[] { this.partner.device });
+		this.synced = true;
+	}
+	
+	/**
+	 * Group command: sets the speeds and accelerations of this engine and of its partner at once.
+	 * 
+	 * @param speed the speed of this engine, in degrees per second.
+	 * @param partner_speed the speed of the partner, in degrees per second.
+	 * @param acceleration the acceleration of this engine, in degrees per second per second.
+	 * @param partner_acceleration the acceleration of the partner, in degrees per second per second.
+	 */
+	void setProfile(int speed, int partner_speed, int acceleration, int partner_acceleration) {
+		this.begin();
+		this.device.setSpeed(speed);
+		this.partner.device.setSpeed(partner_speed);
+		this.device.setAcceleration(acceleration);
+		this.partner.device.setAcceleration(partner_acceleration);
+		this.end();
+	}
+	
+	/**
+	 * Group command: rotates this engine and its partner relatively, with immediate return.
+	 * Both rotations are started by the same regulator tick, hence without skew.
+	 * 
+	 * @param angle the rotation of this engine, in degrees.
+	 * @param partner_angle the rotation of the partner, in degrees.
+	 */
+	void rotate(int angle, int partner_angle) {
+		this.begin();
+		this.device.rotate(angle, true);
+		this.partner.device.rotate(partner_angle, true);
+		this.end();
+	}
+	
+	/**
+	 * Group command: rotates this engine and its partner to absolute targets, with immediate return.
+	 * 
+	 * @param target the target of this engine, in degrees.
+	 * @param partner_target the target of the partner, in degrees.
+	 */
+	void rotateTo(int target, int partner_target) {
+		this.begin();
+		this.device.rotateTo(target, true);
+		this.partner.device.rotateTo(partner_target, true);
+		this.end();
+	}
+	
+	/**
+	 * Group command: makes this engine and its partner go forward.
+	 */
+	void forward() {
+		this.begin();
+		this.device.forward();
+		this.partner.device.forward();
+		this.end();
+	}
+	
+	/**
+	 * Group command: stops this engine and its partner, with immediate return.
+	 */
+	void stop() {
+		this.begin();
+		this.device.stop(true);
+		this.partner.device.stop(true);
+		this.end();
+	}
+	
+	/**
+	 * Opens a group command, if synchronized.
+	 * Commands given to both engines until {@link Engine#end()} are applied together.
+	 */
+	private void begin() {
+		if (this.synced) { this.device.startSynchronization(); }
+	}
+	
+	/**
+	 * Closes a group command, if synchronized.
+	 */
+	private void end() {
+		if (this.synced) { this.device.endSynchronization(); }
+	}
+	
+	/**
+	 * Registers the engine inside a scheduler, which polls its tacho count at the rate of the {@link Odometry} once the
+	 * engine is connected.
+	 * 
+	 * @param scheduler the scheduler polling the tacho count.
+	 * @param name the name of the task of the engine, for the reports of the scheduler.
+	 */
+	void schedule(Scheduler scheduler, String name) {
+		this.task = scheduler.add(name, new Scheduler.Task() {
+			public float poll(long time) {
+				return Engine.this.sample(time);
+			}
+		}, Odometry.period/Scheduler.slot, Engine.deadline/Scheduler.slot);
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Polls the tacho count of the motor and records it inside the ring. The scheduler thread is the only writer.
+	 * 
+	 * @param time the moment of the poll, in nanoseconds.
+	 * @return the tacho count, in degrees.
+	 */
+	float sample(long time) {
+		int tacho = this.device.getTachoCount();
+		this.ring.push(tacho, time);
+		return tacho;
+	}
+
+	/**
+	 * Gives the latest tacho count polled by the scheduler, from its table, without calling the motor.
+	 * 
+	 * @return the latest tacho count, in degrees, or NaN if the engine has not been polled yet.
+	 */
+	float tacho() {
+		return this.scheduler.latest(this.task);
+	}
+
+	/**
+	 * Gives the timestamp of the latest tacho count polled by the scheduler, from its table.
+	 * 
+	 * @return the timestamp, in nanoseconds, or 0 if the engine has not been polled yet.
+	 */
+	long tacho_time() {
+		return this.scheduler.time(this.task);
+	}
+
+	/**
+	 * Reading from an Engine means reading the tacho count of its motor, in degrees.
+	 * The value is stored inside a Measure container, as the 'value' field.
+	 */
+	public Measure read() {
+		return new Measure(this.device.getTachoCount());
+	}
 
 	/**
-	 * For now, there is nothing to read from an Engine.
+	 * Drains the tacho counts, in degrees, polled by the scheduler since the previous call, without blocking. At most
+	 * {@link Engine#capacity} counts are kept: older ones are lost.
 	 */
-	Measure read() {
-		return null;
+	public int readInto(float[] dst, long[] timestamps, int off, int max) {
+		return this.ring.readInto(dst, timestamps, off, max);
 	}
 
 	/**
 	 * It is possible to talk to an Engine by giving it an order, containing both the speed and the relative angle of
 	 * rotation.
 	 */
-	void write(Order order) {
+	public void write(Order order) {
 		this.device.setSpeed(order.getSpeed());
 		this.device.rotate(order.getAngle());
 	}
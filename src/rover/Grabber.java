@@ -1,7 +1,5 @@
 package rover;
 
-import lejos.hardware.port.Port;
-import lejos.robotics.RegulatedMotor;
 import tools.Order;
 
 /**
@@ -21,12 +19,12 @@ class Grabber {
 	
 	/**
 	 * Constructor for any Grabber instance.
-	 * A Grabber only needs a port to connect to the brick.
+	 * A Grabber only needs the motor allocated to the pliers.
 	 * 
-	 * @param port the port needed to connect the brick and the motor allocated to the pliers.
+	 * @param device the motor allocated to the pliers, see {@link Hardware}.
 	 */
-	Grabber(Port port){
-		this.motor = new Engine(port);
+	Grabber(MotorDevice device){
+		this.motor = new Engine(device);
 	}
 	
 	/**
@@ -40,7 +38,7 @@ class Grabber {
 	}
 
 	/**
-	 * A tool wrapper of the {@link RegulatedMotor#getTachoCount()} method to get the tacho count of the motor allocated to the pliers.
+	 * A tool wrapper of the {@link MotorDevice#getTachoCount()} method to get the tacho count of the motor allocated to the pliers.
 	 * 
 	 * @return the integer tacho count of the motor, in degrees.
 	 */
@@ -49,7 +47,7 @@ class Grabber {
 	}
 
 	/**
-	 * A tool wrapper of the {@link RegulatedMotor#isMoving()} method to know if the pliers are currently moving.
+	 * A tool wrapper of the {@link MotorDevice#isMoving()} method to know if the pliers are currently moving.
 	 * 
 	 * @return a boolean telling whether the pliers are currently moving or not.
 	 */
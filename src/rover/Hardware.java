@@ -0,0 +1,65 @@
+package rover;
+
+import tools.Clock;
+
+/**
+ * The hardware a rover is built upon, i.e. a backend giving the devices behind every peripheral of the rover.
+ *
+ * Two backends exist: {@link LejosHardware}, made of the motors and sensors plugged into the EV3 lego brick, and
+ * {@link SimHardware}, a deterministic simulation which lets the mission code run on a workstation, far faster than
+ * real time. The rest of the rover only talks to the devices through their interfaces.
+ *
+ * @author Antoine Stevan
+ *
+ * @see Rover#build(Hardware)
+ */
+public interface Hardware {
+	/**
+	 * Gives the ultrasonic sensor of the rover.
+	 *
+	 * @return the range device of the ultrasonic sensor.
+	 */
+	RangeDevice ultrasonic();
+
+	/**
+	 * Gives the color sensor of the rover.
+	 *
+	 * @return the color device under the rover.
+	 */
+	ColorDevice color();
+
+	/**
+	 * Gives the motor of the pliers.
+	 *
+	 * @return the motor device actuating the pliers.
+	 */
+	MotorDevice pliers();
+
+	/**
+	 * Gives the motor of the right track.
+	 *
+	 * @return the motor device actuating the right track.
+	 */
+	MotorDevice right();
+
+	/**
+	 * Gives the motor of the left track.
+	 *
+	 * @return the motor device actuating the left track.
+	 */
+	MotorDevice left();
+
+	/**
+	 * Gives the buttons of the rover.
+	 *
+	 * @return the buttons a human operator presses.
+	 */
+	ButtonDevice buttons();
+
+	/**
+	 * Gives the clock the devices live along, i.e. the wall clock on the brick or the clock of a simulation.
+	 *
+	 * @return the clock of the rover.
+	 */
+	Clock clock();
+}
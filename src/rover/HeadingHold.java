@@ -0,0 +1,205 @@
+package rover;
+
+/**
+ * A closed-loop heading hold for straight travels.
+ *
+ * Identical targets for both tracks do not make a straight line: one track always lags a bit and the rover drifts. While
+ * a straight travel is in flight, the controller runs as a task of the {@link Scheduler} of the rover, right after the
+ * polls of both tachometers, and trims the speeds of both engines with a PI controller on the differential of the
+ * polled tacho counts, so that both tracks progress together. Error statistics are kept for every leg.
+ *
+ * @author Antoine Stevan
+ *
+ */
+public class HeadingHold {
+	/** The period of the controller, in ms. */
+	static final int   period   = 20;
+	/** The deadline of a step of the controller from its release, in ms. */
+	static final int   deadline = 5;
+	/** The proportional gain, in degrees per second of trim per degree of differential. */
+	static final float KP     = 4;
+	/** The integral gain, in degrees per second of trim per degree of differential and per second. */
+	static final float KI     = 2;
+	/** The largest trim, as a part of the cruise speed. */
+	static final float MAX_TRIM = 0.3f;
+
+	/** The right engine of the rover. */
+	private Engine right;
+	/** The left engine of the rover. */
+	private Engine left;
+	/** Tells whether a straight travel is being held. */
+	private boolean engaged;
+	/** The cruise speed of the held travel, in degrees per second. */
+	private int   speed;
+	/** The sign of the rotation of both tracks during the held travel. */
+	private int   direction;
+	/** The right tacho count at the beginning of the held travel, in degrees. */
+	private int   r_start;
+	/** The left tacho count at the beginning of the held travel, in degrees. */
+	private int   l_start;
+	/** The integral of the differential, in degrees times seconds. */
+	private float integral;
+
+	/** The number of samples of the current leg. */
+	private int   samples;
+	/** The sum of the squared heading errors of the current leg, in squared degrees. */
+	private float sum2;
+	/** The largest heading error of the current leg, in degrees. */
+	private float max;
+
+	/** The number of completed legs. */
+	private int   legs;
+	/** The root mean square heading error of the last completed leg, in degrees. */
+	private float last_rms;
+	/** The largest heading error of the last completed leg, in degrees. */
+	private float last_max;
+	/** The largest heading error over all the legs, in degrees. */
+	private float total_max;
+
+	/** The scheduler running the controller. */
+	private final Scheduler scheduler;
+	/** The identifier of the task of the controller inside the scheduler. */
+	private final int task;
+	/** Tells whether the controller is running. */
+	private boolean started;
+
+	/**
+	 * Builds the heading hold of a pair of tracks, whose controller is registered inside the scheduler polling their
+	 * tachometers, after them.
+	 *
+	 * @param right the right engine of the rover.
+	 * @param left the left engine of the rover.
+	 * @param scheduler the scheduler polling the tachometers of both engines.
+	 */
+	HeadingHold(Engine right, Engine left, Scheduler scheduler) {
+		this.right     = right;
+		this.left      = left;
+		this.scheduler = scheduler;
+		this.engaged   = false;
+		this.started   = false;
+		this.task      = scheduler.add("heading-hold", new Scheduler.Task() {
+			public float poll(long time) {
+				return HeadingHold.this.tick();
+			}
+		}, HeadingHold.period/Scheduler.slot, HeadingHold.deadline/Scheduler.slot);
+	}
+
+	/**
+	 * Starts the controller, if not already running. Engines have to be connected beforehand.
+	 */
+	synchronized void start() {
+		if (this.started) { return; }
+		this.started = true;
+		this.scheduler.resume(this.task);
+	}
+
+	/**
+	 * Stops the controller, releasing the held travel if any. The scheduler does not run it anymore, until it is started
+	 * again.
+	 */
+	synchronized void stop() {
+		this.disengage();
+		this.started = false;
+		this.scheduler.suspend(this.task);
+	}
+
+	/**
+	 * Starts holding a straight travel which has just been launched.
+	 *
+	 * @param speed the cruise speed of the travel, in degrees per second.
+	 * @param theta the rotation of both tracks during the travel, in degrees.
+	 * @param r_start the right tacho count at the beginning of the travel, in degrees.
+	 * @param l_start the left tacho count at the beginning of the travel, in degrees.
+	 */
+	synchronized void engage(int speed, int theta, int r_start, int l_start) {
+		this.disengage();
+		if (!this.started || theta == 0) { return; }
+		this.engaged   = true;
+		this.speed     = speed;
+		this.direction = (theta > 0)? 1 : -1;
+		this.r_start   = r_start;
+		this.l_start   = l_start;
+		this.integral  = 0;
+		this.samples   = 0;
+		this.sum2      = 0;
+		this.max       = 0;
+	}
+
+	/**
+	 * Stops holding the current travel, if any, and closes the statistics of its leg.
+	 */
+	synchronized void disengage() {
+		if (!this.engaged) { return; }
+		this.engaged = false;
+		if (this.samples > 0) {
+			this.legs++;
+			this.last_rms  = (float)Math.sqrt(this.sum2/this.samples);
+			this.last_max  = this.max;
+			this.total_max = Math.max(this.total_max, this.max);
+		}
+	}
+
+	/**
+	 * One step of the controller: measures the differential of both tracks from their latest polled tacho counts and
+	 * trims their speeds. Scheduler thread only.
+	 *
+	 * @return the heading error, in degrees, or NaN if no travel is held.
+	 */
+	private synchronized float tick() {
+		if (!this.engaged) { return Float.NaN; }
+		if (!this.right.device.isMoving() && !this.left.device.isMoving()) {
+			this.disengage();
+			return Float.NaN;
+		}
+		float right = this.right.tacho(), left = this.left.tacho();
+		if (Float.isNaN(right) || Float.isNaN(left)) { return Float.NaN; }
+		// progress of both tracks since the beginning of the travel. they rotate in the same direction, hence the
+		// differential is zero along a straight line, and positive when the right track is ahead.
+		int diff = this.direction*(((int)right - this.r_start) - ((int)left - this.l_start));
+		// a differential of the tracks is a rotation of the rover: angle*HALF_AXIS_DIFF = theta*WHEEL_RADIUS on both sides.
+		float error = diff*Rover.WHEEL_RADIUS/Rover.AXIS_DIFF;
+		this.samples++;
+		this.sum2 += error*error;
+		this.max   = Math.max(this.max, Math.abs(error));
+
+		float step  = diff*HeadingHold.period/1000f;
+		float trim  = HeadingHold.KP*diff + HeadingHold.KI*(this.integral + step);
+		float limit = HeadingHold.MAX_TRIM*this.speed;
+		// anti-windup: while the trim is saturated, the integral is frozen, unless the step brings it back.
+		if (Math.abs(trim) <= limit || step*trim < 0) { this.integral += step; }
+		trim = Math.max(-limit, Math.min(limit, trim));
+		// slow the track which is ahead down, speed the other one up.
+		this.right.device.setSpeed((int)(this.speed - trim));
+		this.left.device.setSpeed( (int)(this.speed + trim));
+		return error;
+	}
+
+	/**
+	 * Getter for the 'legs' field.
+	 * @return the number of completed legs.
+	 */
+	public synchronized int getLegs() {
+		return this.legs;
+	}
+	/**
+	 * Getter for the 'last_rms' field.
+	 * @return the root mean square heading error of the last completed leg, in degrees.
+	 */
+	public synchronized float getLastRmsError() {
+		return this.last_rms;
+	}
+	/**
+	 * Getter for the 'last_max' field.
+	 * @return the largest heading error of the last completed leg, in degrees.
+	 */
+	public synchronized float getLastMaxError() {
+		return this.last_max;
+	}
+	/**
+	 * Getter for the 'total_max' field.
+	 * @return the largest heading error over all the legs, in degrees.
+	 */
+	public synchronized float getMaxError() {
+		return this.total_max;
+	}
+}
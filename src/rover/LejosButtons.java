@@ -0,0 +1,15 @@
+package rover;
+
+import lejos.hardware.Button;
+
+/**
+ * The buttons of the EV3 lego brick, i.e. the leJOS implementation of a {@link ButtonDevice}.
+ *
+ * @author Antoine Stevan
+ *
+ */
+class LejosButtons implements ButtonDevice {
+	public int waitForAnyPress(int ms) {
+		return (ms == 0)? Button.waitForAnyPress() : Button.waitForAnyPress(ms);
+	}
+}
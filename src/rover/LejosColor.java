@@ -0,0 +1,57 @@
+package rover;
+
+import lejos.hardware.port.Port;
+import lejos.hardware.sensor.EV3ColorSensor;
+import lejos.robotics.SampleProvider;
+
+/**
+ * A color sensor plugged into a port of the EV3 lego brick, i.e. the leJOS implementation of a {@link ColorDevice}.
+ *
+ * @author Antoine Stevan
+ *
+ */
+class LejosColor implements ColorDevice {
+	/** The port the sensor is plugged into, from 1 to 4. */
+	private final Port port;
+	/** The leJOS sensor, once opened. */
+	EV3ColorSensor device;
+	/** The red mode of the sensor, bound once opened: asking the sensor for its mode on every sample is slow. */
+	private SampleProvider red_mode;
+	/** The buffer receiving the samples of the red mode. */
+	private float[] red;
+
+	/**
+	 * Builds a sensor plugged into a port of the brick. The sensor is only bound once opened.
+	 *
+	 * @param port the port of the sensor, it is basically a SensorPort, from 1 to 4.
+	 */
+	LejosColor(Port port) {
+		this.port   = port;
+		this.device   = null;
+		this.red_mode = null;
+		this.red      = null;
+	}
+
+	public void open() {
+		this.device   = new EV3ColorSensor(this.port);
+		this.red_mode = this.device.getRedMode();
+		this.red      = new float[this.red_mode.sampleSize()];
+	}
+
+	public String getName() {
+		return this.port.getName();
+	}
+
+	public float fetchRed() {
+		this.red_mode.fetchSample(this.red, 0);
+		return this.red[0];
+	}
+
+	public void fetchRGB(float[] rgb, int offset) {
+		this.device.getRGBMode().fetchSample(rgb, offset);
+	}
+
+	public int getColorID() {
+		return this.device.getColorID();
+	}
+}
@@ -0,0 +1,72 @@
+package rover;
+
+import lejos.hardware.port.MotorPort;
+import lejos.hardware.port.Port;
+import lejos.hardware.port.SensorPort;
+import tools.Clock;
+import tools.RealClock;
+
+/**
+ * The hardware of a physical rover, i.e. the motors and sensors plugged into the ports of the EV3 lego brick.
+ *
+ * @author Antoine Stevan
+ *
+ */
+public class LejosHardware implements Hardware {
+	/** The ultrasonic sensor. */
+	private final RangeDevice ultrasonic;
+	/** The color sensor. */
+	private final ColorDevice color;
+	/** The motor of the pliers. */
+	private final MotorDevice pliers;
+	/** The motor of the right track. */
+	private final MotorDevice right;
+	/** The motor of the left track. */
+	private final MotorDevice left;
+	/** The buttons of the brick. */
+	private final ButtonDevice buttons;
+	/** The wall clock. */
+	private final Clock clock;
+
+	/**
+	 * Default constructor, with the default port layout of the brick : ultrasonic (S4); color (S1); pliers (MA);
+	 * right (MB); left (MC).
+	 */
+	public LejosHardware() {
+		this(SensorPort.S4, SensorPort.S1, MotorPort.A, MotorPort.B, MotorPort.C);
+	}
+
+	/**
+	 * Constructor with a custom port layout.
+	 *
+	 * @param ultrasonic_port the port the ultrasonic sensor should be connected to.
+	 * @param color_port the port the color sensor should be connected to.
+	 * @param pliers_motor_port the port the pliers motor should be connected to.
+	 * @param right_motor_port the port the right motor should be connected to.
+	 * @param left_motor_port the port the left motor should be connected to.
+	 */
+	public LejosHardware(Port ultrasonic_port, Port color_port,
+						 Port pliers_motor_port, Port right_motor_port, Port left_motor_port) {
+		this.ultrasonic = new LejosRange(ultrasonic_port);
+		this.color      = new LejosColor(color_port);
+		this.pliers     = new LejosMotor(pliers_motor_port);
+		this.right      = new LejosMotor(right_motor_port);
+		this.left       = new LejosMotor(left_motor_port);
+		this.buttons    = new LejosButtons();
+		this.clock      = new RealClock();
+	}
+
+	public RangeDevice ultrasonic() { return this.ultrasonic; }
+
+	public ColorDevice color()      { return this.color; }
+
+	public MotorDevice pliers()     { return this.pliers; }
+
+	public MotorDevice right()      { return this.right; }
+
+	public MotorDevice left()       { return this.left; }
+
+	public ButtonDevice buttons()   { return this.buttons; }
+
+	public Clock clock()            { return this.clock; }
+}
@@ -0,0 +1,124 @@
+package rover;
+
+import lejos.hardware.motor.NXTRegulatedMotor;
+import lejos.hardware.port.Port;
+import lejos.robotics.RegulatedMotor;
+import lejos.robotics.RegulatedMotorListener;
+
+/**
+ * A motor plugged into a port of the EV3 lego brick, i.e. the leJOS implementation of a {@link MotorDevice}.
+ * Every command is delegated to a leJOS regulated motor.
+ *
+ * @author Antoine Stevan
+ *
+ */
+class LejosMotor implements MotorDevice {
+	/** The port the motor is plugged into, from A to D. */
+	private final Port port;
+	/** The leJOS motor, once opened. */
+	RegulatedMotor device;
+
+	/**
+	 * Builds a motor plugged into a port of the brick. The motor is only bound once opened.
+	 *
+	 * @param port the port of the motor, it is basically a MotorPort, from A to D.
+	 */
+	LejosMotor(Port port) {
+		this.port   = port;
+		this.device = null;
+	}
+
+	public void open() {
+		this.device = new NXTRegulatedMotor(this.port);
+	}
+
+	public String getName() {
+		return this.port.getName();
+	}
+
+	public void resetTachoCount() {
+		this.device.resetTachoCount();
+	}
+
+	public int getTachoCount() {
+		return this.device.getTachoCount();
+	}
+
+	public int getRotationSpeed() {
+		return this.device.getRotationSpeed();
+	}
+
+	public void setSpeed(int speed) {
+		this.device.setSpeed(speed);
+	}
+
+	public void setAcceleration(int acceleration) {
+		this.device.setAcceleration(acceleration);
+	}
+
+	public void rotate(int angle, boolean immediateReturn) {
+		this.device.rotate(angle, immediateReturn);
+	}
+
+	public void rotate(int angle) {
+		this.device.rotate(angle);
+	}
+
+	public void rotateTo(int target, boolean immediateReturn) {
+		this.device.rotateTo(target, immediateReturn);
+	}
+
+	public void forward() {
+		this.device.forward();
+	}
+
+	public void backward() {
+		this.device.backward();
+	}
+
+	public void stop(boolean immediateReturn) {
+		this.device.stop(immediateReturn);
+	}
+
+	public void stop() {
+		this.device.stop();
+	}
+
+	public boolean isMoving() {
+		return this.device.isMoving();
+	}
+
+	/**
+	 * Synchronizes the leJOS motor with the leJOS motors of the others.
+	 * Every other motor has to be a LejosMotor as well.
+	 */
+	public void synchronizeWith(MotorDevice[] others) {
+		RegulatedMotor[] motors = new RegulatedMotor[others.length];
+		for (int i = 0; i < others.length; i++) {
+			motors[i] = ((LejosMotor)others[i]).device;
+		}
+		this.device.synchronizeWith(motors);
+	}
+
+	public void startSynchronization() {
+		this.device.startSynchronization();
+	}
+
+	public void endSynchronization() {
+		this.device.endSynchronization();
+	}
+
+	/**
+	 * Registers the listener through an adapter, which tells this motor instead of the underlying leJOS motor.
+	 */
+	public void addListener(final MotorListener listener) {
+		this.device.addListener(new RegulatedMotorListener() {
+			public void rotationStarted(RegulatedMotor motor, int tachoCount, boolean stalled, long timeStamp) {
+				listener.rotationStarted(LejosMotor.this, tachoCount, stalled, timeStamp);
+			}
+			public void rotationStopped(RegulatedMotor motor, int tachoCount, boolean stalled, long timeStamp) {
+				listener.rotationStopped(LejosMotor.this, tachoCount, stalled, timeStamp);
+			}
+		});
+	}
+}
@@ -0,0 +1,53 @@
+package rover;
+
+import lejos.hardware.port.Port;
+import lejos.hardware.sensor.EV3UltrasonicSensor;
+import lejos.robotics.SampleProvider;
+
+/**
+ * An ultrasonic sensor plugged into a port of the EV3 lego brick, i.e. the leJOS implementation of a {@link RangeDevice}.
+ *
+ * @author Antoine Stevan
+ *
+ */
+class LejosRange implements RangeDevice {
+	/** The port the sensor is plugged into, from 1 to 4. */
+	private final Port port;
+	/** The leJOS sensor, once opened. */
+	EV3UltrasonicSensor device;
+	/** The distance mode of the sensor, bound once. */
+	private SampleProvider sampler;
+	/** The buffer receiving the samples. */
+	private float[] sample;
+
+	/**
+	 * Builds a sensor plugged into a port of the brick. The sensor is only bound once opened.
+	 *
+	 * @param port the port of the sensor, it is basically a SensorPort, from 1 to 4.
+	 */
+	LejosRange(Port port) {
+		this.port    = port;
+		this.device  = null;
+		this.sampler = null;
+		this.sample  = null;
+	}
+
+	/**
+	 * Binds the sensor, enables it and its distance mode.
+	 */
+	public void open() {
+		this.device = new EV3UltrasonicSensor(this.port);
+		this.device.enable();
+		this.sampler = this.device.getDistanceMode();
+		this.sample  = new float[this.sampler.sampleSize()];
+	}
+
+	public String getName() {
+		return this.port.getName();
+	}
+
+	public float fetchDistance() {
+		this.sampler.fetchSample(this.sample, 0);
+		return this.sample[0];
+	}
+}
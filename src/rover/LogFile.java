@@ -0,0 +1,130 @@
+package rover;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A log file split into size-capped segments, for the limited flash memory of the EV3.
+ *
+ * Segments are named after a prefix, the index of the mission and the index of the segment inside the mission, e.g.
+ * 'log-1-0.log'. A new segment is started at every mission, and at the end of the first line reaching
+ * {@link LogFile#segment_size} characters. Only the last {@link LogFile#max_segments} segments are kept, older ones are
+ * deleted, so that the logs of a whole deployment never take more than a fixed amount of flash. Writes are always
+ * appended to the current segment, i.e. sequential.
+ *
+ * @author Antoine Stevan
+ *
+ */
+class LogFile extends Writer {
+	/** The maximum number of characters of a segment. */
+	static final int segment_size = 256*1024;
+	/** The maximum number of segments kept on the brick. */
+	static final int max_segments = 8;
+
+	/** The prefix of the names of the segments. */
+	private final String prefix;
+	/** The names of the kept segments, as a circular buffer, from the oldest to the current one. */
+	private final String[] segments = new String[LogFile.max_segments];
+	/** The index of the oldest kept segment. */
+	private int first;
+	/** The number of kept segments. */
+	private int count;
+	/** The index of the current mission. */
+	private int mission;
+	/** The index of the next segment inside the current mission. */
+	private int part;
+	/** The output stream of the current segment. */
+	private Writer out;
+	/** The number of characters written inside the current segment. */
+	private long written;
+
+	/**
+	 * Opens the first segment of the first mission.
+	 *
+	 * @param prefix the prefix of the names of the segments, possibly with a directory.
+	 * @throws IOException if the segment cannot be created.
+	 */
+	LogFile(String prefix) throws IOException {
+		this.prefix  = prefix;
+		this.mission = 0;
+		this.part    = 0;
+		this.roll();
+	}
+
+	/**
+	 * Starts the segments of the next mission.
+	 *
+	 * @throws IOException if the new segment cannot be created.
+	 */
+	synchronized void next_mission() throws IOException {
+		this.mission++;
+		this.part = 0;
+		this.roll();
+	}
+
+	/**
+	 * Closes the current segment, if any, and opens the next one, deleting the oldest one if there are too many.
+	 *
+	 * @throws IOException if the new segment cannot be created.
+	 */
+	private void roll() throws IOException {
+		if (this.out != null) { this.out.close(); }
+		if (this.count == LogFile.max_segments) {
+			new File(this.segments[this.first]).delete();
+			this.first = (this.first + 1) % LogFile.max_segments;
+			this.count--;
+		}
+		String name = this.prefix + "-" + this.mission + "-" + this.part + ".log";
+		this.part++;
+		this.segments[(this.first + this.count) % LogFile.max_segments] = name;
+		this.count++;
+		this.out     = new BufferedWriter(new FileWriter(name));
+		this.written = 0;
+	}
+
+	/**
+	 * Accounts for some characters written inside the current segment, and starts a new one once the current one is full.
+	 * Segments are only rolled after a newline, so that no line is ever split between two of them.
+	 *
+	 * @param length the number of written characters.
+	 * @param last the last written character.
+	 * @throws IOException if the new segment cannot be created.
+	 */
+	private void written(int length, char last) throws IOException {
+		this.written += length;
+		if (this.written >= LogFile.segment_size && last == '\n') { this.roll(); }
+	}
+
+	@Override
+	public synchronized void write(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) { return; }
+		this.out.write(cbuf, off, len);
+		this.written(len, cbuf[off+len-1]);
+	}
+
+	@Override
+	public synchronized void write(String str, int off, int len) throws IOException {
+		if (len == 0) { return; }
+		this.out.write(str, off, len);
+		this.written(len, str.charAt(off+len-1));
+	}
+
+	@Override
+	public synchronized void write(int c) throws IOException {
+		this.out.write(c);
+		this.written(1, (char)c);
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		this.out.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.out.close();
+	}
+}
@@ -4,55 +4,200 @@ import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.math.RoundingMode;
-import java.text.DateFormat;
-import java.text.DecimalFormat;
+import java.io.Writer;
+import java.util.function.Supplier;
 
 import lejos.robotics.navigation.Pose;
+import tools.Clock;
+import tools.RealClock;
 
 /**
  * Output streams wrapper to help writing stuff in both the console and log files.
  * 
+ * A logger opened in asynchronous mode never writes nor flushes in the thread of the caller: records are enqueued, with
+ * their timestamp, inside a bounded preallocated ring and a background writer thread writes them by batches, flushing the
+ * streams once enough characters are pending or after some time. When the ring is full, the caller waits a bit for the
+ * writer and then drops its record: both events are counted.
+ * 
+ * Records can also be written with a severity level, through {@link Logger#debug(String)} and its siblings, by the root
+ * logger or by a logger dedicated to a subsystem, see {@link Logger#subsystem(String)}. A record whose level is disabled
+ * costs a single comparison: its message is neither built, when given by a supplier or a pattern with arguments, nor
+ * timestamped.
+ * 
+ * Records are timestamped along the clock of the logger, i.e. the clock of the rover, so that the logs of a simulated
+ * mission show its virtual time. The writer thread only flushes along the wall clock, which is a matter of disk.
+ * 
  * @author Antoine Stevan
  *
  */
 class Logger {
 	
-	/**
-	 * Date format for every logger used by the rover.
-	 * In log files, there is a bit more informations than what is printed in the console, namely date and time. To do so
-	 * with ease, let's define a static format for dates and times: DD/MM/YY, HH:MM:SS .. where '..' stands for either 'AM'
-	 * or 'PM'.
-	 */
-    static DateFormat format = DateFormat.getDateTimeInstance(
-	        DateFormat.SHORT,
-	        DateFormat.MEDIUM);
-    /**
-     * To further format the time output in log files.
-     */
-    static DecimalFormat df = new DecimalFormat("#.###");
-
     /** A logger uses an standard output stream to print strings in the console directly. */
     static BufferedWriter out = new BufferedWriter(new PrintWriter(System.out));
     /** The main feature of a logger is its ability to write in any log file. */
-    BufferedWriter log;
+    Writer log;
+    /** The segmented log file, if the logger has been opened with {@link Logger#open_segments(String, boolean)}. */
+    private LogFile segments;
+    /** The buffer of the timestamps of the records written by the callers, in synchronous mode. Also its lock. */
+    private final char[] date = new char[Logger.date_length];
+    
+    /** The clock giving the timestamps of the records. */
+    private final Clock clock;
+    /** Reference time at which the logger has been built, in nanoseconds, along its clock. */
+    final long begin_time;
+    
+    /** Level of the detailed traces, e.g. of every echo. Disabled during missions. */
+    static final int DEBUG = 0;
+    /** Level of the normal course of a mission, enabled by default. */
+    static final int INFO  = 1;
+    /** Level of the unexpected events the rover recovers from. */
+    static final int WARN  = 2;
+    /** Level of the failures compromising the mission. */
+    static final int ERROR = 3;
+    /** Level disabling every record, even the unleveled ones of {@link Logger#println(String)} and its siblings. */
+    static final int OFF   = 4;
+    /** The tags of the levels, written in front of leveled records. */
+    static final String[] tags = {"D", "I", "W", "E"};
     
-    /** Reference time at which the logger has been opened, in nanoseconds. */
-    static final long begin_time = System.nanoTime();
+    /** The logger owning the streams of a subsystem logger, or null for a root logger. */
+    private Logger root;
+    /** The name of the subsystem, or null for a root logger. */
+    private String name;
+    /** The minimum level of the written records, or -1 for a subsystem logger following its root. */
+    private volatile int level = Logger.INFO;
+    
+    /** The size of a buffer holding a formatted timestamp, i.e. '[' + 19 digits + '.' + 3 digits + '] '. */
+    static final int date_length = 25;
+    /** The record asking the writer thread to start the log of a new mission, compared by reference. */
+    private static final String MISSION = new String("mission");
+    
+    /** The number of records of the ring of an asynchronous logger. Must be a power of 2. */
+    static final int capacity     = 256;
+    /** The mask used to wrap an index of the ring. */
+    private static final int mask = Logger.capacity - 1;
+    /** The number of written characters above which the writer thread flushes the streams. */
+    static final int flush_size   = 4096;
+    /** The period after which the writer thread flushes pending characters anyway, in ms. */
+    static final int flush_period = 500;
+    /** The maximum time a caller waits for the writer thread when the ring is full, before dropping its record, in ms. */
+    static final int max_block    = 10;
+    
+    /** Tells whether records go through the ring and the writer thread, instead of being written by the caller. */
+    private boolean async;
+    /** The texts of the records of the ring. Also the lock of the ring. */
+    private final String[]  texts    = new String[Logger.capacity];
+    /** The timestamps of the records of the ring, in nanoseconds. */
+    private final long[]    stamps   = new long[Logger.capacity];
+    /** Tells, for each record of the ring, whether it ends with a newline. */
+    private final boolean[] newlines = new boolean[Logger.capacity];
+    /** The index of the oldest record of the ring. */
+    private int head;
+    /** The number of records inside the ring. */
+    private int size;
+    /** The number of records dropped because the ring was full. */
+    private int dropped;
+    /** The number of records whose caller had to wait for the writer thread. */
+    private int blocked;
+    /** The number of drains requested so far. */
+    private int drains;
+    /** The number of drains done so far by the writer thread. */
+    private int drained;
+    /** Tells whether the logger is being closed, i.e. the writer thread has to write every record and stop. */
+    private boolean closing;
+    /** The background writer thread of an asynchronous logger. */
+    private Thread writer;
+	
+	/**
+	 * Builds a closed logger, whose records are timestamped along the wall clock.
+	 */
+	Logger() {
+		this(new RealClock());
+	}
+	/**
+	 * Builds a closed logger, whose records are timestamped along a given clock, from now on.
+	 * 
+	 * @param clock the clock giving the timestamps of the records.
+	 */
+	Logger(Clock clock) {
+		this(clock, clock.nanoTime());
+	}
+	/**
+	 * Builds a closed logger, whose records are timestamped along a given clock, from a given reference time.
+	 * 
+	 * @param clock the clock giving the timestamps of the records.
+	 * @param begin_time the reference time of the timestamps, in nanoseconds.
+	 */
+	private Logger(Clock clock, long begin_time) {
+		this.clock      = clock;
+		this.begin_time = begin_time;
+	}
 	
     /**
-     * Formating the date and time to have something more user friendly inside log files.
-     * When using the Date class with the static Logger format, some features of the resulting string are unwanted. This
-     * Logger method removes the trailing 'PM' or 'AM', removes the ',' in the middle and adds some brackets in front and
-     * behind date and time.
+     * Formating the current time to have something more user friendly inside log files, i.e. the seconds and
+     * milliseconds elapsed since the logger was built, inside brackets.
      * 
      * @return a string of with following format '[SSS.MMM]'
      */
-	static String give_date() {
-		long time = System.nanoTime() - Logger.begin_time;
-		int sec = (int)(time/1e9);
-		int pref = (sec == 0)? 0 : Integer.toString(sec).length();
-		return "["+sec+"."+(int)(time/Math.pow(10, 6+pref))+"]";
+	String give_date() {
+		return this.give_date(this.clock.nanoTime());
+	}
+	/**
+	 * Formats a given moment the same way as {@link Logger#give_date()}.
+	 * 
+	 * @param nanos the moment, in nanoseconds (see {@link Clock#nanoTime()}).
+	 * @return a string of with following format '[SSS.MMM]'
+	 */
+	String give_date(long nanos) {
+		char[] buffer = new char[Logger.date_length];
+		// without the trailing space.
+		return new String(buffer, 0, Logger.format_date(nanos, this.begin_time, buffer) - 1);
+	}
+	/**
+	 * Formats a given moment as '[SSS.MMM] ', i.e. seconds and milliseconds since a reference time, followed by a space.
+	 * Digits are written straight into a given buffer, nothing is allocated.
+	 * 
+	 * @param nanos the moment, in nanoseconds (see {@link Clock#nanoTime()}).
+	 * @param begin the reference time, in nanoseconds, e.g. {@link Logger#begin_time}.
+	 * @param buffer the destination buffer, of at least {@link Logger#date_length} characters.
+	 * @return the number of written characters.
+	 */
+	static int format_date(long nanos, long begin, char[] buffer) {
+		long ms  = Math.max(0, nanos - begin)/1000000;
+		long sec = ms/1000;
+		int  mil = (int)(ms%1000);
+		int  n   = 0;
+		buffer[n++] = '[';
+		// digits of the seconds, written backwards and then reversed.
+		int first = n;
+		do {
+			buffer[n++] = (char)('0' + sec%10);
+			sec /= 10;
+		} while (sec > 0);
+		for (int i = first, j = n-1; i < j; i++, j--) {
+			char c = buffer[i]; buffer[i] = buffer[j]; buffer[j] = c;
+		}
+		buffer[n++] = '.';
+		buffer[n++] = (char)('0' + mil/100);
+		buffer[n++] = (char)('0' + mil/10%10);
+		buffer[n++] = (char)('0' + mil%10);
+		buffer[n++] = ']';
+		buffer[n++] = ' ';
+		return n;
+	}
+	
+	/**
+	 * Writes a timestamped record inside the log file, from the thread of the caller.
+	 * 
+	 * @param str the string to be written.
+	 * @param newline a boolean telling whether or not a new line is required.
+	 * @throws IOException if something goes wrong during writing, an exception is thrown.
+	 */
+	private void write_log(String str, boolean newline) throws IOException {
+		synchronized (this.date) {
+			this.log.write(this.date, 0, Logger.format_date(this.clock.nanoTime(), this.begin_time, this.date));
+			this.log.write(str);
+			if (newline) { this.log.write('\n'); }
+		}
 	}
 	
 	/**
@@ -65,9 +210,398 @@ class Logger {
 	void open(String log_filename){
 		try {
 			this.log = new BufferedWriter(new PrintWriter(log_filename));
-			Logger.df.setRoundingMode(RoundingMode.CEILING);
 		} catch (FileNotFoundException e) { System.out.println("unable to open " + log_filename); }
 	}
+	/**
+	 * Opens the log file output stream, possibly in asynchronous mode.
+	 * 
+	 * @param log_filename the name of the log file.
+	 * @param async true to write the records from a background thread, false to write them from the caller.
+	 * @see Logger#open(String)
+	 */
+	void open(String log_filename, boolean async) {
+		this.open(log_filename);
+		if (async) { this.start_writer(); }
+	}
+	/**
+	 * Opens a segmented log file, see {@link LogFile}, possibly in asynchronous mode.
+	 * The size of the logs is capped, and each mission started with {@link Logger#next_mission()} gets its own segments.
+	 * If the first segment cannot be created, an error message is printed but the execution continues.
+	 * 
+	 * @param prefix the prefix of the names of the segments.
+	 * @param async true to write the records from a background thread, false to write them from the caller.
+	 */
+	void open_segments(String prefix, boolean async) {
+		try {
+			this.segments = new LogFile(prefix);
+			this.log = this.segments;
+		} catch (IOException e) { System.out.println("unable to open " + prefix); }
+		if (async) { this.start_writer(); }
+	}
+	/**
+	 * Starts the log of a new mission, in a new segment if the log file is segmented. In asynchronous mode, records
+	 * enqueued before still go to the segment of the previous mission.
+	 */
+	void next_mission() {
+		if (this.async) { this.enqueue(Logger.MISSION, false); return; }
+		this.roll_mission();
+	}
+	/**
+	 * Moves the segmented log file, if any, to the next mission.
+	 */
+	private void roll_mission() {
+		if (this.segments == null) { return; }
+		try {
+			this.segments.next_mission();
+		} catch (IOException e) { System.out.println("unable to start the log of the next mission"); }
+	}
+	/**
+	 * Starts the writer thread of the asynchronous mode, if not already running.
+	 */
+	private void start_writer() {
+		if (this.writer == null) {
+			this.async  = true;
+			this.writer = new Thread(new Runnable() {
+				public void run() {
+					Logger.this.write_loop();
+				}
+			}, "logger");
+			this.writer.setDaemon(true);
+			this.writer.start();
+		}
+	}
+	
+	/**
+	 * Enqueues a record for the writer thread.
+	 * If the ring is full, the caller waits at most {@link Logger#max_block} ms for some room, and the record is dropped
+	 * if there is still none.
+	 * 
+	 * @param str the string to be broadcasted.
+	 * @param newline a boolean telling whether or not a new line is required.
+	 */
+	private void enqueue(String str, boolean newline) {
+		long time = this.clock.nanoTime();
+		synchronized (this.texts) {
+			if (this.size == Logger.capacity) {
+				this.blocked++;
+				// the writer thread lives along the wall clock, so does the wait for it.
+				long deadline = System.nanoTime() + Logger.max_block*1000000L;
+				while (this.size == Logger.capacity && !this.closing) {
+					long left = deadline - System.nanoTime();
+					if (left <= 0) { break; }
+					try {
+						this.texts.wait(Math.max(1, left/1000000));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+				if (this.size == Logger.capacity) {
+					this.dropped++;
+					return;
+				}
+			}
+			int i = (this.head + this.size) & Logger.mask;
+			this.texts[i]    = str;
+			this.stamps[i]   = time;
+			this.newlines[i] = newline;
+			this.size++;
+			this.texts.notifyAll();
+		}
+	}
+	
+	/**
+	 * Main loop of the writer thread.
+	 * Every record is taken out of the ring as soon as possible, so that callers never wait for the disk, and written by
+	 * batches. Streams are flushed after {@link Logger#flush_size} characters or {@link Logger#flush_period} ms, or when a
+	 * drain is requested.
+	 */
+	private void write_loop() {
+		String[]  texts    = new String[Logger.capacity];
+		long[]    stamps   = new long[Logger.capacity];
+		boolean[] newlines = new boolean[Logger.capacity];
+		char[]    date     = new char[Logger.date_length];
+		int  pending    = 0;
+		long last_flush = System.nanoTime();
+		while (true) {
+			int n;
+			int drains;
+			boolean closing;
+			synchronized (this.texts) {
+				if (this.size == 0 && !this.closing && this.drains == this.drained) {
+					try {
+						this.texts.wait(Logger.flush_period);
+					} catch (InterruptedException e) {
+						// keep on writing, only close() stops the writer.
+					}
+				}
+				// take the whole content of the ring at once.
+				n = this.size;
+				for (int k = 0; k < n; k++) {
+					int i = (this.head + k) & Logger.mask;
+					texts[k]    = this.texts[i];
+					stamps[k]   = this.stamps[i];
+					newlines[k] = this.newlines[i];
+					this.texts[i] = null;
+				}
+				this.head = (this.head + n) & Logger.mask;
+				this.size = 0;
+				drains  = this.drains;
+				closing = this.closing;
+				this.texts.notifyAll();
+			}
+			try {
+				for (int k = 0; k < n; k++) {
+					String str = texts[k];
+					texts[k] = null;
+					if (str == Logger.MISSION) {
+						this.roll_mission();
+						continue;
+					}
+					Logger.out.write(str);
+					if (newlines[k]) { Logger.out.write('\n'); }
+					if (this.log != null) {
+						int length = Logger.format_date(stamps[k], this.begin_time, date);
+						this.log.write(date, 0, length);
+						this.log.write(str);
+						if (newlines[k]) { this.log.write('\n'); }
+						pending += length;
+					}
+					pending += str.length() + 1;
+				}
+				long now = System.nanoTime();
+				if (pending > 0 && (pending >= Logger.flush_size || now - last_flush >= Logger.flush_period*1000000L ||
+									drains != this.drained || closing)) {
+					Logger.out.flush();
+					if (this.log != null) { this.log.flush(); }
+					pending = 0;
+					last_flush = now;
+				}
+			} catch (IOException e) { System.out.println("unable to write in log.log"); }
+			synchronized (this.texts) {
+				this.drained = drains;
+				this.texts.notifyAll();
+				if (closing && this.size == 0) { return; }
+			}
+		}
+	}
+	
+	/**
+	 * Waits for every record enqueued so far to be written and flushed, e.g. before the program halts.
+	 * Does nothing in synchronous mode, where records are always written by the caller.
+	 */
+	void drain() {
+		if (!this.async) { return; }
+		synchronized (this.texts) {
+			int ticket = ++this.drains;
+			this.texts.notifyAll();
+			while (this.drained - ticket < 0 && this.writer.isAlive()) {
+				try {
+					this.texts.wait(Logger.flush_period);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Getter for the 'dropped' field.
+	 * @return the number of records dropped because the ring was full.
+	 */
+	int getDropped() {
+		synchronized (this.texts) {
+			return this.dropped;
+		}
+	}
+	/**
+	 * Getter for the 'blocked' field.
+	 * @return the number of records whose caller had to wait for the writer thread.
+	 */
+	int getBlocked() {
+		synchronized (this.texts) {
+			return this.blocked;
+		}
+	}
+	
+	/**
+	 * Builds the logger of a subsystem, e.g. the navigation, which writes its leveled records through this logger with the
+	 * name of the subsystem in front of them. Its level follows the level of this logger, unless set otherwise.
+	 * 
+	 * @param name the name of the subsystem.
+	 * @return the logger of the subsystem.
+	 */
+	Logger subsystem(String name) {
+		Logger root   = (this.root == null)? this : this.root;
+		Logger logger = new Logger(root.clock, root.begin_time);
+		logger.root  = root;
+		logger.name  = name;
+		logger.level = -1;
+		return logger;
+	}
+	
+	/**
+	 * Setter for the 'level' field.
+	 * @param level the minimum level of the written records, e.g. {@link Logger#DEBUG}, or -1 for a subsystem logger to
+	 * follow its root again.
+	 */
+	void setLevel(int level) {
+		this.level = (level < 0 && this.root == null)? Logger.INFO : level;
+	}
+	/**
+	 * Getter for the 'level' field.
+	 * @return the minimum level of the written records.
+	 */
+	int getLevel() {
+		int level = this.level;
+		return (level >= 0)? level : this.root.level;
+	}
+	/**
+	 * Tells whether records of a given level are written, e.g. before building an expensive message by hand.
+	 * 
+	 * @param level the level of the records.
+	 * @return true if the records are written, false if they are discarded.
+	 */
+	boolean enabled(int level) {
+		return level >= this.getLevel();
+	}
+	
+	/**
+	 * Writes a record with a given level, if enabled.
+	 * 
+	 * @param level the level of the record.
+	 * @param str the message of the record.
+	 */
+	void log(int level, String str) {
+		if (!this.enabled(level)) { return; }
+		Logger root = (this.root == null)? this : this.root;
+		root.println((this.name == null)? Logger.tags[level] + " " + str : Logger.tags[level] + " [" + this.name + "] " + str);
+	}
+	/**
+	 * Writes a record with a given level, if enabled. The message is only built if the record is written.
+	 * 
+	 * @param level the level of the record.
+	 * @param message the supplier of the message of the record.
+	 */
+	void log(int level, Supplier<String> message) {
+		if (this.enabled(level)) { this.log(level, message.get()); }
+	}
+	/**
+	 * Writes a record with a given level, if enabled. The message is only built if the record is written, by replacing
+	 * each '{}' of a pattern by an argument, in order. Arguments are primitives, so that nothing is boxed either.
+	 * 
+	 * @param level the level of the record.
+	 * @param pattern the pattern of the message of the record.
+	 * @param a the first argument.
+	 * @param b the second argument.
+	 * @param c the third argument.
+	 */
+	void log(int level, String pattern, float a, float b, float c) {
+		if (this.enabled(level)) { this.log(level, Logger.format(pattern, 3, a, b, c)); }
+	}
+	
+	/**
+	 * Replaces the first '{}' of a pattern by each argument, in order.
+	 * 
+	 * @param pattern the pattern.
+	 * @param n the number of arguments actually given.
+	 * @param a the first argument.
+	 * @param b the second argument.
+	 * @param c the third argument.
+	 * @return the formatted string.
+	 */
+	static String format(String pattern, int n, float a, float b, float c) {
+		StringBuilder builder = new StringBuilder(pattern.length() + 16*n);
+		int from = 0;
+		for (int k = 0; k < n; k++) {
+			int at = pattern.indexOf("{}", from);
+			if (at < 0) { break; }
+			builder.append(pattern, from, at).append((k == 0)? a : (k == 1)? b : c);
+			from = at + 2;
+		}
+		return builder.append(pattern, from, pattern.length()).toString();
+	}
+	
+	/**
+	 * Writes a debug record.
+	 * @param str the message of the record.
+	 */
+	void debug(String str) {
+		this.log(Logger.DEBUG, str);
+	}
+	/**
+	 * Writes a debug record, whose message is only built if debug records are enabled.
+	 * @param message the supplier of the message of the record.
+	 */
+	void debug(Supplier<String> message) {
+		this.log(Logger.DEBUG, message);
+	}
+	/**
+	 * Writes a debug record, whose message is only built if debug records are enabled.
+	 * @param pattern the pattern of the message, see {@link Logger#log(int, String, float, float, float)}.
+	 * @param a the argument.
+	 */
+	void debug(String pattern, float a) {
+		if (this.enabled(Logger.DEBUG)) { this.log(Logger.DEBUG, Logger.format(pattern, 1, a, 0, 0)); }
+	}
+	/**
+	 * Writes a debug record, whose message is only built if debug records are enabled.
+	 * @param pattern the pattern of the message, see {@link Logger#log(int, String, float, float, float)}.
+	 * @param a the first argument.
+	 * @param b the second argument.
+	 */
+	void debug(String pattern, float a, float b) {
+		if (this.enabled(Logger.DEBUG)) { this.log(Logger.DEBUG, Logger.format(pattern, 2, a, b, 0)); }
+	}
+	/**
+	 * Writes a debug record, whose message is only built if debug records are enabled.
+	 * @param pattern the pattern of the message, see {@link Logger#log(int, String, float, float, float)}.
+	 * @param a the first argument.
+	 * @param b the second argument.
+	 * @param c the third argument.
+	 */
+	void debug(String pattern, float a, float b, float c) {
+		this.log(Logger.DEBUG, pattern, a, b, c);
+	}
+	/**
+	 * Writes an info record.
+	 * @param str the message of the record.
+	 */
+	void info(String str) {
+		this.log(Logger.INFO, str);
+	}
+	/**
+	 * Writes an info record, whose message is only built if info records are enabled.
+	 * @param message the supplier of the message of the record.
+	 */
+	void info(Supplier<String> message) {
+		this.log(Logger.INFO, message);
+	}
+	/**
+	 * Writes an info record, whose message is only built if info records are enabled.
+	 * @param pattern the pattern of the message, see {@link Logger#log(int, String, float, float, float)}.
+	 * @param a the first argument.
+	 * @param b the second argument.
+	 * @param c the third argument.
+	 */
+	void info(String pattern, float a, float b, float c) {
+		this.log(Logger.INFO, pattern, a, b, c);
+	}
+	/**
+	 * Writes a warning record.
+	 * @param str the message of the record.
+	 */
+	void warn(String str) {
+		this.log(Logger.WARN, str);
+	}
+	/**
+	 * Writes an error record.
+	 * @param str the message of the record.
+	 */
+	void error(String str) {
+		this.log(Logger.ERROR, str);
+	}
 	
 	/**
 	 * Writes a string without a newline both in the console and in the log file (no auto flush).
@@ -76,8 +610,10 @@ class Logger {
 	 * @throws IOException if something goes wrong during flushing, an exception is thrown.
 	 */
 	void write(String str) throws IOException {
+		if (this.getLevel() == Logger.OFF) { return; }
+		if (this.async) { this.enqueue(str, false); return; }
 		Logger.out.write(str);
-		this.log.write(give_date() + " " + str);
+		this.write_log(str, false);
 	}
 	
 	/**
@@ -88,8 +624,11 @@ class Logger {
 	 * @throws IOException if something goes wrong during flushing, an exception is thrown.
 	 */
 	void write(String str, boolean newline) throws IOException {
-		if (newline) 	{ Logger.out.write(str+"\n"); this.log.write(give_date() + " " + str+"\n"); }
-		else 			{ Logger.out.write(str);      this.log.write(give_date() + " " + str); }
+		if (this.getLevel() == Logger.OFF) { return; }
+		if (this.async) { this.enqueue(str, newline); return; }
+		Logger.out.write(str);
+		if (newline) { Logger.out.write('\n'); }
+		this.write_log(str, newline);
 	}
 	
 	/**
@@ -99,8 +638,10 @@ class Logger {
 	 * @throws IOException if something goes wrong during flushing, an exception is thrown.
 	 */
 	void writeln(String str) throws IOException {
-		Logger.out.write(str+"\n");
-		this.log.write(give_date() + " " + str+"\n");
+		if (this.getLevel() == Logger.OFF) { return; }
+		if (this.async) { this.enqueue(str, true); return; }
+		Logger.out.write(str); Logger.out.write('\n');
+		this.write_log(str, true);
 	}
 	
 	/**
@@ -109,9 +650,11 @@ class Logger {
 	 * @param str the string to be broadcasted.
 	 */
 	void print(String str) {
+		if (this.getLevel() == Logger.OFF) { return; }
+		if (this.async) { this.enqueue(str, false); return; }
 		try {
 			Logger.out.write(str); Logger.out.flush();
-			this.log.write(give_date() + " " + str); this.log.flush();
+			this.write_log(str, false); this.log.flush();
 		} catch (IOException e) { System.out.println("unable to write in log.log"); }
 	}
 	
@@ -121,9 +664,11 @@ class Logger {
 	 * @param str the string to be broadcasted.
 	 */
 	void println(String str) {
+		if (this.getLevel() == Logger.OFF) { return; }
+		if (this.async) { this.enqueue(str, true); return; }
 		try {
-			Logger.out.write(str+"\n"); Logger.out.flush();
-			this.log.write(give_date() + " " + str+"\n"); this.log.flush();
+			Logger.out.write(str); Logger.out.write('\n'); Logger.out.flush();
+			this.write_log(str, true); this.log.flush();
 		} catch (IOException e) { System.out.println("unable to write in log.log"); }
 	}
 	
@@ -133,10 +678,7 @@ class Logger {
 	 * @param value the integer value to be broadcasted.
 	 */
 	void println(int value) {
-		try {
-			Logger.out.write(value+"\n"); Logger.out.flush();
-			this.log.write(give_date() + " " + value+"\n"); this.log.flush();
-		} catch (IOException e) { System.out.println("unable to write in log.log"); }
+		this.println(Integer.toString(value));
 	}
 	
 	/**
@@ -150,7 +692,8 @@ class Logger {
 	
 	/**
 	 * Flushes the streams.
-	 * Useful after a write method, which comes without autoflush.
+	 * Useful after a write method, which comes without autoflush. In asynchronous mode, waits for the writer thread to
+	 * write and flush every enqueued record.
 	 * 
 	 * @throws IOException if something goes wrong during flushing, an exception is thrown.
 	 * 
@@ -159,17 +702,31 @@ class Logger {
 	 * @see Logger#writeln(String)
 	 */
 	void flush() throws IOException {
+		if (this.async) { this.drain(); return; }
 		Logger.out.flush();
 		this.log.flush();
 	}
 	
 	/**
 	 * Closes the streams.
-	 * Not to be forgotten after using such streams of data.
+	 * Not to be forgotten after using such streams of data. In asynchronous mode, the writer thread first writes every
+	 * enqueued record.
 	 * 
 	 * @throws IOException if something goes wrong during flushing, an exception is thrown.
 	 */
 	void close() throws IOException {
+		if (this.async) {
+			synchronized (this.texts) {
+				this.closing = true;
+				this.texts.notifyAll();
+			}
+			try {
+				this.writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.async = false;
+		}
 		Logger.out.close();
 		this.log.close();
 	}
@@ -181,11 +738,12 @@ class Logger {
 	 * @throws IOException if something goes wrong during flushing, an exception is thrown.
 	 */
 	public static void main(String[] args) throws IOException {
-		Logger logger = new Logger();
-		logger.open("log.log");
+		Clock clock = new RealClock();
+		Logger logger = new Logger(clock);
+		logger.open("log.log", true);
 		for (int i = 0; i < 110; i++) {
 			logger.println("Hello World!");
-			try { Thread.sleep(100); } catch (InterruptedException e) { e.printStackTrace(); }
+			clock.sleep(100);
 		}
 		logger.write("done");
 		logger.close();
@@ -20,10 +20,11 @@ public class Map extends MapZone{
 	/**
 	 * Tells if a point is inside the intervention zone.
 	 * 
-	 * @param p the point that one wants to know the belonging to the inside of the intervention zone.
+	 * @param x the x coordinate of the point that one wants to know the belonging to the inside of the intervention zone.
+	 * @param y the y coordinate of the point that one wants to know the belonging to the inside of the intervention zone.
 	 * @return true if the point is inside the intevention zone, false otherwise.
 	 */
-	public boolean inside(Point p) {		
-		return p.x>center.x-(length/2) && p.x<center.x+(length/2) && p.y>center.y-(width/2) && p.y<center.y+(width/2);
+	public boolean inside(float x, float y) {
+		return x>center.x-(length/2) && x<center.x+(length/2) && y>center.y-(width/2) && y<center.y+(width/2);
 	}
 }
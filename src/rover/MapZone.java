@@ -2,6 +2,7 @@ package rover;
 
 import lejos.robotics.geometry.Point;
 import lejos.robotics.navigation.Pose;
+import tools.Vec;
 
 /**
  * Absolute frame: origin left down (starting zone side is down) corner of the map; X axis is defined along the length of the map
@@ -20,10 +21,31 @@ abstract class MapZone {
 	
 	/**
 	 * Any map extending MapZone should be able to tell whether is inside or outside the border defining them. 
+	 * Coordinates are given separately, so that the test does not need any allocation.
+	 * 
+	 * @param x the x coordinate of the point that one wants to know the belonging to the inside of the MapZone.
+	 * @param y the y coordinate of the point that one wants to know the belonging to the inside of the MapZone.
+	 * @return true if the point is inside the MapZone, false otherwise.
+	 */
+	abstract boolean inside(float x, float y);
+	
+	/**
+	 * Tells if a point is inside the MapZone.
 	 * 
 	 * @param p the point that one wants to know the belonging to the inside of the MapZone.
 	 * @return true if the point is inside the MapZone, false otherwise.
 	 */
-	abstract boolean inside(Point p);
+	boolean inside(Point p) {
+		return this.inside(p.x, p.y);
+	}
+	/**
+	 * Tells if a vector is inside the MapZone.
+	 * 
+	 * @param v the vector that one wants to know the belonging to the inside of the MapZone.
+	 * @return true if the vector is inside the MapZone, false otherwise.
+	 */
+	boolean inside(Vec v) {
+		return this.inside(v.x, v.y);
+	}
 
 }
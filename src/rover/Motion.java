@@ -0,0 +1,181 @@
+package rover;
+
+import tools.Clock;
+
+/**
+ * A completion handle for a motion of the rover, i.e. a pair of rotations of both tracks.
+ *
+ * A motion is done when both engines are at rest. The navigator is notified by the motors themselves, through their
+ * move-complete listener, and checks the handle of the current motion. Waiting for a motion hence parks the calling
+ * thread instead of spinning, which leaves the CPU to the sensor and logging threads. A waiting thread is only woken up
+ * when the handle is signalled: by the listener for the current motion, by its launch for a null rotation, which never
+ * moves, and by the release of its last hold for a queue of segments.
+ *
+ * @author Antoine Stevan
+ *
+ * @see Navigator
+ */
+public class Motion {
+	/** The right engine of the rover. */
+	private Engine right;
+	/** The left engine of the rover. */
+	private Engine left;
+	/** The clock the waiting threads are parked along. */
+	private final Clock clock;
+	/** Tells whether both engines are at rest. */
+	private boolean done;
+	/** A callback to be run once the motion is done. */
+	private Runnable callback;
+	/** The number of holds preventing the motion from being done, e.g. segments still queued behind it. */
+	private int holds;
+	/** The moments both tracks started and stopped, in nanoseconds: right start, left start, right stop, left stop. */
+	private final long[] events = new long[4];
+	/** Tells whether the skews of the motion have already been reported. */
+	private boolean reported;
+
+	/**
+	 * Builds the handle of a motion of both engines.
+	 *
+	 * @param right the right engine of the rover.
+	 * @param left the left engine of the rover.
+	 * @param clock the clock the waiting threads are parked along.
+	 */
+	Motion(Engine right, Engine left, Clock clock) {
+		this.right    = right;
+		this.left     = left;
+		this.clock    = clock;
+		this.done     = false;
+		this.callback = null;
+		this.holds    = 0;
+		this.reported = false;
+	}
+
+	/**
+	 * Checks whether both engines are at rest and, if so, completes the motion.
+	 * Called by the navigator when a motor notifies the end of a rotation.
+	 */
+	void check() {
+		Runnable callback;
+		synchronized (this) {
+			if (this.done || this.holds > 0 || this.right.device.isMoving() || this.left.device.isMoving()) { return; }
+			this.done = true;
+			this.clock.signal(this);
+			callback = this.callback;
+			this.callback = null;
+		}
+		if (callback != null) { callback.run(); }
+	}
+
+	/**
+	 * Records the moment a track started or stopped, as notified by its motor.
+	 *
+	 * @param right true for the right track, false for the left one.
+	 * @param stop true if the track stopped, false if it started.
+	 * @param time the moment of the event, in nanoseconds.
+	 */
+	synchronized void event(boolean right, boolean stop, long time) {
+		this.events[(stop? 2 : 0) + (right? 0 : 1)] = time;
+	}
+
+	/**
+	 * Tells, once, whether the skews of the motion can be reported, i.e. if it is done and both tracks have notified
+	 * their start and stop.
+	 *
+	 * @return true the first time the skews are available, false otherwise.
+	 */
+	synchronized boolean report() {
+		if (this.reported || !this.done) { return false; }
+		for (int i = 0; i < this.events.length; i++) {
+			if (this.events[i] == 0) { return false; }
+		}
+		this.reported = true;
+		return true;
+	}
+
+	/**
+	 * Gives the measured skew between the starts of both tracks.
+	 *
+	 * @return the time between the starts of both tracks, in nanoseconds.
+	 */
+	public synchronized long start_skew() {
+		return Math.abs(this.events[0] - this.events[1]);
+	}
+
+	/**
+	 * Gives the measured skew between the stops of both tracks.
+	 *
+	 * @return the time between the stops of both tracks, in nanoseconds.
+	 */
+	public synchronized long end_skew() {
+		return Math.abs(this.events[2] - this.events[3]);
+	}
+
+	/**
+	 * Prevents the motion from being done, even if both engines are at rest, until {@link Motion#release()} is called.
+	 * Used by motions made of several segments, during which the engines might briefly stop.
+	 */
+	synchronized void hold() {
+		this.holds++;
+	}
+
+	/**
+	 * Releases a hold taken with {@link Motion#hold()}, and completes the motion if possible.
+	 */
+	void release() {
+		synchronized (this) {
+			this.holds--;
+		}
+		this.check();
+	}
+
+	/**
+	 * Tells whether the motion is done.
+	 *
+	 * @return true if both engines are at rest, false otherwise.
+	 */
+	public synchronized boolean isDone() {
+		return this.done;
+	}
+
+	/**
+	 * Waits for the motion to be done, parking the calling thread.
+	 * If the thread is interrupted, the method returns early and the interruption is kept.
+	 *
+	 * @return the number of times the thread woke up while waiting, whether signalled or timed out.
+	 */
+	public int await() {
+		int wakeups = 0;
+		while (!this.isDone()) {
+			synchronized (this) {
+				if (!this.done) {
+					try {
+						this.clock.await(this, 0);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return wakeups;
+					}
+					wakeups++;
+				}
+			}
+			this.check();
+		}
+		return wakeups;
+	}
+
+	/**
+	 * Registers a callback to be run once the motion is done.
+	 * The callback is run by the thread which completes the motion, i.e. usually the motor listener, so it should be
+	 * short. If the motion is already done, the callback is run immediately.
+	 *
+	 * @param callback the callback to be run, replacing any previous one.
+	 */
+	public void then(Runnable callback) {
+		synchronized (this) {
+			if (!this.done) {
+				this.callback = callback;
+				return;
+			}
+		}
+		callback.run();
+	}
+}
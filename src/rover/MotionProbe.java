@@ -0,0 +1,20 @@
+package rover;
+
+/**
+ * An instrumentation hook on the motions of the rover.
+ * Once registered with {@link Navigator#setProbe(MotionProbe)}, a probe is told the measured skews between both tracks
+ * of every motion which has started and stopped.
+ * 
+ * @author Antoine Stevan
+ *
+ */
+public interface MotionProbe {
+	/**
+	 * Records the skews of a completed motion.
+	 * Called by the thread of the motor listener, so it should be short.
+	 * 
+	 * @param start_skew the time between the starts of both tracks, in nanoseconds.
+	 * @param end_skew the time between the stops of both tracks, in nanoseconds.
+	 */
+	void skew(long start_skew, long end_skew);
+}
@@ -0,0 +1,127 @@
+package rover;
+
+/**
+ * The hardware abstraction of a regulated motor, as driven by an {@link Engine}.
+ *
+ * It mirrors the subset of leJOS' RegulatedMotor used by the rover, so that the navigation code never depends on the
+ * brick itself: the leJOS implementation simply delegates to a motor plugged into a port of the brick whereas the
+ * simulated one integrates a trapezoidal speed profile over a virtual time.
+ * Angles are in degrees, speeds in degrees per second and accelerations in degrees per second per second.
+ *
+ * @author Antoine Stevan
+ *
+ * @see LejosMotor
+ * @see SimMotor
+ */
+public interface MotorDevice {
+	/**
+	 * Opens the motor, i.e. binds it to the underlying hardware.
+	 * Any error is thrown, e.g. when nothing is plugged into the port of a physical motor.
+	 */
+	void open();
+
+	/**
+	 * Gives a human readable name of the motor, e.g. the name of its port.
+	 *
+	 * @return the name of the motor.
+	 */
+	String getName();
+
+	/** Resets the tacho count of the motor to zero. */
+	void resetTachoCount();
+
+	/**
+	 * Gives the tacho count of the motor.
+	 *
+	 * @return the rotation of the motor since the last reset, in degrees.
+	 */
+	int getTachoCount();
+
+	/**
+	 * Gives the actual rotation speed of the motor.
+	 *
+	 * @return the current speed of the motor, in degrees per second.
+	 */
+	int getRotationSpeed();
+
+	/**
+	 * Sets the speed of the motor, applied immediately, even during a rotation.
+	 *
+	 * @param speed the speed of the motor, in degrees per second.
+	 */
+	void setSpeed(int speed);
+
+	/**
+	 * Sets the acceleration of the motor.
+	 *
+	 * @param acceleration the acceleration of the motor, in degrees per second per second.
+	 */
+	void setAcceleration(int acceleration);
+
+	/**
+	 * Rotates the motor relatively to its current tacho count.
+	 *
+	 * @param angle the rotation, in degrees.
+	 * @param immediateReturn if true, the method returns immediately, otherwise once the rotation is done.
+	 */
+	void rotate(int angle, boolean immediateReturn);
+
+	/**
+	 * Rotates the motor relatively to its current tacho count, waiting for the rotation to be done.
+	 *
+	 * @param angle the rotation, in degrees.
+	 */
+	void rotate(int angle);
+
+	/**
+	 * Rotates the motor to an absolute tacho count.
+	 *
+	 * @param target the target tacho count, in degrees.
+	 * @param immediateReturn if true, the method returns immediately, otherwise once the rotation is done.
+	 */
+	void rotateTo(int target, boolean immediateReturn);
+
+	/** Makes the motor rotate forward until stopped. */
+	void forward();
+
+	/** Makes the motor rotate backward until stopped. */
+	void backward();
+
+	/**
+	 * Stops the motor, decelerating down to rest.
+	 *
+	 * @param immediateReturn if true, the method returns immediately, otherwise once the motor is at rest.
+	 */
+	void stop(boolean immediateReturn);
+
+	/** Stops the motor, waiting for it to be at rest. */
+	void stop();
+
+	/**
+	 * Tells whether the motor is moving.
+	 *
+	 * @return true if the motor is rotating, false if it is at rest.
+	 */
+	boolean isMoving();
+
+	/**
+	 * Synchronizes the motor with others, so that commands given between {@link MotorDevice#startSynchronization()} and
+	 * {@link MotorDevice#endSynchronization()} are applied together.
+	 *
+	 * @param others the motors to be synchronized with this one, of the same implementation.
+	 */
+	void synchronizeWith(MotorDevice[] others);
+
+	/** Opens a group of synchronized commands. */
+	void startSynchronization();
+
+	/** Closes a group of synchronized commands, which are then applied together. */
+	void endSynchronization();
+
+	/**
+	 * Registers the listener told when the motor starts and stops, replacing any previous one.
+	 *
+	 * @param listener the listener of the motor.
+	 */
+	void addListener(MotorListener listener);
+}
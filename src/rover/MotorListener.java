@@ -0,0 +1,30 @@
+package rover;
+
+/**
+ * The listener of a {@link MotorDevice}, told when the motor starts and stops a rotation.
+ * It is called by the thread regulating the motor, hence it should be short.
+ *
+ * @author Antoine Stevan
+ *
+ */
+public interface MotorListener {
+	/**
+	 * Called when the motor starts a rotation.
+	 *
+	 * @param motor the motor which started.
+	 * @param tachoCount the tacho count of the motor at the start, in degrees.
+	 * @param stalled true if the motor is stalled.
+	 * @param timeStamp the moment of the start, in milliseconds.
+	 */
+	void rotationStarted(MotorDevice motor, int tachoCount, boolean stalled, long timeStamp);
+
+	/**
+	 * Called when the motor stops a rotation.
+	 *
+	 * @param motor the motor which stopped.
+	 * @param tachoCount the tacho count of the motor at the stop, in degrees.
+	 * @param stalled true if the motor is stalled.
+	 * @param timeStamp the moment of the stop, in milliseconds.
+	 */
+	void rotationStopped(MotorDevice motor, int tachoCount, boolean stalled, long timeStamp);
+}
@@ -2,6 +2,9 @@ package rover;
 
 import lejos.robotics.geometry.Point;
 import lejos.robotics.navigation.Pose;
+import tools.Clock;
+import tools.RealClock;
+import tools.Telemetry;
 
 /**
  * A navigator is the central control of the rover's movements.
@@ -18,6 +21,63 @@ public class Navigator {
 	private Engine right;
 	/** The left engine of the rover. */
 	private Engine left;
+	/** The continuous estimation of the pose, from the tachometers. */
+	private Odometry odometry;
+	/** The right tacho count at the beginning of the current setup motion, in degrees. */
+	private int r_origin;
+	/** The left tacho count at the beginning of the current setup motion, in degrees. */
+	private int l_origin;
+	/** The completion handle of the last launched motion. */
+	private volatile Motion current;
+	/** The total time spent waiting for blocking motions, along the clock of the rover, in nanoseconds. */
+	private long waited;
+	/** The number of times the thread waiting for blocking motions woke up, see {@link Motion#await()}. */
+	private long wakeups;
+	/** The ultrasonic sensor giving the clearance in front of the rover, or null if there is none. */
+	private UltraEyes eyes;
+	/** The instrumentation hook told the skews of every motion, or null. */
+	private MotionProbe probe;
+	/** The number of motions whose skews have been measured. */
+	private int  skews;
+	/** The largest measured start skew, in nanoseconds. */
+	private long max_start_skew;
+	/** The largest measured end skew, in nanoseconds. */
+	private long max_end_skew;
+	/** The closed-loop heading hold of straight travels. */
+	private HeadingHold hold;
+	/** The clock of the rover, giving every timestamp and wait of the navigator. */
+	private final Clock clock;
+	
+	/** The maximum number of segments waiting inside the motion queue, e.g. a whole blended sweep of the map. */
+	static final int queue_capacity = 256;
+	/** The remaining rotation of both tracks under which the next queued segment is launched, in degrees. */
+	static final int blend = 30;
+	/** The segments waiting inside the motion queue, as a circular buffer. Also the lock of the queue. */
+	private final Segment[] queue = new Segment[Navigator.queue_capacity];
+	/** The index of the first segment waiting inside the motion queue. */
+	private int q_head;
+	/** The number of segments waiting inside the motion queue. */
+	private int q_size;
+	/** Incremented by every cancellation, so that the feeder drops the segment it is following. */
+	private int generation;
+	/** The completion handle of the whole queue, or null if the queue is idle. */
+	private Motion path;
+	/** The number of segments completed since the queue was last idle. */
+	private volatile int completed;
+	/** The absolute target of the right engine while following the queue, in degrees. */
+	private int r_target;
+	/** The absolute target of the left engine while following the queue, in degrees. */
+	private int l_target;
+	/** The background thread which feeds the queued segments to the engines. */
+	private Thread feeder;
+	/** The scheduler polling the tachometers, which tells the feeder when to blend the next segment. */
+	private final Scheduler scheduler;
+	/** The identifier of the task watching the end of the segment in flight inside the scheduler. */
+	private final int blend_task;
+	/** The segment in flight whose end is watched by the scheduler, or null. */
+	private volatile Motion blending;
+	/** Tells whether the end of the watched segment has been reached. Only touched while holding the lock of the queue. */
+	private boolean blended;
 	
 	/**
 	 * The way to contruct a Navigator for a Rover.
@@ -27,9 +87,174 @@ public class Navigator {
 	 * @param left the left engine of the rover.
 	 */
 	public Navigator(Pose initialPose, Engine right, Engine left) {
+		this(initialPose, right, left, new RealClock());
+	}
+	
+	/**
+	 * The way to contruct a Navigator for a Rover, along a given clock, e.g. the virtual clock of a simulation.
+	 * 
+	 * @param initialPose the initial pose of the rover.
+	 * @param right the right engine of the rover.
+	 * @param left the left engine of the rover.
+	 * @param clock the clock of the rover.
+	 */
+	public Navigator(Pose initialPose, Engine right, Engine left, Clock clock) {
+		this(initialPose, right, left, new Scheduler(clock));
+	}
+	
+	/**
+	 * The way to contruct a Navigator for a Rover, whose scheduler polls the tacho counts of both tracks and integrates
+	 * the odometry.
+	 * 
+	 * @param initialPose the initial pose of the rover.
+	 * @param right the right engine of the rover.
+	 * @param left the left engine of the rover.
+	 * @param scheduler the scheduler of the rover, whose clock is the one of the navigator.
+	 */
+	Navigator(Pose initialPose, Engine right, Engine left, Scheduler scheduler) {
+		this(initialPose, right, left, scheduler, Rover.fixed_point);
+	}
+	
+	/**
+	 * The way to contruct a Navigator for a Rover, with a given backend of its odometry.
+	 * 
+	 * @param initialPose the initial pose of the rover.
+	 * @param right the right engine of the rover.
+	 * @param left the left engine of the rover.
+	 * @param scheduler the scheduler of the rover, whose clock is the one of the navigator.
+	 * @param fixed true for the fixed-point backend of the odometry, false for the floating-point one.
+	 */
+	Navigator(Pose initialPose, Engine right, Engine left, Scheduler scheduler, boolean fixed) {
 		this.pose = initialPose;
 		this.right = right;
 		this.left = left;
+		this.clock = scheduler.clock;
+		// the tachometers are polled right before the odometry integrates them, inside the same slot.
+		right.schedule(scheduler, "right");
+		left.schedule(scheduler, "left");
+		this.odometry = new Odometry(initialPose, right, left, fixed, this.clock);
+		this.odometry.schedule(scheduler);
+		this.hold = new HeadingHold(right, left, scheduler);
+		this.scheduler  = scheduler;
+		this.blend_task = scheduler.add("blend", new Scheduler.Task() {
+			public float poll(long time) {
+				return Navigator.this.watch();
+			}
+		}, Odometry.period/Scheduler.slot, Engine.deadline/Scheduler.slot);
+		// both tracks are always commanded together.
+		this.right.pair(this.left);
+	}
+	
+	/**
+	 * Starts the background services of the navigator, i.e. the continuous odometry and the motion completion events.
+	 * Once started, the pose is updated from the tachometers at the end of every motion, instead of being computed from
+	 * the commanded motion, and {@link Navigator#snapshot(float[])} gives the pose of the rover during motions. Both
+	 * motors notify the navigator when they stop, so that waiting for a {@link Motion} does not need to poll them, and
+	 * they are synchronized so that they start, are regulated and stop as a unit. Straight travels are kept straight by
+	 * a {@link HeadingHold}.
+	 * Engines have to be connected beforehand.
+	 */
+	public void start() {
+		MotorListener listener = new MotorListener() {
+			public void rotationStarted(MotorDevice motor, int tachoCount, boolean stalled, long timeStamp) {
+				Motion motion = Navigator.this.current;
+				if (motion != null) { motion.event(motor == Navigator.this.right.device, false, Navigator.this.clock.nanoTime()); }
+			}
+			public void rotationStopped(MotorDevice motor, int tachoCount, boolean stalled, long timeStamp) {
+				Motion motion = Navigator.this.current;
+				if (motion != null) {
+					motion.event(motor == Navigator.this.right.device, true, Navigator.this.clock.nanoTime());
+					motion.check();
+					if (motion.report()) { Navigator.this.skewed(motion.start_skew(), motion.end_skew()); }
+				}
+			}
+		};
+		this.right.device.addListener(listener);
+		this.left.device.addListener(listener);
+		this.right.synchronize();
+		
+		this.odometry.reset(this.pose.getX(), this.pose.getY(), this.pose.getHeading());
+		this.odometry.start();
+		this.hold.start();
+	}
+	
+	/**
+	 * Stops the closed-loop services of the navigator, i.e. the heading hold and the blending of queued motions, e.g. when
+	 * the rover goes to sleep. The tracks are not commanded by the scheduler anymore.
+	 */
+	void stop() {
+		this.hold.stop();
+		this.scheduler.suspend(this.blend_task);
+	}
+	
+	/**
+	 * Launches both engines together, with immediate return.
+	 * 
+	 * @param r_theta the rotation of the right engine, in degrees.
+	 * @param l_theta the rotation of the left engine, in degrees.
+	 * @return the completion handle of the motion.
+	 */
+	private Motion launch(int r_theta, int l_theta) {
+		Motion motion = new Motion(this.right, this.left, this.clock);
+		this.current = motion;
+		this.hold.disengage();
+		int r_start = this.right.device.getTachoCount();
+		int l_start = this.left.device.getTachoCount();
+		int speed = this.profile(r_theta, l_theta);
+		this.right.rotate(r_theta, l_theta);
+		if (r_theta == l_theta) { this.hold.engage(speed, r_theta, r_start, l_start); }
+		// a null rotation never starts, hence never notifies its end.
+		motion.check();
+		return motion;
+	}
+	
+	/**
+	 * Accounts for the measured skews of a motion, and tells the probe if any.
+	 * 
+	 * @param start_skew the time between the starts of both tracks, in nanoseconds.
+	 * @param end_skew the time between the stops of both tracks, in nanoseconds.
+	 */
+	private synchronized void skewed(long start_skew, long end_skew) {
+		this.skews++;
+		this.max_start_skew = Math.max(this.max_start_skew, start_skew);
+		this.max_end_skew   = Math.max(this.max_end_skew,   end_skew);
+		MotionProbe probe = this.probe;
+		if (probe != null) { probe.skew(start_skew, end_skew); }
+	}
+	
+	/**
+	 * Sets the velocity profile of both tracks for a segment, looked up from its length and the clearance ahead.
+	 * Speeds and accelerations are scaled so that both tracks end together, e.g. along an arc.
+	 * 
+	 * @param r_theta the rotation of the right engine along the segment, in degrees.
+	 * @param l_theta the rotation of the left engine along the segment, in degrees.
+	 * @return the cruise speed of the fastest track, in degrees per second.
+	 */
+	private int profile(int r_theta, int l_theta) {
+		int max = Math.max(Math.abs(r_theta), Math.abs(l_theta));
+		// the sensor only looks forward, i.e. when both tracks go forward (motors are mounted backwards).
+		float clearance = (r_theta < 0 && l_theta < 0 && this.eyes != null)? this.eyes.latest() : Float.POSITIVE_INFINITY;
+		int index = SpeedProfile.index(max, clearance);
+		int speed = SpeedProfile.speed(index);
+		int accel = SpeedProfile.acceleration(index);
+		if (max == 0) {
+			this.right.setProfile(speed, speed, accel, accel);
+		} else {
+			this.right.setProfile(speed*Math.abs(r_theta)/max, speed*Math.abs(l_theta)/max,
+								  accel*Math.abs(r_theta)/max, accel*Math.abs(l_theta)/max);
+		}
+		return speed;
+	}
+	
+	/**
+	 * Waits for a motion to be done, and accounts for the time spent waiting and for the wake-ups.
+	 * 
+	 * @param motion the motion to wait for.
+	 */
+	private void await(Motion motion) {
+		long start = this.clock.nanoTime();
+		this.wakeups += motion.await();
+		this.waited  += this.clock.nanoTime() - start;
 	}
 	
 	//######################################################################################################################
@@ -46,14 +271,10 @@ public class Navigator {
 		// a negative sign has to be introduced because it was more convenient to mount motors backwards.
 		int theta = (int)(-angle * Rover.HALF_AXIS_DIFF/Rover.WHEEL_RADIUS);
 		// both motors move together.
-		this.right.device.rotate(theta, true);
-		this.left.device.rotate(-theta, true);
-		while (this.left.device.isMoving() || this.right.device.isMoving()) {
-			Thread.yield();
-		}
+		this.await(this.launch(theta, -theta));
 		// when rotation ends, need to add the angle to the current heading of the rover.
 		// no - sign required because the motors do not affect the coordinate system, which is introduced in the main doc.
-		this.pose.setHeading(this.pose.getHeading()+angle);
+		this.end_rotation(this.pose.getHeading()+angle);
 	}
 	/**
 	 * Wrapper of the {@link Navigator}{@link #rotate(float)} method.
@@ -70,20 +291,19 @@ public class Navigator {
 	 * @param angle the relative angle, in degrees.
 	 * @param immediate_return if true, the execution continues, allowing the user to do other stuff during rotation.
 	 * Otherwise, the program halts and waits for the rotation to end.
+	 * @return the completion handle of the rotation.
 	 */
-	public void rotate(float angle, boolean immediate_return) {
+	public Motion rotate(float angle, boolean immediate_return) {
 		// remarks are the same as above.
 		int theta = (int)(-angle * Rover.HALF_AXIS_DIFF/Rover.WHEEL_RADIUS);
-		this.right.device.rotate(theta, immediate_return);
-		this.left.device.rotate(-theta, immediate_return);
+		Motion motion = this.launch(theta, -theta);
 		if (!immediate_return) {
-			while (this.left.device.isMoving() || this.right.device.isMoving()) {
-				Thread.yield();
-			}
-			this.pose.setHeading(this.pose.getHeading()+angle);
+			this.await(motion);
+			this.end_rotation(this.pose.getHeading()+angle);
 		}
 		// else the method returns immediately. user have to take care of the pose of the rover,
 		// e.g. by using Navigatorcompute_new_heading()
+		return motion;
 	}
 	/**
 	 * Wrapper of the {@link Navigator}{@link #rotateTo(float, boolean)} method.
@@ -91,9 +311,10 @@ public class Navigator {
 	 * @param angle the relative angle, in degrees.
 	 * @param immediate_return if true, the execution continues, allowing the user to do other stuff during rotation.
 	 * Otherwise, the program halts and waits for the rotation to end.
+	 * @return the completion handle of the rotation.
 	 */
-	public void rotate(double angle, boolean immediate_return) {
-		this.rotate((float)angle, immediate_return);
+	public Motion rotate(double angle, boolean immediate_return) {
+		return this.rotate((float)angle, immediate_return);
 	}
 	/**
 	 * Sets up a rotation for the rover.
@@ -102,32 +323,35 @@ public class Navigator {
 	 * of the rover using tachometers.
 	 * 
 	 * @param angle the angle of rotation, in degrees.
+	 * @return the completion handle of the rotation.
 	 */
-	public void setup_rotate(int angle) {
-		// reset both tacho counts.
-		this.left.device.resetTachoCount();
-		this.right.device.resetTachoCount();
+	public Motion setup_rotate(int angle) {
+		// remember both tacho counts, they are not reset because the odometry relies on them.
+		this.mark_origin();
 		// launch rotation with immediate return
-		this.rotate(angle, true);		
+		return this.rotate(angle, true);
 	}
 	/**
 	 * Wrapper of the {@link Navigator#setup_rotate(int)} method.
 	 * 
 	 * @param angle the angle of rotation, in degrees.
+	 * @return the completion handle of the rotation.
 	 * @see Navigator#setup_rotate(int)
 	 */
-	public void setup_rotate(float angle) {
-		this.setup_rotate((int)angle);
+	public Motion setup_rotate(float angle) {
+		return this.setup_rotate((int)angle);
 	}
 	/**
-	 * Computes a new location, assuming straight travel, from previous location, using tacho counts.
+	 * Computes a new heading, assuming pure rotation, from previous heading, using tacho counts.
+	 * If the odometry is running, the pose is simply synchronized with it, which also accounts for any drift.
 	 * 
-	 * @see Navigator#setup_travel(int)
+	 * @see Navigator#setup_rotate(int)
 	 */
 	public void compute_new_heading() {
+		if (this.odometry.running()) { this.sync(); return; }
 		// get right and left tacho counts.
-		int l_tacho = this.left.device.getTachoCount();
-		int r_tacho = this.right.device.getTachoCount();
+		int l_tacho = this.left.device.getTachoCount()  - this.l_origin;
+		int r_tacho = this.right.device.getTachoCount() - this.r_origin;
 		// compute mean of both tachos, i.e.(l_tacho-r_tacho)/2, for more accuracy.
 		// as wheel rotations are opposed to perform a rover rotation, there is a - sign in the mean.
 		// and convert result to the angle of rotation using the formula between rover angle of rotation and motor angle of
@@ -151,13 +375,9 @@ public class Navigator {
 		// here the angle of rotation is angle-heading, by following the 'after-before' rule, with an extra - sign to
 		// compensate motors mounting, as explained above
 		int theta = (int)((-angle+this.pose.getHeading()) * Rover.HALF_AXIS_DIFF/Rover.WHEEL_RADIUS);
-		this.right.device.rotate(theta, true);
-		this.left.device.rotate(-theta, true);
-		while (this.left.device.isMoving() || this.right.device.isMoving()) {
-			Thread.yield();
-		}
+		this.await(this.launch(theta, -theta));
 		// here the new heading is directly the one given as argument.
-		this.pose.setHeading(angle);
+		this.end_rotation(angle);
 	}
 	/**
 	 * Rotates the rover to a given angle, in degrees.
@@ -166,18 +386,17 @@ public class Navigator {
 	 * @param angle the absolute angle, in degrees.
 	 * @param immediate_return if true, the execution continues, allowing the user to do other stuff during rotation.
 	 * Otherwise, the program halts and waits for the rotation to end.
+	 * @return the completion handle of the rotation.
 	 */
-	public void rotateTo(float angle, boolean immediate_return) {
+	public Motion rotateTo(float angle, boolean immediate_return) {
 		// remarks are the same as above
 		int theta = (int)((angle-this.pose.getHeading()) * Rover.HALF_AXIS_DIFF/Rover.WHEEL_RADIUS);
-		this.right.device.rotate(theta, immediate_return);
-		this.left.device.rotate(-theta, immediate_return);
+		Motion motion = this.launch(theta, -theta);
 		if (!immediate_return) {
-			while (this.left.device.isMoving() || this.right.device.isMoving()) {
-				Thread.yield();
-			}
-			this.pose.setHeading(angle);
+			this.await(motion);
+			this.end_rotation(angle);
 		}
+		return motion;
 	}
 	
 	//######################################################################################################################
@@ -193,13 +412,9 @@ public class Navigator {
 		// same - sign as explained above.
 		// here the rotation of each motor has to be converted in degrees and uses the formula for the length of an arc.
 		int theta = (int)(-length / Rover.WHEEL_RADIUS * 180 / Math.PI);
-		this.right.device.rotate(theta, true);
-		this.left.device.rotate( theta, true);
-		while (this.left.device.isMoving() || this.right.device.isMoving()) {
-			Thread.yield();
-		}
+		this.await(this.launch(theta, theta));
 		// the new location is 'length' m away, in the direction of the current heading.
-		this.pose.setLocation(this.pose.getLocation().pointAt(length, this.pose.getHeading()));
+		this.end_travel(length);
 	}
 	/**
 	 * Wrapper of the {@link Navigator}{@link #travel(float)} method.
@@ -216,18 +431,17 @@ public class Navigator {
 	 * @param length the relative distance, in m.
 	 * @param immediate_return if true, the execution continues, allowing the user to do other stuff during travel.
 	 * Otherwise, the program halts and waits for the travel to end.
+	 * @return the completion handle of the travel.
 	 */
-	public void travel(float length, boolean immediate_return) {
+	public Motion travel(float length, boolean immediate_return) {
 		// same remarks as above.
 		int theta = (int)(-length / Rover.WHEEL_RADIUS * 180 / Math.PI);
-		this.right.device.rotate(theta, immediate_return);
-		this.left.device.rotate( theta, immediate_return);
+		Motion motion = this.launch(theta, theta);
 		if (!immediate_return) {
-			while (this.left.device.isMoving() || this.right.device.isMoving()) {
-				Thread.yield();
-			}
-			this.pose.setLocation(this.pose.getLocation().pointAt(length, this.pose.getHeading()));
+			this.await(motion);
+			this.end_travel(length);
 		}
+		return motion;
 	}
 	/**
 	 * Sets up a travel for the rover.
@@ -236,32 +450,39 @@ public class Navigator {
 	 * of the rover using tachometers.
 	 * 
 	 * @param length the length of the travel, in m.
+	 * @return the completion handle of the travel.
 	 */
-	public void setup_travel(int length) {
-		this.left.device.resetTachoCount();
-		this.right.device.resetTachoCount();
-		this.travel(length, true);
+	public Motion setup_travel(int length) {
+		return this.setup_travel((float)length);
 	}
 	/**
 	 * Wrapper of the {@link Navigator#setup_travel(int)} method.
 	 * 
 	 * @param length the length of the travel, in m.
+	 * @return the completion handle of the travel.
 	 * @see Navigator#setup_travel(int)
 	 */
-	public void setup_travel(float length) {
-		this.setup_travel((int)length);
+	public Motion setup_travel(float length) {
+		this.mark_origin();
+		return this.travel(length, true);
 	}
 	/**
 	 * Computes a new location, assuming straight travel, from previous location, using tacho counts.
+	 * If the odometry is running, the pose is simply synchronized with it, which also accounts for any drift.
 	 * 
 	 * @return the vector representing the travel, from previous location to the new one.
 	 * 
 	 * @see Navigator#setup_travel(int)
 	 */
 	public Point compute_new_location() {
+		if (this.odometry.running()) {
+			Point prev = this.pose.getLocation();
+			this.sync();
+			return this.pose.getLocation().subtract(prev);
+		}
 		// get right and left tacho counts.
-		int l_tacho = this.left.device.getTachoCount();
-		int r_tacho = this.right.device.getTachoCount();
+		int l_tacho = this.left.device.getTachoCount()  - this.l_origin;
+		int r_tacho = this.right.device.getTachoCount() - this.r_origin;
 		// compute mean of both tachos, i.e.(l_tacho+r_tacho)/2, for more accuracy.
 		// convert result to radians, i.e. ...*(float)Math.PI/180
 		// and convert result to a distance using the formula between length of an arc and angle: arc = angle*radius
@@ -283,6 +504,71 @@ public class Navigator {
 	public Pose getPose() {
 		return this.pose;
 	}
+	/**
+	 * Getter for the 'waited' field.
+	 * It is the elapsed time of the blocking motions, along the clock of the rover, not the CPU time of the waiting
+	 * thread, which sleeps on the motion until it is done, see {@link Navigator#getWakeups()}.
+	 * @return the total time spent waiting for blocking motions, in nanoseconds.
+	 */
+	public long getWaitTime() {
+		return this.waited;
+	}
+	/**
+	 * Getter for the 'wakeups' field.
+	 * @return the number of times the thread waiting for blocking motions woke up.
+	 */
+	public long getWakeups() {
+		return this.wakeups;
+	}
+	/**
+	 * Setter for the 'eyes' field.
+	 * @param eyes the ultrasonic sensor giving the clearance in front of the rover, used to choose velocity profiles.
+	 */
+	void setEyes(UltraEyes eyes) {
+		this.eyes = eyes;
+	}
+	/**
+	 * Sets the telemetry receiving the tacho counts and the poses integrated by the odometry.
+	 * @param telemetry the telemetry, or null to stop recording.
+	 */
+	void setTelemetry(Telemetry telemetry) {
+		this.odometry.setTelemetry(telemetry);
+	}
+	/**
+	 * Setter for the 'probe' field.
+	 * @param probe the instrumentation hook told the skews of every motion, or null to remove it.
+	 */
+	public void setProbe(MotionProbe probe) {
+		this.probe = probe;
+	}
+	/**
+	 * Getter for the 'skews' field.
+	 * @return the number of motions whose skews have been measured.
+	 */
+	public int getSkewCount() {
+		return this.skews;
+	}
+	/**
+	 * Getter for the 'max_start_skew' field.
+	 * @return the largest measured skew between the starts of both tracks, in nanoseconds.
+	 */
+	public long getMaxStartSkew() {
+		return this.max_start_skew;
+	}
+	/**
+	 * Getter for the 'hold' field.
+	 * @return the heading hold of straight travels, with its per-leg error statistics.
+	 */
+	public HeadingHold getHeadingHold() {
+		return this.hold;
+	}
+	/**
+	 * Getter for the 'max_end_skew' field.
+	 * @return the largest measured skew between the stops of both tracks, in nanoseconds.
+	 */
+	public long getMaxEndSkew() {
+		return this.max_end_skew;
+	}
 	/**
 	 * Getter for the 'right' field.
 	 * @return the right engine of the rover.
@@ -303,6 +589,7 @@ public class Navigator {
 	 */
 	public void setHeading(int heading) {
 		this.pose.setHeading(heading);
+		this.pin();
 	}
 	/**
 	 * Setter for the 'heading' subfield of the 'pose' field.
@@ -310,6 +597,43 @@ public class Navigator {
 	 */
 	public void setHeading(float heading) {
 		this.pose.setHeading((int)heading);
+		this.pin();
+	}
+	/**
+	 * Setter for the 'location' subfield of the 'pose' field, e.g. after a calibration.
+	 * @param x the new x coordinate, in m.
+	 * @param y the new y coordinate, in m.
+	 */
+	public void setLocation(float x, float y) {
+		this.pose.setLocation(x, y);
+		this.pin();
+	}
+	/**
+	 * Gives the pose of the rover at the moment, even in the middle of a motion, without allocating anything.
+	 * If the odometry is not running, the pose of the last completed motion is given instead.
+	 * 
+	 * @param pose a destination array of at least 3 floats, filled with x (m), y (m) and heading (degrees).
+	 * @return the timestamp of the pose, in nanoseconds.
+	 */
+	public long snapshot(float[] pose) {
+		if (this.odometry.running()) { return this.odometry.read(pose); }
+		pose[0] = this.pose.getX();
+		pose[1] = this.pose.getY();
+		pose[2] = this.pose.getHeading();
+		return this.clock.nanoTime();
+	}
+	/**
+	 * Gives the pose the rover had at a given moment, interpolated from the history of the odometry, without allocating
+	 * anything. It is meant to align sensor samples, which arrive with some latency, with the pose of the rover.
+	 * If the odometry is not running, the pose of the last completed motion is given instead.
+	 * 
+	 * @param nanos the moment of interest, in nanoseconds (see {@link Clock#nanoTime()}).
+	 * @param pose a destination array of at least 3 floats, filled with x (m), y (m) and heading (degrees).
+	 * @return the timestamp of the pose, in nanoseconds.
+	 */
+	public long poseAt(long nanos, float[] pose) {
+		if (this.odometry.running()) { return this.odometry.pose_at(nanos, pose); }
+		return this.snapshot(pose);
 	}
 
 	//######################################################################################################################
@@ -319,8 +643,7 @@ public class Navigator {
 	 * Forces all the motors to go forward.
 	 */
 	public void forward() {
-		this.right.device.forward();
-		this.left.device.forward();
+		this.right.forward();
 	}
 
 	/**
@@ -340,6 +663,297 @@ public class Navigator {
 	 */
 	public void add_dist(float dist) {
 		this.pose.setLocation(this.pose.pointAt(dist, this.pose.getHeading()));
+		this.pin();
+	}
+	
+	/**
+	 * Remembers the current tacho counts as the origin of the current setup motion.
+	 * Tacho counts are never reset by the navigator, because the odometry integrates them continuously.
+	 */
+	private void mark_origin() {
+		this.l_origin = this.left.device.getTachoCount();
+		this.r_origin = this.right.device.getTachoCount();
+	}
+	
+	/**
+	 * Synchronizes the pose with the odometry, right now.
+	 */
+	private void sync() {
+		this.odometry.refresh();
+		this.odometry.copy_to(this.pose);
+	}
+	
+	/**
+	 * Forces the odometry to the pose, after the pose has been explicitly set.
+	 */
+	private void pin() {
+		this.odometry.reset(this.pose.getX(), this.pose.getY(), this.pose.getHeading());
+	}
+	
+	/**
+	 * Updates the heading at the end of a blocking rotation.
+	 * 
+	 * @param heading the commanded heading, in degrees, used when the odometry is not running.
+	 */
+	private void end_rotation(float heading) {
+		if (this.odometry.running()) { this.sync(); } else { this.pose.setHeading(heading); }
+	}
+	
+	/**
+	 * Updates the location at the end of a blocking travel.
+	 * 
+	 * @param length the commanded length, in m, used when the odometry is not running.
+	 */
+	private void end_travel(float length) {
+		if (this.odometry.running()) {
+			this.sync();
+		} else {
+			this.pose.setLocation(this.pose.getLocation().pointAt(length, this.pose.getHeading()));
+		}
+	}
+	
+	//######################################################################################################################
+	//### Motion queue. ####################################################################################################
+	//######################################################################################################################
+	/**
+	 * Queues a list of segments, to be followed one after the other by the rover.
+	 * A feeder thread launches each segment as soon as the previous one is done or, when both tracks keep their direction,
+	 * slightly before its end so that the tracks do not stop in between. The pose is updated after every segment. The
+	 * queue must not be mixed with the other motion commands: one should wait for it or {@link Navigator#cancel()} it
+	 * beforehand.
+	 * 
+	 * @param segments the segments to be followed.
+	 * @return the completion handle of the whole queue, done when every queued segment is.
+	 * @throws IllegalStateException if the queue cannot hold all the segments.
+	 */
+	public Motion follow(Segment[] segments) {
+		synchronized (this.queue) {
+			if (this.q_size + segments.length > Navigator.queue_capacity) {
+				throw new IllegalStateException("motion queue full");
+			}
+			if (segments.length == 0) {
+				// nothing to add: the handle of the queue in flight, or an already released one if the queue is idle.
+				if (this.path != null) { return this.path; }
+				Motion idle = new Motion(this.right, this.left, this.clock);
+				idle.hold();
+				idle.release();
+				return idle;
+			}
+			if (this.path == null) {
+				// the queue is idle, engines are at rest.
+				this.path = new Motion(this.right, this.left, this.clock);
+				this.path.hold();
+				this.completed = 0;
+				this.r_target = this.right.device.getTachoCount();
+				this.l_target = this.left.device.getTachoCount();
+			}
+			for (int i = 0; i < segments.length; i++) {
+				this.queue[(this.q_head + this.q_size) % Navigator.queue_capacity] = segments[i];
+				this.q_size++;
+			}
+			if (this.feeder == null) {
+				this.feeder = this.clock.start(new Runnable() {
+					public void run() {
+						Navigator.this.feed();
+					}
+				}, "motion-feeder");
+			}
+			this.clock.signal(this.queue);
+			return this.path;
+		}
+	}
+	
+	/**
+	 * Follows a smooth trajectory through a list of waypoints, from the current pose.
+	 * Waypoints are joined by straight legs and blended corners, see {@link Trajectory}, so that the rover does not stop
+	 * at each of them to rotate in place.
+	 * 
+	 * @param waypoints the waypoints to go through.
+	 * @param radius the radius of the corners, in m.
+	 * @return the completion handle of the whole trajectory.
+	 */
+	public Motion follow(Point[] waypoints, float radius) {
+		return this.follow(Trajectory.plan(this.pose.getX(), this.pose.getY(), this.pose.getHeading(),
+										   waypoints, radius, null));
+	}
+	
+	/**
+	 * Cancels the queue: the segment in flight is stopped and the waiting ones are dropped.
+	 * Once the tracks are at rest, the pose is updated from the odometry if it is running and the handle of the queue is
+	 * done.
+	 */
+	public void cancel() {
+		Motion path;
+		synchronized (this.queue) {
+			this.q_size = 0;
+			this.generation++;
+			path = this.path;
+			this.path = null;
+		}
+		this.hold.disengage();
+		this.right.stop();
+		Motion motion = this.current;
+		if (motion != null) { this.await(motion); }
+		if (this.odometry.running()) { this.sync(); }
+		if (path != null) { path.release(); }
+	}
+	
+	/**
+	 * Getter for the 'completed' field.
+	 * @return the number of segments completed since the motion queue was last idle.
+	 */
+	public int getCompletedSegments() {
+		return this.completed;
+	}
+	
+	/**
+	 * Main loop of the feeder thread, which launches the queued segments one after the other.
+	 */
+	private void feed() {
+		Segment segment = null;
+		Motion  motion  = null;
+		int     gen     = 0;
+		while (true) {
+			synchronized (this.queue) {
+				if (motion == null || gen != this.generation) {
+					// idle, or the segment in flight has been cancelled: wait for new segments.
+					while (this.q_size == 0) {
+						try { this.clock.await(this.queue, 0); } catch (InterruptedException e) { }
+					}
+					gen = this.generation;
+					segment = this.poll();
+					motion = this.launch(segment);
+				}
+			}
+			
+			Segment next;
+			synchronized (this.queue) { next = (this.q_size > 0)? this.queue[this.q_head] : null; }
+			if (next != null && segment.blends_with(next)) {
+				// launch the next segment a bit before the end of this one, so that the tracks do not stop: the scheduler
+				// watches the tachometers and tells when.
+				synchronized (this.queue) {
+					this.blended  = false;
+					this.blending = motion;
+					this.scheduler.resume(this.blend_task);
+					while (!this.blended) {
+						try { this.clock.await(this.queue, 0); } catch (InterruptedException e) { }
+					}
+				}
+			} else {
+				motion.await();
+				// the final pose of the segment, waited for along the clock before taking the lock of the queue.
+				if (this.odometry.running()) { this.odometry.refresh(); }
+			}
+			
+			synchronized (this.queue) {
+				if (gen != this.generation) { motion = null; continue; }
+				this.end_segment(segment);
+				this.completed++;
+				if (this.q_size == 0) {
+					motion = null;
+					Motion path = this.path;
+					this.path = null;
+					path.release();
+				} else {
+					segment = this.poll();
+					motion = this.launch(segment);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Removes the first segment of the queue. Must be called while holding the lock of the queue.
+	 * 
+	 * @return the first segment of the queue.
+	 */
+	private Segment poll() {
+		Segment segment = this.queue[this.q_head];
+		this.queue[this.q_head] = null;
+		this.q_head = (this.q_head + 1) % Navigator.queue_capacity;
+		this.q_size--;
+		return segment;
+	}
+	
+	/**
+	 * Launches a queued segment, relatively to the targets of the previous one so that no rotation is lost when segments
+	 * are blended.
+	 * 
+	 * @param segment the segment to be launched.
+	 * @return the completion handle of the segment.
+	 */
+	private Motion launch(Segment segment) {
+		int r_theta = segment.r_theta();
+		int l_theta = segment.l_theta();
+		this.r_target += r_theta;
+		this.l_target += l_theta;
+		
+		Motion motion = new Motion(this.right, this.left, this.clock);
+		this.current = motion;
+		this.hold.disengage();
+		int speed = this.profile(r_theta, l_theta);
+		this.right.rotateTo(this.r_target, this.l_target);
+		// a blended travel is held relatively to where the tracks should have started it, so that the end of the previous
+		// segment is corrected as well.
+		if (segment.type == Segment.TRAVEL) {
+			this.hold.engage(speed, r_theta, this.r_target - r_theta, this.l_target - l_theta);
+		}
+		motion.check();
+		return motion;
+	}
+	
+	/**
+	 * Gives the rotation remaining before both engines reach the targets of the segment in flight, from their latest
+	 * polled tacho counts.
+	 * 
+	 * @return the largest remaining rotation of both engines, in degrees.
+	 */
+	private int remaining() {
+		return Math.max(Math.abs(this.r_target - (int)this.right.tacho()),
+						Math.abs(this.l_target - (int)this.left.tacho()));
+	}
+	
+	/**
+	 * Watches the end of the segment in flight, right after the polls of the tachometers, and wakes the feeder up once
+	 * the segment is done or close enough to its end to launch the next one. Scheduler thread only.
+	 * 
+	 * @return the remaining rotation of the watched segment, in degrees, or NaN if there is none.
+	 */
+	private float watch() {
+		Motion motion = this.blending;
+		if (motion == null) { return Float.NaN; }
+		int remaining = this.remaining();
+		if (motion.isDone() || remaining <= Navigator.blend) {
+			this.blending = null;
+			this.scheduler.suspend(this.blend_task);
+			synchronized (this.queue) {
+				this.blended = true;
+				this.clock.signal(this.queue);
+			}
+		}
+		return remaining;
+	}
+	
+	/**
+	 * Updates the pose at the end of a queued segment.
+	 * 
+	 * @param segment the segment which has just been completed.
+	 */
+	private void end_segment(Segment segment) {
+		if (this.odometry.running()) { this.odometry.copy_to(this.pose); return; }
+		// no odometry: trust the commanded segment.
+		float heading = this.pose.getHeading();
+		if (segment.type == Segment.ROTATE) {
+			this.pose.setHeading(heading + segment.angle);
+		} else if (segment.type == Segment.TRAVEL) {
+			this.pose.setLocation(this.pose.getLocation().pointAt(segment.length, heading));
+		} else {
+			// the chord of the arc goes along the mean heading.
+			float chord = 2*segment.radius*(float)Math.abs(Math.sin(Math.toRadians(segment.angle)/2));
+			this.pose.setLocation(this.pose.getLocation().pointAt(
+					(segment.angle*segment.radius >= 0)? chord : -chord, heading + segment.angle/2));
+			this.pose.setHeading(heading + segment.angle);
+		}
 	}
 	
 	//######################################################################################################################
@@ -349,7 +963,7 @@ public class Navigator {
 	 * Performs a blocking goto to a point.
 	 * 
 	 * @param point the goal of the goto
-	 * @deprecated one should consider using a combination of rotation and travel instead.
+	 * @deprecated one should consider using {@link Navigator#follow(Point[], float)} instead.
 	 */
 	public void goTo(Point point) {
 		Point direction = point.subtract(this.pose.getLocation());
@@ -357,8 +971,7 @@ public class Navigator {
 		this.travel(direction.length());
 		
 		// update location and heading.
-		this.pose.setLocation(point);
-		this.pose.setHeading(direction.angle());
+		this.arrive(point, direction);
 	}
 	/**
 	 * Performs a blocking goto
@@ -373,10 +986,19 @@ public class Navigator {
 		Point direction = point.subtract(this.pose.getLocation());
 		this.rotateTo(direction.angle()*180/(float)Math.PI, immediate_return);
 		this.travel(direction.length(), immediate_return);
-		if (!immediate_return) {
-			this.pose.setLocation(point);
-			this.pose.setHeading(direction.angle());
-		}
+		if (!immediate_return) { this.arrive(point, direction); }
+	}
+	/**
+	 * Updates the pose at the end of a goto: from the odometry if it is running, otherwise from the commanded goal.
+	 * 
+	 * @param point the goal of the goto.
+	 * @param direction the direction of the travel towards the goal.
+	 */
+	private void arrive(Point point, Point direction) {
+		if (this.odometry.running()) { this.sync(); return; }
+		this.pose.setLocation(point);
+		this.pose.setHeading((float)Math.toDegrees(direction.angle())); // the angle of a point is in radians.
+		this.pin();
 	}
 	/**
 	 * Performs a blocking goto to a pose.
@@ -392,6 +1014,7 @@ public class Navigator {
 		this.rotateTo(pose.getHeading());
 		
 		this.pose = pose;
+		this.pin();
 	}
 	/**
 	 * 
@@ -400,16 +1023,15 @@ public class Navigator {
 	 */
 	public void setup_goTo(Point point) {
 		this.goTo(point, true);
-		this.left.device.resetTachoCount();
-		this.right.device.resetTachoCount();		
+		this.mark_origin();
 	}
 	/**
 	 * 
 	 * @deprecated use combination of rotations and travels instead.
 	 */
 	public void compute_new_position_goTo() {
-		int l_tacho = this.left.device.getTachoCount();
-		int r_tacho = this.right.device.getTachoCount();
+		int l_tacho = this.left.device.getTachoCount()  - this.l_origin;
+		int r_tacho = this.right.device.getTachoCount() - this.r_origin;
 		this.pose.setHeading((l_tacho-r_tacho)/2*Rover.WHEEL_RADIUS/Rover.HALF_AXIS_DIFF);		
 	}
 }
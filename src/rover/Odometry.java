@@ -0,0 +1,450 @@
+package rover;
+
+import lejos.robotics.navigation.Pose;
+import tools.Fixed;
+import tools.Clock;
+import tools.RealClock;
+import tools.Telemetry;
+
+/**
+ * The odometry of the rover, i.e. the continuous estimation of its pose from the tachometers of both tracks.
+ *
+ * Once started, the {@link Scheduler} of the rover integrates the pose at a fixed rate, right after polling the tacho
+ * counts of both engines, with the kinematics of a differential drive: each tick is an arc of circle, given by the travel
+ * of each track. The tacho counts are read from the table of the scheduler, never from the motors. The result is
+ * published as a consistent snapshot through a sequence counter, so that any thread can read the pose without taking a
+ * lock, even in the middle of a motion.
+ *
+ * Every published snapshot is also kept inside a fixed-capacity history, stored as one array per field, so that the pose
+ * of the rover at the moment of a past event, e.g. an ultrasonic echo, can be interpolated with
+ * {@link Odometry#pose_at(long, float[])}.
+ *
+ * The integration has two backends, chosen when the odometry is built, see {@link Tuning#fixed_point}: a
+ * floating-point one with exact arcs, and a fixed-point one, see {@link Fixed}, which only uses integer operations and
+ * the tables of sines along arcs approximated at their middle heading. The fixed-point backend keeps the position in
+ * nanometers, so that its rounding errors stay far below the slip of the tracks.
+ *
+ * @author Antoine Stevan
+ *
+ */
+class Odometry {
+	/** The period between two integrations of the pose, in ms. */
+	static final int period   = 10;
+	/** The deadline of an integration from its release, in ms. */
+	static final int deadline = 5;
+	/** The longest wait for freshly polled tacho counts before reading them directly, in ms. */
+	static final int refresh_timeout = 5*Odometry.period;
+	/** The number of snapshots kept inside the history, i.e. a bit more than a second. Must be a power of 2. */
+	static final int history = 128;
+	/** The mask used to wrap a snapshot counter into an index of the history. */
+	private static final int mask = Odometry.history - 1;
+	/** The conversion factor from motor degrees to a distance travelled by a track, in m. */
+	static final double TACHO_TO_DIST = Rover.WHEEL_RADIUS*Math.PI/180;
+	/** The conversion factor from motor degrees to a distance travelled by a track, in nanometers, in Q16.16. */
+	static final long   TACHO_TO_NM   = Math.round(Odometry.TACHO_TO_DIST*1e9*Fixed.ONE);
+	/** The conversion factor from a difference of distances of the tracks, in nanometers, to a rotation of the rover, as
+	 * a binary angle of 32 bits, in Q16.16. */
+	static final long   NM_TO_ANGLE   = Math.round(4294967296.0/(2*Math.PI*Rover.AXIS_DIFF*1e9)*Fixed.ONE);
+
+	/** The right engine of the rover. */
+	private Engine right;
+	/** The left engine of the rover. */
+	private Engine left;
+	/** The right tacho count at the last integration, in degrees. */
+	private int r_tacho;
+	/** The left tacho count at the last integration, in degrees. */
+	private int l_tacho;
+
+	/** The integrated x coordinate, in m. Only touched while holding the lock of the odometry. */
+	private double x;
+	/** The integrated y coordinate, in m. Only touched while holding the lock of the odometry. */
+	private double y;
+	/** The integrated heading, in radians. Only touched while holding the lock of the odometry. */
+	private double heading;
+	/** Tells whether the pose is integrated by the fixed-point backend instead of the floating-point one. */
+	private final boolean fixed;
+	/** The integrated x coordinate of the fixed-point backend, in nanometers. */
+	private long   fx;
+	/** The integrated y coordinate of the fixed-point backend, in nanometers. */
+	private long   fy;
+	/** The integrated heading of the fixed-point backend, as a binary angle of 32 bits which is never wrapped. */
+	private long   fheading;
+
+	/** Sequence counter of the published snapshot: odd while the snapshot is being written, even otherwise. */
+	private volatile int  seq;
+	/** The published x coordinate, in m. */
+	private volatile float pub_x;
+	/** The published y coordinate, in m. */
+	private volatile float pub_y;
+	/** The published heading, in degrees. */
+	private volatile float pub_heading;
+	/** The timestamp of the published snapshot, in nanoseconds (see {@link Clock#nanoTime()}). */
+	private volatile long  pub_time;
+
+	/** The history of the timestamps of the snapshots, in nanoseconds. */
+	private final long[]  h_time    = new long[Odometry.history];
+	/** The history of the x coordinates, in m. */
+	private final float[] h_x       = new float[Odometry.history];
+	/** The history of the y coordinates, in m. */
+	private final float[] h_y       = new float[Odometry.history];
+	/** The history of the headings, in degrees. */
+	private final float[] h_heading = new float[Odometry.history];
+	/** The total number of snapshots written in the history, published after each write. */
+	private volatile long h_count;
+	/** The snapshot copied into a leJOS pose, reused. It is also the lock of the copies. */
+	private final float[] copy = new float[3];
+
+	/** The scheduler integrating the pose, or null if the odometry is not scheduled. */
+	private Scheduler scheduler;
+	/** The identifier of the task of the odometry inside the scheduler. */
+	private int task;
+	/** Tells whether the odometry has been started. */
+	private volatile boolean started;
+	/** Tells whether the tacho counts of reference have been taken since the start. Only touched while holding the lock. */
+	private boolean primed;
+	/** The moment of the tacho counts integrated last, in nanoseconds. */
+	private volatile long tacho_time;
+	/** The telemetry receiving the tacho counts and the poses, or null. */
+	private Telemetry telemetry;
+	/** The clock giving the rate and the timestamps of the integration. */
+	private final Clock clock;
+
+	/**
+	 * Builds the odometry of a rover.
+	 *
+	 * @param initialPose the initial pose of the rover.
+	 * @param right the right engine of the rover.
+	 * @param left the left engine of the rover.
+	 */
+	Odometry(Pose initialPose, Engine right, Engine left) {
+		this(initialPose, right, left, Rover.fixed_point, new RealClock());
+	}
+	/**
+	 * Builds the odometry of a rover, along a given clock.
+	 *
+	 * @param initialPose the initial pose of the rover.
+	 * @param right the right engine of the rover.
+	 * @param left the left engine of the rover.
+	 * @param clock the clock giving the rate and the timestamps of the integration.
+	 */
+	Odometry(Pose initialPose, Engine right, Engine left, Clock clock) {
+		this(initialPose, right, left, Rover.fixed_point, clock);
+	}
+	/**
+	 * Builds the odometry of a rover, with a given backend.
+	 *
+	 * @param initialPose the initial pose of the rover.
+	 * @param right the right engine of the rover.
+	 * @param left the left engine of the rover.
+	 * @param fixed true for the fixed-point backend, false for the floating-point one.
+	 */
+	Odometry(Pose initialPose, Engine right, Engine left, boolean fixed) {
+		this(initialPose, right, left, fixed, new RealClock());
+	}
+	/**
+	 * Builds the odometry of a rover, with a given backend and along a given clock.
+	 *
+	 * @param initialPose the initial pose of the rover.
+	 * @param right the right engine of the rover.
+	 * @param left the left engine of the rover.
+	 * @param fixed true for the fixed-point backend, false for the floating-point one.
+	 * @param clock the clock giving the rate and the timestamps of the integration.
+	 */
+	Odometry(Pose initialPose, Engine right, Engine left, boolean fixed, Clock clock) {
+		this.right  = right;
+		this.left   = left;
+		this.fixed  = fixed;
+		this.clock  = clock;
+		this.scheduler = null;
+		this.started   = false;
+		this.reset(initialPose.getX(), initialPose.getY(), initialPose.getHeading());
+	}
+
+	/**
+	 * Registers the odometry inside a scheduler, after both engines, which integrates the pose once it is started.
+	 *
+	 * @param scheduler the scheduler integrating the pose, which polls the tacho counts of both engines.
+	 */
+	void schedule(Scheduler scheduler) {
+		this.task = scheduler.add("odometry", new Scheduler.Task() {
+			public float poll(long time) {
+				Odometry.this.update();
+				// the pose is published by the odometry itself, as a consistent snapshot.
+				return Float.NaN;
+			}
+		}, Odometry.period/Scheduler.slot, Odometry.deadline/Scheduler.slot);
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Starts the background integration, if not already running.
+	 * Engines have to be connected beforehand, their first tacho counts polled by the scheduler are taken as a reference.
+	 *
+	 * @throws IllegalStateException if the odometry is not scheduled.
+	 */
+	synchronized void start() {
+		if (this.started) { return; }
+		if (this.scheduler == null) { throw new IllegalStateException("odometry not scheduled"); }
+		this.primed  = false;
+		this.started = true;
+		this.scheduler.resume(this.task);
+	}
+
+	/**
+	 * Tells whether the background integration is running.
+	 *
+	 * @return true if the odometry has been started, false otherwise.
+	 */
+	boolean running() {
+		return this.started;
+	}
+
+	/**
+	 * Waits until the odometry has integrated tacho counts polled strictly after the call, e.g. when the rover has just
+	 * stopped and needs its final pose. The odometry has to be running. If the scheduler does not poll the tachometers
+	 * within {@link Odometry#refresh_timeout} ms, the tacho counts are read from the motors directly instead.
+	 */
+	void refresh() {
+		long now   = this.clock.nanoTime();
+		long limit = now + Odometry.refresh_timeout*1000000L;
+		while (this.tacho_time <= now) {
+			long time = this.clock.nanoTime();
+			if (time >= limit) {
+				this.update(this.right.device.getTachoCount(), this.left.device.getTachoCount(), time);
+				return;
+			}
+			this.clock.sleep(Scheduler.slot);
+		}
+	}
+
+	/**
+	 * Integrates the pose since the previous call, from the latest tacho counts of both engines inside the table of the
+	 * scheduler. The motion of the rover between two calls is assumed to be an arc of circle, which is exact as long as
+	 * both tracks have a constant speed ratio during the tick.
+	 */
+	synchronized void update() {
+		float right = this.right.tacho();
+		float left  = this.left.tacho();
+		long time   = this.right.tacho_time();
+		// the counts have already been integrated, e.g. read directly by a refresh.
+		if (Float.isNaN(right) || Float.isNaN(left) || time <= this.tacho_time) { return; }
+		this.update((int)right, (int)left, time);
+	}
+
+	/**
+	 * Integrates the pose since the previous call, from given tacho counts of both engines.
+	 *
+	 * @param r the right tacho count, in degrees.
+	 * @param l the left tacho count, in degrees.
+	 * @param time the moment of the tacho counts, in nanoseconds.
+	 */
+	private synchronized void update(int r, int l, long time) {
+		if (!this.primed) {
+			this.r_tacho = r;
+			this.l_tacho = l;
+			this.primed  = true;
+		}
+		int dr = r - this.r_tacho;
+		int dl = l - this.l_tacho;
+		this.r_tacho = r;
+		this.l_tacho = l;
+		Telemetry telemetry = this.telemetry;
+		if (telemetry != null) { telemetry.tacho(time, r, l); }
+		if (this.fixed) {
+			this.integrate_fixed(dr, dl);
+		} else {
+			this.integrate(dr, dl);
+		}
+		this.publish();
+		this.tacho_time = time;
+	}
+
+	/**
+	 * Integrates a motion of both tracks with the floating-point backend, as an exact arc of circle.
+	 * Must be called while holding the lock of the odometry.
+	 *
+	 * @param dr the rotation of the right engine, in degrees.
+	 * @param dl the rotation of the left engine, in degrees.
+	 */
+	void integrate(int dr, int dl) {
+		// motors are mounted backwards, hence a negative rotation makes a track go forward.
+		double d_right = -dr*Odometry.TACHO_TO_DIST;
+		double d_left  = -dl*Odometry.TACHO_TO_DIST;
+
+		double ds     = (d_right + d_left)/2;
+		double dtheta = (d_right - d_left)/Rover.AXIS_DIFF;
+		if (Math.abs(dtheta) < 1e-9) {
+			// straight line.
+			this.x += ds*Math.cos(this.heading);
+			this.y += ds*Math.sin(this.heading);
+		} else {
+			// arc of circle of radius ds/dtheta around the instantaneous center of rotation.
+			double radius = ds/dtheta;
+			this.x += radius*(Math.sin(this.heading + dtheta) - Math.sin(this.heading));
+			this.y -= radius*(Math.cos(this.heading + dtheta) - Math.cos(this.heading));
+		}
+		this.heading += dtheta;
+	}
+
+	/**
+	 * Integrates a motion of both tracks with the fixed-point backend, as a straight line along the middle heading of the
+	 * arc, whose error is of the order of the square of the rotation during a tick, i.e. negligible.
+	 * Must be called while holding the lock of the odometry.
+	 *
+	 * @param dr the rotation of the right engine, in degrees.
+	 * @param dl the rotation of the left engine, in degrees.
+	 */
+	void integrate_fixed(int dr, int dl) {
+		// motors are mounted backwards, hence a negative rotation makes a track go forward.
+		long d_right = (-dr*Odometry.TACHO_TO_NM) >> Fixed.Q;
+		long d_left  = (-dl*Odometry.TACHO_TO_NM) >> Fixed.Q;
+
+		long ds     = (d_right + d_left) >> 1;
+		long dtheta = ((d_right - d_left)*Odometry.NM_TO_ANGLE) >> Fixed.Q;
+		int  middle = (int)(this.fheading + (dtheta >> 1));
+		this.fx += (ds*Fixed.cos(middle)) >> Fixed.Q;
+		this.fy += (ds*Fixed.sin(middle)) >> Fixed.Q;
+		this.fheading += dtheta;
+	}
+
+	/**
+	 * Forces the pose of the rover, e.g. after a calibration.
+	 *
+	 * @param x the new x coordinate, in m.
+	 * @param y the new y coordinate, in m.
+	 * @param heading the new heading, in degrees.
+	 */
+	synchronized void reset(float x, float y, float heading) {
+		if (this.primed) {
+			// forget the motion which has not been integrated yet.
+			this.r_tacho = (int)this.right.tacho();
+			this.l_tacho = (int)this.left.tacho();
+		}
+		this.x        = x;
+		this.y        = y;
+		this.heading  = Math.toRadians(heading);
+		this.fx       = Math.round(x*1e9);
+		this.fy       = Math.round(y*1e9);
+		this.fheading = Math.round(heading*(4294967296.0/360));
+		this.publish();
+	}
+
+	/**
+	 * Publishes the integrated pose as a new snapshot, and appends it to the history.
+	 * Must be called while holding the lock of the odometry, i.e. with a single writer.
+	 */
+	void publish() {
+		float x, y, heading;
+		if (this.fixed) {
+			x       = this.fx*1e-9f;
+			y       = this.fy*1e-9f;
+			heading = this.fheading*(360/4294967296f);
+		} else {
+			x       = (float)this.x;
+			y       = (float)this.y;
+			heading = (float)Math.toDegrees(this.heading);
+		}
+		long  time    = this.clock.nanoTime();
+		
+		this.seq++;
+		this.pub_x       = x;
+		this.pub_y       = y;
+		this.pub_heading = heading;
+		this.pub_time    = time;
+		this.seq++;
+		
+		long n = this.h_count;
+		int i = (int)(n & Odometry.mask);
+		this.h_time[i]    = time;
+		this.h_x[i]       = x;
+		this.h_y[i]       = y;
+		this.h_heading[i] = heading;
+		this.h_count = n + 1;
+		
+		Telemetry telemetry = this.telemetry;
+		if (telemetry != null) { telemetry.pose(time, x, y, heading); }
+	}
+	
+	/**
+	 * Setter for the 'telemetry' field.
+	 * @param telemetry the telemetry receiving the tacho counts and the poses, or null.
+	 */
+	void setTelemetry(Telemetry telemetry) {
+		this.telemetry = telemetry;
+	}
+
+	/**
+	 * Reads the latest snapshot of the pose, without any lock.
+	 * If the snapshot is being published during the read, the read is simply retried.
+	 *
+	 * @param pose a destination array of at least 3 floats, filled with x (m), y (m) and heading (degrees).
+	 * @return the timestamp of the snapshot, in nanoseconds.
+	 */
+	long read(float[] pose) {
+		while (true) {
+			int s = this.seq;
+			if ((s & 1) == 0) {
+				pose[0] = this.pub_x;
+				pose[1] = this.pub_y;
+				pose[2] = this.pub_heading;
+				long time = this.pub_time;
+				if (s == this.seq) { return time; }
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Reads the pose of the rover at a given moment, without any lock nor allocation.
+	 * The pose is linearly interpolated between the two snapshots surrounding the given moment. Moments older than the
+	 * history, respectively newer than the latest snapshot, are clamped to the oldest, respectively latest, snapshot.
+	 *
+	 * @param time the moment of interest, in nanoseconds (see {@link Clock#nanoTime()}).
+	 * @param pose a destination array of at least 3 floats, filled with x (m), y (m) and heading (degrees).
+	 * @return the timestamp actually used, i.e. the given moment unless it has been clamped.
+	 */
+	long pose_at(long time, float[] pose) {
+		while (true) {
+			long end = this.h_count;
+			if (end == 0) { return this.read(pose); }
+			// keep a slot of margin, the writer might be filling the oldest one.
+			long begin = Math.max(0, end - Odometry.history + 1);
+			// echoes are recent: walk backwards from the latest snapshot.
+			long k = end - 1;
+			while (k > begin && this.h_time[(int)(k & Odometry.mask)] > time) {
+				k--;
+			}
+			int i = (int)(k & Odometry.mask);
+			long used;
+			if (k == end - 1 || this.h_time[i] >= time) {
+				// nothing to interpolate with.
+				pose[0] = this.h_x[i];
+				pose[1] = this.h_y[i];
+				pose[2] = this.h_heading[i];
+				used = this.h_time[i];
+			} else {
+				int j = (int)((k+1) & Odometry.mask);
+				float a = (float)(time - this.h_time[i])/(this.h_time[j] - this.h_time[i]);
+				pose[0] = this.h_x[i]       + a*(this.h_x[j]       - this.h_x[i]);
+				pose[1] = this.h_y[i]       + a*(this.h_y[j]       - this.h_y[i]);
+				pose[2] = this.h_heading[i] + a*(this.h_heading[j] - this.h_heading[i]);
+				used = time;
+			}
+			// retry if the writer has lapped the reader in the meantime.
+			if (this.h_count - Odometry.history < k) { return used; }
+		}
+	}
+
+	/**
+	 * Copies the latest snapshot of the pose into a leJOS pose.
+	 *
+	 * @param pose the pose to be updated.
+	 */
+	void copy_to(Pose pose) {
+		synchronized (this.copy) {
+			this.read(this.copy);
+			pose.setLocation(this.copy[0], this.copy[1]);
+			pose.setHeading(this.copy[2]);
+		}
+	}
+}
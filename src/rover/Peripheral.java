@@ -1,44 +1,65 @@
 package rover;
 
-import lejos.hardware.Device;
-import lejos.hardware.port.Port;
 import tools.Measure;
 import tools.Order;
 
 /**
- * An abstraction of any peripheral that could be connected to the EV3 lego brick.
- * 
+ * An abstraction of any peripheral of the rover.
+ *
+ * A peripheral wraps the device given by the {@link Hardware} of the rover, i.e. a {@link MotorDevice}, a
+ * {@link RangeDevice} or a {@link ColorDevice}, which is either plugged into the EV3 lego brick or simulated.
+ *
+ * Besides the single {@link Peripheral#read()}, the samples a peripheral buffers, e.g. from a sampler thread, are drained
+ * in bursts into arrays owned by the caller with {@link Peripheral#readInto(float[], long[], int, int)}, so that a loop
+ * over the readings allocates nothing.
+ *
  * @author antoine
  *
  * @see Engine
  * @see UltraEyes
  * @see ColorEye
  */
-abstract class Peripheral {
-	/** Any peripheral is connected to the EV3 through a port. */
-	Port port;
-	/** Any wire is in fact connecting a port with a device. */
-	Device device;
-	
+interface Peripheral {
 	/**
 	 * Initialization of a peripheral.
-	 * Tries to connect the brick and the peripheral through the appropriate leJOS.hardware class. If the sensor is not
-	 * connected, an error is thrown, handled by the method, converted to boolean and returned.
-	 * 
-	 * @return true if the peripheral is properly connected to the right port, false if any error occurs.
+	 * Tries to open the device of the peripheral. If the device cannot be opened, e.g. a sensor is not connected, an
+	 * error is thrown, handled by the method, converted to boolean and returned.
+	 *
+	 * @return true if the peripheral is properly connected, false if any error occurs.
 	 */
-	abstract boolean connect();
-	
+	boolean connect();
+
 	/**
-	 * Reads data from the device connected through a port.
-	 * 
+	 * Gives a human readable name of the peripheral, e.g. the name of the port of its device.
+	 *
+	 * @return the name of the device of the peripheral.
+	 */
+	String getName();
+
+	/**
+	 * Reads data from the device of the peripheral.
+	 *
 	 * @return a measure given by the connected device, inside a Measure which is a data container.
 	 */
-	abstract Measure read();
+	Measure read();
+
+	/**
+	 * Drains the samples buffered since the previous call, from the oldest to the newest, without allocating anything.
+	 * Samples which do not fit are kept for the next call. Samples overwritten inside the buffer of the peripheral before
+	 * being drained are lost, the oldest ones first. A peripheral has a single drain: only one reader should call it.
+	 *
+	 * @param dst the destination of the values of the samples, in the unit of the peripheral.
+	 * @param timestamps the destination of the timestamps of the samples, in nanoseconds (see {@link tools.Clock}).
+	 * @param off the index of the first sample inside both destinations.
+	 * @param max the maximum number of samples to drain.
+	 * @return the number of drained samples.
+	 */
+	int readInto(float[] dst, long[] timestamps, int off, int max);
+
 	/**
-	 * Sends data to a device connected through a port.
-	 * 
+	 * Sends data to the device of the peripheral.
+	 *
 	 * @param order data is sent to a device inside packets of data called Order.
 	 */
-	abstract void write(Order order);
-}
\ No newline at end of file
+	void write(Order order);
+}
@@ -0,0 +1,31 @@
+package rover;
+
+/**
+ * The hardware abstraction of a range sensor, as sampled by a pair of {@link UltraEyes}.
+ *
+ * @author Antoine Stevan
+ *
+ * @see LejosRange
+ * @see SimRange
+ */
+public interface RangeDevice {
+	/**
+	 * Opens the sensor, i.e. binds it to the underlying hardware and enables it.
+	 * Any error is thrown, e.g. when nothing is plugged into the port of a physical sensor.
+	 */
+	void open();
+
+	/**
+	 * Gives a human readable name of the sensor, e.g. the name of its port.
+	 *
+	 * @return the name of the sensor.
+	 */
+	String getName();
+
+	/**
+	 * Fetches the distance to the closest object in front of the sensor.
+	 *
+	 * @return the distance, in m, or {@link Float#POSITIVE_INFINITY} if there is nothing in range.
+	 */
+	float fetchDistance();
+}
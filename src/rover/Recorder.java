@@ -0,0 +1,506 @@
+package rover;
+
+import tools.Clock;
+import tools.Telemetry;
+
+/**
+ * The recording of every stream of the devices of a rover, i.e. a backend wrapping another {@link Hardware}.
+ *
+ * Every distance fetched from the ultrasonic sensor, every reflected intensity fetched from the color sensor, every tacho
+ * count read from a motor and every command sent to a motor goes through the recorder, which gives it back unchanged
+ * once it has been enqueued, with its timestamp, inside a bounded preallocated ring. A background writer thread appends
+ * the records of the ring to a binary file by batches, so that the callers, e.g. the control loops, never write to the
+ * storage nor wait for it: when the ring is full, the record is dropped and counted. The file is a {@link Telemetry}
+ * file of at most {@link Recorder#max_segments} regions, of {@link Telemetry#ULTRA}, {@link Telemetry#COLOR} and
+ * {@link Telemetry#MOTOR} records, hence it is decoded by {@link tools.TelemetryDecoder} as well. Queries which do not
+ * change anything, e.g. whether a motor is moving, are not recorded.
+ *
+ * When a physical run misbehaves, the recording is copied from the brick and fed back to the mission code on a
+ * workstation by a {@link Replay}, as fast as the CPU allows. A recorder which has not been opened records nothing, and
+ * a rover is only recorded on demand, see {@link Rover#build(Hardware, boolean)}.
+ *
+ * @author Antoine Stevan
+ *
+ * @see Replay
+ */
+class Recorder implements Hardware {
+	/** The index of the motor of the pliers inside the records. */
+	static final int PLIERS = 0;
+	/** The index of the motor of the right track inside the records. */
+	static final int RIGHT  = 1;
+	/** The index of the motor of the left track inside the records. */
+	static final int LEFT   = 2;
+
+	/** Command: tacho count read from the motor, as the value. */
+	static final int TACHO         = 0;
+	/** Command: reset of the tacho count. */
+	static final int RESET         = 1;
+	/** Command: speed of the motor, in degrees per second, as the value. */
+	static final int SPEED         = 2;
+	/** Command: acceleration of the motor, in degrees per second per second, as the value. */
+	static final int ACCELERATION  = 3;
+	/** Command: relative rotation, in degrees, as the value, with 1 as the flag for an immediate return. */
+	static final int ROTATE        = 4;
+	/** Command: rotation to a tacho count, in degrees, as the value, with 1 as the flag for an immediate return. */
+	static final int ROTATE_TO     = 5;
+	/** Command: forward rotation until stopped. */
+	static final int FORWARD       = 6;
+	/** Command: backward rotation until stopped. */
+	static final int BACKWARD      = 7;
+	/** Command: stop, with 1 as the flag for an immediate return. */
+	static final int STOP          = 8;
+	/** Command: opening of a group of synchronized commands. */
+	static final int START_SYNC    = 9;
+	/** Command: closing of a group of synchronized commands. */
+	static final int END_SYNC      = 10;
+
+	/** The largest number of regions of the file of the records, i.e. 8 MB, a couple of missions. */
+	static final int max_segments = 8;
+	/** The number of records of the ring. Must be a power of 2. */
+	static final int capacity     = 4096;
+	/** The mask used to wrap an index of the ring. */
+	private static final int mask = Recorder.capacity - 1;
+	/** The period after which the writer thread empties the ring anyway, in ms. */
+	static final int period       = 100;
+
+	/** The recorded hardware. */
+	private final Hardware hardware;
+	/** The file of the records, only written by the writer thread. */
+	private final Telemetry recording;
+	/** The clock giving the timestamps of the records. */
+	private final Clock clock;
+	/** Tells whether the records are enqueued, i.e. whether the file is open. */
+	private volatile boolean open;
+	/** The timestamp of the first motion of the tracks, in nanoseconds, or -1 if they never moved. */
+	private volatile long first_motion;
+
+	/** The timestamps of the records of the ring, in nanoseconds. Also the lock of the ring. */
+	private final long[] times    = new long[Recorder.capacity];
+	/** The type of every record of the ring, see {@link Telemetry#MOTOR}. */
+	private final int[]  types    = new int[Recorder.capacity];
+	/** The index of the motor of every record of the ring, see {@link Recorder#RIGHT}. */
+	private final int[]  motors   = new int[Recorder.capacity];
+	/** The command of every record of the ring, see {@link Recorder#TACHO}. */
+	private final int[]  commands = new int[Recorder.capacity];
+	/** The value of every record of the ring, the bits of a float for the sensors. */
+	private final int[]  values   = new int[Recorder.capacity];
+	/** The flag of every record of the ring. */
+	private final int[]  flags    = new int[Recorder.capacity];
+	/** The index of the oldest record of the ring. */
+	private int head;
+	/** The number of records inside the ring. */
+	private int size;
+	/** The number of records dropped because the ring was full. */
+	private long dropped;
+	/** Tells whether the recorder is being closed, i.e. the writer thread has to write every record and stop. */
+	private boolean closing;
+	/** The background writer thread, or null if the recorder is not open. */
+	private Thread writer;
+
+	/** The recorded ultrasonic sensor. */
+	private final RangeDevice ultrasonic;
+	/** The recorded color sensor. */
+	private final ColorDevice color;
+	/** The recorded motor of the pliers. */
+	private final MotorDevice pliers;
+	/** The recorded motor of the right track. */
+	private final MotorDevice right;
+	/** The recorded motor of the left track. */
+	private final MotorDevice left;
+
+	/**
+	 * Builds a closed recorder of the devices of a hardware.
+	 *
+	 * @param hardware the recorded hardware.
+	 */
+	Recorder(Hardware hardware) {
+		this.hardware   = hardware;
+		this.clock      = hardware.clock();
+		this.recording  = new Telemetry(this.clock, Recorder.max_segments);
+		this.first_motion = -1;
+		this.ultrasonic = new Range(hardware.ultrasonic());
+		this.color      = new Color(hardware.color());
+		this.pliers     = new Motor(hardware.pliers(), Recorder.PLIERS);
+		this.right      = new Motor(hardware.right(),  Recorder.RIGHT);
+		this.left       = new Motor(hardware.left(),   Recorder.LEFT);
+	}
+
+	/**
+	 * Opens the file of the records, truncated if it exists, and starts the writer thread.
+	 * If any error occurs, an error message is printed and nothing is recorded, but the execution continues.
+	 *
+	 * @param filename the name of the file.
+	 * @return true if the file has been opened, false otherwise.
+	 */
+	boolean open(String filename) {
+		if (this.writer != null || !this.recording.open(filename)) { return false; }
+		// the writer lives along the wall clock, outside of the parties of a simulation.
+		this.writer = new Thread(new Runnable() {
+			public void run() {
+				Recorder.this.write_loop();
+			}
+		}, "recorder");
+		this.writer.setDaemon(true);
+		this.writer.start();
+		this.open = true;
+		return true;
+	}
+
+	/**
+	 * Writes every pending record and closes the file of the records.
+	 */
+	void close() {
+		if (this.writer == null) { return; }
+		this.open = false;
+		synchronized (this.times) {
+			this.closing = true;
+			this.times.notifyAll();
+		}
+		try {
+			this.writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.writer = null;
+		this.recording.close();
+	}
+
+	/**
+	 * Getter for the 'first_motion' field.
+	 * @return the timestamp of the first motion of the tracks, in nanoseconds, or -1 if they never moved.
+	 */
+	long getFirstMotion() {
+		return this.first_motion;
+	}
+
+	/**
+	 * Gives the number of records which are not inside the file, because the ring or the file was full.
+	 * @return the number of dropped records.
+	 */
+	long getDropped() {
+		synchronized (this.times) {
+			return this.dropped + this.recording.getDropped();
+		}
+	}
+
+	/**
+	 * Tells whether a command sets a motor in motion.
+	 *
+	 * @param command the code of the command.
+	 * @return true for a rotation, false otherwise.
+	 */
+	static boolean motion(int command) {
+		return command == Recorder.ROTATE || command == Recorder.ROTATE_TO || command == Recorder.FORWARD ||
+			   command == Recorder.BACKWARD;
+	}
+
+	/**
+	 * Enqueues a record for the writer thread, or drops it if the ring is full. The writer is only woken up once the
+	 * ring is half full, otherwise it empties the ring every {@link Recorder#period} ms.
+	 *
+	 * @param type the type of the record.
+	 * @param motor the index of the motor, or 0.
+	 * @param command the code of the command, or 0.
+	 * @param value the value of the record.
+	 * @param flag the flag of the command, or 0.
+	 */
+	private void enqueue(int type, int motor, int command, int value, int flag) {
+		if (!this.open) { return; }
+		long time = this.clock.nanoTime();
+		synchronized (this.times) {
+			if (this.size == Recorder.capacity) {
+				this.dropped++;
+				return;
+			}
+			int i = (this.head + this.size) & Recorder.mask;
+			this.times[i]    = time;
+			this.types[i]    = type;
+			this.motors[i]   = motor;
+			this.commands[i] = command;
+			this.values[i]   = value;
+			this.flags[i]    = flag;
+			if (++this.size == Recorder.capacity/2) { this.times.notifyAll(); }
+		}
+	}
+
+	/**
+	 * Main loop of the writer thread: takes the whole content of the ring at once, then writes it to the file outside of
+	 * the lock of the ring.
+	 */
+	private void write_loop() {
+		long[] times    = new long[Recorder.capacity];
+		int[]  types    = new int[Recorder.capacity];
+		int[]  motors   = new int[Recorder.capacity];
+		int[]  commands = new int[Recorder.capacity];
+		int[]  values   = new int[Recorder.capacity];
+		int[]  flags    = new int[Recorder.capacity];
+		while (true) {
+			int n;
+			boolean closing;
+			synchronized (this.times) {
+				if (this.size < Recorder.capacity/2 && !this.closing) {
+					try {
+						this.times.wait(Recorder.period);
+					} catch (InterruptedException e) {
+						// keep on writing, only close() stops the writer.
+					}
+				}
+				n = this.size;
+				for (int k = 0; k < n; k++) {
+					int i = (this.head + k) & Recorder.mask;
+					times[k]    = this.times[i];
+					types[k]    = this.types[i];
+					motors[k]   = this.motors[i];
+					commands[k] = this.commands[i];
+					values[k]   = this.values[i];
+					flags[k]    = this.flags[i];
+				}
+				this.head = (this.head + n) & Recorder.mask;
+				this.size = 0;
+				closing = this.closing;
+			}
+			for (int k = 0; k < n; k++) {
+				switch (types[k]) {
+				case Telemetry.ULTRA:
+					this.recording.ultra(times[k], Float.intBitsToFloat(values[k]));
+					break;
+				case Telemetry.COLOR:
+					this.recording.color(times[k], Float.intBitsToFloat(values[k]));
+					break;
+				default:
+					this.recording.motor(times[k], motors[k], commands[k], values[k], flags[k]);
+				}
+			}
+			if (closing) {
+				synchronized (this.times) {
+					if (this.size == 0) { return; }
+				}
+			}
+		}
+	}
+
+	public RangeDevice ultrasonic() { return this.ultrasonic; }
+
+	public ColorDevice color()      { return this.color; }
+
+	public MotorDevice pliers()     { return this.pliers; }
+
+	public MotorDevice right()      { return this.right; }
+
+	public MotorDevice left()       { return this.left; }
+
+	public ButtonDevice buttons()   { return this.hardware.buttons(); }
+
+	public Clock clock()            { return this.clock; }
+
+	/**
+	 * A recorded ultrasonic sensor.
+	 */
+	private final class Range implements RangeDevice {
+		/** The recorded sensor. */
+		private final RangeDevice device;
+
+		/**
+		 * Builds a recorded ultrasonic sensor.
+		 *
+		 * @param device the recorded sensor.
+		 */
+		Range(RangeDevice device) {
+			this.device = device;
+		}
+
+		public void open() {
+			this.device.open();
+		}
+
+		public String getName() {
+			return this.device.getName();
+		}
+
+		public float fetchDistance() {
+			float distance = this.device.fetchDistance();
+			Recorder.this.enqueue(Telemetry.ULTRA, 0, 0, Float.floatToRawIntBits(distance), 0);
+			return distance;
+		}
+	}
+
+	/**
+	 * A recorded color sensor. Only the reflected intensities are recorded: the floor of the arena is black or white.
+	 */
+	private final class Color implements ColorDevice {
+		/** The recorded sensor. */
+		private final ColorDevice device;
+
+		/**
+		 * Builds a recorded color sensor.
+		 *
+		 * @param device the recorded sensor.
+		 */
+		Color(ColorDevice device) {
+			this.device = device;
+		}
+
+		public void open() {
+			this.device.open();
+		}
+
+		public String getName() {
+			return this.device.getName();
+		}
+
+		public float fetchRed() {
+			float red = this.device.fetchRed();
+			Recorder.this.enqueue(Telemetry.COLOR, 0, 0, Float.floatToRawIntBits(red), 0);
+			return red;
+		}
+
+		public void fetchRGB(float[] rgb, int offset) {
+			this.device.fetchRGB(rgb, offset);
+			Recorder.this.enqueue(Telemetry.COLOR, 0, 0, Float.floatToRawIntBits(rgb[offset]), 0);
+		}
+
+		public int getColorID() {
+			return this.device.getColorID();
+		}
+	}
+
+	/**
+	 * A recorded motor. It gives itself to the listeners, so that they still tell the motors apart.
+	 */
+	private final class Motor implements MotorDevice {
+		/** The recorded motor. */
+		private final MotorDevice device;
+		/** The index of the motor inside the records. */
+		private final int index;
+
+		/**
+		 * Builds a recorded motor.
+		 *
+		 * @param device the recorded motor.
+		 * @param index the index of the motor inside the records.
+		 */
+		Motor(MotorDevice device, int index) {
+			this.device = device;
+			this.index  = index;
+		}
+
+		/**
+		 * Records a command sent to the motor, and the moment of the first motion of the tracks.
+		 *
+		 * @param command the code of the command.
+		 * @param value the value of the command.
+		 * @param flag the flag of the command.
+		 */
+		private void record(int command, int value, boolean flag) {
+			if (Recorder.this.first_motion < 0 && Recorder.this.open && this.index != Recorder.PLIERS &&
+				Recorder.motion(command)) {
+				Recorder.this.first_motion = Recorder.this.clock.nanoTime();
+			}
+			Recorder.this.enqueue(Telemetry.MOTOR, this.index, command, value, (flag)? 1 : 0);
+		}
+
+		public void open() {
+			this.device.open();
+		}
+
+		public String getName() {
+			return this.device.getName();
+		}
+
+		public void resetTachoCount() {
+			this.record(Recorder.RESET, 0, false);
+			this.device.resetTachoCount();
+		}
+
+		public int getTachoCount() {
+			int tacho = this.device.getTachoCount();
+			this.record(Recorder.TACHO, tacho, false);
+			return tacho;
+		}
+
+		public int getRotationSpeed() {
+			return this.device.getRotationSpeed();
+		}
+
+		public void setSpeed(int speed) {
+			this.record(Recorder.SPEED, speed, false);
+			this.device.setSpeed(speed);
+		}
+
+		public void setAcceleration(int acceleration) {
+			this.record(Recorder.ACCELERATION, acceleration, false);
+			this.device.setAcceleration(acceleration);
+		}
+
+		public void rotate(int angle, boolean immediateReturn) {
+			this.record(Recorder.ROTATE, angle, immediateReturn);
+			this.device.rotate(angle, immediateReturn);
+		}
+
+		public void rotate(int angle) {
+			this.record(Recorder.ROTATE, angle, false);
+			this.device.rotate(angle);
+		}
+
+		public void rotateTo(int target, boolean immediateReturn) {
+			this.record(Recorder.ROTATE_TO, target, immediateReturn);
+			this.device.rotateTo(target, immediateReturn);
+		}
+
+		public void forward() {
+			this.record(Recorder.FORWARD, 0, false);
+			this.device.forward();
+		}
+
+		public void backward() {
+			this.record(Recorder.BACKWARD, 0, false);
+			this.device.backward();
+		}
+
+		public void stop(boolean immediateReturn) {
+			this.record(Recorder.STOP, 0, immediateReturn);
+			this.device.stop(immediateReturn);
+		}
+
+		public void stop() {
+			this.record(Recorder.STOP, 0, false);
+			this.device.stop();
+		}
+
+		public boolean isMoving() {
+			return this.device.isMoving();
+		}
+
+		/**
+		 * The recorded motors are unwrapped, as the underlying ones only synchronize with their own implementation.
+		 */
+		public void synchronizeWith(MotorDevice[] others) {
+			MotorDevice[] devices = new MotorDevice[others.length];
+			for (int i = 0; i < others.length; i++) {
+				devices[i] = (others[i] instanceof Motor)? ((Motor)others[i]).device : others[i];
+			}
+			this.device.synchronizeWith(devices);
+		}
+
+		public void startSynchronization() {
+			this.record(Recorder.START_SYNC, 0, false);
+			this.device.startSynchronization();
+		}
+
+		public void endSynchronization() {
+			this.record(Recorder.END_SYNC, 0, false);
+			this.device.endSynchronization();
+		}
+
+		public void addListener(final MotorListener listener) {
+			this.device.addListener(new MotorListener() {
+				public void rotationStarted(MotorDevice motor, int tachoCount, boolean stalled, long timeStamp) {
+					listener.rotationStarted(Motor.this, tachoCount, stalled, timeStamp);
+				}
+				public void rotationStopped(MotorDevice motor, int tachoCount, boolean stalled, long timeStamp) {
+					listener.rotationStopped(Motor.this, tachoCount, stalled, timeStamp);
+				}
+			});
+		}
+	}
+}
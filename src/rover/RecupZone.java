@@ -15,14 +15,19 @@ class RecupZone extends MapZone{
 	/** The diameter of the recovery zone is given in the specifications. */
 	static final float diameter = 0.20f;
 	
+	/** The squared radius of the recovery zone, to compare squared distances without any square root. */
+	static final float radius2 = (diameter/2)*(diameter/2);
+	
 	/**
 	 * Tells if a point is inside the recovery zone.
 	 * 
-	 * @param p the point that one wants to know the belonging to the inside of the recovery zone.
+	 * @param x the x coordinate of the point that one wants to know the belonging to the inside of the recovery zone.
+	 * @param y the y coordinate of the point that one wants to know the belonging to the inside of the recovery zone.
 	 * @return true if the point is inside the recovery zone, false otherwise.
 	 */
-	public boolean inside(Point p) {		
-		double dist2 = Math.pow(p.x-center.x,2) + Math.pow(p.y-center.y,2);
-		return dist2 < Math.pow(diameter/2,2);
+	public boolean inside(float x, float y) {
+		float dx = x - center.x;
+		float dy = y - center.y;
+		return dx*dx + dy*dy < radius2;
 	}
 }
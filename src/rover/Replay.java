@@ -0,0 +1,513 @@
+package rover;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import lejos.robotics.geometry.Point;
+import tools.Telemetry;
+import tools.VirtualClock;
+
+/**
+ * The replay of a recording of a physical run, see {@link Recorder}, i.e. the world around a simulated rover which sees
+ * what the physical one saw.
+ *
+ * The recorded distances and reflected intensities are fed back to the mission code through the sensors of a
+ * {@link SimHardware}, along the time of the recording: the sensors always give the latest sample recorded at the same
+ * moment of the run. The first motion of the recorded tracks is aligned with the first motion of the replayed ones, the
+ * sensors giving the samples of the recorded one until then.
+ * The motors are simulated, and the replayed run is itself recorded: its rotations and stops are compared with the
+ * recorded ones, up to the first one which differs, as well as its tacho counts until then. A changed version of the
+ * mission code is hence re-evaluated against real sensor data, on a workstation, as fast as the CPU allows, and the
+ * point at which it leaves the recorded run is known.
+ *
+ * Only the first mission of the recording is replayed, from its first motion to the end of the recording. As the
+ * recording knows nothing about the true samples, an echo rejected by the filter of the rover, see {@link EchoFilter},
+ * is counted as an avoided false harvest if the replayed rover never explored anything near it.
+ *
+ * @author Antoine Stevan
+ *
+ * @see Recorder
+ * @see Simulator
+ */
+public class Replay implements SimHardware.World {
+	/** The largest difference between the values of two commands for them to be the same, e.g. angles in degrees. */
+	static final int tolerance = 5;
+
+	/** The timestamps of the distances, in nanoseconds, from the oldest to the newest. */
+	private long[]  range_times  = new long[256];
+	/** The distances, in m. */
+	private float[] ranges       = new float[256];
+	/** The number of distances. */
+	private int     range_size;
+	/** The timestamps of the reflected intensities, in nanoseconds. */
+	private long[]  color_times  = new long[256];
+	/** The reflected intensities, between 0 and 1. */
+	private float[] colors       = new float[256];
+	/** The number of reflected intensities. */
+	private int     color_size;
+	/** The timestamps of the motor records, in nanoseconds. */
+	private long[]  motor_times  = new long[256];
+	/** The index of the motor of every motor record, see {@link Recorder#RIGHT}. */
+	private int[]   motors       = new int[256];
+	/** The command of every motor record, see {@link Recorder#TACHO}. */
+	private int[]   commands     = new int[256];
+	/** The value of every motor record. */
+	private int[]   values       = new int[256];
+	/** The flag of every motor record. */
+	private int[]   flags        = new int[256];
+	/** The number of motor records. */
+	private int     motor_size;
+
+	/** The timestamp of the first motion of the tracks, in nanoseconds, or of the first record if they never moved. */
+	private long first_motion;
+	/** The timestamp of the last record, in nanoseconds. */
+	private long end;
+	/** The offset from the time of the simulation to the time of the recording, in nanoseconds. */
+	private volatile long offset;
+	/** The index of the latest distance at the current time, or -1. Simulation thread only. */
+	private int  range_cursor;
+	/** The index of the latest reflected intensity at the current time, or -1. Simulation thread only. */
+	private int  color_cursor;
+	/** The recorder of the replayed run, telling its first motion, or null before a run. */
+	private Recorder replayed;
+	/** The clock of the replayed run, stopped at the end of the recording once aligned, or null before a run. */
+	private VirtualClock clock;
+	/** Tells whether the replayed run has been aligned with the recording. Simulation thread only. */
+	private boolean aligned;
+
+	/**
+	 * Builds an empty replay.
+	 */
+	private Replay() {
+		this.first_motion = -1;
+		this.range_cursor = -1;
+		this.color_cursor = -1;
+	}
+
+	/**
+	 * Loads a recording. A file which has not been closed properly, e.g. after a crash, is loaded up to its last record.
+	 *
+	 * @param filename the name of the recording.
+	 * @return the replay of the recording, aligned on its first motion at the beginning of the simulation.
+	 * @throws IOException if the file cannot be read or is not a recording.
+	 */
+	public static Replay load(String filename) throws IOException {
+		Replay replay = new Replay();
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(Telemetry.RECORD*1024);
+			boolean header = false;
+			boolean over   = false;
+			while (!over && (channel.read(buffer) > 0 || buffer.position() > 0)) {
+				buffer.flip();
+				while (buffer.remaining() >= Telemetry.RECORD) {
+					int  type = buffer.getInt();
+					int  aux  = buffer.getInt();
+					long time = buffer.getLong();
+					if (!header) {
+						if (type != Telemetry.HEADER || aux != Telemetry.MAGIC) { throw new IOException("not a recording"); }
+						header = true;
+					} else if (type == Telemetry.HEADER) {
+						// the zeroed end of a mapped region which has not been truncated.
+						over = true;
+						break;
+					} else {
+						replay.add(type, aux, time, buffer);
+						replay.end = time;
+					}
+					buffer.position(buffer.position() + 16);
+				}
+				buffer.compact();
+				if (buffer.position() > 0 && channel.position() == channel.size()) { break; } // truncated last record.
+			}
+			if (!header) { throw new IOException("empty recording"); }
+		} finally {
+			file.close();
+		}
+		if (replay.first_motion < 0) {
+			long first = Long.MAX_VALUE;
+			if (replay.range_size > 0) { first = Math.min(first, replay.range_times[0]); }
+			if (replay.color_size > 0) { first = Math.min(first, replay.color_times[0]); }
+			if (replay.motor_size > 0) { first = Math.min(first, replay.motor_times[0]); }
+			replay.first_motion = (first == Long.MAX_VALUE)? 0 : first;
+		}
+		replay.align(0);
+		replay.moved(0);
+		return replay;
+	}
+
+	/**
+	 * Adds a record to the replay, its 16 bytes of values being read without moving the buffer.
+	 *
+	 * @param type the type of the record.
+	 * @param aux the aux field of the record.
+	 * @param time the timestamp of the record, in nanoseconds.
+	 * @param buffer the buffer, at the values of the record.
+	 */
+	private void add(int type, int aux, long time, ByteBuffer buffer) {
+		int at = buffer.position();
+		switch (type) {
+		case Telemetry.ULTRA:
+			if (this.range_size == this.ranges.length) {
+				this.range_times = Arrays.copyOf(this.range_times, 2*this.range_size);
+				this.ranges      = Arrays.copyOf(this.ranges,      2*this.range_size);
+			}
+			this.range_times[this.range_size] = time;
+			this.ranges[this.range_size]      = buffer.getFloat(at);
+			this.range_size++;
+			break;
+		case Telemetry.COLOR:
+			if (this.color_size == this.colors.length) {
+				this.color_times = Arrays.copyOf(this.color_times, 2*this.color_size);
+				this.colors      = Arrays.copyOf(this.colors,      2*this.color_size);
+			}
+			this.color_times[this.color_size] = time;
+			this.colors[this.color_size]      = buffer.getFloat(at);
+			this.color_size++;
+			break;
+		case Telemetry.MOTOR:
+			if (this.motor_size == this.motors.length) {
+				int size = 2*this.motor_size;
+				this.motor_times = Arrays.copyOf(this.motor_times, size);
+				this.motors      = Arrays.copyOf(this.motors,      size);
+				this.commands    = Arrays.copyOf(this.commands,    size);
+				this.values      = Arrays.copyOf(this.values,      size);
+				this.flags       = Arrays.copyOf(this.flags,       size);
+			}
+			int i = this.motor_size++;
+			this.motor_times[i] = time;
+			this.motors[i]      = aux;
+			this.commands[i]    = buffer.getInt(at);
+			this.values[i]      = buffer.getInt(at + 4);
+			this.flags[i]       = buffer.getInt(at + 8);
+			if (this.first_motion < 0 && aux != Recorder.PLIERS && Recorder.motion(this.commands[i])) {
+				this.first_motion = time;
+			}
+			break;
+		default:
+			// poses, modes, detections... are not replayed.
+		}
+	}
+
+	/**
+	 * Aligns the first motion of the recording with a moment of the simulation.
+	 *
+	 * @param time the moment of the simulation, in nanoseconds.
+	 */
+	void align(long time) {
+		this.offset = this.first_motion - time;
+	}
+
+	/**
+	 * Gives the duration of the recording after its first motion.
+	 *
+	 * @return the duration, in nanoseconds.
+	 */
+	long span() {
+		return this.end - this.first_motion;
+	}
+
+	/**
+	 * Moves a cursor to the latest record at a given moment, forward or backward from where it is.
+	 *
+	 * @param times the timestamps of the records, in order.
+	 * @param size the number of records.
+	 * @param cursor the index of the cursor, or -1.
+	 * @param time the moment, in nanoseconds.
+	 * @return the index of the latest record at the moment, or -1 if there is none yet.
+	 */
+	private static int seek(long[] times, int size, int cursor, long time) {
+		while (cursor + 1 < size && times[cursor+1] <= time) { cursor++; }
+		while (cursor >= 0 && times[cursor] > time)          { cursor--; }
+		return cursor;
+	}
+
+	/**
+	 * Until the first motion of the replayed run, the time of the recording stays at its own first motion. Then, both
+	 * are aligned, and the replayed run ends with the recording.
+	 */
+	public void moved(long time) {
+		if (!this.aligned && this.replayed != null) {
+			long first = this.replayed.getFirstMotion();
+			if (first < 0) {
+				this.align(time);
+			} else {
+				this.align(first);
+				this.aligned = true;
+				this.clock.setLimit(Math.min(Simulator.limit, first + this.span()));
+			}
+		}
+		long recorded = time + this.offset;
+		this.range_cursor = Replay.seek(this.range_times, this.range_size, this.range_cursor, recorded);
+		this.color_cursor = Replay.seek(this.color_times, this.color_size, this.color_cursor, recorded);
+	}
+
+	/**
+	 * The latest recorded distance, nothing in range before the first one.
+	 */
+	public float distance() {
+		return (this.range_cursor < 0)? Float.POSITIVE_INFINITY : this.ranges[this.range_cursor];
+	}
+
+	/**
+	 * The latest recorded reflected intensity, the black floor of the landing zone before the first one.
+	 */
+	public float red() {
+		return (this.color_cursor < 0)? 0 : this.colors[this.color_cursor];
+	}
+
+	/**
+	 * Tells whether a command is compared between two runs, i.e. a rotation or a stop. Speeds and accelerations are left
+	 * out: the heading hold regulates them continuously from the tacho counts, and from another thread than the motions.
+	 *
+	 * @param command the code of the command.
+	 * @return true if the command is compared, false otherwise.
+	 */
+	private static boolean compared(int command) {
+		return Recorder.motion(command) || command == Recorder.STOP;
+	}
+
+	/**
+	 * Compares the rotations and stops of another run with the ones of the recording, in order. Two commands are the
+	 * same if they are sent to the same motor, with the same flag and values within {@link Replay#tolerance}.
+	 *
+	 * @param other the other run.
+	 * @return the number of commands of both runs which are the same, before the first one which differs.
+	 */
+	int matched(Replay other) {
+		int i = this.next_command(0), j = other.next_command(0), matched = 0;
+		while (i < this.motor_size && j < other.motor_size) {
+			if (this.motors[i] != other.motors[j] || this.commands[i] != other.commands[j] ||
+				this.flags[i] != other.flags[j] || Math.abs(this.values[i] - other.values[j]) > Replay.tolerance) {
+				break;
+			}
+			matched++;
+			i = this.next_command(i + 1);
+			j = other.next_command(j + 1);
+		}
+		return matched;
+	}
+
+	/**
+	 * Gives the index of a compared command, see {@link Replay#compared(int)}.
+	 *
+	 * @param from the index of the first motor record to look at.
+	 * @return the index of the first compared command from there, or the number of motor records if there is none.
+	 */
+	private int next_command(int from) {
+		while (from < this.motor_size && !Replay.compared(this.commands[from])) { from++; }
+		return from;
+	}
+
+	/**
+	 * Gives the timestamp of a compared command, see {@link Replay#compared(int)}.
+	 *
+	 * @param n the index of the compared command, from 0.
+	 * @return the timestamp of the command, in nanoseconds, or the end of the recording if there are fewer commands.
+	 */
+	long command_time(int n) {
+		int i = this.next_command(0);
+		for (int k = 0; k < n && i < this.motor_size; k++) { i = this.next_command(i + 1); }
+		return (i < this.motor_size)? this.motor_times[i] : this.end;
+	}
+
+	/**
+	 * Gives the largest difference between the tacho counts of the tracks of another run and the recorded ones, at the
+	 * same moments, the other run being aligned on the recording.
+	 *
+	 * @param other the other run, timestamped along the simulation.
+	 * @param until the moment of the simulation until which the tacho counts are compared, in nanoseconds.
+	 * @return the largest difference, in degrees.
+	 */
+	int drift(Replay other, long until) {
+		int drift = 0;
+		for (int motor = Recorder.RIGHT; motor <= Recorder.LEFT; motor++) {
+			int i = 0, tacho = 0;
+			boolean known = false;
+			for (int j = 0; j < other.motor_size && other.motor_times[j] <= until; j++) {
+				if (other.motors[j] != motor || other.commands[j] != Recorder.TACHO) { continue; }
+				long time = other.motor_times[j] + this.offset;
+				for (; i < this.motor_size && this.motor_times[i] <= time; i++) {
+					if (this.motors[i] == motor && this.commands[i] == Recorder.TACHO) {
+						tacho = this.values[i];
+						known = true;
+					}
+				}
+				if (known) { drift = Math.max(drift, Math.abs(other.values[j] - tacho)); }
+			}
+		}
+		return drift;
+	}
+
+	/**
+	 * The result of a replayed mission.
+	 */
+	public static final class Result {
+		/** The number of explored objects. */
+		public final int       explored;
+		/** The number of echoes rejected by the filter of the rover. */
+		public final int       rejections;
+		/** The number of rejected echoes never explored, i.e. of false harvests avoided by the filter. */
+		public final int       avoided;
+		/** The number of rotations and stops which are the same as the recorded ones, before the first one which differs. */
+		public final int       matched;
+		/** The time of the recording at which the replayed run left the recorded one, in ms after the first motion. */
+		public final long      divergence;
+		/** The largest difference between the tacho counts of the tracks until then, in degrees. */
+		public final int       drift;
+		/** Tells whether the mission loop ended by itself, i.e. before the end of the recording. */
+		public final boolean   done;
+		/** The virtual time of the replayed mission, in nanoseconds. */
+		public final long      time;
+		/** The real time of the replay, in nanoseconds. */
+		public final long      real;
+		/** The error which ended the mission, or null. */
+		public final Throwable error;
+
+		/**
+		 * Builds the result of a replayed mission.
+		 *
+		 * @param explored the number of explored objects.
+		 * @param rejections the number of echoes rejected by the filter of the rover.
+		 * @param avoided the number of false harvests avoided by the filter.
+		 * @param matched the number of rotations and stops which are the same as the recorded ones.
+		 * @param divergence the time at which the replayed run left the recorded one, in ms after the first motion.
+		 * @param drift the largest difference between the tacho counts of the tracks until then, in degrees.
+		 * @param done true if the mission loop ended before the end of the recording.
+		 * @param time the virtual time of the mission, in nanoseconds.
+		 * @param real the real time of the replay, in nanoseconds.
+		 * @param error the error which ended the mission, or null.
+		 */
+		Result(int explored, int rejections, int avoided, int matched, long divergence, int drift, boolean done,
+			   long time, long real, Throwable error) {
+			this.explored   = explored;
+			this.rejections = rejections;
+			this.avoided    = avoided;
+			this.matched    = matched;
+			this.divergence = divergence;
+			this.drift      = drift;
+			this.done       = done;
+			this.time       = time;
+			this.real       = real;
+			this.error      = error;
+		}
+
+		public String toString() {
+			return this.explored + " explored, " + this.rejections + " rejected, " + this.avoided + " avoided, " +
+				   this.matched + " motions replayed, diverging at " + this.divergence + " ms with tachos within " +
+				   this.drift + " deg, " + ((this.done)? "done" : "end of recording") + " at " + this.time/1000000 +
+				   " ms (" + this.real/1000000 + " ms real)" + ((this.error == null)? "" : ", " + this.error);
+		}
+	}
+
+	/**
+	 * Replays the first mission of a recording, i.e. the very loop of the deployment, see {@link Simulator}, with the
+	 * sensors of the rover fed by the recording.
+	 *
+	 * @param recording the recording.
+	 * @param tuning the parameters of the mission strategy of the rover, e.g. other windows of its filter.
+	 * @return the result of the replayed mission.
+	 * @throws IOException if the replayed run cannot be recorded.
+	 */
+	public static Result run(final Replay recording, Tuning tuning) throws IOException {
+		long real = System.nanoTime();
+		final VirtualClock clock = new VirtualClock();
+		clock.setLimit(Simulator.limit);
+		SimHardware hardware = new SimHardware(clock);
+		// the replayed run is recorded as well, to be compared with the recording.
+		Recorder recorder = new Recorder(hardware);
+		File replayed = File.createTempFile("replay", ".bin");
+		replayed.deleteOnExit();
+		recorder.open(replayed.getPath());
+		recording.replayed = recorder;
+		recording.clock    = clock;
+		recording.aligned  = false;
+		// the sensors give the samples of the first motion from the start.
+		recording.moved(0);
+		hardware.setWorld(recording);
+		final Rover rover = new Rover(recorder, tuning);
+		rover.logger.setLevel(Logger.OFF);
+		rover.mode.setEffects(false);
+
+		final Point[]     explored = new Point[64];
+		final int[]       count    = new int[1];
+		final boolean[]   done     = new boolean[1];
+		final long[]      end      = new long[1];
+		final Throwable[] error    = new Throwable[1];
+		Thread mission = clock.start(new Runnable() {
+			public void run() {
+				try {
+					rover.ultra.connect();
+					rover.pliers.connect();
+					rover.right.connect();
+					rover.left.connect();
+					rover.nav.start();
+					rover.compute_path();
+					rover.init_obstacle_detection();
+					while (!rover.mission_done()) {
+						Point sample = rover.explore();
+						if (sample != null && count[0] < explored.length) { explored[count[0]++] = sample; }
+						rover.harvest(sample);
+					}
+					done[0] = true;
+				} catch (VirtualClock.Stopped e) {
+					throw e;
+				} catch (Throwable e) {
+					error[0] = e;
+				} finally {
+					// the time goes on after the mission, for the background threads, until the clock is stopped.
+					end[0] = clock.nanoTime();
+				}
+			}
+		}, "mission");
+		try {
+			mission.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		clock.stop();
+		recorder.close();
+
+		int avoided = 0;
+		for (int k = Math.max(0, rover.rejections - Rover.rejected_capacity); k < rover.rejections; k++) {
+			int i = 2*(k & (Rover.rejected_capacity - 1));
+			boolean near = false;
+			for (int e = 0; e < count[0] && !near; e++) {
+				near = explored[e].subtract(new Point(rover.rejected[i], rover.rejected[i+1])).length() < Simulator.tolerance;
+			}
+			if (!near) { avoided++; }
+		}
+		Replay replay = Replay.load(replayed.getPath());
+		replayed.delete();
+		int matched = recording.matched(replay);
+		long divergence = recording.command_time(matched);
+		int drift = recording.drift(replay, divergence - recording.offset);
+		return new Result(count[0], rover.rejections, avoided, matched, (divergence - recording.first_motion)/1000000,
+						  drift, done[0], end[0], System.nanoTime() - real, error[0]);
+	}
+
+	/**
+	 * The main method of the replay.
+	 *
+	 * @param args the recording, copied from the brick, then optionally the windows of the median and of the Hampel
+	 * rejector and the number of hits of the filter of the rover, see {@link Tuning}.
+	 * @throws IOException if the recording cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("usage: java rover.Replay <recording> [median hampel hits]");
+			return;
+		}
+		Tuning d = Tuning.defaults;
+		Tuning tuning = (args.length < 4)? d : new Tuning(d.x, d.min_dist_detection, d.max_object_size, d.margin, d.factor,
+														  Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+														  Integer.parseInt(args[3]));
+		Replay recording = Replay.load(args[0]);
+		System.out.println("replaying " + recording.span()/1000000 + " ms of " + args[0] + " with " + tuning);
+		System.out.println(Replay.run(recording, tuning));
+	}
+}
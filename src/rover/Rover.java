@@ -4,17 +4,18 @@ package rover;
 import java.io.PrintStream;
 import java.util.Arrays;
 import lejos.hardware.Battery;
-import lejos.hardware.Button;
 import lejos.hardware.lcd.LCD;
-import lejos.hardware.port.MotorPort;
 import lejos.hardware.port.Port;
-import lejos.hardware.port.SensorPort;
 import lejos.robotics.geometry.Point;
 import lejos.robotics.navigation.Pose;
 import lejos.robotics.navigation.Waypoint;
 import tools.Beeper;
 import tools.Blinker;
+import tools.Clock;
+import tools.Fixed;
 import tools.Order;
+import tools.Telemetry;
+import tools.Vec;
 
 /**
  * To carry out a mission, the most common way is to build and use a rover.
@@ -28,8 +29,20 @@ import tools.Order;
 public class Rover {
 	/** Output stream to write both in the console and in the log file. */
 	Logger logger;
+	/** Logger of the navigation, i.e. motions, poses and their statistics. */
+	Logger nav_log;
+	/** Logger of the sensing, i.e. echoes and detections. */
+	Logger sensing_log;
+	/** Logger of the harvest of samples. */
+	Logger harvest_log;
+	/** Logger of the battery checks. */
+	Logger battery_log;
 	/**	Current mode of the rover, used to broadcast appropriate sound and light effects. */
 	RoverMode mode;
+	/** Binary telemetry of the rover: poses, distances, tacho counts, modes and detections. */
+	Telemetry telemetry;
+	/** The recorder of every stream of the devices, to be replayed offline, or null if they are not recorded. */
+	Recorder recorder;
 	
 	/** The ultrasonic sensor of the rover. */
 	UltraEyes ultra;
@@ -44,6 +57,12 @@ public class Rover {
 	
 	/** The navigator controlling the rover's movement inside the intervention zone. */
 	Navigator nav;
+	/** The clock of the rover, i.e. the wall clock on the brick or the virtual clock of a simulation. */
+	final Clock clock;
+	/** The scheduler polling every sensor and tachometer of the rover, see {@link Scheduler}. */
+	final Scheduler scheduler;
+	/** The buttons a human operator presses to end the waits of the rover. */
+	final ButtonDevice buttons;
 	
 	/** The width of the ultrasonic sensor's cone. */
 	static final float  x             = 170													/1000f;
@@ -51,8 +70,18 @@ public class Rover {
 	static final float  search_length = 500													/1000f;
 	/** A margin all around the zone to avoid going out, in m. */
 	static final float  margin        = 50													/1000f;
-	/** A path of points on the zone. */
-	static final Pose path[] = new Pose[(int)(2 * 1500/(x*1000))];
+	/** The radius of the corners of the sweep, in m. */
+	static final float  corner_radius = 100													/1000f;
+	/** If true, the sweep follows blended corners by default, otherwise the rover rotates in place at every waypoint. */
+	static final boolean arc_sweep    = true;
+	/** The part of the distance to a sample travelled at every step of its approach. */
+	static final float  factor        = 0.5f;
+	/** If true, the odometry and the projection of echoes use fixed-point arithmetic by default instead of the floats. */
+	static final boolean fixed_point  = false;
+	/** The parameters of the mission strategy, {@link Tuning#defaults} unless simulated with others. */
+	final Tuning tuning;
+	/** A path of points on the zone, two per row of the sweep. */
+	final Pose path[];
 	
 	/** A list of obstacles detected */
 	Point[] obstacles = new Point[20];
@@ -60,6 +89,26 @@ public class Rover {
 	int current_wp;
 	/** Index of last detected obstacle*/
 	int j_obst;
+	/** Buffer of the distances received from the ultrasonic sensor since the last scan, to avoid allocations. */
+	private final float[] echoes     = new float[UltraEyes.capacity];
+	/** Buffer of the timestamps of the distances received from the ultrasonic sensor since the last scan. */
+	private final long[]  echo_times = new long[UltraEyes.capacity];
+	/** For every waypoint of the planned sweep, the number of segments after which it is reached. */
+	private int[] sweep_reached;
+	/** Number of echoes drained into the buffers by {@link Rover#detect()}. */
+	private int echo_count;
+	/** Index of the next echo of the buffers to be processed by {@link Rover#detect()}. */
+	private int echo_next;
+	/** The filter of the ultrasonic distances, fed by the exploration and the harvest. */
+	final EchoFilter filter;
+	/** The number of rejected echoes which would have been detected as a new sample, i.e. of avoided harvests. */
+	int rejections;
+	/** The locations of the last rejected echoes, x then y, as a ring of {@link Rover#rejected_capacity} entries. */
+	final float[] rejected = new float[2*Rover.rejected_capacity];
+	/** Buffer of the pose of the rover at the moment of an echo, i.e. x (m), y (m) and heading (degrees). */
+	private final float[] echo_pose  = new float[3];
+	/** Buffer of the location of the object seen by an echo, reused for every echo. */
+	private final Vec     echo_point = new Vec();
 	
 	/**	The length of one side of the landing zone. */
 	static final float land_zone_side = 500													/1000f;
@@ -87,8 +136,20 @@ public class Rover {
 	static final float ULTRA_R     = (float)Math.sqrt(ULTRA_R2);
 	/** The angle between the axis of the ultrasonic sensor and the x axis of the rover. */
 	static final float ULTRA_THETA = (float)Math.atan2(ULTRA_Dy, ULTRA_Dx);
+	/** The distance from the center of rotation of the rover to the ultrasonic sensor, in micrometers. */
+	static final int   ULTRA_R_UM     = Fixed.from_meters(ULTRA_R);
+	/** The angle of the ultrasonic sensor w.r.t. to the axis of the rover, as a binary angle of 32 bits. */
+	static final int   ULTRA_THETA_BA = Fixed.atan2(Fixed.from_meters(ULTRA_Dy), Fixed.from_meters(ULTRA_Dx));
 	/** A security distance for the ultrasonic sensor. Under a precise measure is unsure. */
 	static final float MIN_DIST_DETECTION = 200												/1000f;
+	/** The window of the sliding median of the ultrasonic distances, in samples. */
+	static final int   median_window  = 3;
+	/** The window of the Hampel rejector of the ultrasonic distances, in samples. */
+	static final int   hampel_window  = 7;
+	/** The number of consecutive ultrasonic echoes before a distance is trusted. The median already asks for 2 out of 3. */
+	static final int   min_hits       = 1;
+	/** The number of rejected echoes whose location is kept, see {@link Rover#rejected}. Must be a power of 2. */
+	static final int   rejected_capacity = 64;
 	
 	/** position of the pliers w.r.t. the center of rotation of the rover. */
 	static final float PLIERS_Dx    = 135													/1000f;
@@ -102,47 +163,54 @@ public class Rover {
 	static final float MAX_OBJECT_SIZE = 300												/1000f;
 	
 	/**
-	 * Private default constructor.
-	 * It is wrapped by {@link Rover#build()}.
+	 * Package constructor, which opens nothing on the file system.
+	 * It is wrapped by {@link Rover#build(Hardware)}, and used as is by the {@link Simulator}.
 	 * 
-	 * @see Rover#build()
+	 * @param hardware the hardware giving the devices behind every peripheral of the rover.
+	 * 
+	 * @see Rover#build(Hardware)
 	 */
-	private Rover() {
-		this.logger = new Logger();
-		this.mode   = new RoverMode();
-		
-		this.ultra  = new UltraEyes(SensorPort.S4);
-		this.color  = new ColorEye(SensorPort.S1);
-		this.pliers = new Grabber(MotorPort.A);
-		this.right  = new Engine(MotorPort.B);
-		this.left   = new Engine(MotorPort.C);
-		
-		this.nav = new Navigator(MapZone.initial_pose, this.right, this.left);
+	Rover(Hardware hardware) {
+		this(hardware, Tuning.defaults);
 	}
+	
 	/**
-	 * Private constructor with parameters.
-	 * It is wrapped by {@link Rover#build(Port, Port, Port, Port, Port)}.
-	 * 
-	 * @param ultrasonic_port the port the ultrasonic sensor should be connected to.
-	 * @param color_port the port the color sensor should be connected to.
-	 * @param pliers_motor_port the port the pliers motor should be connected to.
-	 * @param right_motor_port the port the right motor should be connected to.
-	 * @param left_motor_port the port the left motor should be connected to.
+	 * Package constructor, with the parameters of the mission strategy, e.g. to evaluate them inside a {@link Sweep}.
 	 * 
-	 * @see Rover#build(Port, Port, Port, Port, Port)
+	 * @param hardware the hardware giving the devices behind every peripheral of the rover.
+	 * @param tuning the parameters of the mission strategy.
 	 */
-	private Rover(Port ultrasonic_port, Port color_port,
-			      Port pliers_motor_port, Port right_motor_port, Port left_motor_port) {
-		this.logger = new Logger();
-		this.mode   = new RoverMode();
+	Rover(Hardware hardware, Tuning tuning) {
+		this.tuning = tuning;
+		// rows of the sweep are 2*x apart, from x to the opposite border.
+		this.path   = new Pose[2*((int)((Map.width - tuning.x)/(2*tuning.x)) + 1)];
+		this.filter = EchoFilter.build(tuning.median, tuning.hampel, tuning.hits);
+		this.clock  = hardware.clock();
+		this.buttons = hardware.buttons();
+		this.logger = new Logger(this.clock);
+		this.mode   = new RoverMode(this.clock);
+		this.nav_log     = this.logger.subsystem("nav");
+		this.sensing_log = this.logger.subsystem("sensing");
+		this.harvest_log = this.logger.subsystem("harvest");
+		this.battery_log = this.logger.subsystem("battery");
 		
-		this.ultra  = new UltraEyes(ultrasonic_port);
-		this.color  = new ColorEye(color_port);
-		this.pliers = new Grabber(pliers_motor_port);
-		this.right  = new Engine(right_motor_port);
-		this.left   = new Engine(left_motor_port);
+		this.scheduler = new Scheduler(this.clock);
+		this.ultra  = new UltraEyes(hardware.ultrasonic(), this.scheduler);
+		this.color  = new ColorEye(hardware.color(), this.scheduler);
+		this.pliers = new Grabber(hardware.pliers());
+		this.right  = new Engine(hardware.right());
+		this.left   = new Engine(hardware.left());
 		
-		this.nav = new Navigator(MapZone.initial_pose, this.right, this.left);
+		// the navigator updates its pose in place: every rover starts from its own copy of the initial pose.
+		Pose initial = MapZone.initial_pose;
+		this.nav = new Navigator(new Pose(initial.getX(), initial.getY(), initial.getHeading()), this.right, this.left,
+								 this.scheduler, tuning.fixed_point);
+		this.nav.setEyes(this.ultra);
+		
+		this.telemetry = new Telemetry(this.clock);
+		this.mode.setTelemetry(this.telemetry);
+		this.ultra.setTelemetry(this.telemetry);
+		this.nav.setTelemetry(this.telemetry);
 	}
 	
 	/**
@@ -155,6 +223,8 @@ public class Rover {
 		}
 		this.current_wp = 0;
 		this.j_obst = 0;
+		// every mission is logged inside its own segments.
+		this.logger.next_mission();
 	}
 	/**
 	 * Default constructor of a Rover.
@@ -164,10 +234,7 @@ public class Rover {
 	 * @return a newly built default rover.
 	 */
 	public static Rover build() {
-		Rover rover = new Rover();
-		// the logger's output streams need to be opened.
-		rover.logger.open("log.log");
-		return rover;
+		return Rover.build(new LejosHardware());
 	}
 	
 	/**
@@ -185,9 +252,98 @@ public class Rover {
 	 */
 	public static Rover build(Port ultrasonic_port, Port color_port,
 			     			  Port pliers_motor_port, Port right_motor_port, Port left_motor_port) {
-		Rover rover = new Rover(ultrasonic_port, color_port, pliers_motor_port, right_motor_port, left_motor_port);
-		// the logger's output streams need to be opened.
-		rover.logger.open("log.log");
+		return Rover.build(ultrasonic_port, color_port, pliers_motor_port, right_motor_port, left_motor_port, false);
+	}
+	
+	/**
+	 * Constructor with parameters for a Rover, whose device streams are optionally recorded to be replayed offline.
+	 * 
+	 * @param ultrasonic_port the port the ultrasonic sensor should be connected to.
+	 * @param color_port the port the color sensor should be connected to.
+	 * @param pliers_motor_port the port the pliers motor should be connected to.
+	 * @param right_motor_port the port the right motor should be connected to.
+	 * @param left_motor_port the port the left motor should be connected to.
+	 * @param record true to record the streams of the devices, see {@link Rover#build(Hardware, boolean)}.
+	 * 
+	 * @return a newly built rover with custom port layout.
+	 */
+	public static Rover build(Port ultrasonic_port, Port color_port,
+			     			  Port pliers_motor_port, Port right_motor_port, Port left_motor_port, boolean record) {
+		return Rover.build(ultrasonic_port, color_port, pliers_motor_port, right_motor_port, left_motor_port, record,
+						   Tuning.defaults);
+	}
+	
+	/**
+	 * Constructor with parameters for a Rover, with the parameters of its mission strategy, e.g. another shape of the
+	 * sweep, and whose device streams are optionally recorded to be replayed offline.
+	 * 
+	 * @param ultrasonic_port the port the ultrasonic sensor should be connected to.
+	 * @param color_port the port the color sensor should be connected to.
+	 * @param pliers_motor_port the port the pliers motor should be connected to.
+	 * @param right_motor_port the port the right motor should be connected to.
+	 * @param left_motor_port the port the left motor should be connected to.
+	 * @param record true to record the streams of the devices, see {@link Rover#build(Hardware, boolean)}.
+	 * @param tuning the parameters of the mission strategy.
+	 * 
+	 * @return a newly built rover with custom port layout.
+	 */
+	public static Rover build(Port ultrasonic_port, Port color_port, Port pliers_motor_port, Port right_motor_port,
+							  Port left_motor_port, boolean record, Tuning tuning) {
+		return Rover.build(new LejosHardware(ultrasonic_port, color_port, pliers_motor_port, right_motor_port, left_motor_port),
+						   record, tuning);
+	}
+	
+	/**
+	 * Builds a rover upon any hardware, e.g. the motors and sensors plugged into the brick with {@link LejosHardware} or
+	 * a simulation running on a workstation with {@link SimHardware}. The mission code is the same in both cases.
+	 * 
+	 * @param hardware the hardware giving the devices behind every peripheral of the rover.
+	 * 
+	 * @return a newly built rover upon the given hardware.
+	 */
+	public static Rover build(Hardware hardware) {
+		return Rover.build(hardware, false);
+	}
+	
+	/**
+	 * Builds a rover upon any hardware, whose device streams are optionally recorded, see {@link Recorder}, so that the
+	 * run can be replayed offline.
+	 * 
+	 * @param hardware the hardware giving the devices behind every peripheral of the rover.
+	 * @param record true to record the streams of the devices inside 'recording.bin'.
+	 * 
+	 * @return a newly built rover upon the given hardware.
+	 */
+	public static Rover build(Hardware hardware, boolean record) {
+		return Rover.build(hardware, record, Tuning.defaults);
+	}
+	
+	/**
+	 * Builds a rover upon any hardware, with the parameters of its mission strategy, and whose device streams are
+	 * optionally recorded.
+	 * 
+	 * @param hardware the hardware giving the devices behind every peripheral of the rover.
+	 * @param record true to record the streams of the devices inside 'recording.bin'.
+	 * @param tuning the parameters of the mission strategy.
+	 * 
+	 * @return a newly built rover upon the given hardware.
+	 */
+	public static Rover build(Hardware hardware, boolean record, Tuning tuning) {
+		Rover rover;
+		if (record) {
+			// every sample, tacho count and motor command goes through the recorder, see Replay.
+			Recorder recorder = new Recorder(hardware);
+			recorder.open("recording.bin");
+			rover = new Rover(recorder, tuning);
+			rover.recorder = recorder;
+		} else {
+			rover = new Rover(hardware, tuning);
+		}
+		// the logger's output streams need to be opened, records are written by a background thread inside size-capped
+		// segments, one set per mission.
+		rover.logger.open_segments("log", true);
+		// the telemetry file is capped as well, see Telemetry#max_segments.
+		rover.telemetry.open("telemetry.bin");
 		return rover;
 	}
 	
@@ -206,21 +362,22 @@ public class Rover {
 		
 		// compute voltages slices for enhanced display and log.
 		int bat = bv/1000;
-		if      (bat == 8) 	{ this.logger.print("battery is full");        Blinker.blink(Blinker.GREEN,  Blinker.STILL); }
-		else if (bat == 7) 	{ this.logger.print("battery is almost full"); Blinker.blink(Blinker.GREEN,  Blinker.SLOW); }
-		else if (bat == 6) 	{ this.logger.print("battery is very good");   Blinker.blink(Blinker.GREEN,  Blinker.FAST); }
-		else if (bat == 5) 	{ this.logger.print("battery is good");        Blinker.blink(Blinker.ORANGE, Blinker.STILL); }
-		else if (bat == 4) 	{ this.logger.print("battery is half");        Blinker.blink(Blinker.ORANGE, Blinker.SLOW); }
-		else if (bat == 3) 	{ this.logger.print("battery is fine");        Blinker.blink(Blinker.ORANGE, Blinker.FAST); }
-		else if (bat == 2) 	{ this.logger.print("battery is low");         Blinker.blink(Blinker.RED,    Blinker.STILL); }
-		else if (bat == 1) 	{ this.logger.print("battery is very low");    Blinker.blink(Blinker.RED,    Blinker.SLOW); }
-		else if (bat == 0) 	{ this.logger.print("battery is critical");    Blinker.blink(Blinker.RED,    Blinker.FAST); }
-		this.logger.println(" with " + bv + " mV");
+		String state = "battery is unknown";
+		if      (bat == 8) 	{ state = "battery is full";        Blinker.blink(Blinker.GREEN,  Blinker.STILL); }
+		else if (bat == 7) 	{ state = "battery is almost full"; Blinker.blink(Blinker.GREEN,  Blinker.SLOW); }
+		else if (bat == 6) 	{ state = "battery is very good";   Blinker.blink(Blinker.GREEN,  Blinker.FAST); }
+		else if (bat == 5) 	{ state = "battery is good";        Blinker.blink(Blinker.ORANGE, Blinker.STILL); }
+		else if (bat == 4) 	{ state = "battery is half";        Blinker.blink(Blinker.ORANGE, Blinker.SLOW); }
+		else if (bat == 3) 	{ state = "battery is fine";        Blinker.blink(Blinker.ORANGE, Blinker.FAST); }
+		else if (bat == 2) 	{ state = "battery is low";         Blinker.blink(Blinker.RED,    Blinker.STILL); }
+		else if (bat == 1) 	{ state = "battery is very low";    Blinker.blink(Blinker.RED,    Blinker.SLOW); }
+		else if (bat == 0) 	{ state = "battery is critical";    Blinker.blink(Blinker.RED,    Blinker.FAST); }
+		this.battery_log.info(state + " with " + bv + " mV");
 		
 		this.mode.stop();
 		this.logger.println("battery checked");
 		
-		Button.waitForAnyPress(5000);
+		this.buttons.waitForAnyPress(5000);
 		// throw error if the battery is too low.
 		if (bv < VOLTAGE_THRESHOLD) { this.error(); } 
 	}
@@ -251,23 +408,23 @@ public class Rover {
 		int error = 0;
 		if (this.ultra.connect()) 
 				{ Beeper.beep();     this.logger.println("con. us: ok"); }
-		else 	{ Beeper.twoBeeps(); this.logger.println("con. us: ko (" + this.ultra.port.getName() + ")");
+		else 	{ Beeper.twoBeeps(); this.logger.println("con. us: ko (" + this.ultra.getName() + ")");
 		          error +=  1; }
 //		if (this.color.connect()) 
 //				{ Beeper.beep();     this.logger.println("con. cs: ok"); }
-//		else 	{ Beeper.twoBeeps(); this.logger.println("con. cs: ko (" + this.color.port.getName() + ")");
+//		else 	{ Beeper.twoBeeps(); this.logger.println("con. cs: ko (" + this.color.getName() + ")");
 //		          error +=  2; }
 		if (this.pliers.connect()) 
 				{ Beeper.beep();     this.logger.println("con. pm: ok"); }
-		else 	{ Beeper.twoBeeps(); this.logger.println("con. pm: ko (" + this.pliers.motor.port.getName() + ")");
+		else 	{ Beeper.twoBeeps(); this.logger.println("con. pm: ko (" + this.pliers.motor.getName() + ")");
 		          error +=  4; }
 		if (this.right.connect()) 
 				{ Beeper.beep();     this.logger.println("con. rm: ok"); }
-		else 	{ Beeper.twoBeeps(); this.logger.println("con. rm: ko (" + this.right.port.getName() + ")");
+		else 	{ Beeper.twoBeeps(); this.logger.println("con. rm: ko (" + this.right.getName() + ")");
 		          error +=  8; }
 		if (this.left.connect()) 
 				{ Beeper.beep();     this.logger.println("con. lm: ok"); }
-		else 	{ Beeper.twoBeeps(); this.logger.println("con. lm: ko (" + this.left.port.getName() + ")");
+		else 	{ Beeper.twoBeeps(); this.logger.println("con. lm: ko (" + this.left.getName() + ")");
 	              error += 16; }
 		
 		// diagnostic is now done.
@@ -276,43 +433,67 @@ public class Rover {
 		
 		// if an error occurred, 'error' is non zero.
 		if (error != 0) { this.error(); }	
+		
+		// tracks are connected, the pose can now be integrated continuously.
+		this.nav.start();
 	}
 	
 	/**
 	 * Calibrate the position of the rover in the zone by looking for the borders of the black square.
 	 * we assume that the X-axis is aligned with the length of the zone.
+	 * The color sensor is sampled at its maximum rate during the calibration: the border is located from the moment of
+	 * the black to white transition, matched against the history of the odometry, and not from the moment the rover
+	 * noticed it and stopped.
 	 */
 	public void calibrate_origin() {
-		float color; // the color under the sensor.
+		this.color.start();
 		
 		// first the rover moves along X-axis and waits for white floor.
-		this.nav.setup_travel(Rover.search_length);
-		color = -1;
-		while (this.nav.isMoving() && color < ColorEye.threshold) { // white is > 0.5 and black is < 0.5
-			color = this.color.read().getValue(); // update the color value.
-			Thread.yield();
-		}
-		if (color < 0.5) { this.error(); } else { Beeper.beep(); } // color stays below 0.5 if something fatal occurred.
+		float[] travel = this.cross_border();
+		if (travel == null) { this.error(); } else { Beeper.beep(); } // no border if something fatal occurred.
 		
-		this.nav.getPose().setLocation(0.5f, this.nav.getPose().getY()); // update the x coordinate.
-		this.nav.travel(-Rover.margin); // give a little margin to search along y axis.
+		// the landing square is centered on the initial pose.
+		float border = Rover.land_zone_side/2;
+		this.nav.setLocation(MapZone.initial_pose.getX() + border + travel[0], this.nav.getPose().getY()); // update x.
+		// back onto the black square, with a little margin to search along y axis.
+		this.nav.travel(-((float)Math.hypot(travel[0], travel[1]) + this.tuning.margin));
 		
 		this.nav.rotate(90); // rotate left to search white along the y axis.
 		
 		// same remarks
-		this.nav.setup_travel(Rover.search_length);
-		color = -1;
-		while (this.nav.isMoving() && color < ColorEye.threshold) {
-			color = this.color.read().getValue();
-			Thread.yield();
-		}
-		if (color == -1) { this.error(); } else { Beeper.beep(); }
+		travel = this.cross_border();
+		if (travel == null) { this.error(); } else { Beeper.beep(); }
 		
-		this.nav.getPose().setLocation(this.nav.getPose().getX(), 0.5f); // update the y coordinate.
+		this.nav.setLocation(this.nav.getPose().getX(), MapZone.initial_pose.getY() + border + travel[1]); // update y.
 		
+		this.color.stop();
 		// location should be accurate.
 	}
 	
+	/**
+	 * Travels forward until the color sensor sees the white floor, then stops.
+	 * 
+	 * @return the travel of the rover since the border has been crossed, along x and y, in m, or null if the travel ended
+	 * without crossing any border.
+	 */
+	private float[] cross_border() {
+		long before = this.color.edges();
+		this.nav.setup_travel(Rover.search_length);
+		while (this.nav.isMoving() && this.color.edges() == before) {
+			this.clock.pause();
+		}
+		this.nav.cancel();
+		this.nav.compute_new_location();
+		long edge = this.color.edge(before);
+		if (edge < 0) { return null; }
+		float[] at  = new float[3];
+		float[] now = new float[3];
+		this.nav.poseAt(edge, at);
+		this.nav.snapshot(now);
+		this.sensing_log.info("border crossed " + (float)Math.hypot(now[0] - at[0], now[1] - at[1]) + " m before the stop");
+		return new float[] {now[0] - at[0], now[1] - at[1]};
+	}
+	
 	/**
 	 * Scans the neighbourhood of the rover to localize samples. 
 	 * 
@@ -326,7 +507,7 @@ public class Rover {
 		for (int i = 0; i < angles.length; i++) {
 			angles[i] = 10*i - 90;
 			this.nav.rotateTo(angles[i]);
-			dists[i] = this.ultra.read().getValue();
+			dists[i] = this.ultra.next();
 //			dists[i] = (float)Math.sqrt(
 //				dists[i]*dists[i] + Rover.ULTRA_R2 - 2*dists[i]*Rover.ULTRA_R2*Math.cos(Rover.ULTRA_THETA));
 			System.out.println(dists[i]);
@@ -351,7 +532,7 @@ public class Rover {
 					Point detected_point = this.point_from_ultra(dists[i]); // compute location.
 					if(Rover.map.inside(detected_point) && !Rover.recup_zone.inside(detected_point)) {
 						msg.concat(", inside the zone");
-						if (detected_point.subtract(obstacles[j]).length() > Rover.MAX_OBJECT_SIZE) {
+						if (detected_point.subtract(obstacles[j]).length() > this.tuning.max_object_size) {
 							j++;
 							msg.concat(", too big -> next obstacle "+j);
 						} else {
@@ -394,7 +575,7 @@ public class Rover {
 		this.logger.println("starting landing mode");
 		this.mode.enter_landind_mode();
 		System.out.println("  -> press any key to end landing");
-		Button.waitForAnyPress();
+		this.buttons.waitForAnyPress(0);
 		this.logger.println("ending landing mode");
 		this.mode.stop();		
 	}
@@ -412,70 +593,51 @@ public class Rover {
 												this.nav.getPose().getY() + ", " +
 												this.nav.getPose().getHeading());
 		
-		Point direction;
-		int angle;
-		float d;
-		Point detected_obj;
+		Vec detected_obj;
 		
-		boolean harvest_needed = false;
+		// the whole remaining sweep is queued, so that the tracks do not stop at every waypoint.
+		int first_wp = this.current_wp;
+		Segment[] baseline = this.plan_sweep(first_wp);
+		Segment[] segments = (this.tuning.arc_sweep)? this.plan_arc_sweep(first_wp) : baseline;
+		this.logger.println("sweep planned: " + Trajectory.duration(segments) + " s (rotate+travel: " +
+							Trajectory.duration(baseline) + " s)");
+		long start = this.clock.nanoTime();
+		Motion sweep = this.nav.follow(segments);
+		int reached = 0; // number of completed segments already logged.
+		HeadingHold hold = this.nav.getHeadingHold();
+		int legs = hold.getLegs(); // number of held travels already logged.
 		
-		while (this.current_wp < Rover.path.length && !harvest_needed) {
-			// compute the direction from current position to the next checkpoint
-			direction = Rover.path[this.current_wp].getLocation().subtract(this.nav.getPose().getLocation());
-			// the angle of rotation is equal to the angle of the vector 'direction', modulus the current heading.
-			angle = (int) (180/Math.PI * direction.angle());
-			
-			// Rotating in direction of next checkpoint while scanning
-			this.nav.setup_rotate(this.nav.getPose().getHeading() - angle);
-			while (this.nav.isMoving()) {
-				d = this.ultra.read().getValue(); //scanning for obstacles
-				if (d < Double.MAX_VALUE) {
-					detected_obj = this.point_from_ultra(d);
-					if (Rover.map.inside(detected_obj) && !Rover.recup_zone.inside(detected_obj)) {
-						if (this.is_new_sample(detected_obj)) {
-							this.logger.println("d: " + d);
-							this.logger.println("det (X:" +	detected_obj.getX() + " Y:" +	detected_obj.getY() + ")");
-							
-							this.j_obst++;
-							this.nav.setup_travel(0);
-							this.nav.compute_new_location();
-							return detected_obj;
-						}
-					}
-				}
+		// only echoes received during the sweep are of interest.
+		this.ultra.skip();
+		this.filter.reset();
+		this.echo_count = 0;
+		this.echo_next  = 0;
+		while (!sweep.isDone()) {
+			detected_obj = this.detect(); // scanning for obstacles
+			if (detected_obj != null) {
+				this.j_obst++;
+				// stop the tracks where they are, the pose is updated once they are at rest.
+				this.nav.cancel();
+				this.current_wp = first_wp + this.reached_waypoints(this.nav.getCompletedSegments());
+				return new Point(detected_obj.x, detected_obj.y); // the echo point is reused.
 			}
-			this.nav.compute_new_heading();
-			this.logger.println("rotated pose: " +	this.nav.getPose().getX() + ", " +
-													this.nav.getPose().getY() + ", " +
-													this.nav.getPose().getHeading());
-			
-			// Traveling to the next checkpoint while scanning
-			this.nav.setup_travel(direction.length());
-			while (this.nav.isMoving()) {
-				d = this.ultra.read().getValue(); // scanning for obstacles
-				if (d < Double.MAX_VALUE) {
-					// there is something...
-					detected_obj = this.point_from_ultra(d); // compute location.
-					if (Rover.map.inside(detected_obj) && !Rover.recup_zone.inside(detected_obj)) {
-						if (this.is_new_sample(detected_obj)) {
-							// ...inside the map.
-							this.logger.println("d: " + d);
-							this.logger.println("det (X:" +	detected_obj.getX() + " Y:" +	detected_obj.getY() + ")");
-							this.j_obst++;
-							this.nav.setup_travel(0);
-							this.nav.compute_new_location();
-							return detected_obj;
-						}
-					}
+			if (this.nav.getCompletedSegments() > reached) {
+				reached = this.nav.getCompletedSegments();
+				if (this.nav_log.enabled(Logger.DEBUG)) {
+					this.nav_log.debug("segment " + reached + " pose: " +	this.nav.getPose().getX() + ", " +
+																			this.nav.getPose().getY() + ", " +
+																			this.nav.getPose().getHeading());
 				}
 			}
-			this.nav.compute_new_location();
-			this.logger.println("travelled pose: " +	this.nav.getPose().getX() + ", " +
-														this.nav.getPose().getY() + ", " +
-														this.nav.getPose().getHeading());
-			
-			this.current_wp++;
+			if (hold.getLegs() > legs) {
+				legs = hold.getLegs();
+				this.nav_log.debug("travel heading error: rms {} deg, max {} deg", hold.getLastRmsError(),
+								   hold.getLastMaxError());
+			}
+			this.clock.pause();
 		}
+		this.current_wp = this.path.length;
+		this.logger.println("sweep done in " + (this.clock.nanoTime() - start)/1000000 + " ms");
 
 		this.logger.println("ending exploration mode");
 		this.mode.stop();
@@ -491,7 +653,7 @@ public class Rover {
 		this.logger.println("starting harvest mode");
 		this.mode.enter_harvest_mode();
 		
-		float factor = 0.5f;
+		float factor = this.tuning.factor;
 		boolean approach = (sample == null)? false:true;
 		if (approach) {
 			// make sure the pliers are open.
@@ -517,19 +679,19 @@ public class Rover {
 				if (distance >= Float.MAX_VALUE) {
 					// rover lost the sample.
 					// it could be a bit to the right or a bit to the left, let's check both.
-					Point check_obj;
+					Vec check_obj;
 					boolean found_back = false;
 					for (int i = 0; i < check_relative_angles.length; i++) {
 						this.nav.rotate(check_relative_angles[i]); // rotate to the current checking angle.
-						distance = this.ultra.read().getValue(); // get the distance.
+						distance = this.next_echo(); // get the distance, once the rotation is over.
 						if (distance < Float.MAX_VALUE) { // there is something...
-							check_obj = this.point_from_ultra(distance); // compute location.
+							check_obj = this.point_from_ultra(distance, this.echo_point); // compute location.
 							if (Rover.map.inside(check_obj) && !Rover.recup_zone.inside(check_obj)) {
 								if (this.is_new_sample(check_obj)) {
-									this.logger.println("check ("+distance+"): " +	check_obj.getX() + ", " +
-											check_obj.getY());
-									this.logger.println(" ("+	this.nav.getPose().getX() + ", " +
-											this.nav.getPose().getY() + ")");
+									this.telemetry.detection(this.clock.nanoTime(), check_obj.x, check_obj.y, distance);
+									this.harvest_log.debug("check ({}): {}, {}", distance, check_obj.x, check_obj.y);
+									this.harvest_log.debug(" ({}, {})", this.nav.getPose().getX(),
+														   this.nav.getPose().getY());
 									// ...inside the zone.
 									found_back = true;
 									break;
@@ -554,20 +716,22 @@ public class Rover {
 				}
 				// not an else because distance could have changed inside previous if statement.
 				if (distance < Double.MAX_VALUE) {	
-					Point check_obj = this.point_from_ultra(distance); // compute location.
-					if (Rover.map.inside(check_obj) && !Rover.recup_zone.inside(check_obj)) {
-						if (this.is_new_sample(check_obj)) {
-							this.logger.println("check ("+distance+"): " +	check_obj.getX() + ", " +
-									check_obj.getY());
-							this.logger.println(" ("+	this.nav.getPose().getX() + ", " +
-									this.nav.getPose().getY() + ")");
-							prev_distance = distance; // backup of the distance.
-							this.nav.travel(factor*distance); // travel 90% of the distance to the sample.
-							distance = this.ultra.read().getValue(); // new distance to the sample.
-						}
-					}	
+					Vec check_obj = this.point_from_ultra(distance, this.echo_point); // compute location.
+					if (Rover.map.inside(check_obj) && !Rover.recup_zone.inside(check_obj) &&
+						this.is_new_sample(check_obj)) {
+						this.telemetry.detection(this.clock.nanoTime(), check_obj.x, check_obj.y, distance);
+						this.harvest_log.debug("check ({}): {}, {}", distance, check_obj.x, check_obj.y);
+						this.harvest_log.debug(" ({}, {})", this.nav.getPose().getX(), this.nav.getPose().getY());
+						prev_distance = distance; // backup of the distance.
+						this.nav.travel(factor*distance); // travel 90% of the distance to the sample.
+						distance = this.next_echo(); // new distance to the sample.
+					} else {
+						// the echo is outside the zone or on a known object: look around for the sample instead of
+						// spinning on the same echo forever.
+						distance = Float.MAX_VALUE;
+					}
 				}
-				if (distance < Rover.MIN_DIST_DETECTION) {
+				if (distance < this.tuning.min_dist_detection) {
 					approach = false;
 				}
 			}
@@ -603,7 +767,7 @@ public class Rover {
 			
 			this.pliers.grab(); // go to previous pliers state.
 		} else {
-			this.logger.println("no sample to fetch");
+			this.harvest_log.info("no sample to fetch");
 		}
 		
 		this.logger.println("ending harvest mode");
@@ -613,10 +777,20 @@ public class Rover {
 	  * Inbetween missions, the specifications tell us that the rover must wait for a human intervention.
 	  */
 	public void await() {
+		// elapsed time of the blocking motions since the beginning of the missions, the thread sleeping meanwhile.
+		this.nav_log.info("blocking motions waited for " + this.nav.getWaitTime()/1000000 + " ms, " +
+						  this.nav.getWakeups() + " wake-ups");
+		this.nav_log.info("track skews over " + this.nav.getSkewCount() + " motions: start <= " +
+							this.nav.getMaxStartSkew()/1000 + " us, end <= " + this.nav.getMaxEndSkew()/1000 + " us");
+		this.nav_log.info("heading held over " + this.nav.getHeadingHold().getLegs() + " travels: error <= " +
+							this.nav.getHeadingHold().getMaxError() + " deg");
+		this.sensing_log.info("polls of the scheduler:\n" + this.scheduler.report());
+		this.logger.println("log records: " + this.logger.getDropped() + " dropped, " + this.logger.getBlocked() +
+							" blocked");
 		this.logger.println("starting wait mode");
 		this.mode.enter_wait_mode();
 		System.out.println("  -> press any key to end wait");
-		Button.waitForAnyPress();
+		this.buttons.waitForAnyPress(0);
 		this.logger.println("ending wait mode");
 		this.mode.stop();		
 	}
@@ -627,9 +801,20 @@ public class Rover {
 		this.logger.println("starting sleep mode");
 		this.mode.enter_sleep_mode();
 		System.out.println("  -> press any key to end sleep");
-		Button.waitForAnyPress();
+		this.buttons.waitForAnyPress(0);
 		this.logger.println("ending sleep mode");
-		this.mode.stop();		
+		this.mode.stop();
+		this.nav.stop();
+		if (this.telemetry.getDropped() > 0) {
+			this.logger.println("telemetry full: " + this.telemetry.getDropped() + " records dropped");
+		}
+		if (this.recorder != null && this.recorder.getDropped() > 0) {
+			this.logger.println("recording: " + this.recorder.getDropped() + " records dropped");
+		}
+		// the program ends with the sleep mode: write every pending record.
+		this.logger.drain();
+		this.telemetry.close();
+		if (this.recorder != null) { this.recorder.close(); }
 	}
 	/**
 	 *  Sometimes, an error can occur. The rover then enters the error mode.
@@ -639,10 +824,14 @@ public class Rover {
 		// the rover enters the error mode...
 		this.mode.enter_error_mode();
 		System.out.println("  -> press any key to exit");
-		Button.waitForAnyPress();
+		this.buttons.waitForAnyPress(0);
 		this.logger.println("ending error mode -> exit program");
 		this.mode.stop();
-		// and program halts when a button is pressed.
+		this.nav.stop();
+		// and program halts when a button is pressed, once every pending record is written.
+		this.logger.drain();
+		this.telemetry.close();
+		if (this.recorder != null) { this.recorder.close(); }
 		System.exit(1);
 	}
 
@@ -653,16 +842,209 @@ public class Rover {
 	 * Computes the position of an obstacle detected by the ultrasonic sensor.
 	 * As the sensor is not exactly at the center of rotation of the rover, its position w.r.t. to this center of rotation
 	 * has to be taken into account to have an accurate position for the obstacle.
+	 * The pose of the rover is the current one, see {@link Rover#point_from_ultra(float, long, Vec)} for echoes
+	 * received during a motion.
 	 * 
 	 * @param distance the distance from the sensor to the object, assuming that the sensor is aligned with the axis of
 	 * the rover
 	 * @return the obstacle position, with ultrasonic correction.
 	 */
 	private Point point_from_ultra(float distance) {
-//		return this.nav.getPose().pointAt(distance, this.nav.getPose().getHeading());
-		return this.nav.getPose().getLocation().
-					pointAt(Rover.ULTRA_R, this.nav.getPose().getHeading()+Rover.ULTRA_THETA).
-					pointAt(distance, this.nav.getPose().getHeading()); // compute location.
+		return this.point_from_ultra(distance, new Vec()).copy_to(new Point(0, 0));
+	}
+	/**
+	 * Computes the position of an obstacle detected by the ultrasonic sensor, from the current pose, without allocation.
+	 * 
+	 * @param distance the distance from the sensor to the object, assuming that the sensor is aligned with the axis of
+	 * the rover
+	 * @param result the vector in which the obstacle position is written.
+	 * @return the obstacle position, with ultrasonic correction, i.e. 'result'.
+	 */
+	private Vec point_from_ultra(float distance, Vec result) {
+		return this.point_from_ultra(distance, this.clock.nanoTime(), result);
+	}
+	/**
+	 * Computes the position of an obstacle detected by the ultrasonic sensor at a given moment.
+	 * The rover keeps moving while echoes travel, hence the distance is projected from the pose the rover had at the
+	 * moment of the echo, interpolated by the navigator. Nothing is allocated, the result is written in a given point.
+	 * 
+	 * @param distance the distance from the sensor to the object, assuming that the sensor is aligned with the axis of
+	 * the rover
+	 * @param time the moment of the echo, in nanoseconds (see {@link Clock#nanoTime()}).
+	 * @param result the vector in which the obstacle position is written.
+	 * @return the obstacle position, with ultrasonic correction, i.e. 'result'.
+	 */
+	Vec point_from_ultra(float distance, long time, Vec result) {
+		this.nav.poseAt(time, this.echo_pose);
+		return Rover.project(this.echo_pose[0], this.echo_pose[1], this.echo_pose[2], distance, this.tuning.fixed_point,
+							 result);
+	}
+	/**
+	 * Projects a distance measured by the ultrasonic sensor from a given pose of the rover, without allocation.
+	 * With the fixed-point backend, the trigonometry is done with the tables of {@link Fixed}.
+	 * 
+	 * @param x the x coordinate of the rover, in m.
+	 * @param y the y coordinate of the rover, in m.
+	 * @param heading the heading of the rover, in degrees.
+	 * @param distance the distance from the sensor to the object.
+	 * @param fixed true for the fixed-point backend, false for the floating-point one.
+	 * @param result the vector in which the obstacle position is written.
+	 * @return the obstacle position, with ultrasonic correction, i.e. 'result'.
+	 */
+	static Vec project(float x, float y, float heading, float distance, boolean fixed, Vec result) {
+		if (fixed) {
+			int h      = Fixed.from_degrees(heading);
+			int sensor = h + Rover.ULTRA_THETA_BA;
+			int d      = Fixed.from_meters(distance);
+			return result.set(x, y).add(
+					Fixed.to_meters(Fixed.mul(Rover.ULTRA_R_UM, Fixed.cos(sensor)) + Fixed.mul(d, Fixed.cos(h))),
+					Fixed.to_meters(Fixed.mul(Rover.ULTRA_R_UM, Fixed.sin(sensor)) + Fixed.mul(d, Fixed.sin(h))));
+		}
+		double h = Math.toRadians(heading);
+		// position of the sensor, then position of the object in front of it.
+		double sensor = h + Rover.ULTRA_THETA;
+		return result.set(x, y)
+					 .advance(Rover.ULTRA_R, (float)Math.cos(sensor), (float)Math.sin(sensor))
+					 .advance(distance,      (float)Math.cos(h),      (float)Math.sin(h));
+	}
+	
+	/**
+	 * Processes every echo received since the last call, looking for a new sample.
+	 * Echoes are drained from the ultrasonic sensor by bursts into the buffers of the rover, and the ones following a
+	 * detection are kept there for the next call. Every echo goes through the filter of the rover: an echo it rejects,
+	 * which would have been taken for a new sample otherwise, is counted as an avoided harvest.
+	 * 
+	 * @return the location of a new sample inside the zone, written inside a reused vector, or null if there is none.
+	 */
+	private Vec detect() {
+		while (true) {
+			if (this.echo_next == this.echo_count) {
+				this.echo_count = this.ultra.readInto(this.echoes, this.echo_times, 0, this.echoes.length);
+				this.echo_next  = 0;
+				if (this.echo_count == 0) { return null; }
+			}
+			int k = this.echo_next++;
+			float raw = this.echoes[k];
+			float d   = this.filter.filter(raw);
+			if (raw < Double.MAX_VALUE) {
+				// there is something...
+				boolean trusted = d < Double.MAX_VALUE;
+				Vec detected_obj = this.point_from_ultra((trusted)? d : raw, this.echo_times[k],
+														 this.echo_point); // compute location.
+				if (Rover.map.inside(detected_obj) && !Rover.recup_zone.inside(detected_obj)) {
+					if (this.is_new_sample(detected_obj)) {
+						// ...inside the map.
+						if (!trusted) {
+							this.reject(this.echo_times[k], detected_obj, raw);
+							continue;
+						}
+						this.telemetry.detection(this.echo_times[k], detected_obj.x, detected_obj.y, d);
+						this.sensing_log.debug("det (X:{} Y:{}) at d: {}", detected_obj.x, detected_obj.y, d);
+						return detected_obj;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Accounts for an echo rejected by the filter, which would have been detected as a new sample otherwise.
+	 * Rejected echoes closer than {@link Tuning#max_object_size} to the previous one belong to the same object, which
+	 * would have been harvested only once.
+	 * 
+	 * @param time the moment of the echo, in nanoseconds.
+	 * @param location the location of the rejected object.
+	 * @param distance the distance of the echo, in m.
+	 */
+	private void reject(long time, Vec location, float distance) {
+		if (this.rejections > 0) {
+			int last = 2*((this.rejections - 1) & (Rover.rejected_capacity - 1));
+			float dx = location.x - this.rejected[last];
+			float dy = location.y - this.rejected[last+1];
+			if (dx*dx + dy*dy <= this.tuning.max_object_size*this.tuning.max_object_size) { return; }
+		}
+		int i = 2*(this.rejections & (Rover.rejected_capacity - 1));
+		this.rejected[i]   = location.x;
+		this.rejected[i+1] = location.y;
+		this.rejections++;
+		this.telemetry.rejection(time, location.x, location.y, distance);
+		this.sensing_log.debug("rej (X:{} Y:{}) at d: {}", location.x, location.y, distance);
+	}
+
+	/**
+	 * Reads a single filtered distance from the ultrasonic sensor, waiting for fresh samples.
+	 * The filter is reset, then fed until it gives a distance or until its output is settled.
+	 * 
+	 * @return the filtered distance, in m, infinite if nothing is trusted in front of the sensor.
+	 */
+	float next_echo() {
+		this.filter.reset();
+		float distance = EchoFilter.none;
+		for (int k = 0; k < this.filter.depth() && !(distance < EchoFilter.none); k++) {
+			distance = this.filter.filter(this.ultra.next());
+		}
+		return distance;
+	}
+	
+	/**
+	 * Plans the segments of the sweep, from a given waypoint of the path to the end of it.
+	 * Each waypoint is reached by a rotation towards it, followed by a travel. The pose of the rover is predicted from
+	 * segment to segment, the same way the navigator updates it.
+	 * 
+	 * @param from the index of the first waypoint to be reached.
+	 * @return the segments of the sweep, two per waypoint.
+	 */
+	Segment[] plan_sweep(int from) {
+		Segment[] segments = new Segment[2*Math.max(0, this.path.length - from)];
+		this.sweep_reached = new int[Math.max(0, this.path.length - from)];
+		Point location = this.nav.getPose().getLocation();
+		float heading  = this.nav.getPose().getHeading();
+		for (int i = from; i < this.path.length; i++) {
+			// compute the direction from current position to the next checkpoint
+			Point direction = this.path[i].getLocation().subtract(location);
+			// the angle of rotation is equal to the angle of the vector 'direction', modulus the current heading.
+			// the rotation follows the same convention as the blended sweep, see Trajectory#plan.
+			float angle    = (float)Math.toDegrees(direction.angle());
+			float rotation = Trajectory.wrap(angle - heading);
+			heading += rotation;
+			location = location.pointAt(direction.length(), heading);
+			segments[2*(i-from)]   = Segment.rotate(rotation);
+			segments[2*(i-from)+1] = Segment.travel(direction.length());
+			this.sweep_reached[i-from] = 2*(i-from+1);
+		}
+		return segments;
+	}
+	
+	/**
+	 * Plans the segments of the sweep with blended corners, from a given waypoint of the path to the end of it.
+	 * The rover rotates in place towards the first waypoint only, then follows the path without stopping.
+	 * 
+	 * @param from the index of the first waypoint to be reached.
+	 * @return the segments of the sweep.
+	 * @see Trajectory
+	 */
+	Segment[] plan_arc_sweep(int from) {
+		Point[] waypoints = new Point[Math.max(0, this.path.length - from)];
+		for (int i = 0; i < waypoints.length; i++) {
+			waypoints[i] = this.path[from+i].getLocation();
+		}
+		this.sweep_reached = new int[waypoints.length];
+		return Trajectory.plan(this.nav.getPose().getX(), this.nav.getPose().getY(), this.nav.getPose().getHeading(),
+							   waypoints, Rover.corner_radius, this.sweep_reached);
+	}
+	
+	/**
+	 * Counts the waypoints of the planned sweep reached after a given number of segments.
+	 * 
+	 * @param segments the number of completed segments.
+	 * @return the number of reached waypoints.
+	 */
+	private int reached_waypoints(int segments) {
+		int i = 0;
+		while (i < this.sweep_reached.length && this.sweep_reached[i] <= segments) {
+			i++;
+		}
+		return i;
 	}
 	
 	/**
@@ -670,12 +1052,13 @@ public class Rover {
 	 * It is explained more deeply in ./report/report-martian-rover.pdf (see section 3.b.ii)
 	 */
 	public void compute_path() {
-		for (int i = 0; i < Rover.path.length; i++) {
-			float x = ((i%4 == 0) || (i%4 == 3))? Rover.x : Map.length*1000-Rover.x;
-			float y = Rover.x+2*Rover.x*(int)(i/2);
+		float w = this.tuning.x;
+		for (int i = 0; i < this.path.length; i++) {
+			float x = ((i%4 == 0) || (i%4 == 3))? w : Map.length-w;
+			float y = w+2*w*(int)(i/2);
 			float angle = (i%2 == 1)? -90 : ((i%4 == 0)? 0 : -180);
-			path[i] = new Pose(x/1000f, y/1000f, angle);
-			this.logger.println("p["+i+"]: "+path[i]);
+			this.path[i] = new Pose(x, y, angle);
+			this.logger.println("p["+i+"]: "+this.path[i]);
 		}
 	}
 	
@@ -709,10 +1092,12 @@ public class Rover {
 	 * @param detected_obj the newly detected object
 	 * @return true if the detected object has never been seen before, false if known.
 	 */
-	private boolean is_new_sample(Point detected_obj) {
+	boolean is_new_sample(Vec detected_obj) {
 		boolean new_sample = true;
 		for (int i = 0; i < j_obst; i++) {
-			if (this.obstacles[i].subtract(detected_obj).length() < Rover.MIN_DIST_DETECTION) {
+			// squared distances, to avoid both the allocation of the difference and the square root.
+			float min = this.tuning.min_dist_detection;
+			if (detected_obj.distanceSquared(this.obstacles[i]) < min*min) {
 				new_sample = false;
 				break;
 			}
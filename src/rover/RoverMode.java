@@ -2,6 +2,9 @@ package rover;
 
 import tools.Beeper;
 import tools.Blinker;
+import tools.Clock;
+import tools.RealClock;
+import tools.Telemetry;
 
 /**
  * Interface to use any rover mode indifferently.
@@ -82,14 +85,82 @@ public class RoverMode {
 	 */
 	static int SLEEP       = 7;
 	
+	/** The code of the current mode, or 0 if there is none. */
+	private int current;
+	/** The telemetry receiving the mode transitions, or null. */
+	private Telemetry telemetry;
+	/** Tells whether the sound and light effects are played, e.g. not inside a simulation. */
+	private boolean effects = true;
+	/** The clock giving the timestamps of the transitions and the rhythm of the sounds. */
+	private final Clock clock;
+	
+	/**
+	 * Builds the modes of a rover living along the wall clock.
+	 */
+	RoverMode() {
+		this(new RealClock());
+	}
+	
+	/**
+	 * Builds the modes of a rover living along a given clock.
+	 * 
+	 * @param clock the clock giving the timestamps of the transitions and the rhythm of the sounds.
+	 */
+	RoverMode(Clock clock) {
+		this.clock = clock;
+	}
+	
+	/**
+	 * Setter for the 'telemetry' field.
+	 * @param telemetry the telemetry receiving the mode transitions, or null.
+	 */
+	void setTelemetry(Telemetry telemetry) {
+		this.telemetry = telemetry;
+	}
+	
+	/**
+	 * Setter for the 'effects' field.
+	 * @param effects true to play the sound and light effects of the modes, false to only record the transitions.
+	 */
+	void setEffects(boolean effects) {
+		this.effects = effects;
+	}
+	
+	/**
+	 * Plays the sound and light effects of a mode, if enabled.
+	 * 
+	 * @param color the color of the light, see {@link Blinker#blink(int, int)}.
+	 * @param pattern the pattern of the light, see {@link Blinker#blink(int, int)}.
+	 * @param mode the code of the mode, whose sequence is played by {@link Beeper#play(int, Clock)}.
+	 */
+	private void effects(int color, int pattern, int mode) {
+		if (!this.effects) { return; }
+		Blinker.blink(color, pattern);
+		Beeper.play(mode, this.clock);
+	}
+	
+	/**
+	 * Records the transition to a new mode.
+	 * 
+	 * @param mode the code of the new mode, or 0 when leaving the current one.
+	 */
+	private void transition(int mode) {
+		if (this.telemetry != null) {
+			long time = this.clock.nanoTime();
+			if (this.current != 0) { this.telemetry.mode(time, this.current, false); }
+			if (mode != 0) { this.telemetry.mode(time, mode, true); }
+		}
+		this.current = mode;
+	}
+	
 	/**
 	 * Starts the diagnostic mode.
 	 * When the rover is under internal inspection, it enters the diagnostic mode and checks every sub system. This is the
 	 * proper method to use to trigger 'diagnostic' sound and light effects.
 	 */
 	void enter_diagnostic_mode() {
-		Blinker.blink(Blinker.ORANGE, Blinker.FAST);
-		Beeper.play(DIAGNOSTIC);
+		this.transition(DIAGNOSTIC);
+		this.effects(Blinker.ORANGE, Blinker.FAST, DIAGNOSTIC);
 	}
 	
 	/**
@@ -98,8 +169,8 @@ public class RoverMode {
 	 * the mission is compromised. This is the proper method to use to trigger 'error' sound and light effects.
 	 */
 	void enter_error_mode() {
-		Blinker.blink(Blinker.RED, Blinker.FAST);
-		Beeper.play(ERROR);	
+		this.transition(ERROR);
+		this.effects(Blinker.RED, Blinker.FAST, ERROR);
 	}
 
 	/**
@@ -108,8 +179,8 @@ public class RoverMode {
 	 * proper method to use to trigger 'landing' sound and light effects.
 	 */
 	void enter_landind_mode() {
-		Blinker.blink(Blinker.GREEN, Blinker.SLOW);	
-		Beeper.play(LANDING);	
+		this.transition(LANDING);
+		this.effects(Blinker.GREEN, Blinker.SLOW, LANDING);
 	}
 
 	/**
@@ -118,8 +189,8 @@ public class RoverMode {
 	 * environment. This is the proper method to use to trigger 'exploration' sound and light effects.
 	 */
 	void enter_exploration_mode() {
-		Blinker.blink(Blinker.GREEN, Blinker.SLOW);	
-		Beeper.play(EXPLORATION);	
+		this.transition(EXPLORATION);
+		this.effects(Blinker.GREEN, Blinker.SLOW, EXPLORATION);
 	}
 
 	/**
@@ -128,8 +199,8 @@ public class RoverMode {
 	 * retrieve the sample. This is the proper method to use to trigger 'harvest' sound and light effects.
 	 */
 	void enter_harvest_mode() {
-		Blinker.blink(Blinker.GREEN, Blinker.FAST);	
-		Beeper.play(HARVEST);	
+		this.transition(HARVEST);
+		this.effects(Blinker.GREEN, Blinker.FAST, HARVEST);
 	}
 
 	/**
@@ -138,8 +209,8 @@ public class RoverMode {
 	 * to trigger 'wait' sound and light effects.
 	 */
 	void enter_wait_mode() {
-		Blinker.blink(Blinker.ORANGE, Blinker.SLOW);
-		Beeper.play(WAIT);		
+		this.transition(WAIT);
+		this.effects(Blinker.ORANGE, Blinker.SLOW, WAIT);
 	}
 
 	/**
@@ -148,8 +219,8 @@ public class RoverMode {
 	 * use to trigger 'sleep' sound and light effects.
 	 */
 	void enter_sleep_mode() {
-		Blinker.blink(Blinker.ORANGE, Blinker.STILL);
-		Beeper.play(SLEEP);		
+		this.transition(SLEEP);
+		this.effects(Blinker.ORANGE, Blinker.STILL, SLEEP);
 	}
 	
 	/**
@@ -157,6 +228,7 @@ public class RoverMode {
 	 * Every RoverMode can stop a sequence of sound and light effects.
 	 */
 	void stop() {
-		Blinker.reset();
+		this.transition(0);
+		if (this.effects) { Blinker.reset(); }
 	}
 }
@@ -0,0 +1,106 @@
+package rover;
+
+/**
+ * A preallocated ring of timestamped samples, with a single writer and a single drain.
+ *
+ * The writer, i.e. the scheduler thread polling a peripheral, fills a slot first and publishes it afterwards through a
+ * volatile counter, so that the reader never takes a lock nor waits for the writer. The ring keeps the last
+ * {@link SampleRing#capacity()} samples: a reader which is too slow loses the oldest ones, and never sees a sample whose
+ * slot is being overwritten.
+ *
+ * @author Antoine Stevan
+ *
+ * @see Peripheral#readInto(float[], long[], int, int)
+ */
+final class SampleRing {
+	/** The mask used to wrap a sample counter into an index of the ring. */
+	private final int     mask;
+	/** The ring of the values of the last samples. */
+	private final float[] values;
+	/** The ring of the timestamps of the last samples, in nanoseconds (see {@link tools.Clock#nanoTime()}). */
+	private final long[]  times;
+	/** The total number of samples written in the ring, published after each write. */
+	private volatile long count;
+	/** The number of samples drained by {@link SampleRing#readInto(float[], long[], int, int)} or skipped so far. */
+	private long drained;
+
+	/**
+	 * Builds an empty ring.
+	 *
+	 * @param capacity the number of samples kept inside the ring. Must be a power of 2 to wrap indices with a mask.
+	 * @throws IllegalArgumentException if the capacity is not a power of 2.
+	 */
+	SampleRing(int capacity) {
+		if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+			throw new IllegalArgumentException("the capacity of a ring must be a power of 2, not " + capacity);
+		}
+		this.mask    = capacity - 1;
+		this.values  = new float[capacity];
+		this.times   = new long[capacity];
+		this.count   = 0;
+		this.drained = 0;
+	}
+
+	/**
+	 * Getter for the capacity of the ring.
+	 * @return the number of samples kept inside the ring.
+	 */
+	int capacity() {
+		return this.values.length;
+	}
+
+	/**
+	 * Pushes a sample inside the ring, overwriting the oldest one if the ring is full. Writer thread only.
+	 *
+	 * @param value the value of the sample.
+	 * @param time the moment of the sample, in nanoseconds.
+	 */
+	void push(float value, long time) {
+		long n = this.count;
+		int  i = (int)(n & this.mask);
+		this.values[i] = value;
+		this.times[i]  = time;
+		this.count = n + 1;
+	}
+
+	/**
+	 * Drains the samples pushed since the previous call, without blocking, see
+	 * {@link Peripheral#readInto(float[], long[], int, int)}. Reader thread only.
+	 *
+	 * @param dst the destination of the values of the samples.
+	 * @param timestamps the destination of the timestamps of the samples, in nanoseconds.
+	 * @param off the index of the first sample inside both destinations.
+	 * @param max the maximum number of samples to drain.
+	 * @return the number of drained samples.
+	 */
+	int readInto(float[] dst, long[] timestamps, int off, int max) {
+		int  capacity = this.values.length;
+		long end   = this.count;
+		long first = Math.max(this.drained, end - capacity);
+		int  size  = (int)Math.min(end - first, max);
+		for (int k = 0; k < size; k++) {
+			int i = (int)((first+k) & this.mask);
+			dst[off+k]        = this.values[i];
+			timestamps[off+k] = this.times[i];
+		}
+		// the writer may have lapped the reader during the copy: drop the oldest, overwritten, samples. The writer fills
+		// the slot of the sample 'count - capacity' before publishing 'count + 1', hence that slot may be torn as well.
+		long lapped = this.count + 1 - capacity - first;
+		if (lapped > 0) {
+			int drop = (int)Math.min(lapped, size);
+			System.arraycopy(dst,        off + drop, dst,        off, size - drop);
+			System.arraycopy(timestamps, off + drop, timestamps, off, size - drop);
+			first += drop;
+			size  -= drop;
+		}
+		this.drained = first + size;
+		return size;
+	}
+
+	/**
+	 * Forgets every sample pushed so far. Reader thread only.
+	 */
+	void skip() {
+		this.drained = this.count;
+	}
+}
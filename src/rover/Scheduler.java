@@ -0,0 +1,265 @@
+package rover;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import tools.Clock;
+
+/**
+ * The single background thread polling every peripheral of the rover, at the rate each one declares.
+ *
+ * Every peripheral registers a {@link Scheduler.Task} with a period and a deadline, both in slots of
+ * {@link Scheduler#slot} ms. Releases are aligned on the slots, counted from the creation of the scheduler, so that
+ * tasks of the same period are released together, in the order they were registered, e.g. the tachometers before the
+ * odometry which integrates them. Between releases, the thread waits along the clock instead of spinning, and an idle
+ * scheduler, i.e. without any resumed task, does not use the CPU.
+ *
+ * For every task, the scheduler keeps its jitter, i.e. the delay from the release to the moment the task actually
+ * runs, and counts the deadline misses and the releases skipped because the previous run was too late.
+ *
+ * The value returned by the last run of every task is published inside a table, along with its timestamp, through
+ * atomic slots: the control logic reads the latest value of any peripheral from the table, without any lock and without
+ * ever calling a device. Every slot is read whole, even a timestamp on a 32-bit CPU, and a value is always written
+ * before its timestamp, so that a reader which has seen a timestamp reads a value at least as recent.
+ *
+ * @author Antoine Stevan
+ *
+ */
+class Scheduler implements Runnable {
+	/** The length of a slot, in ms. */
+	static final int slot     = 1;
+	/** The largest number of tasks. */
+	static final int capacity = 8;
+
+	/**
+	 * The polling of a peripheral, run by the thread of the scheduler.
+	 */
+	interface Task {
+		/**
+		 * Polls the peripheral once.
+		 *
+		 * @param time the moment of the poll, in nanoseconds (see {@link Clock#nanoTime()}).
+		 * @return the value to be published inside the table, or NaN to publish nothing.
+		 */
+		float poll(long time);
+	}
+
+	/** The clock giving the slots and the timestamps of the polls. */
+	final Clock clock;
+	/** The origin of the slots, in nanoseconds. */
+	private final long origin;
+
+	/** The number of registered tasks. */
+	private int size;
+	/** The names of the tasks, for the reports. */
+	private final String[] names     = new String[Scheduler.capacity];
+	/** The tasks. */
+	private final Task[]   tasks     = new Task[Scheduler.capacity];
+	/** The periods of the tasks, in nanoseconds. */
+	private final long[]   periods   = new long[Scheduler.capacity];
+	/** The deadlines of the tasks, from their release, in nanoseconds. */
+	private final long[]   deadlines = new long[Scheduler.capacity];
+	/** Tells whether every task is resumed. Only touched while holding the lock of the scheduler. */
+	private final boolean[] active   = new boolean[Scheduler.capacity];
+	/** The next release of every task, in nanoseconds. Only touched while holding the lock of the scheduler. */
+	private final long[]   releases  = new long[Scheduler.capacity];
+	/** The tasks released in the current slot. Scheduler thread only. */
+	private final int[]    due       = new int[Scheduler.capacity];
+	/** The background thread, once started. */
+	private Thread thread;
+
+	/** The bits of the latest published value of every task, see {@link Float#floatToRawIntBits(float)}. */
+	private final AtomicIntegerArray values = new AtomicIntegerArray(Scheduler.capacity);
+	/** The timestamp of the latest published value of every task, in nanoseconds. */
+	private final AtomicLongArray    times  = new AtomicLongArray(Scheduler.capacity);
+	/** The number of values published by every task. */
+	private final AtomicLongArray    counts = new AtomicLongArray(Scheduler.capacity);
+
+	/** The number of runs of every task. Scheduler thread only, read by the reports. */
+	private final long[] runs     = new long[Scheduler.capacity];
+	/** The sum of the jitters of every task, in nanoseconds. */
+	private final long[] jitter   = new long[Scheduler.capacity];
+	/** The largest jitter of every task, in nanoseconds. */
+	private final long[] max      = new long[Scheduler.capacity];
+	/** The number of runs of every task which ended after their deadline. */
+	private final long[] misses   = new long[Scheduler.capacity];
+	/** The number of releases of every task skipped because a previous run ended too late. */
+	private final long[] skipped  = new long[Scheduler.capacity];
+
+	/**
+	 * Builds an idle scheduler.
+	 *
+	 * @param clock the clock giving the slots and the timestamps of the polls.
+	 */
+	Scheduler(Clock clock) {
+		this.clock  = clock;
+		this.origin = clock.nanoTime();
+		this.size   = 0;
+		this.thread = null;
+	}
+
+	/**
+	 * Registers a task, suspended until {@link Scheduler#resume(int)} is called.
+	 *
+	 * @param name the name of the task, for the reports.
+	 * @param task the task.
+	 * @param period the period of the task, in slots.
+	 * @param deadline the deadline of every run of the task from its release, in slots.
+	 * @return the identifier of the task, i.e. its entry inside the table.
+	 * @throws IllegalArgumentException if the period or the deadline is not positive, or if there are too many tasks.
+	 */
+	synchronized int add(String name, Task task, int period, int deadline) {
+		if (period < 1 || deadline < 1 || this.size == Scheduler.capacity) {
+			throw new IllegalArgumentException("cannot schedule " + name + " every " + period + " slots, within " +
+											   deadline + " slots, with " + this.size + " tasks");
+		}
+		int id = this.size++;
+		this.names[id]     = name;
+		this.tasks[id]     = task;
+		this.periods[id]   = period*Scheduler.slot*1000000L;
+		this.deadlines[id] = deadline*Scheduler.slot*1000000L;
+		this.active[id]    = false;
+		this.values.set(id, Float.floatToRawIntBits(Float.NaN));
+		return id;
+	}
+
+	/**
+	 * Resumes the polls of a task, from its next release. The thread of the scheduler is started on the first call, as a
+	 * daemon so that it never keeps the program alive after the mission.
+	 *
+	 * @param id the identifier of the task.
+	 */
+	synchronized void resume(int id) {
+		if (this.active[id]) { return; }
+		long period = this.periods[id];
+		long now    = this.clock.nanoTime() - this.origin;
+		this.releases[id] = this.origin + (now + period - 1)/period*period;
+		this.active[id]   = true;
+		this.clock.signal(this);
+		if (this.thread == null) { this.thread = this.clock.start(this, "scheduler"); }
+	}
+
+	/**
+	 * Suspends the polls of a task, after its current run if any.
+	 *
+	 * @param id the identifier of the task.
+	 */
+	synchronized void suspend(int id) {
+		this.active[id] = false;
+	}
+
+	/**
+	 * Main loop of the scheduler: waits for the next release, then runs every released task in order.
+	 */
+	public void run() {
+		while (true) {
+			int n = 0;
+			long release = Long.MAX_VALUE;
+			synchronized (this) {
+				while (true) {
+					release = Long.MAX_VALUE;
+					for (int i = 0; i < this.size; i++) {
+						if (this.active[i]) { release = Math.min(release, this.releases[i]); }
+					}
+					long wait = release - this.clock.nanoTime();
+					if (wait <= 0) { break; }
+					try {
+						this.clock.await(this, (release == Long.MAX_VALUE)? 0 : (wait + 999999)/1000000);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				for (int i = 0; i < this.size; i++) {
+					if (this.active[i] && this.releases[i] == release) { this.due[n++] = i; }
+				}
+			}
+			for (int k = 0; k < n; k++) {
+				this.execute(this.due[k], release);
+			}
+		}
+	}
+
+	/**
+	 * Runs a released task, publishes its value and accounts for its timings. Scheduler thread only.
+	 *
+	 * @param id the identifier of the task.
+	 * @param release the release of the task, in nanoseconds.
+	 */
+	private void execute(int id, long release) {
+		long start = this.clock.nanoTime();
+		float value = this.tasks[id].poll(start);
+		long end = this.clock.nanoTime();
+		if (!Float.isNaN(value)) {
+			// the scheduler thread is the only writer of the table.
+			this.values.set(id, Float.floatToRawIntBits(value));
+			this.times.set(id, start);
+			this.counts.set(id, this.counts.get(id) + 1);
+		}
+		long late = start - release;
+		this.runs[id]++;
+		this.jitter[id] += late;
+		this.max[id]     = Math.max(this.max[id], late);
+		if (end - release > this.deadlines[id]) { this.misses[id]++; }
+
+		synchronized (this) {
+			long period = this.periods[id];
+			long next   = release + period;
+			if (next <= end) {
+				// the run ended after the next release: skip the releases which are already over.
+				long skip = (end - next)/period + 1;
+				this.skipped[id] += skip;
+				next += skip*period;
+			}
+			this.releases[id] = next;
+		}
+	}
+
+	/**
+	 * Gives the latest value published by a task, without any lock.
+	 *
+	 * @param id the identifier of the task.
+	 * @return the latest value, or NaN if the task has published nothing yet.
+	 */
+	float latest(int id) {
+		return Float.intBitsToFloat(this.values.get(id));
+	}
+
+	/**
+	 * Gives the timestamp of the latest value published by a task, without any lock.
+	 *
+	 * @param id the identifier of the task.
+	 * @return the timestamp of the latest value, in nanoseconds, or 0 if the task has published nothing yet.
+	 */
+	long time(int id) {
+		return this.times.get(id);
+	}
+
+	/**
+	 * Gives the number of values published by a task, e.g. to wait for a new one.
+	 *
+	 * @param id the identifier of the task.
+	 * @return the number of published values.
+	 */
+	long count(int id) {
+		return this.counts.get(id);
+	}
+
+	/**
+	 * Gives the timing statistics of every task, one line each, without a trailing line break. The statistics are read while the tasks may still run,
+	 * hence they are only approximate until the scheduler is idle.
+	 *
+	 * @return the name, the period, the number of runs, the mean and largest jitters, the number of deadline misses and
+	 * of skipped releases of every task.
+	 */
+	String report() {
+		StringBuilder report = new StringBuilder();
+		for (int i = 0; i < this.size; i++) {
+			long runs = this.runs[i];
+			report.append(this.names[i]).append(": every ").append(this.periods[i]/1000000).append(" ms, ")
+				  .append(runs).append(" runs, jitter ").append((runs == 0)? 0 : this.jitter[i]/runs/1000)
+				  .append(" us (max ").append(this.max[i]/1000).append(" us), ").append(this.misses[i])
+				  .append(" misses, ").append(this.skipped[i]).append(" skipped");
+			if (i < this.size - 1) { report.append('\n'); }
+		}
+		return report.toString();
+	}
+}
@@ -0,0 +1,108 @@
+package rover;
+
+/**
+ * A segment of a path, to be queued inside the navigator with {@link Navigator#follow(Segment[])}.
+ * A segment is either a rotation in place, a straight travel or an arc of circle. Each of them is converted into a
+ * rotation of each track, in degrees.
+ * 
+ * @author Antoine Stevan
+ *
+ */
+public class Segment {
+	/** Code for a rotation in place, of 'angle' degrees. */
+	static final int ROTATE = 0;
+	/** Code for a straight travel, of 'length' m. */
+	static final int TRAVEL = 1;
+	/** Code for an arc of circle, of 'angle' degrees around a center 'radius' m on the left (right if negative) of the rover. */
+	static final int ARC    = 2;
+	
+	/** The type of the segment, one of {@link Segment#ROTATE}, {@link Segment#TRAVEL} or {@link Segment#ARC}. */
+	int   type;
+	/** The length of a travel, in m. */
+	float length;
+	/** The angle of a rotation or an arc, in degrees. */
+	float angle;
+	/** The radius of an arc, in m. */
+	float radius;
+	
+	/**
+	 * Private constructor, wrapped by {@link Segment#rotate(float)}, {@link Segment#travel(float)} and
+	 * {@link Segment#arc(float, float)}.
+	 * 
+	 * @param type the type of the segment.
+	 * @param length the length of a travel, in m.
+	 * @param angle the angle of a rotation or an arc, in degrees.
+	 * @param radius the radius of an arc, in m.
+	 */
+	private Segment(int type, float length, float angle, float radius) {
+		this.type   = type;
+		this.length = length;
+		this.angle  = angle;
+		this.radius = radius;
+	}
+	
+	/**
+	 * Builds a rotation in place.
+	 * 
+	 * @param angle the relative angle, in degrees.
+	 * @return the new segment.
+	 */
+	public static Segment rotate(float angle) {
+		return new Segment(Segment.ROTATE, 0, angle, 0);
+	}
+	/**
+	 * Builds a straight travel.
+	 * 
+	 * @param length the relative distance, in m.
+	 * @return the new segment.
+	 */
+	public static Segment travel(float length) {
+		return new Segment(Segment.TRAVEL, length, 0, 0);
+	}
+	/**
+	 * Builds an arc of circle.
+	 * 
+	 * @param radius the radius of the arc, in m, measured from the center of rotation of the rover. The center of the arc
+	 * is on the left of the rover if positive, on its right otherwise.
+	 * @param angle the angle of the arc, i.e. the change of heading, in degrees. Positive angles turn left, as rotations
+	 * do. The rover moves forward when radius and angle have the same sign.
+	 * @return the new segment.
+	 */
+	public static Segment arc(float radius, float angle) {
+		return new Segment(Segment.ARC, 0, angle, radius);
+	}
+	
+	/**
+	 * Computes the rotation of the right engine needed to perform the segment.
+	 * As explained in {@link Navigator}, motors are mounted backwards, hence the - signs.
+	 * 
+	 * @return the rotation of the right engine, in degrees.
+	 */
+	int r_theta() {
+		if      (this.type == Segment.ROTATE) { return (int)(-this.angle * Rover.HALF_AXIS_DIFF/Rover.WHEEL_RADIUS); }
+		else if (this.type == Segment.TRAVEL) { return (int)(-this.length / Rover.WHEEL_RADIUS * 180 / Math.PI); }
+		// the right track is on the outside of a left turn.
+		else { return (int)(-(this.radius+Rover.HALF_AXIS_DIFF)*this.angle / Rover.WHEEL_RADIUS); }
+	}
+	/**
+	 * Computes the rotation of the left engine needed to perform the segment.
+	 * 
+	 * @return the rotation of the left engine, in degrees.
+	 */
+	int l_theta() {
+		if      (this.type == Segment.ROTATE) { return -this.r_theta(); }
+		else if (this.type == Segment.TRAVEL) { return this.r_theta(); }
+		else { return (int)(-(this.radius-Rover.HALF_AXIS_DIFF)*this.angle / Rover.WHEEL_RADIUS); }
+	}
+	
+	/**
+	 * Tells whether the next segment can be launched before the end of this one without stopping the tracks, i.e. when
+	 * both tracks keep their direction of rotation.
+	 * 
+	 * @param next the next segment.
+	 * @return true if both segments can be blended, false otherwise.
+	 */
+	boolean blends_with(Segment next) {
+		return (long)this.r_theta()*next.r_theta() > 0 && (long)this.l_theta()*next.l_theta() > 0;
+	}
+}
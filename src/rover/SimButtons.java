@@ -0,0 +1,38 @@
+package rover;
+
+import lejos.hardware.Button;
+import tools.Clock;
+
+/**
+ * The simulated buttons of a rover, i.e. the in-process implementation of a {@link ButtonDevice}.
+ * A simulated operator presses the enter button a fixed time after the rover starts to wait, along the clock of the
+ * simulation, so that every wait for a human ends and always takes the same time.
+ *
+ * @author Antoine Stevan
+ *
+ */
+class SimButtons implements ButtonDevice {
+	/** The time the simulated operator takes to press a button, in ms. */
+	static final int press = 1000;
+
+	/** The clock of the simulation. */
+	private final Clock clock;
+
+	/**
+	 * Builds the simulated buttons.
+	 *
+	 * @param clock the clock of the simulation.
+	 */
+	SimButtons(Clock clock) {
+		this.clock = clock;
+	}
+
+	public int waitForAnyPress(int ms) {
+		if (ms != 0 && ms < SimButtons.press) {
+			this.clock.sleep(ms);
+			return 0;
+		}
+		this.clock.sleep(SimButtons.press);
+		return Button.ID_ENTER;
+	}
+}
@@ -0,0 +1,78 @@
+package rover;
+
+import lejos.robotics.Color;
+
+/**
+ * A simulated color sensor, i.e. the in-process implementation of a {@link ColorDevice}.
+ * Only the floor of the arena is simulated, i.e. shades of grey: every component of the color is the reflected
+ * intensity, seen inside the world of its simulation or, if there is none, set by hand.
+ *
+ * @author Antoine Stevan
+ *
+ */
+class SimColor implements ColorDevice {
+	/** The simulation the sensor belongs to. */
+	private final SimHardware hardware;
+	/** The name of the sensor, e.g. its port. */
+	private final String name;
+	/** The reflected intensity given when the simulation has no world, between 0 and 1. */
+	private float red;
+
+	/**
+	 * Builds a simulated color sensor above a black floor.
+	 *
+	 * @param hardware the simulation the sensor belongs to.
+	 * @param name the name of the sensor.
+	 */
+	SimColor(SimHardware hardware, String name) {
+		this.hardware = hardware;
+		this.name     = name;
+		this.red      = 0;
+	}
+
+	/**
+	 * Nothing to bind, a simulated sensor is always there.
+	 */
+	public void open() {
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public float fetchRed() {
+		this.hardware.lock();
+		try {
+			SimHardware.World world = this.hardware.world;
+			return (world == null)? this.red : world.red();
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+
+	public void fetchRGB(float[] rgb, int offset) {
+		float red = this.fetchRed();
+		rgb[offset] = rgb[offset+1] = rgb[offset+2] = red;
+	}
+
+	/**
+	 * The color is either white or black, depending on {@link ColorEye#threshold}.
+	 */
+	public int getColorID() {
+		return (this.fetchRed() < ColorEye.threshold)? Color.BLACK : Color.WHITE;
+	}
+
+	/**
+	 * Sets the reflected intensity given when the simulation has no world.
+	 *
+	 * @param red the reflected intensity, between 0 (black) and 1 (white).
+	 */
+	void set(float red) {
+		this.hardware.lock();
+		try {
+			this.red = red;
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+}
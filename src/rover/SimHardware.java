@@ -0,0 +1,291 @@
+package rover;
+
+import java.util.concurrent.locks.ReentrantLock;
+import tools.Clock;
+import tools.RealClock;
+import tools.VirtualClock;
+
+/**
+ * The hardware of a simulated rover, running in-process on a workstation.
+ *
+ * The simulation is deterministic: nothing moves until {@link SimHardware#step(long)} is called, which integrates every
+ * motor over the given duration and then tells the {@link World} around the rover, if any. Sensors either give the
+ * values set by hand or ask the world. The caller hence decides how time goes by: {@link SimHardware#start()} steps the
+ * simulation along the wall clock, whereas a {@link VirtualClock} steps it along its virtual time, as fast as the CPU
+ * allows.
+ *
+ * Every device shares a single lock, so that the state of the simulation is always consistent, e.g. both tracks are seen
+ * at the same instant. Motor listeners are told outside of the lock, in the order of the events, by the thread which
+ * releases it.
+ *
+ * @author Antoine Stevan
+ *
+ * @see SimMotor
+ * @see SimRange
+ * @see SimColor
+ * @see SimButtons
+ */
+public class SimHardware implements Hardware {
+	/**
+	 * The world around a simulated rover, e.g. an arena with walls and samples.
+	 * Every method is called with the lock of the simulation held.
+	 */
+	public interface World {
+		/**
+		 * Called after every step of the simulation, once the motors have moved.
+		 *
+		 * @param time the simulated time, in nanoseconds since the beginning of the simulation.
+		 */
+		void moved(long time);
+
+		/**
+		 * Gives the distance seen by the ultrasonic sensor.
+		 *
+		 * @return the distance, in m, or {@link Float#POSITIVE_INFINITY} if there is nothing in range.
+		 */
+		float distance();
+
+		/**
+		 * Gives the reflected intensity seen by the color sensor.
+		 *
+		 * @return the reflected intensity, between 0 (black) and 1 (white).
+		 */
+		float red();
+	}
+
+	/** The period of the real-time stepper, in ms. */
+	static final int period = 1;
+	/** The maximum number of motor events waiting to be told to the listeners. */
+	private static final int events = 16;
+
+	/** The lock of the whole simulation. */
+	final ReentrantLock lock = new ReentrantLock();
+	/** The clock the simulation lives along. */
+	private final Clock clock;
+	/** The simulated time, in nanoseconds since the beginning of the simulation. */
+	private long time;
+	/** The world around the rover, or null. */
+	World world;
+
+	/** The ultrasonic sensor. */
+	final SimRange ultrasonic;
+	/** The color sensor. */
+	final SimColor color;
+	/** The motor of the pliers. */
+	final SimMotor pliers;
+	/** The motor of the right track. */
+	final SimMotor right;
+	/** The motor of the left track. */
+	final SimMotor left;
+	/** The buttons, pressed by a simulated operator. */
+	final SimButtons buttons;
+
+	/** The motors of the events waiting to be told to the listeners. */
+	private final SimMotor[] e_motors = new SimMotor[SimHardware.events];
+	/** For every waiting event, true if the motor stopped, false if it started. */
+	private final boolean[]  e_stops  = new boolean[SimHardware.events];
+	/** For every waiting event, the tacho count of the motor, in degrees. */
+	private final int[]      e_tachos = new int[SimHardware.events];
+	/** The number of events waiting to be told to the listeners. */
+	private int e_size;
+
+	/** The background thread stepping the simulation along the wall clock, or null. */
+	private Thread thread;
+
+	/**
+	 * Builds a simulated rover at rest, with the same port names as the default layout of the brick, living along the
+	 * wall clock. Nothing moves until the simulation is stepped, e.g. by {@link SimHardware#start()}.
+	 */
+	public SimHardware() {
+		this((Clock)new RealClock());
+	}
+
+	/**
+	 * Builds a simulated rover at rest, with the same port names as the default layout of the brick, stepped by a
+	 * virtual clock whenever its time moves forward.
+	 *
+	 * @param clock the virtual clock of the simulation.
+	 */
+	public SimHardware(VirtualClock clock) {
+		this((Clock)clock);
+		clock.setStepper(new VirtualClock.Stepper() {
+			public void step(long nanos) {
+				SimHardware.this.step(nanos);
+			}
+		});
+	}
+
+	/**
+	 * Builds a simulated rover at rest, living along a given clock.
+	 *
+	 * @param clock the clock of the simulation.
+	 */
+	private SimHardware(Clock clock) {
+		this.clock      = clock;
+		this.ultrasonic = new SimRange(this, "S4");
+		this.color      = new SimColor(this, "S1");
+		this.pliers     = new SimMotor(this, "A");
+		this.right      = new SimMotor(this, "B");
+		this.left       = new SimMotor(this, "C");
+		this.buttons    = new SimButtons(clock);
+		this.time       = 0;
+		this.world      = null;
+		this.e_size     = 0;
+	}
+
+	public RangeDevice ultrasonic() { return this.ultrasonic; }
+
+	public ColorDevice color()      { return this.color; }
+
+	public MotorDevice pliers()     { return this.pliers; }
+
+	public MotorDevice right()      { return this.right; }
+
+	public MotorDevice left()       { return this.left; }
+
+	public ButtonDevice buttons()   { return this.buttons; }
+
+	public Clock clock()            { return this.clock; }
+
+	/**
+	 * Setter for the 'world' field.
+	 * @param world the world around the rover, or null to only use the values set by hand on the sensors.
+	 */
+	public void setWorld(World world) {
+		this.lock();
+		try {
+			this.world = world;
+		} finally {
+			this.unlock();
+		}
+	}
+
+	/**
+	 * Gives the simulated time.
+	 *
+	 * @return the simulated time, in nanoseconds since the beginning of the simulation.
+	 */
+	public long getTime() {
+		this.lock();
+		try {
+			return this.time;
+		} finally {
+			this.unlock();
+		}
+	}
+
+	/**
+	 * Moves the simulation forward: every motor is integrated over the given duration, then the world is told.
+	 *
+	 * @param nanos the duration of the step, in nanoseconds.
+	 */
+	public void step(long nanos) {
+		this.lock();
+		try {
+			this.time += nanos;
+			double dt = nanos/1e9;
+			this.right.integrate(dt);
+			this.left.integrate(dt);
+			this.pliers.integrate(dt);
+			if (this.world != null) { this.world.moved(this.time); }
+		} finally {
+			this.unlock();
+		}
+	}
+
+	/**
+	 * Starts stepping the simulation along the wall clock, every {@link SimHardware#period} ms, if not already running.
+	 * The thread is a daemon so that it never keeps the program alive after the mission.
+	 */
+	public void start() {
+		if (this.thread != null) { return; }
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				long last = System.nanoTime();
+				while (true) {
+					try {
+						Thread.sleep(SimHardware.period);
+					} catch (InterruptedException e) {
+						return;
+					}
+					long now = System.nanoTime();
+					SimHardware.this.step(now - last);
+					last = now;
+				}
+			}
+		}, "sim-stepper");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Takes the lock of the simulation. Reentrant.
+	 */
+	void lock() {
+		this.lock.lock();
+	}
+
+	/**
+	 * Releases the lock of the simulation. When the outermost hold is released, the waiting motor events are told to
+	 * the listeners, outside of the lock so that a listener can safely take its own locks and ask the motors.
+	 */
+	void unlock() {
+		if (this.lock.getHoldCount() > 1 || this.e_size == 0) {
+			this.lock.unlock();
+			return;
+		}
+		int size = this.e_size;
+		SimMotor[] motors = new SimMotor[size];
+		boolean[]  stops  = new boolean[size];
+		int[]      tachos = new int[size];
+		System.arraycopy(this.e_motors, 0, motors, 0, size);
+		System.arraycopy(this.e_stops,  0, stops,  0, size);
+		System.arraycopy(this.e_tachos, 0, tachos, 0, size);
+		long stamp = this.time/1000000;
+		this.e_size = 0;
+		this.lock.unlock();
+		for (int i = 0; i < size; i++) {
+			MotorListener listener = motors[i].listener;
+			if (listener == null) { continue; }
+			if (stops[i]) { listener.rotationStopped(motors[i], tachos[i], false, stamp); }
+			else          { listener.rotationStarted(motors[i], tachos[i], false, stamp); }
+		}
+	}
+
+	/**
+	 * Queues a motor event, to be told to the listeners once the lock is released. The lock has to be held.
+	 * As events are told at every release of the lock, only a few of them can be waiting at once.
+	 *
+	 * @param motor the motor which started or stopped.
+	 * @param stop true if the motor stopped, false if it started.
+	 * @param tacho the tacho count of the motor, in degrees.
+	 */
+	void event(SimMotor motor, boolean stop, int tacho) {
+		if (this.e_size == SimHardware.events) {
+			throw new IllegalStateException("too many simulated motor events");
+		}
+		this.e_motors[this.e_size] = motor;
+		this.e_stops[this.e_size]  = stop;
+		this.e_tachos[this.e_size] = tacho;
+		this.e_size++;
+	}
+
+	/**
+	 * Waits for a motor to be at rest, i.e. for the steps of the simulation to bring it to rest, polling it along the
+	 * clock of the simulation. The lock must not be held, otherwise the simulation could not be stepped.
+	 * If the thread is interrupted, the method returns early and the interruption is kept.
+	 *
+	 * @param motor the motor to wait for.
+	 */
+	void await(SimMotor motor) {
+		while (!Thread.currentThread().isInterrupted()) {
+			this.lock();
+			try {
+				if (!motor.moving()) { return; }
+			} finally {
+				this.unlock();
+			}
+			this.clock.sleep(SimHardware.period);
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package rover;
+
+/**
+ * A simulated regulated motor, i.e. the in-process implementation of a {@link MotorDevice}.
+ *
+ * Like a leJOS regulated motor, it follows a trapezoidal speed profile: it accelerates up to its speed, cruises and
+ * decelerates so as to stop right on its target. The profile is integrated by every step of its {@link SimHardware},
+ * hence the motor does not move by itself. Commands given between {@link SimMotor#startSynchronization()} and
+ * {@link SimMotor#endSynchronization()} hold the lock of the simulation, hence they are all applied before the next step.
+ *
+ * @author Antoine Stevan
+ *
+ */
+class SimMotor implements MotorDevice {
+	/** The motor is at rest. */
+	private static final int IDLE     = 0;
+	/** The motor rotates towards a target. */
+	private static final int ROTATE   = 1;
+	/** The motor rotates forward until stopped. */
+	private static final int FORWARD  = 2;
+	/** The motor rotates backward until stopped. */
+	private static final int BACKWARD = 3;
+	/** The motor decelerates down to rest. */
+	private static final int STOPPING = 4;
+
+	/** The simulation the motor belongs to. */
+	private final SimHardware hardware;
+	/** The name of the motor, e.g. its port. */
+	private final String name;
+	/** The angular position of the motor, in degrees. */
+	private double position;
+	/** The angular velocity of the motor, in degrees per second. */
+	private double velocity;
+	/** The position at which the tacho count was last reset, in degrees. */
+	private int zero;
+	/** The commanded speed of the motor, in degrees per second. */
+	private int speed;
+	/** The commanded acceleration of the motor, in degrees per second per second. */
+	private int acceleration;
+	/** The current state of the motor, e.g. {@link SimMotor#IDLE}. */
+	private int state;
+	/** The target position of the current rotation, in degrees. */
+	private double target;
+	/** The listener of the motor, or null. */
+	MotorListener listener;
+
+	/**
+	 * Builds a simulated motor at rest, with the default speed and acceleration of a leJOS motor.
+	 *
+	 * @param hardware the simulation the motor belongs to.
+	 * @param name the name of the motor.
+	 */
+	SimMotor(SimHardware hardware, String name) {
+		this.hardware     = hardware;
+		this.name         = name;
+		this.position     = 0;
+		this.velocity     = 0;
+		this.zero         = 0;
+		this.speed        = 360;
+		this.acceleration = 6000;
+		this.state        = SimMotor.IDLE;
+		this.target       = 0;
+		this.listener     = null;
+	}
+
+	/**
+	 * Nothing to bind, a simulated motor is always there.
+	 */
+	public void open() {
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public void resetTachoCount() {
+		this.hardware.lock();
+		try {
+			this.zero = (int)Math.round(this.position);
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+
+	public int getTachoCount() {
+		this.hardware.lock();
+		try {
+			return this.tacho();
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+
+	public int getRotationSpeed() {
+		this.hardware.lock();
+		try {
+			return (int)Math.round(this.velocity);
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+
+	public void setSpeed(int speed) {
+		this.hardware.lock();
+		try {
+			this.speed = Math.abs(speed);
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+
+	public void setAcceleration(int acceleration) {
+		this.hardware.lock();
+		try {
+			this.acceleration = Math.abs(acceleration);
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+
+	public void rotate(int angle, boolean immediateReturn) {
+		this.rotateTo(this.getTachoCount() + angle, immediateReturn);
+	}
+
+	public void rotate(int angle) {
+		this.rotate(angle, false);
+	}
+
+	/**
+	 * As with leJOS, a rotation to the current tacho count of a motor at rest does nothing, not even notify the listener.
+	 */
+	public void rotateTo(int target, boolean immediateReturn) {
+		this.hardware.lock();
+		try {
+			if (this.state == SimMotor.IDLE && target == this.tacho()) { return; }
+			this.target = target + this.zero;
+			this.command(SimMotor.ROTATE);
+		} finally {
+			this.hardware.unlock();
+		}
+		if (!immediateReturn) { this.hardware.await(this); }
+	}
+
+	public void forward() {
+		this.hardware.lock();
+		try {
+			this.command(SimMotor.FORWARD);
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+
+	public void backward() {
+		this.hardware.lock();
+		try {
+			this.command(SimMotor.BACKWARD);
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+
+	public void stop(boolean immediateReturn) {
+		this.hardware.lock();
+		try {
+			if (this.state != SimMotor.IDLE) { this.state = SimMotor.STOPPING; }
+		} finally {
+			this.hardware.unlock();
+		}
+		if (!immediateReturn) { this.hardware.await(this); }
+	}
+
+	public void stop() {
+		this.stop(false);
+	}
+
+	public boolean isMoving() {
+		this.hardware.lock();
+		try {
+			return this.moving();
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+
+	/**
+	 * Nothing to do, every simulated motor is driven by the same lock.
+	 */
+	public void synchronizeWith(MotorDevice[] others) {
+	}
+
+	public void startSynchronization() {
+		this.hardware.lock();
+	}
+
+	public void endSynchronization() {
+		this.hardware.unlock();
+	}
+
+	public void addListener(MotorListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Gives the angular position of the motor, independent of the resets of the tacho count.
+	 * The lock of the simulation has to be held.
+	 *
+	 * @return the angular position of the motor, in degrees.
+	 */
+	double position() {
+		return this.position;
+	}
+
+	/**
+	 * Tells whether the motor is moving. The lock of the simulation has to be held.
+	 *
+	 * @return true if the motor is not at rest.
+	 */
+	boolean moving() {
+		return this.state != SimMotor.IDLE;
+	}
+
+	/**
+	 * Gives the tacho count of the motor. The lock of the simulation has to be held.
+	 *
+	 * @return the rotation of the motor since the last reset, in degrees.
+	 */
+	private int tacho() {
+		return (int)Math.round(this.position) - this.zero;
+	}
+
+	/**
+	 * Enters a moving state, and tells the listener if the motor was at rest. The lock of the simulation has to be held.
+	 *
+	 * @param state the new state of the motor.
+	 */
+	private void command(int state) {
+		boolean started = this.state == SimMotor.IDLE;
+		this.state = state;
+		if (started) { this.hardware.event(this, false, this.tacho()); }
+	}
+
+	/**
+	 * Integrates the speed profile of the motor over a step of the simulation. The lock of the simulation has to be held.
+	 * The velocity moves towards the desired one by at most the acceleration, the desired velocity of a rotation being
+	 * low enough to stop right on the target.
+	 *
+	 * @param dt the duration of the step, in s.
+	 */
+	void integrate(double dt) {
+		if (this.state == SimMotor.IDLE) { return; }
+		double remaining = this.target - this.position;
+		double desired;
+		switch (this.state) {
+			case SimMotor.ROTATE:
+				desired = Math.signum(remaining)*Math.min(this.speed, Math.sqrt(2*this.acceleration*Math.abs(remaining)));
+				break;
+			case SimMotor.FORWARD:  desired =  this.speed; break;
+			case SimMotor.BACKWARD: desired = -this.speed; break;
+			default:                desired = 0;           break;
+		}
+		double dv = this.acceleration*dt;
+		this.velocity += Math.max(-dv, Math.min(dv, desired - this.velocity));
+		double next = this.position + this.velocity*dt;
+		if (this.state == SimMotor.ROTATE &&
+				(remaining == 0 || (remaining > 0 && next >= this.target) || (remaining < 0 && next <= this.target))) {
+			this.position = this.target;
+			this.velocity = 0;
+			this.halt();
+		} else {
+			this.position = next;
+			if (this.state == SimMotor.STOPPING && this.velocity == 0) { this.halt(); }
+		}
+	}
+
+	/**
+	 * Brings the motor to rest and tells the listener. The lock of the simulation has to be held.
+	 */
+	private void halt() {
+		this.state = SimMotor.IDLE;
+		this.hardware.event(this, true, this.tacho());
+	}
+}
@@ -0,0 +1,63 @@
+package rover;
+
+/**
+ * A simulated ultrasonic sensor, i.e. the in-process implementation of a {@link RangeDevice}.
+ * It gives the distance seen inside the world of its simulation or, if there is none, the distance set by hand.
+ *
+ * @author Antoine Stevan
+ *
+ */
+class SimRange implements RangeDevice {
+	/** The simulation the sensor belongs to. */
+	private final SimHardware hardware;
+	/** The name of the sensor, e.g. its port. */
+	private final String name;
+	/** The distance given when the simulation has no world, in m. */
+	private float distance;
+
+	/**
+	 * Builds a simulated ultrasonic sensor which sees nothing.
+	 *
+	 * @param hardware the simulation the sensor belongs to.
+	 * @param name the name of the sensor.
+	 */
+	SimRange(SimHardware hardware, String name) {
+		this.hardware = hardware;
+		this.name     = name;
+		this.distance = Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Nothing to bind, a simulated sensor is always there.
+	 */
+	public void open() {
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public float fetchDistance() {
+		this.hardware.lock();
+		try {
+			SimHardware.World world = this.hardware.world;
+			return (world == null)? this.distance : world.distance();
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+
+	/**
+	 * Sets the distance given when the simulation has no world.
+	 *
+	 * @param distance the distance, in m, or {@link Float#POSITIVE_INFINITY} if there is nothing in range.
+	 */
+	void set(float distance) {
+		this.hardware.lock();
+		try {
+			this.distance = distance;
+		} finally {
+			this.hardware.unlock();
+		}
+	}
+}
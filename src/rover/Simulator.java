@@ -0,0 +1,366 @@
+package rover;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import lejos.robotics.geometry.Point;
+import tools.VirtualClock;
+
+/**
+ * A simple executable class that runs whole missions of the rover inside a simulated arena, far faster than real time.
+ *
+ * Every run builds a rover upon a {@link SimHardware} stepped by a {@link VirtualClock}, inside an {@link Arena} whose
+ * samples and sensor noise are drawn from the seed of the run. The mission is the very loop of the deployment, i.e.
+ * {@link Rover#explore()} and {@link Rover#harvest(Point)} until {@link Rover#mission_done()}, unmodified: only the
+ * time it lives along is virtual, so that the 7 minutes of a mission take a fraction of it, always with the same
+ * timings for a given seed. Each explored object which is not a real sample is counted as a false harvest, and each
+ * object rejected by the filter of the rover, see {@link EchoFilter}, which is neither a real sample nor explored
+ * afterwards as an avoided one.
+ *
+ * The main method runs a batch of seeded missions and prints the statistics of their results.
+ *
+ * @author Antoine Stevan
+ *
+ * @see Arena
+ */
+public class Simulator {
+	/** The length of a mission, in nanoseconds: two samples have to be harvested within 7 minutes. */
+	static final long   limit     = 7*60*1000000000L;
+	/** The number of samples harvested for a mission to succeed. */
+	static final int    goal      = 2;
+	/** The default number of samples inside the arena. */
+	static final int    samples   = 3;
+	/** The largest distance from an explored object to a real sample for it not to be a false harvest, in m. */
+	static final float  tolerance = Rover.MAX_OBJECT_SIZE;
+	/** Tells whether the border of the map echoes. The zone is a mat on the floor: nothing is around it by default. */
+	static final boolean walls    = false;
+
+	/**
+	 * The result of a simulated mission.
+	 */
+	public static final class Result {
+		/** The seed of the run. */
+		public final long      seed;
+		/** The number of harvested samples. */
+		public final int       harvested;
+		/** The number of explored objects which were not real samples. */
+		public final int       false_harvests;
+		/**
+		 * The number of objects rejected by the filter which were neither real samples nor explored afterwards, i.e. of
+		 * false harvests avoided by the filter.
+		 */
+		public final int       avoided;
+		/** The number of times the pliers closed on nothing. */
+		public final int       missed;
+		/** Tells whether the mission loop ended by itself, i.e. before the time limit. */
+		public final boolean   done;
+		/** The virtual time of the mission, in nanoseconds. */
+		public final long      time;
+		/** The virtual time at which enough samples had been harvested, in nanoseconds, or -1 if never. */
+		public final long      goal_time;
+		/** The real time of the run, in nanoseconds. */
+		public final long      real;
+		/** The CPU time of the mission thread, in nanoseconds, or -1 if the JVM does not measure it. */
+		public final long      cpu;
+		/** The number of times the mission thread woke up while waiting for blocking motions. */
+		public final long      wakeups;
+		/** The error which ended the mission, or null. */
+		public final Throwable error;
+		/** The timing statistics of the polls of the rover, see {@link Scheduler#report()}. */
+		public final String    timings;
+
+		/**
+		 * Builds the result of a mission.
+		 *
+		 * @param seed the seed of the run.
+		 * @param harvested the number of harvested samples.
+		 * @param false_harvests the number of explored objects which were not real samples.
+		 * @param avoided the number of false harvests avoided by the filter of the rover.
+		 * @param missed the number of times the pliers closed on nothing.
+		 * @param done true if the mission loop ended before the time limit.
+		 * @param time the virtual time of the mission, in nanoseconds.
+		 * @param goal_time the virtual time at which enough samples had been harvested, in nanoseconds, or -1.
+		 * @param real the real time of the run, in nanoseconds.
+		 * @param cpu the CPU time of the mission thread, in nanoseconds, or -1.
+		 * @param wakeups the number of times the mission thread woke up while waiting for blocking motions.
+		 * @param error the error which ended the mission, or null.
+		 * @param timings the timing statistics of the polls of the rover.
+		 */
+		Result(long seed, int harvested, int false_harvests, int avoided, int missed, boolean done, long time,
+			   long goal_time, long real, long cpu, long wakeups, Throwable error, String timings) {
+			this.seed           = seed;
+			this.harvested      = harvested;
+			this.false_harvests = false_harvests;
+			this.avoided        = avoided;
+			this.missed         = missed;
+			this.done           = done;
+			this.time           = time;
+			this.goal_time      = goal_time;
+			this.real           = real;
+			this.cpu            = cpu;
+			this.wakeups        = wakeups;
+			this.error          = error;
+			this.timings        = timings;
+		}
+
+		/**
+		 * Tells whether the mission succeeded.
+		 *
+		 * @return true if enough samples have been harvested within the time limit.
+		 */
+		public boolean success() {
+			return this.harvested >= Simulator.goal && this.error == null;
+		}
+
+		/**
+		 * Tells whether another mission gave the very same result, e.g. a rerun of the same seed, the real time of the
+		 * and CPU times of the runs excepted.
+		 *
+		 * @param other the result of the other mission.
+		 * @return true if both results are the same.
+		 */
+		public boolean same(Result other) {
+			return this.seed == other.seed && this.harvested == other.harvested &&
+				   this.false_harvests == other.false_harvests && this.avoided == other.avoided &&
+				   this.missed == other.missed && this.done == other.done && this.time == other.time &&
+				   this.goal_time == other.goal_time && this.wakeups == other.wakeups &&
+				   this.timings.equals(other.timings) &&
+				   String.valueOf(this.error).equals(String.valueOf(other.error));
+		}
+
+		public String toString() {
+			return "seed " + this.seed + ": " + this.harvested + " harvested, " + this.false_harvests + " false, " +
+				   this.avoided + " avoided, " + this.missed + " missed, " + ((this.done)? "done" : "timeout") + " at " + this.time/1000000 +
+				   " ms (" + this.real/1000000 + " ms real)" + ((this.error == null)? "" : ", " + this.error);
+		}
+	}
+
+	/**
+	 * Runs a mission inside an arena whose samples are drawn from the seed.
+	 *
+	 * @param seed the seed of the samples and of the noise of the sensors.
+	 * @param count the number of samples inside the arena.
+	 * @return the result of the mission.
+	 */
+	public static Result run(long seed, int count) {
+		return Simulator.run(seed, count, Tuning.defaults);
+	}
+
+	/**
+	 * Runs a mission of a rover with given parameters, inside an arena whose samples are drawn from the seed.
+	 *
+	 * @param seed the seed of the samples and of the noise of the sensors.
+	 * @param count the number of samples inside the arena.
+	 * @param tuning the parameters of the mission strategy of the rover.
+	 * @return the result of the mission.
+	 */
+	public static Result run(long seed, int count, Tuning tuning) {
+		return Simulator.run(seed, Arena.place(count, new Random(seed)), tuning);
+	}
+
+	/**
+	 * Runs a mission inside an arena with samples at given locations.
+	 *
+	 * @param seed the seed of the noise of the sensors.
+	 * @param samples the locations of the samples.
+	 * @param tuning the parameters of the mission strategy of the rover.
+	 * @return the result of the mission.
+	 */
+	public static Result run(long seed, Point[] samples, Tuning tuning) {
+		long real = System.nanoTime();
+		final VirtualClock clock = new VirtualClock();
+		clock.setLimit(Simulator.limit);
+		SimHardware hardware = new SimHardware(clock);
+		final Arena arena = new Arena(hardware, samples, Simulator.walls, seed);
+		final Rover rover = new Rover(hardware, tuning);
+		rover.logger.setLevel(Logger.OFF);
+		rover.mode.setEffects(false);
+
+		final int[]       false_harvests = new int[1];
+		final List<Point> explored       = new ArrayList<Point>();
+		final List<Point> spurious       = new ArrayList<Point>(); // the rejected objects which are not real samples.
+		final int[]       checked        = new int[1];              // the number of rejected echoes already collected.
+		final boolean[]   done           = new boolean[1];
+		final long[]      end            = new long[1];
+		final long[]      cpu            = new long[1];
+		final String[]    timings        = new String[1];
+		final Throwable[] error          = new Throwable[1];
+		Thread mission = clock.start(new Runnable() {
+			public void run() {
+				try {
+					// the peripherals are connected by hand: the simulation has nothing to beep nor any error to wait for.
+					rover.ultra.connect();
+					rover.pliers.connect();
+					rover.right.connect();
+					rover.left.connect();
+					rover.nav.start();
+					rover.compute_path();
+					rover.init_obstacle_detection();
+					while (!rover.mission_done()) {
+						Point sample = rover.explore();
+						if (sample != null && !arena.sample_near(sample, Simulator.tolerance)) { false_harvests[0]++; }
+						if (sample != null) { explored.add(sample); }
+						Simulator.collect(rover, arena, checked[0], spurious);
+						checked[0] = rover.rejections;
+						rover.harvest(sample);
+					}
+					done[0] = true;
+				} catch (VirtualClock.Stopped e) {
+					throw e;
+				} catch (Throwable e) {
+					error[0] = e;
+				} finally {
+					// the time goes on after the mission, for the background threads, until the clock is stopped.
+					end[0]     = clock.nanoTime();
+					timings[0] = rover.scheduler.report();
+					cpu[0]     = Simulator.cpu();
+				}
+			}
+		}, "mission");
+		try {
+			mission.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// the echoes rejected since the last exploration, e.g. when the time is up.
+		Simulator.collect(rover, arena, checked[0], spurious);
+		int avoided = Simulator.avoided(spurious, explored);
+		// every background thread of the rover ends with the clock.
+		clock.stop();
+		return new Result(seed, arena.getHarvested(), false_harvests[0], avoided, arena.getMissed(), done[0], end[0],
+						  arena.getHarvestTime(Simulator.goal), System.nanoTime() - real, cpu[0],
+						  rover.nav.getWakeups(), error[0], timings[0]);
+	}
+
+	/**
+	 * Gives the CPU time of the calling thread.
+	 *
+	 * @return the CPU time of the calling thread, in nanoseconds, or -1 if the JVM does not measure it.
+	 */
+	static long cpu() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		return (threads.isCurrentThreadCpuTimeSupported())? threads.getCurrentThreadCpuTime() : -1;
+	}
+
+	/**
+	 * Collects the objects rejected by the filter of a rover since a given rejected echo, which are not real samples.
+	 *
+	 * @param rover the rover.
+	 * @param arena the arena of the rover.
+	 * @param from the number of rejected echoes already collected.
+	 * @param spurious the rejected objects which are not real samples, among the last {@link Rover#rejected_capacity}
+	 * rejected echoes.
+	 */
+	static void collect(Rover rover, Arena arena, int from, List<Point> spurious) {
+		for (int k = Math.max(from, rover.rejections - Rover.rejected_capacity); k < rover.rejections; k++) {
+			int i = 2*(k & (Rover.rejected_capacity - 1));
+			Point location = new Point(rover.rejected[i], rover.rejected[i+1]);
+			if (!arena.sample_near(location, Simulator.tolerance)) { spurious.add(location); }
+		}
+	}
+
+	/**
+	 * Counts the false harvests avoided by the filter of a rover, i.e. the distinct spurious objects it rejected and never
+	 * explored, the same way as {@link Replay#run(Replay, Tuning)}. A spurious object explored later on, e.g. once its
+	 * echoes settled, is a false harvest which was only delayed.
+	 *
+	 * @param spurious the rejected objects which are not real samples.
+	 * @param explored the explored objects.
+	 * @return the number of avoided false harvests.
+	 */
+	static int avoided(List<Point> spurious, List<Point> explored) {
+		List<Point> counted = new ArrayList<Point>();
+		for (Point location : spurious) {
+			if (!Simulator.near(location, explored) && !Simulator.near(location, counted)) { counted.add(location); }
+		}
+		return counted.size();
+	}
+
+	/**
+	 * Tells whether a location is close to any of some objects, i.e. whether it belongs to one of them.
+	 *
+	 * @param location the location.
+	 * @param objects the objects.
+	 * @return true if an object is closer than {@link Simulator#tolerance} to the location.
+	 */
+	private static boolean near(Point location, List<Point> objects) {
+		for (Point object : objects) {
+			if (object.subtract(location).length() < Simulator.tolerance) { return true; }
+		}
+		return false;
+	}
+
+	/**
+	 * Checks that missions are repeatable, i.e. that running the same seed twice gives the very same result. Any
+	 * difference is printed.
+	 *
+	 * @param runs the number of seeds.
+	 * @param first the first seed.
+	 * @param count the number of samples inside the arena.
+	 * @return the number of seeds whose missions differed.
+	 */
+	static int repeat(int runs, long first, int count) {
+		int differences = 0;
+		for (int i = 0; i < runs; i++) {
+			Result a = Simulator.run(first + i, count);
+			Result b = Simulator.run(first + i, count);
+			if (!a.same(b)) {
+				System.out.println("not repeatable:\n  " + a + "\n  " + b);
+				differences++;
+			}
+		}
+		return differences;
+	}
+
+	/**
+	 * The main method of the simulator.
+	 *
+	 * @param args the number of missions (100 by default), the first seed (0 by default) and the number of samples (3 by
+	 * default). A single mission prints its result and the timings of its polls. With "repeat" first, every seed is run
+	 * twice instead, and the program fails if any pair of missions differs.
+	 */
+	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals("repeat")) {
+			int  runs  = (args.length > 1)? Integer.parseInt(args[1]) : 10;
+			long first = (args.length > 2)? Long.parseLong(args[2])    : 0;
+			int  differences = Simulator.repeat(runs, first, Simulator.samples);
+			System.out.println(runs + " seeds run twice from " + first + ": " + differences + " not repeatable");
+			if (differences > 0) { System.exit(1); }
+			return;
+		}
+		int  runs  = (args.length > 0)? Integer.parseInt(args[0]) : 100;
+		long first = (args.length > 1)? Long.parseLong(args[1])    : 0;
+		int  count = (args.length > 2)? Integer.parseInt(args[2])  : Simulator.samples;
+
+		int  successes = 0, harvested = 0, false_harvests = 0, avoided = 0, timeouts = 0, errors = 0;
+		long time = 0, cpu = 0, wakeups = 0, real = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			Result result = Simulator.run(first + i, count);
+			if (runs == 1 || result.error != null) { System.out.println(result); }
+			if (runs == 1)                         { System.out.println(result.timings); }
+			if (result.success())     { successes++; }
+			if (!result.done)         { timeouts++; }
+			if (result.error != null) { errors++; }
+			harvested      += result.harvested;
+			false_harvests += result.false_harvests;
+			avoided        += result.avoided;
+			time           += result.time;
+			cpu            += result.cpu;
+			wakeups        += result.wakeups;
+		}
+		real = System.nanoTime() - real;
+		System.out.println(runs + " missions with " + count + " samples, seeds " + first + ".." + (first + runs - 1));
+		System.out.println("success rate    : " + 100f*successes/runs + " %");
+		System.out.println("samples         : " + (float)harvested/runs + " harvested per mission");
+		System.out.println("false harvests  : " + (float)false_harvests/runs + " per mission, " +
+						   (float)avoided/runs + " avoided by the filter");
+		System.out.println("timeouts, errors: " + timeouts + ", " + errors);
+		System.out.println("mission time    : " + time/runs/1000000 + " ms (virtual)");
+		System.out.println("mission thread  : " + cpu/runs/1000000 + " ms CPU, " + wakeups/runs +
+						   " wake-ups inside blocking motions per mission");
+		System.out.println("simulation      : " + real/runs/1000000 + " ms per mission, " +
+						   (float)time/real + "x real time");
+	}
+}
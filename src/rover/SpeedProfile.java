@@ -0,0 +1,107 @@
+package rover;
+
+/**
+ * Velocity profiles of the tracks, chosen per segment from its length and from the clearance in front of the rover.
+ *
+ * Long legs are driven fast, while short segments, e.g. the final approach of a sample, and segments with an obstacle
+ * ahead are driven slowly so that the rover stops precisely. The ramps follow an S-curve of limited jerk: as the leJOS
+ * regulator only knows constant accelerations, each profile uses the mean acceleration of the S-curve ramp, which takes
+ * the same time to reach the cruise speed. Every profile is computed once, when the class is loaded, and looked up
+ * afterwards: nothing is computed inside the control loop.
+ *
+ * @author Antoine Stevan
+ *
+ */
+class SpeedProfile {
+	/** The slowest cruise speed, for short segments, in degrees per second. */
+	static final int   MIN_SPEED        = 90;
+	/** The fastest cruise speed, for long legs, in degrees per second. */
+	static final int   MAX_SPEED        = 360;
+	/** The peak acceleration of the tracks, in degrees per second per second. */
+	static final int   MAX_ACCELERATION = 600;
+	/** The jerk limit of the tracks, in degrees per second per second per second. */
+	static final int   JERK             = 3000;
+	/** The width of a length bucket of the table, in degrees of rotation of the fastest track. */
+	static final int   LENGTH_STEP      = 90;
+	/** The number of length buckets of the table. Longer segments use the last one. */
+	static final int   LENGTHS          = 32;
+	/** The width of a clearance bucket of the table, in m. */
+	static final float CLEARANCE_STEP   = 100													/1000f;
+	/** The number of clearance buckets of the table. The last one stands for a free way, e.g. no echo at all. */
+	static final int   CLEARANCES       = 26;
+
+	/** The table of cruise speeds, in degrees per second, indexed by {@link SpeedProfile#index(int, float)}. */
+	private static final int[] speeds        = new int[SpeedProfile.LENGTHS*SpeedProfile.CLEARANCES];
+	/** The table of accelerations, in degrees per second per second, indexed by {@link SpeedProfile#index(int, float)}. */
+	private static final int[] accelerations = new int[SpeedProfile.LENGTHS*SpeedProfile.CLEARANCES];
+
+	static {
+		for (int i = 0; i < SpeedProfile.LENGTHS; i++) {
+			for (int j = 0; j < SpeedProfile.CLEARANCES; j++) {
+				// lower edges of the buckets, to stay on the safe side.
+				float length = i*SpeedProfile.LENGTH_STEP;
+				float room   = (j == SpeedProfile.CLEARANCES-1)? Float.MAX_VALUE :
+								(float)Math.toDegrees(Math.max(0, j*SpeedProfile.CLEARANCE_STEP - Rover.MIN_DIST_DETECTION)
+													  / Rover.WHEEL_RADIUS);
+				// the fastest speed which can be reached and left within the segment, and stopped before the obstacle.
+				int v = SpeedProfile.MAX_SPEED;
+				while (v > SpeedProfile.MIN_SPEED &&
+					   (v*v/SpeedProfile.ramp(v) > length || v*v/(2*SpeedProfile.ramp(v)) > room)) {
+					v -= 10;
+				}
+				v = Math.max(v, SpeedProfile.MIN_SPEED);
+				speeds[i*SpeedProfile.CLEARANCES + j]        = v;
+				accelerations[i*SpeedProfile.CLEARANCES + j] = (int)SpeedProfile.ramp(v);
+			}
+		}
+	}
+
+	/**
+	 * Computes the mean acceleration of an S-curve ramp from rest to a given speed.
+	 * With a limited jerk J and a peak acceleration A, the ramp takes v/A + A/J seconds (or 2*sqrt(v/J) when A is never
+	 * reached).
+	 *
+	 * @param v the cruise speed, in degrees per second.
+	 * @return the mean acceleration of the ramp, in degrees per second per second.
+	 */
+	private static float ramp(float v) {
+		float a = SpeedProfile.MAX_ACCELERATION;
+		float j = SpeedProfile.JERK;
+		float time = (v >= a*a/j)? v/a + a/j : 2*(float)Math.sqrt(v/j);
+		return v/time;
+	}
+
+	/**
+	 * Gives the index of a profile inside the tables.
+	 *
+	 * @param degrees the rotation of the fastest track along the segment, in degrees.
+	 * @param clearance the free distance in front of the rover, in m. Infinite if there is no obstacle.
+	 * @return the index of the profile.
+	 */
+	static int index(int degrees, float clearance) {
+		int i = Math.min(Math.abs(degrees)/SpeedProfile.LENGTH_STEP, SpeedProfile.LENGTHS-1);
+		int j = (clearance >= (SpeedProfile.CLEARANCES-1)*SpeedProfile.CLEARANCE_STEP)? SpeedProfile.CLEARANCES-1 :
+				(int)(clearance/SpeedProfile.CLEARANCE_STEP);
+		return i*SpeedProfile.CLEARANCES + Math.max(j, 0);
+	}
+
+	/**
+	 * Gives the cruise speed of a profile.
+	 *
+	 * @param index the index of the profile, see {@link SpeedProfile#index(int, float)}.
+	 * @return the cruise speed, in degrees per second.
+	 */
+	static int speed(int index) {
+		return SpeedProfile.speeds[index];
+	}
+
+	/**
+	 * Gives the acceleration of a profile.
+	 *
+	 * @param index the index of the profile, see {@link SpeedProfile#index(int, float)}.
+	 * @return the acceleration, in degrees per second per second.
+	 */
+	static int acceleration(int index) {
+		return SpeedProfile.accelerations[index];
+	}
+}
@@ -0,0 +1,241 @@
+package rover;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A simple executable class that evaluates a grid of {@link Tuning}s by Monte Carlo, over simulated missions.
+ *
+ * Every configuration of the grid, i.e. every combination of the values given for each parameter, runs the same seeded
+ * missions of the {@link Simulator}, so that configurations are compared upon the very same arenas. As a mission is
+ * repeatable, see {@link Simulator#repeat(int, long, int)}, the differences between configurations are never noise of
+ * the simulation; the sweep refuses to rank them otherwise. The missions are independent from each other, each one
+ * living along its own virtual clock: they are run by a fixed pool of threads, one task per mission, as every mission
+ * blocks its thread until its virtual clock is done.
+ *
+ * The main method prints, for every configuration, its success rate, the number of samples harvested per mission and
+ * the mean mission time, best configurations first.
+ *
+ * @author Antoine Stevan
+ *
+ * @see Simulator
+ */
+public class Sweep {
+	/**
+	 * The parameters of the grid, in the order of the constructor of {@link Tuning}. The margin is left out: it only
+	 * matters to the calibration, which the simulated missions do not run.
+	 */
+	static final String[] names = { "x", "min_dist", "max_size", "factor", "median", "hampel", "hits", "arc", "fixed" };
+
+	/**
+	 * The accumulated results of the missions of a configuration.
+	 */
+	public static final class Stats {
+		/** The configuration of the missions. */
+		public final Tuning tuning;
+		/** The number of missions. */
+		public int  runs;
+		/** The number of successful missions. */
+		public int  successes;
+		/** The number of harvested samples. */
+		public int  harvested;
+		/** The number of explored objects which were not real samples. */
+		public int  false_harvests;
+		/** The number of false harvests avoided by the filter of the rovers. */
+		public int  avoided;
+		/** The number of missions ended by an error. */
+		public int  errors;
+		/** The sum of the virtual times of the missions, in nanoseconds. */
+		public long time;
+		/** The sum of the virtual times at which the successful missions reached their goal, in nanoseconds. */
+		public long goal_time;
+
+		/**
+		 * Builds empty statistics.
+		 * @param tuning the configuration of the missions.
+		 */
+		Stats(Tuning tuning) {
+			this.tuning = tuning;
+		}
+
+		/**
+		 * Accounts for the result of a mission.
+		 * @param result the result of the mission.
+		 */
+		void add(Simulator.Result result) {
+			this.runs++;
+			if (result.success())     { this.successes++; this.goal_time += result.goal_time; }
+			if (result.error != null) { this.errors++; }
+			this.harvested      += result.harvested;
+			this.false_harvests += result.false_harvests;
+			this.avoided        += result.avoided;
+			this.time           += result.time;
+		}
+
+		/**
+		 * Gives the success rate of the missions.
+		 * @return the part of successful missions, between 0 and 1.
+		 */
+		public float success_rate() {
+			return (this.runs == 0)? 0 : (float)this.successes/this.runs;
+		}
+
+		public String toString() {
+			return String.format("%5.1f %%  %5.2f harvested  %5.2f false  %5.2f avoided  %6.1f s  %6s s to goal  " +
+								 "%d errors  %s", 100*this.success_rate(), (float)this.harvested/this.runs,
+								 (float)this.false_harvests/this.runs, (float)this.avoided/this.runs,
+								 this.time/1e9/this.runs,
+								 (this.successes == 0)? "-" : String.format("%.1f", this.goal_time/1e9/this.successes),
+								 this.errors, this.tuning);
+		}
+	}
+
+	/**
+	 * Builds the grid of configurations, i.e. the cartesian product of the values of every parameter.
+	 *
+	 * @param values the values of every parameter, in the order of {@link Sweep#names}, the windows of the filter being
+	 * truncated to integers, the shape of the sweep being 1 for blended corners and 0 for rotations in place, and the
+	 * backend 1 for fixed-point arithmetic and 0 for the floats.
+	 * @return the configurations of the grid.
+	 * @throws IllegalArgumentException if a combination of values is not a valid configuration.
+	 */
+	static List<Tuning> grid(float[][] values) {
+		List<Tuning> grid = new ArrayList<Tuning>();
+		int[] k = new int[values.length];
+		while (true) {
+			grid.add(new Tuning(values[0][k[0]], values[1][k[1]], values[2][k[2]], Rover.margin, values[3][k[3]],
+								(int)values[4][k[4]], (int)values[5][k[5]], (int)values[6][k[6]],
+								values[7][k[7]] != 0, values[8][k[8]] != 0));
+			int i = values.length - 1;
+			while (i >= 0 && ++k[i] == values[i].length) { k[i--] = 0; }
+			if (i < 0) { return grid; }
+		}
+	}
+
+	/**
+	 * Evaluates every configuration of a grid over the same seeds, in parallel.
+	 *
+	 * @param grid the configurations.
+	 * @param runs the number of missions per configuration.
+	 * @param first the first seed.
+	 * @param count the number of samples inside the arenas.
+	 * @param pool the pool running the missions.
+	 * @return the statistics of every configuration, in the order of the grid.
+	 * @throws InterruptedException if the thread is interrupted while waiting for the missions.
+	 */
+	public static List<Stats> evaluate(List<Tuning> grid, int runs, final long first, final int count,
+									   ExecutorService pool) throws InterruptedException {
+		List<Future<Simulator.Result>> missions = new ArrayList<Future<Simulator.Result>>();
+		for (final Tuning tuning : grid) {
+			for (int i = 0; i < runs; i++) {
+				final long seed = first + i;
+				missions.add(pool.submit(new Callable<Simulator.Result>() {
+					public Simulator.Result call() {
+						return Simulator.run(seed, count, tuning);
+					}
+				}));
+			}
+		}
+		List<Stats> stats = new ArrayList<Stats>();
+		int k = 0;
+		for (Tuning tuning : grid) {
+			Stats s = new Stats(tuning);
+			for (int i = 0; i < runs; i++) {
+				try {
+					s.add(missions.get(k++).get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("mission " + (first + i) + " of " + tuning + " failed", e.getCause());
+				}
+			}
+			stats.add(s);
+		}
+		return stats;
+	}
+
+	/**
+	 * Parses a comma separated list of values.
+	 *
+	 * @param list the values, e.g. "0.1,0.2".
+	 * @return the values.
+	 * @throws NumberFormatException if a value is not a number.
+	 */
+	static float[] parse(String list) {
+		String[] items = list.split(",");
+		float[] values = new float[items.length];
+		for (int i = 0; i < items.length; i++) { values[i] = Float.parseFloat(items[i].trim()); }
+		return values;
+	}
+
+	/**
+	 * The main method of the sweep.
+	 *
+	 * @param args the number of missions per configuration (20 by default), the first seed (0 by default), then any
+	 * number of 'name=v1,v2,...' to override the values of a parameter, among {@link Sweep#names}, or 'samples=n' and
+	 * 'threads=n'. The default grid spans the hand-tuned values of {@link Rover}.
+	 * @throws InterruptedException if the thread is interrupted while waiting for the missions.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int  runs    = (args.length > 0)? Integer.parseInt(args[0]) : 20;
+		long first   = (args.length > 1)? Long.parseLong(args[1])    : 0;
+		int  count   = Simulator.samples;
+		int  threads = Runtime.getRuntime().availableProcessors();
+		float[][] values = {
+			{ 0.12f, Rover.x, 0.22f },
+			{ 0.15f, Rover.MIN_DIST_DETECTION, 0.25f },
+			{ 0.2f, Rover.MAX_OBJECT_SIZE },
+			{ Rover.factor, 0.7f, 0.9f },
+			{ Rover.median_window },
+			{ Rover.hampel_window },
+			{ Rover.min_hits },
+			{ (Rover.arc_sweep)? 1 : 0 },
+			{ (Rover.fixed_point)? 1 : 0 },
+		};
+		for (int i = 2; i < args.length; i++) {
+			int eq = args[i].indexOf('=');
+			String name  = (eq < 0)? args[i] : args[i].substring(0, eq);
+			String value = (eq < 0)? ""      : args[i].substring(eq + 1);
+			int p = Arrays.asList(Sweep.names).indexOf(name);
+			if (p >= 0)                        { values[p] = Sweep.parse(value); }
+			else if (name.equals("samples"))   { count     = Integer.parseInt(value); }
+			else if (name.equals("threads"))   { threads   = Integer.parseInt(value); }
+			else { throw new IllegalArgumentException("unknown parameter '" + name + "', expected one of " +
+													  Arrays.toString(Sweep.names) + ", samples or threads"); }
+		}
+
+		// rankings of configurations mean nothing if a mission does not always give the same result.
+		if (Simulator.repeat(1, first, count) > 0) {
+			System.out.println("the simulator is not repeatable: configurations cannot be ranked");
+			System.exit(1);
+		}
+		List<Tuning> grid = Sweep.grid(values);
+		System.out.println(grid.size() + " configurations x " + runs + " missions with " + count + " samples, seeds " +
+						   first + ".." + (first + runs - 1) + ", " + threads + " threads");
+		long real = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Stats> stats;
+		try {
+			stats = Sweep.evaluate(grid, runs, first, count, pool);
+		} finally {
+			pool.shutdown();
+		}
+		real = System.nanoTime() - real;
+
+		Collections.sort(stats, new Comparator<Stats>() {
+			public int compare(Stats a, Stats b) {
+				int c = Float.compare(b.success_rate(), a.success_rate());
+				return (c != 0)? c : Integer.compare(b.harvested, a.harvested);
+			}
+		});
+		for (Stats s : stats) { System.out.println(s); }
+		System.out.println("sweep           : " + real/1000000 + " ms, " + real/1000000/(grid.size()*runs) +
+						   " ms per mission");
+	}
+}
@@ -51,7 +51,7 @@ public class Tester {
 		while (Button.readButtons() != Button.ID_ENTER) {
 			LCD.clear();
 			id = rover.color.read().getValue();
-			System.out.println("id: " + id);
+			System.out.println("red: " + id);
 			Button.waitForAnyPress();
 		}
 		rover.logger.println("color done");	
@@ -0,0 +1,191 @@
+package rover;
+
+import lejos.robotics.geometry.Point;
+
+/**
+ * Plans smooth trajectories through a list of waypoints, to be followed with {@link Navigator#follow(Segment[])}.
+ *
+ * Instead of stopping at every waypoint to rotate in place, the rover follows straight legs joined by blended corners.
+ * Each corner is made of an entry spiral, an arc of circle and an exit spiral: along the spirals, the curvature changes
+ * linearly, like along a clothoid, which is approximated by a few arcs of increasing curvature. As both tracks keep going
+ * forward along a corner, the navigator does not stop them between segments.
+ *
+ * @author Antoine Stevan
+ *
+ */
+class Trajectory {
+	/** The part of the turning angle of a corner taken by each of its spirals. */
+	static final float SPIRAL = 0.25f;
+	/** The number of arcs approximating each spiral. */
+	static final int   STEPS  = 3;
+	/** Above this turning angle, in degrees, a corner is not blended and the rover rotates in place instead. */
+	static final float MAX_CORNER = 170;
+	/** Under this turning angle, in degrees, there is no need for a corner. */
+	static final float MIN_CORNER = 1;
+
+	/**
+	 * Plans a trajectory from a pose through a list of waypoints.
+	 * The rover first rotates in place towards the first waypoint, then follows straight legs between waypoints, with a
+	 * blended corner at every intermediate waypoint. The radius of a corner is reduced when the legs around it are too
+	 * short to hold it.
+	 *
+	 * @param x the initial x coordinate of the rover, in m.
+	 * @param y the initial y coordinate of the rover, in m.
+	 * @param heading the initial heading of the rover, in degrees.
+	 * @param waypoints the waypoints to go through.
+	 * @param radius the radius of the arcs of the corners, in m. Should be larger than {@link Rover#HALF_AXIS_DIFF} so
+	 * that both tracks keep going forward.
+	 * @param reached if not null, filled for every waypoint with the number of segments after which it is considered
+	 * reached, i.e. the middle of its corner.
+	 * @return the segments of the trajectory.
+	 */
+	static Segment[] plan(float x, float y, float heading, Point[] waypoints, float radius, int[] reached) {
+		// at most: a rotation, then for every waypoint a travel and a corner.
+		Segment[] segments = new Segment[1 + waypoints.length*(2 + 2*Trajectory.STEPS + 1)];
+		int n = 0;
+		if (waypoints.length == 0) { return new Segment[0]; }
+
+		// directions and lengths of the legs.
+		float[] angles  = new float[waypoints.length];
+		float[] lengths = new float[waypoints.length];
+		float px = x, py = y;
+		for (int i = 0; i < waypoints.length; i++) {
+			float dx = waypoints[i].x - px;
+			float dy = waypoints[i].y - py;
+			angles[i]  = (float)Math.toDegrees(Math.atan2(dy, dx));
+			lengths[i] = (float)Math.sqrt(dx*dx + dy*dy);
+			px = waypoints[i].x;
+			py = waypoints[i].y;
+		}
+
+		// rotate in place towards the first waypoint.
+		float turn = Trajectory.wrap(angles[0] - heading);
+		if (Math.abs(turn) >= Trajectory.MIN_CORNER) { segments[n++] = Segment.rotate(turn); }
+
+		float entry = 0; // length of the current leg already used by the previous corner.
+		for (int i = 0; i < waypoints.length; i++) {
+			float phi = (i+1 < waypoints.length)? Trajectory.wrap(angles[i+1] - angles[i]) : 0;
+			if (Math.abs(phi) < Trajectory.MIN_CORNER) {
+				// no corner, or last waypoint.
+				segments[n++] = Segment.travel(lengths[i] - entry);
+				if (reached != null) { reached[i] = n; }
+				entry = 0;
+			} else if (Math.abs(phi) > Trajectory.MAX_CORNER) {
+				// too sharp to be blended.
+				segments[n++] = Segment.travel(lengths[i] - entry);
+				if (reached != null) { reached[i] = n; }
+				segments[n++] = Segment.rotate(phi);
+				entry = 0;
+			} else {
+				// the corner starts 'tangent' m before the waypoint and ends 'tangent' m after it. it may use the rest of
+				// this leg and half of the next one, the other half being left to the next corner.
+				float r = radius;
+				float tangent = Trajectory.tangent(phi, r);
+				float room = Math.min(lengths[i] - entry, lengths[i+1]/2);
+				if (tangent > room) {
+					// the corner scales linearly with its radius.
+					r *= room/tangent;
+					tangent = room;
+				}
+				segments[n++] = Segment.travel(lengths[i] - entry - tangent);
+				if (reached != null) { reached[i] = n + Trajectory.STEPS + 1; }
+				n = Trajectory.corner(phi, r, segments, n);
+				entry = tangent;
+			}
+		}
+
+		Segment[] result = new Segment[n];
+		System.arraycopy(segments, 0, result, 0, n);
+		return result;
+	}
+
+	/**
+	 * Appends the arcs of a corner to a list of segments.
+	 * Along each spiral the curvature goes linearly from 0 to 1/radius, over {@link Trajectory#STEPS} arcs of the same
+	 * length. The middle arc has a constant radius.
+	 *
+	 * @param phi the turning angle of the corner, in degrees. Positive angles turn left.
+	 * @param radius the radius of the middle arc, in m.
+	 * @param segments the list of segments.
+	 * @param n the number of segments already in the list.
+	 * @return the new number of segments in the list.
+	 */
+	private static int corner(float phi, float radius, Segment[] segments, int n) {
+		float sign   = (phi < 0)? -1 : 1;
+		float spiral = Trajectory.SPIRAL*Math.abs(phi); // turning angle of a spiral, in degrees.
+		// along a spiral the curvature grows linearly, so that its turning angle is half the one of an arc of same length.
+		// each step of the spiral has a turning angle proportional to its mean curvature, i.e. (i+0.5)/STEPS.
+		float unit = 2*spiral/Trajectory.STEPS;
+		for (int i = 0; i < Trajectory.STEPS; i++) {
+			float k = (i+0.5f)/Trajectory.STEPS;
+			segments[n++] = Segment.arc(sign*radius/k, sign*unit*k);
+		}
+		segments[n++] = Segment.arc(sign*radius, sign*(Math.abs(phi) - 2*spiral));
+		for (int i = Trajectory.STEPS-1; i >= 0; i--) {
+			float k = (i+0.5f)/Trajectory.STEPS;
+			segments[n++] = Segment.arc(sign*radius/k, sign*unit*k);
+		}
+		return n;
+	}
+
+	/**
+	 * Computes the distance between the waypoint and both ends of a corner, by integrating its arcs.
+	 *
+	 * @param phi the turning angle of the corner, in degrees.
+	 * @param radius the radius of the middle arc, in m.
+	 * @return the tangent length of the corner, in m.
+	 */
+	static float tangent(float phi, float radius) {
+		Segment[] arcs = new Segment[2*Trajectory.STEPS + 1];
+		Trajectory.corner(phi, radius, arcs, 0);
+		// integrate the corner from the origin, heading along the x axis.
+		double x = 0, y = 0, h = 0;
+		for (int i = 0; i < arcs.length; i++) {
+			double a = Math.toRadians(arcs[i].angle);
+			double r = arcs[i].radius;
+			x += r*(Math.sin(h + a) - Math.sin(h));
+			y -= r*(Math.cos(h + a) - Math.cos(h));
+			h += a;
+		}
+		// the corner is symmetric: it starts 'tangent' m before the waypoint and ends 'tangent' m after it, along the
+		// outgoing direction, hence y = tangent*sin(phi).
+		return (float)(y/Math.sin(Math.toRadians(phi)));
+	}
+
+	/**
+	 * Estimates the time needed to follow a list of segments, with the velocity profiles of the engines and a free way.
+	 * Consecutive segments which blend are followed without stopping, hence with a single acceleration and deceleration.
+	 *
+	 * @param segments the list of segments.
+	 * @return the estimated duration, in s.
+	 * @see SpeedProfile
+	 */
+	static float duration(Segment[] segments) {
+		float total = 0;
+		float run   = 0; // rotation of the fastest track since the last stop, in degrees.
+		for (int i = 0; i < segments.length; i++) {
+			run += Math.max(Math.abs(segments[i].r_theta()), Math.abs(segments[i].l_theta()));
+			if (i+1 == segments.length || !segments[i].blends_with(segments[i+1])) {
+				// the tracks stop: accelerate, cruise and decelerate.
+				int index = SpeedProfile.index((int)run, Float.POSITIVE_INFINITY);
+				float v = SpeedProfile.speed(index);        // degrees per second.
+				float a = SpeedProfile.acceleration(index); // degrees per second per second.
+				total += (run >= v*v/a)? run/v + v/a : 2*(float)Math.sqrt(run/a);
+				run = 0;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Wraps an angle between -180 and 180 degrees.
+	 *
+	 * @param angle the angle, in degrees.
+	 * @return the same angle, between -180 and 180 degrees.
+	 */
+	static float wrap(float angle) {
+		while (angle >  180) { angle -= 360; }
+		while (angle < -180) { angle += 360; }
+		return angle;
+	}
+}
@@ -0,0 +1,167 @@
+package rover;
+
+/**
+ * The tunable parameters of the mission strategy of a rover.
+ *
+ * The constants of {@link Rover} are the hand-tuned defaults. A rover can be built with other values, e.g. by a
+ * {@link Sweep} evaluating a grid of them inside simulated missions, without touching the other rovers.
+ *
+ * @author Antoine Stevan
+ *
+ * @see Rover#Rover(Hardware, Tuning)
+ */
+public final class Tuning {
+	/** The hand-tuned parameters, i.e. the constants of {@link Rover}. */
+	public static final Tuning defaults = new Tuning(Rover.x, Rover.MIN_DIST_DETECTION, Rover.MAX_OBJECT_SIZE,
+													 Rover.margin, Rover.factor, Rover.median_window,
+													 Rover.hampel_window, Rover.min_hits, Rover.arc_sweep,
+													 Rover.fixed_point);
+
+	/** The width of the ultrasonic sensor's cone, i.e. half the spacing of the rows of the sweep, in m. */
+	public final float x;
+	/** The distance under which a measure of the ultrasonic sensor is unsure, in m. */
+	public final float min_dist_detection;
+	/** The maximum size of an object: two detections further apart belong to two distinct objects, in m. */
+	public final float max_object_size;
+	/** The margin the rover backs off by during the calibration of its origin, in m. */
+	public final float margin;
+	/** The part of the distance to a sample travelled at every step of its approach. */
+	public final float factor;
+	/** The window of the sliding median of the ultrasonic distances, in samples, see {@link EchoFilter}. */
+	public final int   median;
+	/** The window of the Hampel rejector of the ultrasonic distances, in samples, see {@link EchoFilter}. */
+	public final int   hampel;
+	/** The number of consecutive ultrasonic echoes before a distance is trusted, see {@link EchoFilter}. */
+	public final int   hits;
+	/** If true, the sweep follows blended corners, otherwise the rover rotates in place at every waypoint. */
+	public final boolean arc_sweep;
+	/** If true, the odometry and the projection of echoes use fixed-point arithmetic instead of the floats. */
+	public final boolean fixed_point;
+
+	/**
+	 * Builds a set of parameters, with the hand-tuned filter of the ultrasonic distances.
+	 *
+	 * @param x the width of the ultrasonic sensor's cone, in m.
+	 * @param min_dist_detection the distance under which a measure of the ultrasonic sensor is unsure, in m.
+	 * @param max_object_size the maximum size of an object, in m.
+	 * @param margin the margin the rover backs off by during the calibration of its origin, in m.
+	 * @param factor the part of the distance to a sample travelled at every step of its approach, between 0 and 1.
+	 * @throws IllegalArgumentException if a parameter is out of its range.
+	 */
+	public Tuning(float x, float min_dist_detection, float max_object_size, float margin, float factor) {
+		this(x, min_dist_detection, max_object_size, margin, factor, Rover.median_window, Rover.hampel_window,
+			 Rover.min_hits);
+	}
+
+	/**
+	 * Builds a set of parameters, with the hand-tuned shape of the sweep.
+	 *
+	 * @param x the width of the ultrasonic sensor's cone, in m.
+	 * @param min_dist_detection the distance under which a measure of the ultrasonic sensor is unsure, in m.
+	 * @param max_object_size the maximum size of an object, in m.
+	 * @param margin the margin the rover backs off by during the calibration of its origin, in m.
+	 * @param factor the part of the distance to a sample travelled at every step of its approach, between 0 and 1.
+	 * @param median the window of the sliding median of the ultrasonic distances, in samples, 1 to disable it.
+	 * @param hampel the window of the Hampel rejector of the ultrasonic distances, in samples, 0 to disable it.
+	 * @param hits the number of consecutive ultrasonic echoes before a distance is trusted, 1 to trust every echo.
+	 * @throws IllegalArgumentException if a parameter is out of its range.
+	 */
+	public Tuning(float x, float min_dist_detection, float max_object_size, float margin, float factor, int median,
+				  int hampel, int hits) {
+		this(x, min_dist_detection, max_object_size, margin, factor, median, hampel, hits, Rover.arc_sweep);
+	}
+
+	/**
+	 * Builds a set of parameters, with the default backend of the odometry.
+	 *
+	 * @param x the width of the ultrasonic sensor's cone, in m.
+	 * @param min_dist_detection the distance under which a measure of the ultrasonic sensor is unsure, in m.
+	 * @param max_object_size the maximum size of an object, in m.
+	 * @param margin the margin the rover backs off by during the calibration of its origin, in m.
+	 * @param factor the part of the distance to a sample travelled at every step of its approach, between 0 and 1.
+	 * @param median the window of the sliding median of the ultrasonic distances, in samples, 1 to disable it.
+	 * @param hampel the window of the Hampel rejector of the ultrasonic distances, in samples, 0 to disable it.
+	 * @param hits the number of consecutive ultrasonic echoes before a distance is trusted, 1 to trust every echo.
+	 * @param arc_sweep true if the sweep follows blended corners, false if the rover rotates in place at every waypoint.
+	 * @throws IllegalArgumentException if a parameter is out of its range.
+	 */
+	public Tuning(float x, float min_dist_detection, float max_object_size, float margin, float factor, int median,
+				  int hampel, int hits, boolean arc_sweep) {
+		this(x, min_dist_detection, max_object_size, margin, factor, median, hampel, hits, arc_sweep, Rover.fixed_point);
+	}
+
+	/**
+	 * Builds a set of parameters.
+	 *
+	 * @param x the width of the ultrasonic sensor's cone, in m.
+	 * @param min_dist_detection the distance under which a measure of the ultrasonic sensor is unsure, in m.
+	 * @param max_object_size the maximum size of an object, in m.
+	 * @param margin the margin the rover backs off by during the calibration of its origin, in m.
+	 * @param factor the part of the distance to a sample travelled at every step of its approach, between 0 and 1.
+	 * @param median the window of the sliding median of the ultrasonic distances, in samples, 1 to disable it.
+	 * @param hampel the window of the Hampel rejector of the ultrasonic distances, in samples, 0 to disable it.
+	 * @param hits the number of consecutive ultrasonic echoes before a distance is trusted, 1 to trust every echo.
+	 * @param arc_sweep true if the sweep follows blended corners, false if the rover rotates in place at every waypoint.
+	 * @param fixed_point true if the odometry and the projection of echoes use fixed-point arithmetic, see {@link Fixed}.
+	 * @throws IllegalArgumentException if a parameter is out of its range.
+	 */
+	public Tuning(float x, float min_dist_detection, float max_object_size, float margin, float factor, int median,
+				  int hampel, int hits, boolean arc_sweep, boolean fixed_point) {
+		if (!(x > 0) || !(min_dist_detection >= 0) || !(max_object_size > 0) || !(margin >= 0) ||
+			!(factor > 0 && factor <= 1) || median < 1 || hampel < 0 || hits < 1) {
+			throw new IllegalArgumentException("invalid tuning: " + Tuning.describe(x, min_dist_detection,
+											   max_object_size, margin, factor, median, hampel, hits, arc_sweep,
+											   fixed_point));
+		}
+		this.x                  = x;
+		this.min_dist_detection = min_dist_detection;
+		this.max_object_size    = max_object_size;
+		this.margin             = margin;
+		this.factor             = factor;
+		this.median             = median;
+		this.hampel             = hampel;
+		this.hits               = hits;
+		this.arc_sweep          = arc_sweep;
+		this.fixed_point        = fixed_point;
+	}
+
+	/**
+	 * Builds the same set of parameters with another shape of the sweep.
+	 *
+	 * @param arc_sweep true if the sweep follows blended corners, false if the rover rotates in place at every waypoint.
+	 * @return the new set of parameters.
+	 */
+	public Tuning with_sweep(boolean arc_sweep) {
+		return new Tuning(this.x, this.min_dist_detection, this.max_object_size, this.margin, this.factor, this.median,
+						  this.hampel, this.hits, arc_sweep, this.fixed_point);
+	}
+
+	/**
+	 * Builds the same set of parameters with another backend of the odometry and of the projection of echoes.
+	 *
+	 * @param fixed_point true for fixed-point arithmetic, false for the floats.
+	 * @return the new set of parameters.
+	 */
+	public Tuning with_fixed_point(boolean fixed_point) {
+		return new Tuning(this.x, this.min_dist_detection, this.max_object_size, this.margin, this.factor, this.median,
+						  this.hampel, this.hits, this.arc_sweep, fixed_point);
+	}
+
+	/**
+	 * Describes a set of parameters, valid or not, see {@link Tuning#Tuning(float, float, float, float, float, int, int,
+	 * int, boolean, boolean)} for their meaning.
+	 *
+	 * @return the description of the parameters, as 'name=value' pairs.
+	 */
+	private static String describe(float x, float min_dist_detection, float max_object_size, float margin, float factor,
+								   int median, int hampel, int hits, boolean arc_sweep, boolean fixed_point) {
+		return "x=" + x + " min_dist=" + min_dist_detection + " max_size=" + max_object_size + " margin=" + margin +
+			   " factor=" + factor + " median=" + median + " hampel=" + hampel + " hits=" + hits + " arc=" + arc_sweep +
+			   " fixed=" + fixed_point;
+	}
+
+	public String toString() {
+		return Tuning.describe(this.x, this.min_dist_detection, this.max_object_size, this.margin, this.factor,
+							   this.median, this.hampel, this.hits, this.arc_sweep, this.fixed_point);
+	}
+}
@@ -1,69 +1,166 @@
 package rover;
 
-import lejos.hardware.port.Port;
-import lejos.hardware.sensor.EV3UltrasonicSensor;
-import lejos.robotics.SampleProvider;
-import lejos.utility.Delay;
+import tools.Clock;
 import tools.Measure;
 import tools.Order;
+import tools.Telemetry;
 
 /**
  * The EV3 lego brick can be connected to an ultrasonic sensor, here called UltraEyes (because it looks like a pair of eyes).
  * 
+ * Once connected, the {@link Scheduler} of the rover fetches distances at the native rate of the sensor, and a pair of
+ * UltraEyes stores them, with their timestamps, inside a preallocated {@link SampleRing}. The scheduler thread is the only
+ * writer of the ring and publishes each new sample through a volatile counter, so that readers never have to take a lock
+ * nor to wait for the sensor. The latest distance is also published inside the table of the scheduler.
+ *
  * @author Antoine Stevan
  *
  */
-class UltraEyes extends Peripheral {
-	/** Precision about the Device of a pair of UltraEyes. Here, it is an EV3UltrasonicSensor. */
-	EV3UltrasonicSensor device;
-	/** To make measures easier a pair of UltraEyes uses a SamplerProvider. */
-	private SampleProvider sampler;
-	/** Ultrasonic measures are stored inside an array. */
-	private float[] distance;
+class UltraEyes implements Peripheral {
+	/** The period between two samples fetched by the scheduler, in ms. The sensor refreshes its echo about every 20 ms. */
+	static final int period   = 20;
+	/** The deadline of a sample from its release, in ms. */
+	static final int deadline = 5;
+	/** The number of samples kept inside the ring buffer. Must be a power of 2 to wrap indices with a simple mask. */
+	static final int capacity = 64;
+
+	/** Precision about the Device of a pair of UltraEyes. Here, it is a RangeDevice. */
+	RangeDevice device;
+
+	/** The ring of the last measured distances, in m. */
+	private final SampleRing ring = new SampleRing(UltraEyes.capacity);
+	/** The scheduler fetching the samples. */
+	private final Scheduler scheduler;
+	/** The identifier of the task of the sensor inside the scheduler. */
+	private final int task;
+	/** The telemetry receiving every sample, or null. */
+	private Telemetry telemetry;
+	/** The clock giving the rate and the timestamps of the samples. */
+	private final Clock clock;
 	
 	/**
-	 * One can initialize a pair of UltraEyes by giving it a port.
+	 * One can initialize a pair of UltraEyes by giving it a range sensor.
 	 * 
-	 * @param port the port of the pair of UltraEyes, it is basically a SensorPort, from 1 to 4.
+	 * The sensor is registered inside the scheduler, which fetches its samples once it is connected.
+	 *
+	 * @param device the ultrasonic sensor of the pair of UltraEyes, see {@link Hardware}.
+	 * @param scheduler the scheduler fetching the samples, whose clock gives their timestamps.
 	 */
-	UltraEyes(Port port){
-		this.device   = null;
-		this.sampler  = null;
-		this.distance = null;
-		this.port     = port;
+	UltraEyes(RangeDevice device, Scheduler scheduler){
+		this.device    = device;
+		this.clock     = scheduler.clock;
+		this.scheduler = scheduler;
+		this.task      = scheduler.add("ultra", new Scheduler.Task() {
+			public float poll(long time) {
+				return UltraEyes.this.sample(time);
+			}
+		}, UltraEyes.period/Scheduler.slot, UltraEyes.deadline/Scheduler.slot);
 	}
 	
 	/**
 	 * Connects an Ultrasonic Sensor to the EV3 lego brick.
 	 * If any error occurs during the connection, the error is converted into a boolean and returned. During this process,
-	 * the sensor is enabled by default and everything for easier measures are created for the user.
+	 * the sensor is enabled by default and its samples are fetched by the scheduler.
 	 */
-	boolean connect() {
+	public boolean connect() {
 		try {
-			this.device = new EV3UltrasonicSensor(this.port);
-			this.device.enable();
-			this.sampler = this.device.getDistanceMode();
-			this.distance = new float[this.sampler.sampleSize()];
+			this.device.open();
+			this.scheduler.resume(this.task);
 			return true;
 		} catch (Exception e) {
 			return false;
 		}
 	}
+	
+	public String getName() {
+		return this.device.getName();
+	}
+
+	/**
+	 * Fetches a single sample from the sensor and pushes it inside the ring.
+	 * Only the scheduler thread calls this method, hence the ring has a single writer.
+	 *
+	 * @param time the moment of the sample, in nanoseconds.
+	 * @return the measured distance, in m.
+	 */
+	private float sample(long time) {
+		float distance = this.device.fetchDistance();
+		this.ring.push(distance, time);
+		Telemetry telemetry = this.telemetry;
+		if (telemetry != null) { telemetry.ultra(time, distance); }
+		return distance;
+	}
+	
+	/**
+	 * Setter for the 'telemetry' field.
+	 * @param telemetry the telemetry receiving every sample, or null.
+	 */
+	void setTelemetry(Telemetry telemetry) {
+		this.telemetry = telemetry;
+	}
 
 	/**
 	 * Reading from a UltraEyes object means reading the distance to the closest physical object in front of the emitter.
-	 * The value is stored inside a Measure container, as the 'value' field.
+	 * The value is stored inside a Measure container, as the 'value' field. The method does not block: the latest sample
+	 * of the ring is returned.
+	 *
+	 * @see UltraEyes#latest()
+	 */
+	public Measure read() {
+		return new Measure(this.latest());
+	}
+
+	/**
+	 * Gives the latest distance measured by the scheduler, from its table, without blocking.
+	 *
+	 * @return the latest distance, in m, or {@link Float#POSITIVE_INFINITY} if nothing has been measured yet.
 	 */
-	Measure read() {
-		Delay.msDelay(200);
-		this.sampler.fetchSample(this.distance, 0);
-		Delay.msDelay(100);
-		return new Measure(this.distance[0]);
+	float latest() {
+		float distance = this.scheduler.latest(this.task);
+		return (Float.isNaN(distance))? Float.POSITIVE_INFINITY : distance;
+	}
+
+	/**
+	 * Gives the timestamp of the latest distance measured by the scheduler, from its table, without blocking.
+	 *
+	 * @return the timestamp of the latest sample, in nanoseconds, or 0 if nothing has been measured yet.
+	 */
+	long latest_time() {
+		return this.scheduler.time(this.task);
+	}
+
+	/**
+	 * Drains the distances measured since the previous call, in m, without blocking. At most {@link UltraEyes#capacity}
+	 * samples are buffered, i.e. a bit more than a second: older ones are lost.
+	 */
+	public int readInto(float[] dst, long[] timestamps, int off, int max) {
+		return this.ring.readInto(dst, timestamps, off, max);
+	}
+
+	/**
+	 * Forgets every sample buffered so far, e.g. before a sweep whose echoes only are of interest.
+	 */
+	void skip() {
+		this.ring.skip();
+	}
+
+	/**
+	 * Waits for a sample measured strictly after the call, e.g. when the rover has just stopped and needs a distance that
+	 * was not taken during the previous motion.
+	 *
+	 * @return the first distance measured after the call, in m.
+	 */
+	float next() {
+		long now = this.clock.nanoTime();
+		while (this.latest_time() <= now) {
+			this.clock.sleep(UltraEyes.period/4);
+		}
+		return this.latest();
 	}
 
 	/**
 	 * For now, there is nothing to write to a pair of UltraEyes.
 	 */
-	void write(Order order) {	
+	public void write(Order order) {	
 	}
 }
\ No newline at end of file
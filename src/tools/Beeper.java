@@ -28,6 +28,9 @@ public class Beeper {
 	 */
 	public static int HIGH_PITCH = 1660;
 	
+	/** The clock of the methods which are not given one, i.e. the wall clock. */
+	private static final Clock wall = new RealClock();
+	
 	/**
 	 * Plays an alarm for some amount of time (blocking method).
 	 * When given a frequency and a total duration, {@link #alarm(int, int)} computes the period between two beeps and play
@@ -37,12 +40,23 @@ public class Beeper {
 	 * @param duration the length of the alarm (in ms)
 	 */
 	public static void alarm(int frequency, int duration) {
+		Beeper.alarm(frequency, duration, Beeper.wall);
+	}
+	
+	/**
+	 * Overload of {@link #alarm(int, int)}, whose delays go by along a given clock (blocking method).
+	 * 
+	 * @param frequency the frequency of the alarm (in Hz)
+	 * @param duration the length of the alarm (in ms)
+	 * @param clock the clock of the delays between two beeps.
+	 */
+	public static void alarm(int frequency, int duration, Clock clock) {
 		int period = 1000/frequency;
 		
 		float t = 0;
 		while (t < duration) {
 			Sound.beep();
-			Delay.msDelay(period);
+			clock.sleep(period);
 			t += period;
 		}
 	}
@@ -65,9 +79,20 @@ public class Beeper {
 	 * @param period the period (in ms) between two beeps.
 	 */
 	public static void beep(int beeps, int period) {
+		Beeper.beep(beeps, period, Beeper.wall);
+	}
+	
+	/**
+	 * Overload of {@link #beep(int, int)}, whose delays go by along a given clock.
+	 * 
+	 * @param beeps the number of beeps to be heard.
+	 * @param period the period (in ms) between two beeps.
+	 * @param clock the clock of the delays between two beeps.
+	 */
+	public static void beep(int beeps, int period, Clock clock) {
 		for (int i = 0; i < beeps; i++) {
 			Sound.beep();
-			Delay.msDelay(period);
+			clock.sleep(period);
 		}
 	}
 	
@@ -128,13 +153,23 @@ public class Beeper {
 	 * @see Beeper#HIGH_PITCH
 	 */
 	public static void play(int mode) {
+		Beeper.play(mode, Beeper.wall);
+	}
+	
+	/**
+	 * Overload of {@link #play(int)}, whose delays go by along a given clock (blocking method).
+	 * 
+	 * @param mode the integer code of the mode
+	 * @param clock the clock of the delays between two notes.
+	 */
+	public static void play(int mode, Clock clock) {
 		int[] inst = Sound.PIANO;
 		int delay = 100;
 		
 		Sound.playNote(inst, (((mode>>2)&1) == 1)? HIGH_PITCH : LOW_PICTH, delay);
-		Delay.msDelay(delay);
+		clock.sleep(delay);
 		Sound.playNote(inst, (((mode>>1)&1) == 1)? HIGH_PITCH : LOW_PICTH, delay);
-		Delay.msDelay(delay);
+		clock.sleep(delay);
 		Sound.playNote(inst, ((mode&1) == 1)? HIGH_PITCH : LOW_PICTH, delay);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package tools;
+
+/**
+ * The source of time of the rover, and the way its threads wait for it.
+ *
+ * Every timing of the mission code goes through a clock instead of System.nanoTime(), Delay or Object.wait(), so that the
+ * same code runs either along the wall clock, on the brick, or along a virtual time, in a simulation which goes as fast as
+ * the CPU allows. Background threads are started by the clock as well, so that a virtual clock knows every thread whose
+ * waits make time go by.
+ *
+ * @author Antoine Stevan
+ *
+ * @see RealClock
+ * @see VirtualClock
+ */
+public interface Clock {
+	/**
+	 * Gives the current time, with the same meaning as {@link System#nanoTime()}.
+	 *
+	 * @return the current time, in nanoseconds, relative to an arbitrary origin.
+	 */
+	long nanoTime();
+
+	/**
+	 * Makes the calling thread wait for some time. An interruption ends the wait early and is kept.
+	 *
+	 * @param ms the time to wait, in ms.
+	 */
+	void sleep(long ms);
+
+	/**
+	 * Gives the CPU to the other threads, e.g. inside a polling loop, like {@link Thread#yield()}.
+	 */
+	void pause();
+
+	/**
+	 * Waits for a monitor to be signalled, like {@link Object#wait(long)}. The caller must hold the monitor, which is
+	 * released during the wait.
+	 *
+	 * @param monitor the monitor to wait on.
+	 * @param ms the maximum time to wait, in ms, or 0 to wait until signalled.
+	 * @throws InterruptedException if the thread is interrupted during the wait.
+	 */
+	void await(Object monitor, long ms) throws InterruptedException;
+
+	/**
+	 * Wakes up every thread waiting on a monitor, like {@link Object#notifyAll()}. The caller must hold the monitor.
+	 *
+	 * @param monitor the monitor to signal.
+	 */
+	void signal(Object monitor);
+
+	/**
+	 * Starts a background daemon thread whose waits go through this clock.
+	 *
+	 * @param task the task of the thread.
+	 * @param name the name of the thread.
+	 * @return the started thread.
+	 */
+	Thread start(Runnable task, String name);
+}
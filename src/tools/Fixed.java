@@ -0,0 +1,193 @@
+package tools;
+
+/**
+ * Fixed-point arithmetic and table-driven trigonometry, for the ARM926 of the EV3 which has no floating-point unit.
+ *
+ * Every float operation of the brick is emulated in software, and a single {@link Math#sin(double)} or
+ * {@link Math#atan2(double, double)} costs hundreds of them. Here, the same functions only cost a table lookup, a linear
+ * interpolation and a few integer operations. Conventions:
+ * <ul>
+ * <li>fractions are Q16.16, i.e. ints whose unit is {@link Fixed#ONE}.</li>
+ * <li>angles are binary angles: a full turn is 2^32, so that they wrap around by themselves with the overflow of an int.
+ * Only the top {@link Fixed#BITS} bits are meaningful for the functions of this class.</li>
+ * <li>lengths are ints in micrometers, enough for 2 km either way.</li>
+ * </ul>
+ * Accuracy bounds, checked over every input by {@code rover.FixedBenchmark} of the bench module:
+ * <ul>
+ * <li>{@link Fixed#sin(int)} and {@link Fixed#cos(int)}: absolute error below {@link Fixed#TRIG_ERROR}, i.e. 2^-15.</li>
+ * <li>{@link Fixed#atan2(int, int)}: absolute error below {@link Fixed#ATAN_ERROR} binary angle units of 16 bits, i.e.
+ * about 0.011 degree.</li>
+ * <li>{@link Fixed#sqrt(long)}: exact floor of the square root.</li>
+ * </ul>
+ *
+ * @author Antoine Stevan
+ *
+ */
+public final class Fixed {
+	/** The number of fractional bits of a Q16.16 number. */
+	public static final int  Q     = 16;
+	/** The unit of a Q16.16 number. */
+	public static final int  ONE   = 1 << Fixed.Q;
+	/** The number of meaningful bits of a binary angle. */
+	public static final int  BITS  = 16;
+	/** A full turn, in binary angle units of {@link Fixed#BITS} bits. */
+	public static final int  TURN  = 1 << Fixed.BITS;
+	/** The number of micrometers in a meter. */
+	public static final int  UM    = 1000000;
+	/** The largest absolute error of sin and cos, in Q16.16. */
+	public static final int  TRIG_ERROR = 2;
+	/** The largest absolute error of atan2, in binary angle units of {@link Fixed#BITS} bits. */
+	public static final int  ATAN_ERROR = 2;
+
+	/** The number of bits of the index inside the sine table. */
+	private static final int SIN_BITS = 10;
+	/** The sine over a full turn, in Q16.16, with one more entry to interpolate the last step. */
+	private static final int[] SIN = new int[(1 << Fixed.SIN_BITS) + 1];
+	/** The number of bits of the index inside the arctangent table. */
+	private static final int ATAN_BITS = 8;
+	/** The arctangent over [0, 1], in binary angle units of 32 bits, with one more entry for 1. */
+	private static final int[] ATAN = new int[(1 << Fixed.ATAN_BITS) + 1];
+
+	static {
+		for (int i = 0; i < Fixed.SIN.length; i++) {
+			Fixed.SIN[i] = (int)Math.round(Math.sin(2*Math.PI*i/(1 << Fixed.SIN_BITS))*Fixed.ONE);
+		}
+		for (int i = 0; i < Fixed.ATAN.length; i++) {
+			Fixed.ATAN[i] = (int)Math.round(Math.atan((double)i/(1 << Fixed.ATAN_BITS))/(2*Math.PI)*4294967296.0);
+		}
+	}
+
+	private Fixed() {
+	}
+
+	/**
+	 * Gives the sine of an angle.
+	 *
+	 * @param angle the angle, as a binary angle of 32 bits.
+	 * @return the sine of the angle, in Q16.16.
+	 */
+	public static int sin(int angle) {
+		// the top bits index the table, the next ones interpolate between two entries.
+		int i    = angle >>> (32 - Fixed.SIN_BITS);
+		int frac = (angle >>> (32 - Fixed.SIN_BITS - Fixed.Q)) & (Fixed.ONE - 1);
+		int a    = Fixed.SIN[i];
+		return a + (int)(((long)(Fixed.SIN[i+1] - a)*frac) >> Fixed.Q);
+	}
+	/**
+	 * Gives the cosine of an angle.
+	 *
+	 * @param angle the angle, as a binary angle of 32 bits.
+	 * @return the cosine of the angle, in Q16.16.
+	 */
+	public static int cos(int angle) {
+		return Fixed.sin(angle + (1 << 30));
+	}
+
+	/**
+	 * Gives the angle of a vector, like {@link Math#atan2(double, double)}.
+	 *
+	 * @param y the y coordinate of the vector, in any unit.
+	 * @param x the x coordinate of the vector, in the same unit.
+	 * @return the angle of the vector, as a binary angle of 32 bits, 0 for a null vector.
+	 */
+	public static int atan2(int y, int x) {
+		if (x == 0 && y == 0) { return 0; }
+		long ax = Math.abs((long)x);
+		long ay = Math.abs((long)y);
+		// reduce to the first octant, where the tangent is in [0, 1].
+		boolean swap = ay > ax;
+		long num = (swap)? ax : ay;
+		long den = (swap)? ay : ax;
+		long t   = (num << (Fixed.ATAN_BITS + Fixed.Q))/den;
+		int  i   = (int)(t >> Fixed.Q);
+		int  frac = (int)(t & (Fixed.ONE - 1));
+		int  a   = Fixed.ATAN[i];
+		if (i < (1 << Fixed.ATAN_BITS)) { a += (int)(((long)(Fixed.ATAN[i+1] - a)*frac) >> Fixed.Q); }
+		// unfold the octants.
+		if (swap)  { a = (1 << 30) - a; }
+		if (x < 0) { a = (1 << 31) - a; }
+		if (y < 0) { a = -a; }
+		return a;
+	}
+
+	/**
+	 * Gives the integer square root of a number.
+	 *
+	 * @param n a non-negative number.
+	 * @return the floor of the square root of n.
+	 */
+	public static long sqrt(long n) {
+		long root = 0;
+		long bit  = 1L << 62;
+		while (bit > n) { bit >>= 2; }
+		while (bit != 0) {
+			if (n >= root + bit) {
+				n    -= root + bit;
+				root  = (root >> 1) + bit;
+			} else {
+				root >>= 1;
+			}
+			bit >>= 2;
+		}
+		return root;
+	}
+
+	/**
+	 * Multiplies a number by a Q16.16 fraction.
+	 *
+	 * @param a the number, in any unit.
+	 * @param q the fraction, in Q16.16.
+	 * @return the product, in the unit of a.
+	 */
+	public static int mul(int a, int q) {
+		return (int)(((long)a*q) >> Fixed.Q);
+	}
+
+	/**
+	 * Converts an angle in degrees to a binary angle.
+	 *
+	 * @param degrees the angle, in degrees.
+	 * @return the angle, as a binary angle of 32 bits.
+	 */
+	public static int from_degrees(float degrees) {
+		// go through a long, so that any angle wraps around instead of saturating.
+		return (int)(long)(degrees*(4294967296f/360));
+	}
+	/**
+	 * Converts a binary angle to degrees.
+	 *
+	 * @param angle the angle, as a binary angle of 32 bits.
+	 * @return the angle, in degrees, in [-180, 180).
+	 */
+	public static float to_degrees(int angle) {
+		return angle*(360/4294967296f);
+	}
+	/**
+	 * Converts a binary angle to radians.
+	 *
+	 * @param angle the angle, as a binary angle of 32 bits.
+	 * @return the angle, in radians, in [-pi, pi).
+	 */
+	public static float to_radians(int angle) {
+		return angle*(float)(2*Math.PI/4294967296.0);
+	}
+
+	/**
+	 * Converts a length in meters to micrometers.
+	 *
+	 * @param meters the length, in m.
+	 * @return the length, in micrometers.
+	 */
+	public static int from_meters(float meters) {
+		return Math.round(meters*Fixed.UM);
+	}
+	/**
+	 * Converts a length in micrometers to meters.
+	 *
+	 * @param micrometers the length, in micrometers.
+	 * @return the length, in m.
+	 */
+	public static float to_meters(long micrometers) {
+		return micrometers*(1f/Fixed.UM);
+	}
+}
@@ -0,0 +1,38 @@
+package tools;
+
+import lejos.utility.Delay;
+
+/**
+ * The wall clock, i.e. the clock of the rover on the brick: every method simply delegates to the JVM and to leJOS.
+ *
+ * @author Antoine Stevan
+ *
+ */
+public class RealClock implements Clock {
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	public void sleep(long ms) {
+		Delay.msDelay(ms);
+	}
+
+	public void pause() {
+		Thread.yield();
+	}
+
+	public void await(Object monitor, long ms) throws InterruptedException {
+		monitor.wait(ms);
+	}
+
+	public void signal(Object monitor) {
+		monitor.notifyAll();
+	}
+
+	public Thread start(Runnable task, String name) {
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+}
@@ -0,0 +1,312 @@
+package tools;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A compact binary telemetry channel, i.e. a file of fixed-size records written through a memory-mapped NIO buffer.
+ *
+ * Unlike the text log, a record is never formatted: it is a handful of stores inside a mapped region of the file, which
+ * the operating system writes back on its own. Regions of {@link Telemetry#segment} bytes are mapped one after the other
+ * as the file grows, up to a fixed number of regions, {@link Telemetry#max_segments} by default, so that a telemetry file
+ * never takes more than a fixed amount of flash: once the last region is full, the following records are dropped and
+ * only counted. Every record is {@link Telemetry#RECORD} bytes long, big-endian:
+ * <pre>
+ * offset  0: int   type
+ * offset  4: int   aux, depends on the type
+ * offset  8: long  timestamp, in nanoseconds (see {@link Clock#nanoTime()})
+ * offset 16: 4 values of 4 bytes, depend on the type
+ * </pre>
+ * The first record of a file is a {@link Telemetry#HEADER}. Files are decoded offline by {@link TelemetryDecoder}.
+ * A telemetry which has not been opened silently ignores every record, so that it can always be called.
+ *
+ * @author Antoine Stevan
+ *
+ */
+public class Telemetry {
+	/** The magic number of a telemetry file, i.e. "RMT1", stored as the aux of the header. */
+	public static final int MAGIC   = 0x524D5431;
+	/** The version of the layout of the records. */
+	public static final int VERSION = 1;
+	/** The size of a record, in bytes. */
+	public static final int RECORD  = 32;
+
+	/** Header: version, record size, then the wall-clock time of the opening in ms as a long. */
+	public static final int HEADER    = 0;
+	/** Pose sample: x (m), y (m), heading (degrees) as floats. */
+	public static final int POSE      = 1;
+	/** Ultrasonic distance: distance (m) as a float. */
+	public static final int ULTRA     = 2;
+	/** Tacho counts: right, left (degrees) as ints. */
+	public static final int TACHO     = 3;
+	/** Mode transition: the code of the mode as aux, then 1 when entering and 0 when leaving as an int. */
+	public static final int MODE      = 4;
+	/** Detection of a sample: x (m), y (m), distance (m) as floats. */
+	public static final int DETECTION = 5;
+	/** Echo which would have been detected as a sample, rejected by the filter: x (m), y (m), distance (m) as floats. */
+	public static final int REJECTION = 6;
+	/** Color sample: reflected intensity (between 0 and 1) as a float. */
+	public static final int COLOR     = 7;
+	/** Motor command or tacho count: the index of the motor as aux, then the command, its value and its flag as ints. */
+	public static final int MOTOR     = 8;
+
+	/** The number of bytes mapped at once. Must be a multiple of the size of a record. */
+	static final int segment = 1 << 20;
+	/** The default largest number of regions of a file, i.e. 4 MB. */
+	public static final int max_segments = 4;
+
+	/** The channel of the telemetry file, or null if the telemetry is not open. */
+	private FileChannel channel;
+	/** The mapped region being written, or null if the telemetry is not open. */
+	private MappedByteBuffer buffer;
+	/** The offset of the mapped region inside the file, in bytes. */
+	private long base;
+	/** The number of records written so far, header included. */
+	private long records;
+	/** The number of records dropped since the file is full. */
+	private long dropped;
+	/** The largest size of the file, in bytes. */
+	private final long size;
+	/** The clock giving the timestamp of the header, i.e. the one of the records. */
+	private final Clock clock;
+
+	/**
+	 * Builds a closed telemetry, whose records are timestamped along the wall clock.
+	 */
+	public Telemetry() {
+		this(new RealClock());
+	}
+
+	/**
+	 * Builds a closed telemetry, whose records are timestamped along a given clock, e.g. the one of a simulation.
+	 *
+	 * @param clock the clock of the timestamps of the records.
+	 */
+	public Telemetry(Clock clock) {
+		this(clock, Telemetry.max_segments);
+	}
+
+	/**
+	 * Builds a closed telemetry, whose records are timestamped along a given clock, and whose file is capped.
+	 *
+	 * @param clock the clock of the timestamps of the records.
+	 * @param segments the largest number of regions of {@link Telemetry#segment} bytes of the file.
+	 */
+	public Telemetry(Clock clock, int segments) {
+		if (segments <= 0) { throw new IllegalArgumentException("a telemetry file needs at least one region"); }
+		this.clock = clock;
+		this.size  = (long)segments*Telemetry.segment;
+	}
+
+	/**
+	 * Opens a telemetry file, and writes its header.
+	 * If any error occurs, an error message is printed and the telemetry stays closed, but the execution continues.
+	 *
+	 * @param filename the name of the telemetry file, truncated if it exists.
+	 * @return true if the file has been opened, false otherwise.
+	 */
+	public synchronized boolean open(String filename) {
+		try {
+			RandomAccessFile file = new RandomAccessFile(filename, "rw");
+			file.setLength(0);
+			this.channel = file.getChannel();
+			this.base    = 0;
+			this.records = 0;
+			this.dropped = 0;
+			this.buffer  = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, Telemetry.segment);
+			if (this.begin(Telemetry.HEADER, Telemetry.MAGIC, this.clock.nanoTime())) {
+				this.buffer.putInt(Telemetry.VERSION).putInt(Telemetry.RECORD).putLong(System.currentTimeMillis());
+			}
+			return true;
+		} catch (IOException e) {
+			System.out.println("unable to open " + filename);
+			this.channel = null;
+			this.buffer  = null;
+			return false;
+		}
+	}
+
+	/**
+	 * Starts a record, mapping the next region of the file if the current one is full.
+	 * Must be called while holding the lock of the telemetry, and followed by the 16 bytes of values.
+	 *
+	 * @param type the type of the record.
+	 * @param aux the aux field of the record.
+	 * @param time the timestamp of the record, in nanoseconds.
+	 * @return true if the values of the record have to be written, false if the telemetry is closed or full.
+	 */
+	private boolean begin(int type, int aux, long time) {
+		if (this.buffer == null) {
+			if (this.channel != null) { this.dropped++; }
+			return false;
+		}
+		if (this.buffer.remaining() < Telemetry.RECORD) {
+			if (this.base + Telemetry.segment >= this.size) {
+				// the file has reached its size: the records written so far are kept, the next ones are dropped.
+				this.buffer.force();
+				this.buffer = null;
+				this.dropped++;
+				return false;
+			}
+			try {
+				this.base  += Telemetry.segment;
+				this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, this.base, Telemetry.segment);
+			} catch (IOException e) {
+				// out of space: stop recording rather than disturbing the mission.
+				this.buffer = null;
+				return false;
+			}
+		}
+		this.buffer.putInt(type).putInt(aux).putLong(time);
+		this.records++;
+		return true;
+	}
+
+	/**
+	 * Records a pose sample.
+	 *
+	 * @param time the moment of the sample, in nanoseconds.
+	 * @param x the x coordinate of the rover, in m.
+	 * @param y the y coordinate of the rover, in m.
+	 * @param heading the heading of the rover, in degrees.
+	 */
+	public synchronized void pose(long time, float x, float y, float heading) {
+		if (this.begin(Telemetry.POSE, 0, time)) {
+			this.buffer.putFloat(x).putFloat(y).putFloat(heading).putInt(0);
+		}
+	}
+
+	/**
+	 * Records an ultrasonic distance.
+	 *
+	 * @param time the moment of the echo, in nanoseconds.
+	 * @param distance the measured distance, in m.
+	 */
+	public synchronized void ultra(long time, float distance) {
+		if (this.begin(Telemetry.ULTRA, 0, time)) {
+			this.buffer.putFloat(distance).putInt(0).putLong(0);
+		}
+	}
+
+	/**
+	 * Records the tacho counts of both tracks.
+	 *
+	 * @param time the moment of the reading, in nanoseconds.
+	 * @param right the right tacho count, in degrees.
+	 * @param left the left tacho count, in degrees.
+	 */
+	public synchronized void tacho(long time, int right, int left) {
+		if (this.begin(Telemetry.TACHO, 0, time)) {
+			this.buffer.putInt(right).putInt(left).putLong(0);
+		}
+	}
+
+	/**
+	 * Records a mode transition.
+	 *
+	 * @param time the moment of the transition, in nanoseconds.
+	 * @param mode the code of the mode.
+	 * @param enter true when entering the mode, false when leaving it.
+	 */
+	public synchronized void mode(long time, int mode, boolean enter) {
+		if (this.begin(Telemetry.MODE, mode, time)) {
+			this.buffer.putInt((enter)? 1 : 0).putInt(0).putLong(0);
+		}
+	}
+
+	/**
+	 * Records the detection of a sample.
+	 *
+	 * @param time the moment of the detection, in nanoseconds.
+	 * @param x the x coordinate of the sample, in m.
+	 * @param y the y coordinate of the sample, in m.
+	 * @param distance the distance at which the sample has been seen, in m.
+	 */
+	public synchronized void detection(long time, float x, float y, float distance) {
+		if (this.begin(Telemetry.DETECTION, 0, time)) {
+			this.buffer.putFloat(x).putFloat(y).putFloat(distance).putInt(0);
+		}
+	}
+
+	/**
+	 * Records an echo rejected by the filter of the distances, which would have been detected as a sample otherwise.
+	 *
+	 * @param time the moment of the echo, in nanoseconds.
+	 * @param x the x coordinate of the rejected object, in m.
+	 * @param y the y coordinate of the rejected object, in m.
+	 * @param distance the distance of the echo, in m.
+	 */
+	public synchronized void rejection(long time, float x, float y, float distance) {
+		if (this.begin(Telemetry.REJECTION, 0, time)) {
+			this.buffer.putFloat(x).putFloat(y).putFloat(distance).putInt(0);
+		}
+	}
+
+	/**
+	 * Records a reflected intensity seen by the color sensor.
+	 *
+	 * @param time the moment of the sample, in nanoseconds.
+	 * @param red the reflected intensity, between 0 (black) and 1 (white).
+	 */
+	public synchronized void color(long time, float red) {
+		if (this.begin(Telemetry.COLOR, 0, time)) {
+			this.buffer.putFloat(red).putInt(0).putLong(0);
+		}
+	}
+
+	/**
+	 * Records a command sent to a motor, or a tacho count read from it.
+	 *
+	 * @param time the moment of the command, in nanoseconds.
+	 * @param motor the index of the motor.
+	 * @param command the code of the command.
+	 * @param value the value of the command, e.g. an angle, a speed or a tacho count.
+	 * @param flag the flag of the command, e.g. 1 for an immediate return.
+	 */
+	public synchronized void motor(long time, int motor, int command, int value, int flag) {
+		if (this.begin(Telemetry.MOTOR, motor, time)) {
+			this.buffer.putInt(command).putInt(value).putInt(flag).putInt(0);
+		}
+	}
+
+	/**
+	 * Getter for the 'records' field.
+	 * @return the number of records written so far, header included.
+	 */
+	public synchronized long getRecords() {
+		return this.records;
+	}
+
+	/**
+	 * Getter for the 'dropped' field.
+	 * @return the number of records dropped since the file is full.
+	 */
+	public synchronized long getDropped() {
+		return this.dropped;
+	}
+
+	/**
+	 * Forces the records written so far to the storage.
+	 */
+	public synchronized void flush() {
+		if (this.buffer != null) { this.buffer.force(); }
+	}
+
+	/**
+	 * Closes the telemetry file, cutting the unused end of its last mapped region.
+	 */
+	public synchronized void close() {
+		if (this.channel == null) { return; }
+		try {
+			if (this.buffer != null) { this.buffer.force(); }
+			this.buffer = null;
+			this.channel.truncate(this.records*Telemetry.RECORD);
+			this.channel.close();
+		} catch (IOException e) {
+			System.out.println("unable to close the telemetry");
+		}
+		this.channel = null;
+	}
+}
@@ -0,0 +1,151 @@
+package tools;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A desktop tool converting a telemetry file of the rover to CSV or JSON.
+ *
+ * Usage: {@code java tools.TelemetryDecoder <telemetry file> [csv|json]}, the result is written on the standard output.
+ * Timestamps are converted to seconds since the opening of the telemetry. A file which has not been closed properly,
+ * e.g. after a crash, is decoded up to its last record.
+ *
+ * @author Antoine Stevan
+ *
+ * @see Telemetry
+ */
+public class TelemetryDecoder {
+	/** The names of the types of records, indexed by type. */
+	static final String[] types = {"header", "pose", "ultra", "tacho", "mode", "detection", "rejection", "color", "motor"};
+
+	/**
+	 * The main method of the decoder.
+	 *
+	 * @param args the telemetry file, then optionally the format, i.e. csv (default) or json.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("usage: java tools.TelemetryDecoder <telemetry file> [csv|json]");
+			return;
+		}
+		boolean json = args.length > 1 && args[1].equals("json");
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+		RandomAccessFile file = new RandomAccessFile(args[0], "r");
+		try {
+			TelemetryDecoder.decode(file.getChannel(), out, json);
+		} finally {
+			file.close();
+			out.flush();
+		}
+	}
+
+	/**
+	 * Decodes every record of a telemetry channel.
+	 *
+	 * @param channel the channel of the telemetry file.
+	 * @param out the destination of the decoded records.
+	 * @param json true for JSON, false for CSV.
+	 * @return the number of decoded records, header excluded.
+	 * @throws IOException if the channel cannot be read or is not a telemetry file.
+	 */
+	static long decode(FileChannel channel, Writer out, boolean json) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(Telemetry.RECORD*1024);
+		long begin = 0;
+		long count = -1;
+		out.write((json)? "[\n" : "t,type,x,y,heading,distance,right,left,mode,enter,red,motor,command,value,flag\n");
+		while (channel.read(buffer) > 0 || buffer.position() > 0) {
+			buffer.flip();
+			while (buffer.remaining() >= Telemetry.RECORD) {
+				int  type = buffer.getInt();
+				int  aux  = buffer.getInt();
+				long time = buffer.getLong();
+				if (count < 0) {
+					if (type != Telemetry.HEADER || aux != Telemetry.MAGIC) { throw new IOException("not a telemetry file"); }
+					int version = buffer.getInt();
+					if (version != Telemetry.VERSION) { throw new IOException("unknown telemetry version " + version); }
+					buffer.position(buffer.position() + 12);
+					begin = time;
+					count = 0;
+					continue;
+				}
+				if (type == Telemetry.HEADER) {
+					// the zeroed end of a mapped region which has not been truncated.
+					out.write((json)? "\n]\n" : "");
+					return count;
+				}
+				String t = Float.toString((time - begin)/1e9f);
+				String name = (type < TelemetryDecoder.types.length)? TelemetryDecoder.types[type] : Integer.toString(type);
+				String x = "", y = "", heading = "", distance = "", right = "", left = "", mode = "", enter = "";
+				String red = "", motor = "", command = "", value = "", flag = "";
+				switch (type) {
+				case Telemetry.POSE:
+					x = Float.toString(buffer.getFloat()); y = Float.toString(buffer.getFloat());
+					heading = Float.toString(buffer.getFloat()); buffer.getInt();
+					break;
+				case Telemetry.ULTRA:
+					distance = Float.toString(buffer.getFloat()); buffer.getInt(); buffer.getLong();
+					break;
+				case Telemetry.TACHO:
+					right = Integer.toString(buffer.getInt()); left = Integer.toString(buffer.getInt()); buffer.getLong();
+					break;
+				case Telemetry.MODE:
+					mode = Integer.toString(aux); enter = Integer.toString(buffer.getInt()); buffer.getInt(); buffer.getLong();
+					break;
+				case Telemetry.DETECTION:
+				case Telemetry.REJECTION:
+					x = Float.toString(buffer.getFloat()); y = Float.toString(buffer.getFloat());
+					distance = Float.toString(buffer.getFloat()); buffer.getInt();
+					break;
+				case Telemetry.COLOR:
+					red = Float.toString(buffer.getFloat()); buffer.getInt(); buffer.getLong();
+					break;
+				case Telemetry.MOTOR:
+					motor = Integer.toString(aux); command = Integer.toString(buffer.getInt());
+					value = Integer.toString(buffer.getInt()); flag = Integer.toString(buffer.getInt()); buffer.getInt();
+					break;
+				default:
+					buffer.position(buffer.position() + 16);
+				}
+				if (json) {
+					out.write(((count > 0)? ",\n" : "") + "{\"t\":" + t + ",\"type\":\"" + name + "\"" +
+							  TelemetryDecoder.field("x", x) + TelemetryDecoder.field("y", y) +
+							  TelemetryDecoder.field("heading", heading) + TelemetryDecoder.field("distance", distance) +
+							  TelemetryDecoder.field("right", right) + TelemetryDecoder.field("left", left) +
+							  TelemetryDecoder.field("mode", mode) + TelemetryDecoder.field("enter", enter) +
+							  TelemetryDecoder.field("red", red) + TelemetryDecoder.field("motor", motor) +
+							  TelemetryDecoder.field("command", command) + TelemetryDecoder.field("value", value) +
+							  TelemetryDecoder.field("flag", flag) + "}");
+				} else {
+					out.write(t + "," + name + "," + x + "," + y + "," + heading + "," + distance + "," + right + "," + left +
+							  "," + mode + "," + enter + "," + red + "," + motor + "," + command + "," + value + "," + flag + "\n");
+				}
+				count++;
+			}
+			buffer.compact();
+			if (buffer.position() > 0 && channel.position() == channel.size()) { break; } // truncated last record.
+		}
+		if (count < 0) { throw new IOException("empty telemetry file"); }
+		out.write((json)? "\n]\n" : "");
+		return count;
+	}
+
+	/**
+	 * Formats a field of a JSON object, if it has a value.
+	 *
+	 * @param name the name of the field.
+	 * @param value the value of the field, or an empty string.
+	 * @return the formatted field, with a leading comma, or an empty string.
+	 */
+	private static String field(String name, String value) {
+		if (value.isEmpty()) { return ""; }
+		// JSON has no infinity, e.g. for an ultrasonic sensor which sees nothing.
+		if (value.endsWith("Infinity") || value.equals("NaN")) { value = "null"; }
+		return ",\"" + name + "\":" + value;
+	}
+}
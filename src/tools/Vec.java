@@ -0,0 +1,171 @@
+package tools;
+
+import lejos.robotics.geometry.Point;
+
+/**
+ * A mutable 2D vector of floats, for the hot paths of the rover.
+ *
+ * The leJOS geometry allocates a new point for every operation, e.g. {@link Point#pointAt(float, float)} or
+ * {@link Point#subtract(Point)}, which produces garbage at the rate of the sensors on the small heap of the EV3. Every
+ * operation of a Vec is done in place and returns the vector itself, so that operations can be chained without any
+ * allocation, and vectors are meant to be allocated once and reused.
+ *
+ * @author Antoine Stevan
+ *
+ */
+public final class Vec {
+	/** The x coordinate of the vector. */
+	public float x;
+	/** The y coordinate of the vector. */
+	public float y;
+
+	/**
+	 * Builds a null vector.
+	 */
+	public Vec() {
+		this(0, 0);
+	}
+	/**
+	 * Builds a vector from its coordinates.
+	 *
+	 * @param x the x coordinate of the vector.
+	 * @param y the y coordinate of the vector.
+	 */
+	public Vec(float x, float y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Sets the coordinates of the vector.
+	 *
+	 * @param x the new x coordinate.
+	 * @param y the new y coordinate.
+	 * @return the vector itself.
+	 */
+	public Vec set(float x, float y) {
+		this.x = x;
+		this.y = y;
+		return this;
+	}
+	/**
+	 * Copies the coordinates of another vector.
+	 *
+	 * @param v the vector to be copied.
+	 * @return the vector itself.
+	 */
+	public Vec set(Vec v) {
+		return this.set(v.x, v.y);
+	}
+
+	/**
+	 * Adds an offset to the vector.
+	 *
+	 * @param dx the offset along x.
+	 * @param dy the offset along y.
+	 * @return the vector itself.
+	 */
+	public Vec add(float dx, float dy) {
+		this.x += dx;
+		this.y += dy;
+		return this;
+	}
+	/**
+	 * Adds another vector to the vector.
+	 *
+	 * @param v the vector to be added.
+	 * @return the vector itself.
+	 */
+	public Vec add(Vec v) {
+		return this.add(v.x, v.y);
+	}
+	/**
+	 * Subtracts another vector from the vector.
+	 *
+	 * @param v the vector to be subtracted.
+	 * @return the vector itself.
+	 */
+	public Vec sub(Vec v) {
+		return this.add(-v.x, -v.y);
+	}
+
+	/**
+	 * Moves the vector by a distance in a given direction, in place. Same as {@link Point#pointAt(float, float)}.
+	 *
+	 * @param distance the distance to move by.
+	 * @param angle the direction of the move, in degrees.
+	 * @return the vector itself.
+	 */
+	public Vec pointAt(float distance, float angle) {
+		double a = Math.toRadians(angle);
+		return this.advance(distance, (float)Math.cos(a), (float)Math.sin(a));
+	}
+	/**
+	 * Moves the vector by a distance in a given direction, given by its cosine and sine, in place.
+	 * Useful when several moves share the same direction, the trigonometry being computed once.
+	 *
+	 * @param distance the distance to move by.
+	 * @param cos the cosine of the direction of the move.
+	 * @param sin the sine of the direction of the move.
+	 * @return the vector itself.
+	 */
+	public Vec advance(float distance, float cos, float sin) {
+		return this.add(distance*cos, distance*sin);
+	}
+
+	/**
+	 * Gives the squared distance to a point, which is enough to compare distances without any square root.
+	 *
+	 * @param x the x coordinate of the point.
+	 * @param y the y coordinate of the point.
+	 * @return the squared distance to the point.
+	 */
+	public float distanceSquared(float x, float y) {
+		float dx = this.x - x;
+		float dy = this.y - y;
+		return dx*dx + dy*dy;
+	}
+	/**
+	 * Gives the squared distance to another vector.
+	 *
+	 * @param v the other vector.
+	 * @return the squared distance to the other vector.
+	 */
+	public float distanceSquared(Vec v) {
+		return this.distanceSquared(v.x, v.y);
+	}
+	/**
+	 * Gives the squared distance to a leJOS point.
+	 *
+	 * @param p the point.
+	 * @return the squared distance to the point.
+	 */
+	public float distanceSquared(Point p) {
+		return this.distanceSquared(p.x, p.y);
+	}
+	/**
+	 * Gives the length of the vector.
+	 *
+	 * @return the length of the vector.
+	 */
+	public float length() {
+		return (float)Math.sqrt(this.x*this.x + this.y*this.y);
+	}
+
+	/**
+	 * Copies the coordinates of the vector into a leJOS point, for the code which still uses them.
+	 *
+	 * @param p the point to be written.
+	 * @return the point, i.e. 'p'.
+	 */
+	public Point copy_to(Point p) {
+		p.x = this.x;
+		p.y = this.y;
+		return p;
+	}
+
+	@Override
+	public String toString() {
+		return "Vec[" + this.x + ", " + this.y + "]";
+	}
+}
@@ -0,0 +1,517 @@
+package tools;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A virtual clock, whose time only goes by when every thread of the simulated rover is waiting for it.
+ *
+ * Each thread started by the clock, or which has waited through it once, is a party of the clock. A party is either
+ * running or parked inside a wait of the clock, until a deadline, a signal of its monitor, or both. A scheduler thread
+ * moves the time forward as soon as every party is parked: straight to the earliest deadline, by steps of at most
+ * {@link VirtualClock#tick} if a {@link Stepper} simulates the world in between, and wakes up the parties whose deadline
+ * is reached. Hence, a computation takes no virtual time at all and a wait takes no real time at all: a mission runs as
+ * fast as the CPU allows.
+ *
+ * Parties never run together: the woken parties are queued, by deadline then in the order they joined the clock, and
+ * the running party hands the CPU over to the next one of the queue when it parks, like a token. A thread started by the
+ * clock is queued as well and only runs once its turn comes. The interleaving of the parties hence only depends on the
+ * virtual time, never on the scheduler of the host: a mission always sees the same timings and takes the same decisions.
+ * A party must not park while holding a monitor another party needs, as the latter would block with the token.
+ *
+ * Parties polling with {@link VirtualClock#pause()} are woken up once every other party has had a chance to change
+ * something, i.e. they poll once per instant of the virtual time where something happened instead of spinning.
+ *
+ * When the clock is stopped, e.g. when the time reaches its limit, every wait throws {@link Stopped}, which ends the
+ * threads started by the clock silently.
+ *
+ * @author Antoine Stevan
+ *
+ */
+public class VirtualClock implements Clock {
+	/**
+	 * The simulation of the world around the parties, moved forward together with the time.
+	 */
+	public interface Stepper {
+		/**
+		 * Moves the world forward, the scheduler of the clock holding its lock.
+		 *
+		 * @param nanos the duration of the step, in nanoseconds.
+		 */
+		void step(long nanos);
+	}
+
+	/**
+	 * Thrown by the waits of a stopped clock, to end its parties.
+	 */
+	public static class Stopped extends Error {
+		/** Version of the serialized form. */
+		private static final long serialVersionUID = 1L;
+
+		/** Builds the error, without any stack trace as it is thrown on purpose. */
+		Stopped() {
+			super("virtual clock stopped", null, false, false);
+		}
+	}
+
+	/**
+	 * A thread known by the clock.
+	 */
+	private static final class Party {
+		/** The thread of the party. */
+		final Thread thread;
+		/** The object the party waits on while parked: its monitor, or the party itself. */
+		Object waiter;
+		/** Tells whether the party is parked. Written while holding the lock of the clock. */
+		volatile boolean parked;
+		/**
+		 * Tells whether the party has been handed its turn. Set while holding the monitor it waits on, so that it only
+		 * runs once the party waking it up has released that monitor.
+		 */
+		volatile boolean woken;
+		/** The time at which the party is woken up, in nanoseconds, or {@link Long#MAX_VALUE} if there is none. */
+		long deadline;
+		/** Tells whether the party is polling, see {@link VirtualClock#pause()}. */
+		boolean pausing;
+		/** Tells whether the party is parked inside the queue of the woken parties, waiting for its turn. */
+		boolean queued;
+		/** The rank of the party, i.e. the order in which it joined the clock. */
+		final long id;
+
+		/**
+		 * Builds a running party.
+		 * @param thread the thread of the party.
+		 * @param id the rank of the party.
+		 */
+		Party(Thread thread, long id) {
+			this.thread = thread;
+			this.id     = id;
+		}
+	}
+
+	/** The longest step of the simulated world, in nanoseconds. */
+	public static final long tick = 1000000;
+	/** The period at which the scheduler looks for parties which died without leaving, in real ms. */
+	private static final int watchdog = 100;
+
+	/** The parties of the clock, by thread, in the order they joined the clock. */
+	private final LinkedHashMap<Thread, Party> parties = new LinkedHashMap<Thread, Party>();
+	/** The woken parties waiting for their turn, from the next one to run. */
+	private final ArrayList<Party> queue = new ArrayList<Party>();
+	/** The rank of the next party. */
+	private long ids;
+	/** The number of parties which are not parked, i.e. one at most unless the clock is stopped. */
+	private int running;
+	/** Tells whether a party other than a polling one has parked since the polling ones were last woken up. */
+	private boolean dirty;
+	/** The virtual time, in nanoseconds. */
+	private long time;
+	/** The time at which the clock stops, in nanoseconds. */
+	private long limit;
+	/** Tells whether the clock is stopped. */
+	private volatile boolean stopped;
+	/** The simulation of the world, or null. */
+	private Stepper stepper;
+	/** The number of times the time moved forward. */
+	private long steps;
+
+	/**
+	 * Builds a virtual clock at time 0, without any limit, and starts its scheduler.
+	 */
+	public VirtualClock() {
+		this.time    = 0;
+		this.limit   = Long.MAX_VALUE;
+		this.running = 0;
+		this.stepper = null;
+		Thread scheduler = new Thread(new Runnable() {
+			public void run() {
+				VirtualClock.this.schedule();
+			}
+		}, "virtual-clock");
+		scheduler.setDaemon(true);
+		scheduler.start();
+	}
+
+	/**
+	 * Setter for the 'stepper' field.
+	 * @param stepper the simulation of the world, moved forward together with the time, or null.
+	 */
+	public synchronized void setStepper(Stepper stepper) {
+		this.stepper = stepper;
+	}
+
+	/**
+	 * Sets the time at which the clock stops.
+	 * @param nanos the limit of the virtual time, in nanoseconds.
+	 */
+	public synchronized void setLimit(long nanos) {
+		this.limit = nanos;
+	}
+
+	/**
+	 * Tells whether the clock is stopped.
+	 * @return true if the clock has been stopped or has reached its limit.
+	 */
+	public boolean isStopped() {
+		return this.stopped;
+	}
+
+	/**
+	 * Getter for the 'steps' field.
+	 * @return the number of times the time moved forward.
+	 */
+	public synchronized long getSteps() {
+		return this.steps;
+	}
+
+	public synchronized long nanoTime() {
+		return this.time;
+	}
+
+	/**
+	 * The calling thread is parked until the time has moved forward by the given duration.
+	 */
+	public void sleep(long ms) {
+		try {
+			this.park(null, ms*1000000, false);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The calling thread is parked until every other party has run, or the time has moved forward.
+	 */
+	public void pause() {
+		try {
+			this.park(null, Long.MAX_VALUE, true);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void await(Object monitor, long ms) throws InterruptedException {
+		this.park(monitor, (ms == 0)? Long.MAX_VALUE : ms*1000000, false);
+	}
+
+	/**
+	 * The parties waiting on the monitor are queued, in the order they joined the clock: they run once the caller parks.
+	 */
+	public void signal(Object monitor) {
+		synchronized (this) {
+			for (Party party : this.parties.values()) {
+				if (party.parked && !party.queued && party.waiter == monitor) { this.enqueue(party); }
+			}
+		}
+		monitor.notifyAll();
+	}
+
+	/**
+	 * The thread is a party from the start, queued behind the woken parties, i.e. the time does not move forward before
+	 * it first waits. It leaves the clock when it ends.
+	 */
+	public Thread start(final Runnable task, String name) {
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					VirtualClock.this.enter();
+					task.run();
+				} catch (Stopped e) {
+					// the simulation is over.
+				} finally {
+					VirtualClock.this.leave();
+				}
+			}
+		}, name);
+		thread.setDaemon(true);
+		synchronized (this) {
+			if (this.stopped) { throw new Stopped(); }
+			Party party = new Party(thread, this.ids++);
+			party.waiter   = party;
+			party.deadline = Long.MAX_VALUE;
+			party.parked   = true;
+			this.parties.put(thread, party);
+			this.enqueue(party);
+			thread.start();
+			// nobody may be running to hand the thread its turn, e.g. for the first party.
+			this.notifyAll();
+		}
+		return thread;
+	}
+
+	/**
+	 * Stops the clock: every party is woken up and every wait throws {@link Stopped} from now on.
+	 */
+	public void stop() {
+		ArrayList<Party> wake = new ArrayList<Party>();
+		synchronized (this) {
+			this.halt(wake);
+		}
+		VirtualClock.notify(wake);
+	}
+
+	/**
+	 * Waits for the first turn of a thread started by the clock.
+	 */
+	private void enter() {
+		Party party;
+		synchronized (this) {
+			party = this.parties.get(Thread.currentThread());
+		}
+		synchronized (party) {
+			while (!party.woken) {
+				try {
+					party.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new Stopped();
+				}
+			}
+		}
+		if (this.stopped) { throw new Stopped(); }
+	}
+
+	/**
+	 * Parks the calling thread, registering it as a party if needed, and hands the CPU over to the next woken party if
+	 * any, see {@link VirtualClock#wake(Party)}. The caller holds the monitor, if any, which is released by its wait.
+	 *
+	 * @param monitor the monitor to wait on, held by the caller, or null.
+	 * @param nanos the maximum duration of the wait, in nanoseconds, or {@link Long#MAX_VALUE} if there is none.
+	 * @param pausing true if the caller is polling.
+	 * @throws InterruptedException if the thread is interrupted during the wait.
+	 */
+	private void park(Object monitor, long nanos, boolean pausing) throws InterruptedException {
+		Party party;
+		Party next = null;
+		synchronized (this) {
+			if (this.stopped) { throw new Stopped(); }
+			Thread thread = Thread.currentThread();
+			party = this.parties.get(thread);
+			if (party == null) {
+				party = new Party(thread, this.ids++);
+				this.parties.put(thread, party);
+				this.running++;
+			}
+			party.waiter   = (monitor == null)? party : monitor;
+			party.deadline = (nanos == Long.MAX_VALUE)? Long.MAX_VALUE : this.time + nanos;
+			party.pausing  = pausing;
+			party.parked   = true;
+			party.woken    = false;
+			if (!pausing) { this.dirty = true; }
+			if (--this.running == 0) {
+				// the next party of the same instant runs right away, otherwise the scheduler moves the time forward.
+				if (this.queue.isEmpty()) { this.notifyAll(); }
+				else                      { next = this.dequeue(); }
+			}
+		}
+		if (next != null) { VirtualClock.wake(next); }
+		try {
+			if (monitor == null) {
+				synchronized (party) {
+					while (!party.woken) { party.wait(); }
+				}
+			} else {
+				while (!party.woken) { monitor.wait(); }
+			}
+		} catch (InterruptedException e) {
+			synchronized (this) {
+				if (party.parked) {
+					if (party.queued) { this.queue.remove(party); }
+					party.queued = false;
+					party.parked = false;
+					this.running++;
+				}
+			}
+			throw e;
+		}
+		if (this.stopped) { throw new Stopped(); }
+	}
+
+	/**
+	 * Removes the calling thread from the parties.
+	 */
+	private synchronized void leave() {
+		Party party = this.parties.remove(Thread.currentThread());
+		if (party == null) { return; }
+		if (party.queued) { this.queue.remove(party); }
+		if (!party.parked && --this.running == 0) { this.notifyAll(); }
+	}
+
+	/**
+	 * Queues a parked party, to run once the parties before it have parked. Must be called while holding the lock of the
+	 * clock.
+	 *
+	 * @param party the party.
+	 */
+	private void enqueue(Party party) {
+		party.queued = true;
+		this.queue.add(party);
+	}
+
+	/**
+	 * Hands the turn to the next party of the queue. Must be called while holding the lock of the clock, with every party
+	 * parked. The party only runs once {@link VirtualClock#wake(Party)} is called.
+	 *
+	 * @return the party.
+	 */
+	private Party dequeue() {
+		Party party = this.queue.remove(0);
+		party.queued = false;
+		party.parked = false;
+		this.running++;
+		return party;
+	}
+
+	/**
+	 * Main loop of the scheduler: moves the time forward whenever every party is parked, then wakes up the parties whose
+	 * deadline is reached, outside of the lock of the clock.
+	 */
+	private void schedule() {
+		ArrayList<Party> wake = new ArrayList<Party>();
+		while (true) {
+			synchronized (this) {
+				while (!this.stopped && (this.running > 0 || this.parties.isEmpty() || !this.advance(wake))) {
+					try {
+						this.wait(VirtualClock.watchdog);
+					} catch (InterruptedException e) {
+						return;
+					}
+					this.purge();
+				}
+			}
+			VirtualClock.notify(wake);
+			wake.clear();
+			if (this.stopped) { return; }
+		}
+	}
+
+	/**
+	 * Wakes up the next party, once every party is parked. Must be called while holding the lock of the clock.
+	 * The queue of the woken parties is served first. Then, polling parties are queued if another party has parked
+	 * since their last poll. Otherwise, the time moves to the earliest deadline, stepping the world on the way, until a
+	 * party is queued.
+	 *
+	 * @param wake the list receiving the parties to wake up.
+	 * @return true if a party has been woken up, false if there is nothing to wait for.
+	 */
+	private boolean advance(ArrayList<Party> wake) {
+		if (this.queue.isEmpty()) {
+			boolean pausers = false;
+			for (Party party : this.parties.values()) {
+				if (party.pausing) { pausers = true; break; }
+			}
+			if (this.dirty && pausers) {
+				this.dirty = false;
+				this.queue_pausers();
+			}
+			while (this.queue.isEmpty()) {
+				long next = Long.MAX_VALUE;
+				for (Party party : this.parties.values()) {
+					if (!party.pausing && party.deadline < next) { next = party.deadline; }
+				}
+				if (next == Long.MAX_VALUE && this.stepper == null && !pausers) { return false; }
+				long target = (this.stepper == null && next != Long.MAX_VALUE)? next :
+							  Math.min(next, this.time + VirtualClock.tick);
+				if (target > this.limit) {
+					this.halt(wake);
+					return true;
+				}
+				long step = target - this.time;
+				this.time = target;
+				this.steps++;
+				// the motors of the world may signal some parties during the step.
+				if (this.stepper != null) { this.stepper.step(step); }
+				this.queue_due();
+				if (this.queue.isEmpty() && next == Long.MAX_VALUE && pausers) { this.queue_pausers(); }
+			}
+			this.dirty = false;
+		}
+		wake.add(this.dequeue());
+		return true;
+	}
+
+	/**
+	 * Queues the parties whose deadline is reached, by deadline then in the order they joined the clock. Must be called
+	 * while holding the lock of the clock.
+	 */
+	private void queue_due() {
+		int first = this.queue.size();
+		for (Party party : this.parties.values()) {
+			if (party.parked && !party.queued && !party.pausing && party.deadline <= this.time) {
+				// insertion by deadline, the parties being seen in the order they joined the clock.
+				int i = this.queue.size();
+				while (i > first && this.queue.get(i-1).deadline > party.deadline) { i--; }
+				party.queued = true;
+				this.queue.add(i, party);
+			}
+		}
+	}
+
+	/**
+	 * Queues every polling party, in the order they joined the clock. Must be called while holding the lock of the clock.
+	 */
+	private void queue_pausers() {
+		for (Party party : this.parties.values()) {
+			if (party.parked && !party.queued && party.pausing) { this.enqueue(party); }
+		}
+	}
+
+	/**
+	 * Stops the clock and wakes up every party. Must be called while holding the lock of the clock.
+	 *
+	 * @param wake the list receiving the parties to wake up.
+	 */
+	private void halt(ArrayList<Party> wake) {
+		this.stopped = true;
+		this.queue.clear();
+		for (Party party : this.parties.values()) {
+			if (party.parked) {
+				party.queued = false;
+				party.parked = false;
+				this.running++;
+				wake.add(party);
+			}
+		}
+		this.notifyAll();
+	}
+
+	/**
+	 * Forgets the parties whose thread died without leaving the clock. Must be called while holding the lock of the clock.
+	 */
+	private void purge() {
+		Iterator<Party> i = this.parties.values().iterator();
+		while (i.hasNext()) {
+			Party party = i.next();
+			if (!party.thread.isAlive()) {
+				i.remove();
+				if (party.queued)  { this.queue.remove(party); }
+				if (!party.parked) { this.running--; }
+			}
+		}
+	}
+
+	/**
+	 * Wakes up parties, one after the other.
+	 *
+	 * @param wake the parties.
+	 */
+	private static void notify(ArrayList<Party> wake) {
+		for (int i = 0; i < wake.size(); i++) { VirtualClock.wake(wake.get(i)); }
+	}
+
+	/**
+	 * Wakes up a party which has been handed its turn, while holding the monitor it waits on only. As the party cannot
+	 * run before this monitor is released, it never holds a monitor the caller needs meanwhile: two parties never wait
+	 * for the monitor of each other.
+	 *
+	 * @param party the party.
+	 */
+	private static void wake(Party party) {
+		Object waiter = party.waiter;
+		synchronized (waiter) {
+			party.woken = true;
+			waiter.notifyAll();
+		}
+	}
+}